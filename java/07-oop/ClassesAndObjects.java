@@ -86,10 +86,19 @@ public class ClassesAndObjects {
         // Request garbage collection (Note: this is just a request, not a guarantee)
         System.gc();
         System.out.println("Requested garbage collection");
+        System.out.println("Person objects still alive: " + Person.getLiveCount());
         
-        // Demonstrating finalize method behavior
-        System.out.println("\nNote: finalize is deprecated in newer Java versions");
-        System.out.println("Objects may be garbage collected, but finalize may not be called immediately");
+        // Give the Cleaner's thread a moment to run the cleanup actions
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Person objects alive after a short wait: " + Person.getLiveCount());
+        
+        // Cleanup actions run on the Cleaner's thread some time after collection
+        System.out.println("\nNote: finalize is deprecated in newer Java versions; use java.lang.ref.Cleaner");
+        System.out.println("Objects may be garbage collected, but cleanup actions may not run immediately");
     }
 }
 
@@ -100,6 +109,10 @@ class Person {
     // Static field (shared among all instances)
     private static int count = 0;
     
+    // Counts Person objects not yet garbage collected; the Cleaner decrements it
+    private static final java.lang.ref.Cleaner CLEANER = java.lang.ref.Cleaner.create();
+    private static final java.util.concurrent.atomic.AtomicInteger LIVE = new java.util.concurrent.atomic.AtomicInteger();
+    
     // Instance fields (each object has its own copy)
     private String name;
     private int age;
@@ -109,6 +122,10 @@ class Person {
         this.name = name;
         this.age = age;
         count++; // Increment the counter each time a Person is created
+        
+        // The cleanup action must not refer to this object, or it would never be collected
+        LIVE.incrementAndGet();
+        CLEANER.register(this, LIVE::decrementAndGet);
     }
     
     // Instance method
@@ -121,6 +138,10 @@ class Person {
         return count;
     }
     
+    public static int getLiveCount() {
+        return LIVE.get();
+    }
+    
     // Getter methods
     public String getName() {
         return name;
@@ -167,18 +188,6 @@ class Person {
         result = 31 * result + age;
         return result;
     }
-    
-    // Finalize method (called by garbage collector)
-    // Note: finalize is deprecated in newer Java versions
-    @Override
-    protected void finalize() throws Throwable {
-        try {
-            System.out.println("Finalizing " + name);
-            count--;
-        } finally {
-            super.finalize();
-        }
-    }
 }
 
 /**
@@ -82,6 +82,18 @@ public class EncapsulationExample {
         student.setAge(-5);
         System.out.println("Age after invalid update: " + student.getAge());
         
+        // GPA, minimum and maximum are kept up to date as grades are added or replaced
+        System.out.println("\nReplacing the Science grade:");
+        student.addGrade("Science", 95);
+        System.out.println("GPA: " + student.calculateGPA() +
+                           ", lowest: " + student.getMinGrade() +
+                           ", highest: " + student.getMaxGrade());
+        System.out.println("Science: " + student.getGrade("Science"));
+        
+        // Percentiles over a roster; pass a larger count, e.g. 1000000, to try millions of students
+        System.out.println("\n--- Roster Analytics Example ---");
+        rosterAnalytics(args.length > 0 ? Integer.parseInt(args[0]) : 10_000);
+        
         // Immutable objects example
         System.out.println("\n--- Immutable Objects Example ---");
         
@@ -91,7 +103,7 @@ public class EncapsulationExample {
         // Cannot modify an immutable object
         // point1.x = 20;  // Error: x has private access
         
-        // Instead, create a new object
+        // Instead, get the translated point (possibly a shared cached one)
         ImmutablePoint point2 = point1.translate(3, 4);
         System.out.println("Point 1 (original): " + point1);
         System.out.println("Point 2 (translated): " + point2);
@@ -124,6 +136,33 @@ public class EncapsulationExample {
         System.out.println("Employee address after external modification: " + employee.getAddress());
         System.out.println("Note: If defensive copying is implemented, the employee's address should not change");
     }
+    
+    private static void rosterAnalytics(int studentCount) {
+        String[] subjects = {"Math", "English", "Science", "History", "Art"};
+        java.util.Random random = new java.util.Random(42);
+        java.util.List<Student> roster = new java.util.ArrayList<>(studentCount);
+        for (int i = 0; i < studentCount; i++) {
+            Student student = new Student("S" + i, "Student " + i, 18 + i % 8);
+            for (String subject : subjects) {
+                student.addGrade(subject, Math.min(100, Math.max(0, (int) (75 + random.nextGaussian() * 12))));
+            }
+            roster.add(student);
+        }
+        
+        double[] percentiles = {50, 90, 99};
+        long start = System.nanoTime();
+        double[] gpas = RosterAnalytics.gpaPercentiles(roster, percentiles);
+        long gpaMillis = (System.nanoTime() - start) / 1_000_000;
+        start = System.nanoTime();
+        int[] math = RosterAnalytics.subjectPercentiles(roster, "Math", percentiles);
+        long mathMillis = (System.nanoTime() - start) / 1_000_000;
+        
+        System.out.println(studentCount + " students, " + Runtime.getRuntime().availableProcessors() + " CPUs");
+        for (int i = 0; i < percentiles.length; i++) {
+            System.out.printf("p%.0f: GPA %.1f, Math %d%n", percentiles[i], gpas[i], math[i]);
+        }
+        System.out.println("GPA percentiles took " + gpaMillis + " ms, Math percentiles took " + mathMillis + " ms");
+    }
 }
 
 /**
@@ -233,11 +272,22 @@ class BankAccount {
  * Student class demonstrating encapsulation
  */
 class Student {
+    private static final int MAX_SCORE = 100;
+    
     // Private fields
     private String studentId;
     private String name;
     private int age;
-    private java.util.Map<String, Integer> grades;
+    
+    // Grades indexed by subject id (-1 means no grade), plus the subjects in the order they were added
+    private int[] scoresBySubject;
+    private int[] subjectOrder;
+    private int gradeCount;
+    
+    // Running aggregates, kept up to date by addGrade
+    private long scoreSum;
+    private int minScore;
+    private int maxScore;
     
     // Constructor
     public Student(String studentId, String name, int age) {
@@ -252,7 +302,52 @@ class Student {
             System.out.println("Warning: Age must be positive. Set to default (18).");
         }
         
-        this.grades = new java.util.HashMap<>();
+        this.scoresBySubject = new int[0];
+        this.subjectOrder = new int[4];
+    }
+    
+    /**
+     * Interns subject names as small ids shared by every student, so each student
+     * stores grades in an int array instead of a map of strings to boxed integers
+     */
+    static final class Subjects {
+        private static final java.util.concurrent.ConcurrentHashMap<String, Integer> IDS =
+            new java.util.concurrent.ConcurrentHashMap<>();
+        private static volatile String[] names = new String[0];
+        
+        private Subjects() {
+        }
+        
+        public static int idOf(String subject) {
+            Integer id = IDS.get(subject);
+            return id != null ? id : register(subject);
+        }
+        
+        // Returns -1 for a subject no student has been graded in
+        public static int lookup(String subject) {
+            Integer id = IDS.get(subject);
+            return id != null ? id : -1;
+        }
+        
+        public static String nameOf(int id) {
+            return names[id];
+        }
+        
+        public static int count() {
+            return names.length;
+        }
+        
+        private static synchronized int register(String subject) {
+            Integer existing = IDS.get(subject);
+            if (existing != null) {
+                return existing;
+            }
+            String[] grown = java.util.Arrays.copyOf(names, names.length + 1);
+            grown[names.length] = subject;
+            names = grown;
+            IDS.put(subject, names.length - 1);
+            return names.length - 1;
+        }
     }
     
     // Getters
@@ -270,7 +365,43 @@ class Student {
     
     // Return a copy of the grades to prevent direct modification
     public java.util.Map<String, Integer> getGrades() {
-        return new java.util.HashMap<>(grades);
+        java.util.Map<String, Integer> copy = new java.util.LinkedHashMap<>();
+        for (int i = 0; i < gradeCount; i++) {
+            copy.put(Subjects.nameOf(subjectOrder[i]), scoresBySubject[subjectOrder[i]]);
+        }
+        return copy;
+    }
+    
+    // Single grade lookup without copying, or -1 if the student has no grade in the subject
+    public int getGrade(String subject) {
+        return getGrade(Subjects.lookup(subject));
+    }
+    
+    public int getGrade(int subjectId) {
+        if (subjectId < 0 || subjectId >= scoresBySubject.length) {
+            return -1;
+        }
+        return scoresBySubject[subjectId];
+    }
+    
+    public int getGradeCount() {
+        return gradeCount;
+    }
+    
+    // Lowest and highest grades, or -1 when there are none
+    public int getMinGrade() {
+        return gradeCount == 0 ? -1 : minScore;
+    }
+    
+    public int getMaxGrade() {
+        return gradeCount == 0 ? -1 : maxScore;
+    }
+    
+    // Visits the grades in the order they were added, without copying them
+    public void forEachGrade(java.util.function.ObjIntConsumer<String> action) {
+        for (int i = 0; i < gradeCount; i++) {
+            action.accept(Subjects.nameOf(subjectOrder[i]), scoresBySubject[subjectOrder[i]]);
+        }
     }
     
     // Setters with validation
@@ -292,24 +423,63 @@ class Student {
     
     // Business methods
     public void addGrade(String subject, int score) {
-        if (score >= 0 && score <= 100) {
-            grades.put(subject, score);
+        if (score >= 0 && score <= MAX_SCORE) {
+            putScore(Subjects.idOf(subject), score);
         } else {
             System.out.println("Error: Score must be between 0 and 100.");
         }
     }
     
-    public double calculateGPA() {
-        if (grades.isEmpty()) {
-            return 0.0;
+    private void putScore(int subjectId, int score) {
+        if (subjectId >= scoresBySubject.length) {
+            int oldLength = scoresBySubject.length;
+            scoresBySubject = java.util.Arrays.copyOf(scoresBySubject, Math.max(subjectId + 1, Subjects.count()));
+            java.util.Arrays.fill(scoresBySubject, oldLength, scoresBySubject.length, -1);
         }
         
-        int total = 0;
-        for (int score : grades.values()) {
-            total += score;
+        int previous = scoresBySubject[subjectId];
+        if (previous >= 0) {
+            // Replacing a grade, as HashMap.put did
+            scoreSum -= previous;
+        } else {
+            if (gradeCount == subjectOrder.length) {
+                subjectOrder = java.util.Arrays.copyOf(subjectOrder, gradeCount * 2);
+            }
+            subjectOrder[gradeCount++] = subjectId;
+        }
+        
+        scoresBySubject[subjectId] = score;
+        scoreSum += score;
+        
+        if (gradeCount == 1) {
+            minScore = score;
+            maxScore = score;
+        } else if (previous == minScore || previous == maxScore) {
+            // The replaced grade may have been the only minimum or maximum
+            recomputeMinMax();
+        } else {
+            minScore = Math.min(minScore, score);
+            maxScore = Math.max(maxScore, score);
+        }
+    }
+    
+    // Bounded by the number of subjects, not by the number of grades ever added
+    private void recomputeMinMax() {
+        minScore = MAX_SCORE;
+        maxScore = 0;
+        for (int i = 0; i < gradeCount; i++) {
+            int score = scoresBySubject[subjectOrder[i]];
+            minScore = Math.min(minScore, score);
+            maxScore = Math.max(maxScore, score);
+        }
+    }
+    
+    public double calculateGPA() {
+        if (gradeCount == 0) {
+            return 0.0;
         }
         
-        return (double) total / grades.size();
+        return (double) scoreSum / gradeCount;
     }
     
     // Override toString method
@@ -319,7 +489,82 @@ class Student {
                "studentId='" + studentId + "', " +
                "name='" + name + "', " +
                "age=" + age + ", " +
-               "grades=" + grades + "]";
+               "grades=" + getGrades() + "]";
+    }
+}
+
+/**
+ * RosterAnalytics computes percentiles over large rosters in parallel
+ */
+final class RosterAnalytics {
+    private RosterAnalytics() {
+    }
+    
+    /**
+     * GPA at each percentile (nearest rank, 0-100), using a parallel sort of all GPAs
+     */
+    public static double[] gpaPercentiles(java.util.List<Student> roster, double... percentiles) {
+        double[] gpas = roster.parallelStream()
+                              .filter(student -> student.getGradeCount() > 0)
+                              .mapToDouble(Student::calculateGPA)
+                              .toArray();
+        java.util.Arrays.parallelSort(gpas);
+        
+        double[] result = new double[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            result[i] = gpas.length == 0 ? Double.NaN : gpas[nearestRank(percentiles[i], gpas.length)];
+        }
+        return result;
+    }
+    
+    /**
+     * Score in one subject at each percentile. Scores are 0-100, so each worker
+     * fills a histogram and no sort is needed
+     */
+    public static int[] subjectPercentiles(java.util.List<Student> roster, String subject, double... percentiles) {
+        int subjectId = Student.Subjects.lookup(subject);
+        int[] histogram = roster.parallelStream().collect(
+            () -> new int[101],
+            (counts, student) -> {
+                int score = student.getGrade(subjectId);
+                if (score >= 0) {
+                    counts[score]++;
+                }
+            },
+            (left, right) -> {
+                for (int score = 0; score < left.length; score++) {
+                    left[score] += right[score];
+                }
+            });
+        
+        long graded = 0;
+        for (int count : histogram) {
+            graded += count;
+        }
+        
+        int[] result = new int[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            if (graded == 0) {
+                result[i] = -1;
+                continue;
+            }
+            long rank = nearestRank(percentiles[i], graded);
+            int score = 0;
+            long seen = histogram[0];
+            while (seen <= rank) {
+                seen += histogram[++score];
+            }
+            result[i] = score;
+        }
+        return result;
+    }
+    
+    // Zero-based index of the nearest-rank percentile among n sorted values
+    private static int nearestRank(double percentile, long n) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        return (int) Math.max(0, Math.ceil(percentile / 100 * n) - 1);
     }
 }
 
@@ -327,6 +572,20 @@ class Student {
  * ImmutablePoint class demonstrating immutability as a form of encapsulation
  */
 final class ImmutablePoint {
+    // Points near the origin are shared, like Integer.valueOf's cache
+    private static final int CACHE_LOW = -16;
+    private static final int CACHE_HIGH = 15;
+    private static final int CACHE_WIDTH = CACHE_HIGH - CACHE_LOW + 1;
+    private static final ImmutablePoint[] CACHE = new ImmutablePoint[CACHE_WIDTH * CACHE_WIDTH];
+    
+    static {
+        for (int x = CACHE_LOW; x <= CACHE_HIGH; x++) {
+            for (int y = CACHE_LOW; y <= CACHE_HIGH; y++) {
+                CACHE[(x - CACHE_LOW) * CACHE_WIDTH + (y - CACHE_LOW)] = new ImmutablePoint(x, y);
+            }
+        }
+    }
+    
     // Final private fields
     private final int x;
     private final int y;
@@ -337,6 +596,14 @@ final class ImmutablePoint {
         this.y = y;
     }
     
+    // Factory that reuses cached points; safe because the object can never change
+    public static ImmutablePoint of(int x, int y) {
+        if (x >= CACHE_LOW && x <= CACHE_HIGH && y >= CACHE_LOW && y <= CACHE_HIGH) {
+            return CACHE[(x - CACHE_LOW) * CACHE_WIDTH + (y - CACHE_LOW)];
+        }
+        return new ImmutablePoint(x, y);
+    }
+    
     // Getters (no setters because the object is immutable)
     public int getX() {
         return x;
@@ -346,9 +613,10 @@ final class ImmutablePoint {
         return y;
     }
     
-    // Instead of modifying this object, create and return a new object
+    // Instead of modifying this object, return the translated point from of(),
+    // which may be a shared cached instance rather than a new object
     public ImmutablePoint translate(int dx, int dy) {
-        return new ImmutablePoint(x + dx, y + dy);
+        return of(x + dx, y + dy);
     }
     
     // Override toString method
@@ -1,3 +1,11 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
 /**
  * This class demonstrates custom exceptions in Java
  */
@@ -80,9 +88,224 @@ public class CustomExceptions {
             System.out.println("Original cause: " + e.getCause().getMessage());
         }
         
+        // 7. Exception-free fast path
+        System.out.println("\n7. Exception-Free Withdrawals:");
+        exceptionFreeWithdrawals();
+        
+        // 8. Stack trace capture modes
+        System.out.println("\n8. Stack Trace Capture Modes:");
+        stackTraceModes();
+        
         System.out.println("\nEnd of custom exceptions demonstration.");
     }
     
+    /**
+     * Demonstrates the stack trace modes, shared instances and throw-site counts, and what each mode costs
+     */
+    public static void stackTraceModes() {
+        ConfigurableException.setCountThrowSites(true);
+        for (ConfigurableException.StackTraceMode mode : ConfigurableException.StackTraceMode.values()) {
+            if (mode == ConfigurableException.StackTraceMode.TOP_FRAMES) {
+                ConfigurableException.setTopFrames(2);
+            } else {
+                ConfigurableException.setStackTraceMode(mode);
+            }
+            try {
+                validateUser("user123", "");
+            } catch (AuthenticationException e) {
+                StackTraceElement[] frames = e.getStackTrace();
+                System.out.println(mode + ": " + frames.length + " frames"
+                                   + (frames.length > 0 ? ", top " + frames[0] : ""));
+            }
+        }
+        
+        // A shared instance is created once and thrown as often as needed
+        for (int i = 0; i < 3; i++) {
+            try {
+                checkTransaction("ABC123", -100.0);
+            } catch (TransactionException e) {
+                System.out.println("Shared instance thrown: " + (e == TransactionException.INVALID_AMOUNT)
+                                   + ", stack frames: " + e.getStackTrace().length);
+            }
+        }
+        System.out.println("Throw sites: " + ConfigurableException.getThrowSiteCounts());
+        ConfigurableException.setCountThrowSites(false);
+        ConfigurableException.resetThrowSiteCounts();
+        
+        // Cost per rejected call 40 frames below the caller, as inside a typical framework.
+        // "logged" also reads the stack traces, as printing or logging the exception does.
+        int depth = 40;
+        int calls = 5_000;
+        System.out.println("Nanoseconds per rejected call:");
+        System.out.printf("%-16s %20s %20s %20s %20s%n", "mode", "processTransaction", "(logged)", "validateUser", "(logged)");
+        for (ConfigurableException.StackTraceMode mode : ConfigurableException.StackTraceMode.values()) {
+            if (mode == ConfigurableException.StackTraceMode.TOP_FRAMES) {
+                ConfigurableException.setTopFrames(8);
+            } else {
+                ConfigurableException.setStackTraceMode(mode);
+            }
+            String name = mode == ConfigurableException.StackTraceMode.TOP_FRAMES ? "TOP_FRAMES (8)" : mode.name();
+            System.out.printf("%-16s %20.0f %20.0f %20.0f %20.0f%n", name,
+                              timeThrows(depth, calls, () -> rejectTransaction(false)),
+                              timeThrows(depth, calls, () -> rejectTransaction(true)),
+                              timeThrows(depth, calls, () -> rejectUser(false)),
+                              timeThrows(depth, calls, () -> rejectUser(true)));
+        }
+        System.out.printf("%-16s %20.0f %20.0f %20s %20s%n", "shared instance",
+                          timeThrows(depth, calls, () -> rejectTransactionShared(false)),
+                          timeThrows(depth, calls, () -> rejectTransactionShared(true)), "n/a", "n/a");
+        ConfigurableException.setStackTraceMode(ConfigurableException.StackTraceMode.FULL);
+    }
+    
+    /**
+     * Like processTransaction, but rejects a bad amount with the shared exception
+     * instead of throwing and wrapping an IllegalArgumentException
+     */
+    public static void checkTransaction(String transactionId, double amount) throws TransactionException {
+        if (amount <= 0) {
+            throw TransactionException.INVALID_AMOUNT;
+        }
+    }
+    
+    private static int rejectTransaction(boolean readTrace) {
+        try {
+            processTransaction("ABC123", -100.0);
+        } catch (TransactionException e) {
+            return readTrace ? traceLength(e) : 1;
+        }
+        throw new IllegalStateException("Expected the call to fail");
+    }
+    
+    private static int rejectTransactionShared(boolean readTrace) {
+        try {
+            checkTransaction("ABC123", -100.0);
+        } catch (TransactionException e) {
+            return readTrace ? traceLength(e) : 1;
+        }
+        throw new IllegalStateException("Expected the call to fail");
+    }
+    
+    private static int rejectUser(boolean readTrace) {
+        try {
+            validateUser("user123", "");
+        } catch (AuthenticationException e) {
+            return readTrace ? traceLength(e) : 1;
+        }
+        throw new IllegalStateException("Expected the call to fail");
+    }
+    
+    // Stack frames of an exception and its causes
+    private static int traceLength(Throwable e) {
+        int frames = 0;
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            frames += t.getStackTrace().length;
+        }
+        return frames;
+    }
+    
+    // Best of three timed rounds after two warm-up rounds, in nanoseconds per call
+    private static double timeThrows(int depth, int calls, IntSupplier call) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long elapsed = atDepth(depth, () -> {
+                long start = System.nanoTime();
+                int checksum = 0;
+                for (int i = 0; i < calls; i++) {
+                    checksum += call.getAsInt();
+                }
+                long time = System.nanoTime() - start;
+                if (checksum == 42) {
+                    System.out.println(); // Keeps the checksum alive
+                }
+                return time;
+            });
+            if (round >= 2) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        return (double) best / calls;
+    }
+    
+    private static long atDepth(int depth, LongSupplier body) {
+        return depth == 0 ? body.getAsLong() : atDepth(depth - 1, body);
+    }
+    
+    /**
+     * Demonstrates reporting insufficient funds without throwing, and what each option costs
+     */
+    public static void exceptionFreeWithdrawals() {
+        BankAccount account = new BankAccount("123456", 1000.0);
+        
+        // A status result is a shared enum constant: nothing is allocated for a rejection
+        WithdrawStatus status = account.tryWithdraw(1500.0);
+        System.out.println("tryWithdraw($1500): " + status + ", balance still $" + account.getBalance());
+        System.out.println("tryWithdraw($200): " + account.tryWithdraw(200.0) + ", balance $" + account.getBalance());
+        
+        // Callers that need the exception can still have it, optionally without a stack trace
+        BankAccount stackless = new BankAccount("654321", 1000.0, true);
+        try {
+            stackless.withdraw(1500.0);
+        } catch (InsufficientFundsException e) {
+            System.out.println("Stackless exception: " + e.getMessage() + ", deficit $" + e.getDeficit()
+                               + ", stack frames: " + e.getStackTrace().length);
+        }
+        
+        // Cost per withdrawal when a given share of them is rejected; one untimed pass compiles every path first
+        int operations = 200_000;
+        double[] warmUp = withdrawalAmounts(operations, 0.5);
+        timeWithdrawals(warmUp, false, false);
+        timeWithdrawals(warmUp, true, false);
+        timeWithdrawals(warmUp, false, true);
+        System.out.printf("%-14s %18s %18s %18s%n", "failure rate", "throw (ns/op)", "stackless (ns/op)", "status (ns/op)");
+        for (double failureRate : new double[]{0.01, 0.10, 0.50}) {
+            double[] amounts = withdrawalAmounts(operations, failureRate);
+            System.out.printf("%-14s %18.1f %18.1f %18.1f%n", (int) (failureRate * 100) + "%",
+                              timeWithdrawals(amounts, false, false),
+                              timeWithdrawals(amounts, true, false),
+                              timeWithdrawals(amounts, false, true));
+        }
+    }
+    
+    // Zero-amount successes keep the balance steady; failures ask for more than the balance
+    private static double[] withdrawalAmounts(int count, double failureRate) {
+        Random random = new Random(42);
+        double[] amounts = new double[count];
+        for (int i = 0; i < count; i++) {
+            amounts[i] = random.nextDouble() < failureRate ? 2000.0 : 0.0;
+        }
+        return amounts;
+    }
+    
+    // Best of three timed rounds after two warm-up rounds, in nanoseconds per withdrawal
+    private static double timeWithdrawals(double[] amounts, boolean stackless, boolean statusCodes) {
+        BankAccount account = new BankAccount("bench", 1000.0, stackless);
+        long best = Long.MAX_VALUE;
+        long rejected = 0;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (double amount : amounts) {
+                if (statusCodes) {
+                    if (account.tryWithdraw(amount) != WithdrawStatus.SUCCESS) {
+                        rejected++;
+                    }
+                } else {
+                    try {
+                        account.withdraw(amount);
+                    } catch (InsufficientFundsException e) {
+                        rejected++;
+                    }
+                }
+            }
+            if (round >= 2) {
+                best = Math.min(best, System.nanoTime() - start);
+            }
+        }
+        if (rejected == 42) {
+            System.out.println(); // Keeps the count alive
+        }
+        return (double) best / amounts.length;
+    }
+    
     /**
      * Method that uses custom exception for transaction processing
      */
@@ -147,41 +370,79 @@ class InsufficientFundsException extends Exception {
         this.deficit = deficit;
     }
     
+    /**
+     * @param writableStackTrace false skips capturing the stack trace, which is
+     *                           most of the cost of creating an exception
+     */
+    public InsufficientFundsException(String message, double deficit, boolean writableStackTrace) {
+        super(message, null, true, writableStackTrace);
+        this.deficit = deficit;
+    }
+    
     public double getDeficit() {
         return deficit;
     }
 }
 
+/**
+ * Outcome of BankAccount.tryWithdraw; the constants are shared, so reporting
+ * a rejected withdrawal allocates nothing
+ */
+enum WithdrawStatus {
+    SUCCESS,
+    INSUFFICIENT_FUNDS
+}
+
 /**
  * Bank account class that uses the custom exception
  */
 class BankAccount {
     private String accountNumber;
     private double balance;
+    private boolean stacklessExceptions;
     
     public BankAccount(String accountNumber, double initialBalance) {
+        this(accountNumber, initialBalance, false);
+    }
+    
+    /**
+     * @param stacklessExceptions throw InsufficientFundsException without a stack trace
+     */
+    public BankAccount(String accountNumber, double initialBalance, boolean stacklessExceptions) {
         this.accountNumber = accountNumber;
         this.balance = initialBalance;
+        this.stacklessExceptions = stacklessExceptions;
     }
     
     public double getBalance() {
         return balance;
     }
     
+    /**
+     * Withdraw money from the account if the balance covers it
+     * 
+     * @return SUCCESS, or INSUFFICIENT_FUNDS with the balance unchanged
+     */
+    public WithdrawStatus tryWithdraw(double amount) {
+        if (amount > balance) {
+            return WithdrawStatus.INSUFFICIENT_FUNDS;
+        }
+        
+        balance -= amount;
+        return WithdrawStatus.SUCCESS;
+    }
+    
     /**
      * Withdraw money from the account
      * 
      * @throws InsufficientFundsException if there is not enough money in the account
      */
     public void withdraw(double amount) throws InsufficientFundsException {
-        if (amount > balance) {
+        if (tryWithdraw(amount) == WithdrawStatus.INSUFFICIENT_FUNDS) {
             double deficit = amount - balance;
             throw new InsufficientFundsException(
-                "Not enough money in account to withdraw $" + amount, deficit);
+                "Not enough money in account to withdraw $" + amount, deficit, !stacklessExceptions);
         }
-        
-        balance -= amount;
-        System.out.println("Withdrew $" + amount + ". New balance: $" + balance);
     }
 }
 
@@ -216,14 +477,156 @@ class Person {
     }
 }
 
+/**
+ * Base class for the custom checked exceptions with a configurable amount of
+ * stack trace capture.
+ * 
+ * Filling in the stack trace walks every frame of the throwing thread and is
+ * most of the cost of creating an exception, so the mode can be lowered from
+ * FULL to the top few frames (collected with StackWalker) or to NONE. Shared
+ * instances have no stack trace and no suppressed exceptions and can be
+ * thrown repeatedly for expected outcomes. Changing the mode while other
+ * threads create exceptions gives each of them one mode or the other.
+ */
+class ConfigurableException extends Exception {
+    enum StackTraceMode {
+        FULL,
+        TOP_FRAMES,
+        NONE
+    }
+    
+    private static final StackWalker WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+    private static final ConcurrentHashMap<String, LongAdder> THROW_SITES = new ConcurrentHashMap<>();
+    
+    private static volatile StackTraceMode mode = StackTraceMode.FULL;
+    private static volatile int topFrames = 8;
+    private static volatile boolean countThrowSites;
+    
+    private final boolean shared;
+    private final StackTraceMode capture;
+    
+    public ConfigurableException(String message) {
+        this(message, null);
+    }
+    
+    public ConfigurableException(String message, Throwable cause) {
+        this(message, cause, mode);
+    }
+    
+    // Throwable's constructor calls fillInStackTrace() before capture is set, which
+    // then records nothing; the trace is filled here from the one read of mode
+    private ConfigurableException(String message, Throwable cause, StackTraceMode capture) {
+        super(message, cause, true, capture != StackTraceMode.NONE);
+        this.shared = false;
+        this.capture = capture;
+        if (capture == StackTraceMode.FULL) {
+            super.fillInStackTrace();
+        } else if (capture == StackTraceMode.TOP_FRAMES) {
+            int limit = topFrames;
+            setStackTrace(WALKER.walk(frames -> frames
+                .dropWhile(frame -> Throwable.class.isAssignableFrom(frame.getDeclaringClass()))
+                .limit(limit)
+                .map(StackWalker.StackFrame::toStackTraceElement)
+                .toArray(StackTraceElement[]::new)));
+        }
+        if (countThrowSites) {
+            recordThrowSite();
+        }
+    }
+    
+    /**
+     * Creates an instance meant to be kept in a static field and thrown many
+     * times: it has no stack trace, ignores addSuppressed and rejects initCause.
+     */
+    protected ConfigurableException(String message, boolean shared) {
+        super(message, null, false, false);
+        this.shared = shared;
+        this.capture = StackTraceMode.NONE;
+    }
+    
+    public static void setStackTraceMode(StackTraceMode newMode) {
+        mode = newMode;
+    }
+    
+    /**
+     * Keep only the given number of frames, starting at the frame that created the exception
+     */
+    public static void setTopFrames(int frames) {
+        if (frames <= 0) {
+            throw new IllegalArgumentException("Frame count must be positive: " + frames);
+        }
+        topFrames = frames;
+        mode = StackTraceMode.TOP_FRAMES;
+    }
+    
+    public static StackTraceMode getStackTraceMode() {
+        return mode;
+    }
+    
+    /**
+     * Counting walks a few frames per exception to find the throw site, so it is off by default
+     */
+    public static void setCountThrowSites(boolean enabled) {
+        countThrowSites = enabled;
+    }
+    
+    /**
+     * Number of exceptions created at each site, most frequent first
+     */
+    public static Map<String, Long> getThrowSiteCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        THROW_SITES.entrySet().stream()
+            .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+            .forEach(entry -> counts.put(entry.getKey(), entry.getValue().sum()));
+        return counts;
+    }
+    
+    public static void resetThrowSiteCounts() {
+        THROW_SITES.clear();
+    }
+    
+    public boolean isShared() {
+        return shared;
+    }
+    
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return capture == StackTraceMode.FULL ? super.fillInStackTrace() : this;
+    }
+    
+    @Override
+    public synchronized Throwable initCause(Throwable cause) {
+        if (shared) {
+            throw new IllegalStateException("Cannot set the cause of a shared exception");
+        }
+        return super.initCause(cause);
+    }
+    
+    private void recordThrowSite() {
+        String site = WALKER.walk(frames -> frames
+            .dropWhile(frame -> Throwable.class.isAssignableFrom(frame.getDeclaringClass()))
+            .findFirst()
+            .map(frame -> frame.getClassName() + "." + frame.getMethodName() + ":" + frame.getLineNumber())
+            .orElse("unknown"));
+        THROW_SITES.computeIfAbsent(getClass().getSimpleName() + " at " + site, key -> new LongAdder()).increment();
+    }
+}
+
 /**
  * Custom exception that supports exception chaining
  */
-class TransactionException extends Exception {
+class TransactionException extends ConfigurableException {
+    // Shared instance for rejecting an amount without building a new exception
+    static final TransactionException INVALID_AMOUNT = new TransactionException("Invalid transaction amount", true);
+    
     public TransactionException(String message) {
         super(message);
     }
     
+    private TransactionException(String message, boolean shared) {
+        super(message, shared);
+    }
+    
     public TransactionException(String message, Throwable cause) {
         super(message, cause);
     }
@@ -232,7 +635,7 @@ class TransactionException extends Exception {
 /**
  * Custom exception with additional data fields
  */
-class AuthenticationException extends Exception {
+class AuthenticationException extends ConfigurableException {
     private String userId;
     private int errorCode;
     private long timestamp;
@@ -260,7 +663,7 @@ class AuthenticationException extends Exception {
 /**
  * Custom exceptions for file operations
  */
-class FileOperationException extends Exception {
+class FileOperationException extends ConfigurableException {
     public FileOperationException(String message) {
         super(message);
     }
@@ -323,7 +726,7 @@ class FileManager {
 /**
  * Custom exception for general processing errors
  */
-class ProcessingException extends Exception {
+class ProcessingException extends ConfigurableException {
     public ProcessingException(String message) {
         super(message);
     }
@@ -0,0 +1,483 @@
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+/**
+ * This class demonstrates recording which exceptions are caught, where, how
+ * often and how long their handlers take
+ */
+public class ExceptionMetricsExample {
+    // One site per catch block; looking it up once keeps the hot path free of map lookups
+    private static final ExceptionMetrics METRICS = new ExceptionMetrics(16);
+    private static final ExceptionMetrics.Site DIVIDE = METRICS.site("BasicExceptionHandling.divide");
+    private static final ExceptionMetrics.Site NULL_LENGTH = METRICS.site("BasicExceptionHandling.nullLength");
+    private static final ExceptionMetrics.Site ARRAY_INDEX = METRICS.site("BasicExceptionHandling.arrayIndex");
+    private static final ExceptionMetrics.Site PARSE = METRICS.site("BasicExceptionHandling.parse");
+    private static final ExceptionMetrics.Site RETHROW = METRICS.site("CustomExceptions.processWithRethrowing");
+    private static final ExceptionMetrics.Site CLOSE = METRICS.site("TryWithResources.exceptionalClose");
+
+    // Keeps the result of the division alive
+    private static volatile int sink;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Exception Metrics in Java ===\n");
+
+        // 1. Instrumented catch blocks
+        System.out.println("1. Instrumented Catch Blocks:");
+        METRICS.setEnabled(true);
+        for (int i = 0; i < 1_000; i++) {
+            runInstrumentedPaths(i);
+        }
+        ExceptionMetrics.Snapshot snapshot = METRICS.snapshot();
+        System.out.print(snapshot.toText());
+
+        // 2. JSON snapshot and periodic reporting
+        System.out.println("\n2. JSON Snapshot and Periodic Reporting:");
+        System.out.println(snapshot.toJson());
+        AutoCloseable reporter = METRICS.startReporter(Duration.ofMillis(100), ExceptionMetrics.Format.TEXT,
+                text -> System.out.println("[report] " + text.lines().findFirst().orElse("")));
+        try {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(250);
+            int i = 0;
+            while (System.nanoTime() < end) {
+                runInstrumentedPaths(i++);
+            }
+        } finally {
+            reporter.close();
+        }
+
+        // 3. Overhead per throw
+        System.out.println("\n3. Overhead per Throw:");
+        overheadBenchmark();
+        METRICS.setEnabled(false);
+
+        System.out.println("\nRecommendations:");
+        System.out.println("- Register one site per catch block up front and keep it in a static field");
+        System.out.println("- Leave counters on in production; they are small next to the cost of the throw itself");
+        System.out.println("- Sample stack hashes: reading a stack trace costs more than throwing");
+        System.out.println("- Watch the handler time as well as the count; slow catch blocks hide in logs");
+    }
+
+    /**
+     * The catch blocks from BasicExceptionHandling, CustomExceptions and TryWithResources, instrumented
+     */
+    private static void runInstrumentedPaths(int iteration) {
+        try {
+            int divisor = iteration % 7 == 0 ? 0 : 1;
+            sink = 10 / divisor;
+        } catch (ArithmeticException e) {
+            long start = METRICS.caught(DIVIDE, e);
+            METRICS.handled(DIVIDE, start);
+        }
+
+        try {
+            String str = iteration % 5 == 0 ? null : "text";
+            if (str.length() < 0) {
+                System.out.println("Unreachable");
+            }
+        } catch (NullPointerException e) {
+            long start = METRICS.caught(NULL_LENGTH, e);
+            METRICS.handled(NULL_LENGTH, start);
+        }
+
+        try {
+            int[] numbers = {1, 2, 3};
+            if (numbers[iteration % 4] < 0) {
+                System.out.println("Unreachable");
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            long start = METRICS.caught(ARRAY_INDEX, e);
+            METRICS.handled(ARRAY_INDEX, start);
+        }
+
+        try {
+            Integer.parseInt(iteration % 3 == 0 ? "abc" : "42");
+        } catch (NumberFormatException e) {
+            long start = METRICS.caught(PARSE, e);
+            METRICS.handled(PARSE, start);
+        }
+
+        try {
+            processWithRethrowing(iteration % 10 == 0 ? "invalid data" : "valid data");
+        } catch (RuntimeException e) {
+            long start = METRICS.caught(RETHROW, e);
+            // A slow handler, as when it formats and logs the whole chain
+            String logged = e + " caused by " + e.getCause() + " at " + Arrays.toString(e.getStackTrace());
+            if (logged.isEmpty()) {
+                System.out.println("Unreachable");
+            }
+            METRICS.handled(RETHROW, start);
+        }
+
+        if (iteration % 20 == 0) {
+            try (ExceptionalResource resource = new ExceptionalResource()) {
+                resource.use();
+            } catch (Exception e) {
+                long start = METRICS.caught(CLOSE, e);
+                METRICS.handled(CLOSE, start);
+            }
+        }
+    }
+
+    /**
+     * Same shape as CustomExceptions.processWithRethrowing, with an unchecked wrapper
+     */
+    private static void processWithRethrowing(String data) {
+        try {
+            if (data.equals("invalid data")) {
+                throw new IllegalArgumentException("Invalid data format");
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Error processing data", e);
+        }
+    }
+
+    /**
+     * Compares the cost of a throw and catch with and without instrumentation
+     */
+    private static void overheadBenchmark() {
+        int throwsPerRound = 100_000;
+        ExceptionMetrics disabled = new ExceptionMetrics(0);
+        ExceptionMetrics counting = new ExceptionMetrics(0);
+        counting.setEnabled(true);
+        ExceptionMetrics sampled = new ExceptionMetrics(64);
+        sampled.setEnabled(true);
+        ExceptionMetrics everyStack = new ExceptionMetrics(1);
+        everyStack.setEnabled(true);
+        ExceptionMetrics.Site disabledSite = disabled.site("benchmark.parse");
+        ExceptionMetrics.Site countingSite = counting.site("benchmark.parse");
+        ExceptionMetrics.Site sampledSite = sampled.site("benchmark.parse");
+        ExceptionMetrics.Site everyStackSite = everyStack.site("benchmark.parse");
+
+        String[] names = {"not instrumented", "instrumented, disabled", "counters and catch time",
+                          "plus stack hash, 1 in 64 sampled", "plus stack hash on every throw"};
+        IntSupplier[] bodies = {
+            () -> {
+                try {
+                    return Integer.parseInt("abc");
+                } catch (NumberFormatException e) {
+                    return 1;
+                }
+            },
+            () -> parseCounted(disabled, disabledSite),
+            () -> parseCounted(counting, countingSite),
+            () -> parseCounted(sampled, sampledSite),
+            () -> parseCounted(everyStack, everyStackSite)
+        };
+        double[] nanosPerThrow = time(throwsPerRound, bodies);
+
+        System.out.printf("%-34s %14s%n", "configuration", "ns per throw");
+        for (int i = 0; i < names.length; i++) {
+            System.out.printf("%-34s %14.1f%n", names[i], nanosPerThrow[i]);
+        }
+    }
+
+    private static int parseCounted(ExceptionMetrics metrics, ExceptionMetrics.Site site) {
+        try {
+            return Integer.parseInt("abc");
+        } catch (NumberFormatException e) {
+            long start = metrics.caught(site, e);
+            metrics.handled(site, start);
+            return 1;
+        }
+    }
+
+    // Two warm-up rounds of every body, then the best of three interleaved timed
+    // rounds, in nanoseconds per call. Warming up everything first keeps the
+    // first body from paying for JIT compilation of the shared throw path.
+    private static double[] time(int calls, IntSupplier... bodies) {
+        long[] best = new long[bodies.length];
+        Arrays.fill(best, Long.MAX_VALUE);
+        long checksum = 0;
+        for (int round = 0; round < 5; round++) {
+            for (int b = 0; b < bodies.length; b++) {
+                IntSupplier body = bodies[b];
+                long start = System.nanoTime();
+                for (int i = 0; i < calls; i++) {
+                    checksum += body.getAsInt();
+                }
+                long elapsed = System.nanoTime() - start;
+                if (round >= 2) {
+                    best[b] = Math.min(best[b], elapsed);
+                }
+            }
+        }
+        if (checksum == 42) {
+            System.out.println(); // Keeps the checksum alive
+        }
+        double[] nanosPerCall = new double[bodies.length];
+        for (int b = 0; b < bodies.length; b++) {
+            nanosPerCall[b] = (double) best[b] / calls;
+        }
+        return nanosPerCall;
+    }
+
+    /**
+     * Counters for caught exceptions.
+     *
+     * A catch block calls caught() first and handled() when it is done; when
+     * metrics are disabled, caught() is a single volatile read and handled()
+     * a comparison. Per-type counters are found through a ClassValue, so the
+     * only shared writes are LongAdder increments. One exception in every
+     * sampleEvery also has its stack trace hashed, which groups exceptions
+     * of one type by the path that threw them.
+     */
+    static final class ExceptionMetrics {
+        enum Format {
+            TEXT,
+            JSON
+        }
+
+        // Returned by caught() when disabled; System.nanoTime() may be 0 or negative
+        private static final long NOT_TIMED = Long.MIN_VALUE;
+        private static final int HASHED_FRAMES = 32;
+        private static final int SHOWN_FRAMES = 3;
+
+        private volatile boolean enabled;
+        private final int sampleEvery;
+        private final ConcurrentHashMap<String, Site> sites = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Class<?>, LongAdder> types = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Long, StackGroup> stacks = new ConcurrentHashMap<>();
+        private final ClassValue<LongAdder> typeCounters = new ClassValue<>() {
+            @Override
+            protected LongAdder computeValue(Class<?> type) {
+                return types.computeIfAbsent(type, key -> new LongAdder());
+            }
+        };
+
+        /**
+         * @param sampleEvery hash the stack of one exception in this many, or never if 0
+         */
+        ExceptionMetrics(int sampleEvery) {
+            if (sampleEvery < 0) {
+                throw new IllegalArgumentException("Sampling interval cannot be negative: " + sampleEvery);
+            }
+            this.sampleEvery = sampleEvery;
+        }
+
+        static final class Site {
+            private final String name;
+            private final LongAdder caught = new LongAdder();
+            private final LongAdder handlerNanos = new LongAdder();
+
+            private Site(String name) {
+                this.name = name;
+            }
+        }
+
+        private static final class StackGroup {
+            private final String type;
+            private final List<String> topFrames;
+            private final LongAdder samples = new LongAdder();
+
+            private StackGroup(String type, List<String> topFrames) {
+                this.type = type;
+                this.topFrames = topFrames;
+            }
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public Site site(String name) {
+            return sites.computeIfAbsent(name, Site::new);
+        }
+
+        /**
+         * Records a caught exception and returns the time the handler started, or NOT_TIMED when disabled
+         */
+        public long caught(Site site, Throwable e) {
+            if (!enabled) {
+                return NOT_TIMED;
+            }
+            site.caught.increment();
+            typeCounters.get(e.getClass()).increment();
+            if (sampleEvery > 0 && (sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0)) {
+                sampleStack(e);
+            }
+            return System.nanoTime();
+        }
+
+        /**
+         * Records how long the handler ran, given the value returned by caught()
+         */
+        public void handled(Site site, long start) {
+            if (start != NOT_TIMED) {
+                site.handlerNanos.add(System.nanoTime() - start);
+            }
+        }
+
+        private void sampleStack(Throwable e) {
+            StackTraceElement[] frames = e.getStackTrace();
+            long hash = e.getClass().getName().hashCode();
+            for (int i = 0; i < Math.min(frames.length, HASHED_FRAMES); i++) {
+                hash = hash * 31 + frames[i].hashCode();
+            }
+            stacks.computeIfAbsent(hash, key -> {
+                List<String> top = new ArrayList<>();
+                for (int i = 0; i < Math.min(frames.length, SHOWN_FRAMES); i++) {
+                    top.add(frames[i].toString());
+                }
+                return new StackGroup(e.getClass().getName(), top);
+            }).samples.increment();
+        }
+
+        public void reset() {
+            sites.values().forEach(site -> {
+                site.caught.reset();
+                site.handlerNanos.reset();
+            });
+            types.values().forEach(LongAdder::reset);
+            stacks.clear();
+        }
+
+        public Snapshot snapshot() {
+            Map<String, Long> byType = new TreeMap<>();
+            types.forEach((type, count) -> {
+                if (count.sum() > 0) {
+                    byType.put(type.getName(), count.sum());
+                }
+            });
+            List<SiteSnapshot> siteSnapshots = new ArrayList<>();
+            sites.values().forEach(site -> siteSnapshots.add(
+                new SiteSnapshot(site.name, site.caught.sum(), site.handlerNanos.sum())));
+            siteSnapshots.sort(Comparator.comparingLong(SiteSnapshot::caught).reversed());
+            List<StackSnapshot> stackSnapshots = new ArrayList<>();
+            stacks.forEach((hash, group) -> stackSnapshots.add(
+                new StackSnapshot(group.type, hash, group.samples.sum(), group.topFrames)));
+            stackSnapshots.sort(Comparator.comparingLong(StackSnapshot::samples).reversed());
+            return new Snapshot(Instant.now(), byType, siteSnapshots, stackSnapshots);
+        }
+
+        /**
+         * Writes a snapshot to the sink at a fixed rate from a daemon thread until closed
+         */
+        public AutoCloseable startReporter(Duration period, Format format, Consumer<String> sink) {
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "exception-metrics-reporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleAtFixedRate(() -> {
+                Snapshot snapshot = snapshot();
+                sink.accept(format == Format.JSON ? snapshot.toJson() : snapshot.toText());
+            }, period.toNanos(), period.toNanos(), TimeUnit.NANOSECONDS);
+            return scheduler::shutdown;
+        }
+
+        record SiteSnapshot(String site, long caught, long handlerNanos) {
+            double meanHandlerMicros() {
+                return caught == 0 ? 0 : handlerNanos / 1e3 / caught;
+            }
+        }
+
+        record StackSnapshot(String type, long hash, long samples, List<String> topFrames) {
+        }
+
+        record Snapshot(Instant taken, Map<String, Long> byType, List<SiteSnapshot> sites,
+                        List<StackSnapshot> stacks) {
+            long total() {
+                return byType.values().stream().mapToLong(Long::longValue).sum();
+            }
+
+            String toText() {
+                StringBuilder text = new StringBuilder();
+                text.append(total()).append(" exceptions caught as of ").append(taken).append('\n');
+                text.append("By type:\n");
+                byType.forEach((type, count) -> text.append(String.format("  %-45s %8d%n", type, count)));
+                text.append("By site (count, mean handler time):\n");
+                for (SiteSnapshot site : sites) {
+                    text.append(String.format("  %-45s %8d %10.2f us%n", site.site(), site.caught(),
+                                              site.meanHandlerMicros()));
+                }
+                text.append("Sampled stacks:\n");
+                for (StackSnapshot stack : stacks) {
+                    text.append(String.format("  %016x %-30s %6d samples, thrown at %s%n", stack.hash(),
+                                              stack.type(), stack.samples(),
+                                              stack.topFrames().isEmpty() ? "?" : stack.topFrames().get(0)));
+                }
+                return text.toString();
+            }
+
+            String toJson() {
+                StringBuilder json = new StringBuilder();
+                json.append("{\"taken\":\"").append(taken).append("\",\"total\":").append(total());
+                json.append(",\"byType\":{");
+                String separator = "";
+                for (Map.Entry<String, Long> entry : byType.entrySet()) {
+                    json.append(separator).append(quote(entry.getKey())).append(':').append(entry.getValue());
+                    separator = ",";
+                }
+                json.append("},\"sites\":[");
+                separator = "";
+                for (SiteSnapshot site : sites) {
+                    json.append(separator).append("{\"site\":").append(quote(site.site()))
+                        .append(",\"caught\":").append(site.caught())
+                        .append(",\"handlerNanos\":").append(site.handlerNanos()).append('}');
+                    separator = ",";
+                }
+                json.append("],\"stacks\":[");
+                separator = "";
+                for (StackSnapshot stack : stacks) {
+                    json.append(separator).append("{\"hash\":\"").append(String.format("%016x", stack.hash()))
+                        .append("\",\"type\":").append(quote(stack.type()))
+                        .append(",\"samples\":").append(stack.samples()).append(",\"top\":[");
+                    for (int i = 0; i < stack.topFrames().size(); i++) {
+                        json.append(i == 0 ? "" : ",").append(quote(stack.topFrames().get(i)));
+                    }
+                    json.append("]}");
+                    separator = ",";
+                }
+                return json.append("]}").toString();
+            }
+
+            private static String quote(String value) {
+                StringBuilder quoted = new StringBuilder("\"");
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    switch (c) {
+                        case '"' -> quoted.append("\\\"");
+                        case '\\' -> quoted.append("\\\\");
+                        case '\n' -> quoted.append("\\n");
+                        default -> {
+                            if (c < 0x20) {
+                                quoted.append(String.format("\\u%04x", (int) c));
+                            } else {
+                                quoted.append(c);
+                            }
+                        }
+                    }
+                }
+                return quoted.append('"').toString();
+            }
+        }
+    }
+
+    /**
+     * The resource from TryWithResources that throws while closing, without the printing
+     */
+    static final class ExceptionalResource implements AutoCloseable {
+        void use() {
+            throw new IllegalStateException("Exception in try block");
+        }
+
+        @Override
+        public void close() throws IOException {
+            throw new IOException("Exception during resource closing");
+        }
+    }
+}
@@ -0,0 +1,545 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * This class demonstrates thread-safe LIFO structures that avoid the
+ * per-call locking of the legacy Stack and Vector classes
+ */
+public class ConcurrentStackExamples {
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Concurrent Stacks and Deques in Java ===\n");
+
+        // 1. Treiber Stack Examples
+        System.out.println("1. Treiber Stack Examples:");
+        treiberStackExamples();
+
+        // 2. Elimination Backoff
+        System.out.println("\n2. Elimination Backoff:");
+        eliminationExamples();
+
+        // 3. Low-Lock Deque Examples
+        System.out.println("\n3. Low-Lock Deque Examples:");
+        lowLockDequeExamples();
+
+        // 4. Contention Benchmark
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        System.out.println("\n4. Contention Benchmark:");
+        contentionBenchmark(operations);
+    }
+
+    /**
+     * Demonstrates the lock-free stack with the same calls as stackExamples()
+     */
+    private static void treiberStackExamples() {
+        ConcurrentStack<String> stack = new ConcurrentStack<>();
+
+        // Push elements onto the stack
+        stack.push("Bottom");
+        stack.push("Middle");
+        stack.push("Top");
+
+        System.out.println("Stack: " + stack);
+
+        // Peek at the top element
+        System.out.println("Top element (peek): " + stack.peek());
+
+        // Pop elements from the stack
+        System.out.println("Popped element: " + stack.pop());
+        System.out.println("Stack after pop: " + stack);
+        System.out.println("Is stack empty? " + stack.empty());
+
+        // Like Stack, pop() on an empty stack throws; poll() returns null instead
+        ConcurrentStack<String> empty = new ConcurrentStack<>();
+        try {
+            empty.pop();
+        } catch (EmptyStackException e) {
+            System.out.println("pop() on empty stack: EmptyStackException");
+        }
+        System.out.println("poll() on empty stack: " + empty.poll());
+    }
+
+    /**
+     * Demonstrates push/pop pairs cancelling out without touching the top of the stack
+     */
+    private static void eliminationExamples() throws InterruptedException {
+        ConcurrentStack<Integer> stack = new ConcurrentStack<>();
+        int threads = 8;
+        int perThread = 200_000;
+        Thread[] workers = new Thread[threads];
+        LongAdder popped = new LongAdder();
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    stack.push(i);
+                    if (stack.poll() != null) {
+                        popped.increment();
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // Every push is matched by a pop, so the stack ends empty
+        System.out.println("Pushed and popped " + popped.sum() + " elements with " + threads + " threads");
+        System.out.println("Stack empty afterwards? " + stack.empty());
+        System.out.println("CAS failures on the top pointer: " + stack.casFailures());
+        System.out.println("Pairs eliminated without touching the top: " + stack.eliminations());
+    }
+
+    /**
+     * Demonstrates the deque as a stack (push/pop/peek) and as a queue (offerLast/pollFirst)
+     */
+    private static void lowLockDequeExamples() {
+        ConcurrentArrayDeque<String> deque = new ConcurrentArrayDeque<>();
+
+        // Stack operations work on the head, as with Deque
+        deque.push("Bottom");
+        deque.push("Middle");
+        deque.push("Top");
+        System.out.println("Deque as stack: " + deque);
+        System.out.println("Peek: " + deque.peek() + ", pop: " + deque.pop());
+
+        // Queue operations at both ends
+        deque.offerLast("Tail");
+        deque.offerFirst("Head");
+        System.out.println("After offerFirst/offerLast: " + deque);
+        System.out.println("pollFirst: " + deque.pollFirst() + ", pollLast: " + deque.pollLast());
+        System.out.println("Size: " + deque.size());
+    }
+
+    /**
+     * Compares push/pop throughput as the number of threads grows
+     */
+    private static void contentionBenchmark(int operations) throws Exception {
+        System.out.println(operations + " push/pop pairs split across threads ("
+                           + Runtime.getRuntime().availableProcessors() + " CPUs), millions of pairs per second:");
+        System.out.printf("%-8s %10s %10s %10s %10s %10s %10s%n",
+                          "threads", "Stack", "Vector", "CLDeque", "ArrayDq+", "Treiber", "LowLock");
+
+        for (int threads : new int[] {1, 2, 4, 8}) {
+            int perThread = operations / threads;
+            double stack = measure(threads, perThread, () -> {
+                Stack<Integer> s = new Stack<>();
+                return new PushPop(s::push, () -> s.isEmpty() ? null : s.pop());
+            });
+            double vector = measure(threads, perThread, () -> {
+                Vector<Integer> v = new Vector<>();
+                // Vector has no atomic remove-last, so lock the Vector itself as Stack does internally
+                return new PushPop(v::add, () -> {
+                    synchronized (v) {
+                        return v.isEmpty() ? null : v.remove(v.size() - 1);
+                    }
+                });
+            });
+            double linked = measure(threads, perThread, () -> {
+                ConcurrentLinkedDeque<Integer> d = new ConcurrentLinkedDeque<>();
+                return new PushPop(d::push, d::pollFirst);
+            });
+            double locked = measure(threads, perThread, () -> {
+                ArrayDeque<Integer> d = new ArrayDeque<>();
+                return new PushPop(value -> {
+                    synchronized (d) {
+                        d.push(value);
+                    }
+                }, () -> {
+                    synchronized (d) {
+                        return d.pollFirst();
+                    }
+                });
+            });
+            double treiber = measure(threads, perThread, () -> {
+                ConcurrentStack<Integer> s = new ConcurrentStack<>();
+                return new PushPop(s::push, s::poll);
+            });
+            double lowLock = measure(threads, perThread, () -> {
+                ConcurrentArrayDeque<Integer> d = new ConcurrentArrayDeque<>();
+                return new PushPop(d::push, d::pollFirst);
+            });
+            System.out.printf("%-8d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                              threads, stack, vector, linked, locked, treiber, lowLock);
+        }
+
+        System.out.println("\nRecommendations:");
+        System.out.println("- Use ArrayDeque for single-threaded stacks; Stack and Vector lock even when uncontended");
+        System.out.println("- Use ConcurrentStack when many threads push and pop at the same end");
+        System.out.println("- Use ConcurrentLinkedDeque or ConcurrentArrayDeque when both ends are needed");
+    }
+
+    /**
+     * A push operation and a pop operation returning null when empty
+     */
+    static class PushPop {
+        final Consumer<Integer> push;
+        final Supplier<Integer> pop;
+
+        PushPop(Consumer<Integer> push, Supplier<Integer> pop) {
+            this.push = push;
+            this.pop = pop;
+        }
+    }
+
+    // Best of three timed rounds after one warm-up round, in millions of push/pop pairs per second
+    private static double measure(int threads, int perThread, Callable<PushPop> factory) throws Exception {
+        long best = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < 4; round++) {
+            PushPop target = factory.call();
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                CyclicBarrier start = new CyclicBarrier(threads + 1);
+                List<Future<Long>> results = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    results.add(pool.submit(() -> {
+                        start.await();
+                        long sum = 0;
+                        for (int i = 0; i < perThread; i++) {
+                            target.push.accept(i & 1023);
+                            Integer value = target.pop.get();
+                            if (value != null) {
+                                sum += value;
+                            }
+                        }
+                        return sum;
+                    }));
+                }
+                start.await();
+                long begin = System.nanoTime();
+                for (Future<Long> result : results) {
+                    checksum += result.get();
+                }
+                if (round > 0) {
+                    best = Math.min(best, System.nanoTime() - begin);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+        if (checksum == 42) {
+            System.out.println(); // Keeps the checksum alive
+        }
+        return (double) threads * perThread / best * 1e3;
+    }
+
+    /**
+     * Treiber's lock-free stack with an elimination array.
+     *
+     * Every operation competes for a single top pointer. When a compare-and-set
+     * on it fails, the thread tries the elimination array instead: a pusher
+     * parks its node in a random slot for a moment, and a popper that finds a
+     * parked node takes it. The pair completes without touching the stack at all,
+     * so under heavy contention throughput goes up rather than down.
+     */
+    static class ConcurrentStack<E> {
+        private static final int ELIMINATION_SLOTS = 8;
+        private static final int ELIMINATION_SPINS = 64;
+
+        private final AtomicReference<Node<E>> top = new AtomicReference<>();
+        private final AtomicReferenceArray<Node<E>> elimination = new AtomicReferenceArray<>(ELIMINATION_SLOTS);
+        private final LongAdder casFailures = new LongAdder();
+        private final LongAdder eliminations = new LongAdder();
+
+        private static class Node<E> {
+            final E item;
+            Node<E> next;
+
+            Node(E item) {
+                this.item = item;
+            }
+        }
+
+        public E push(E item) {
+            Objects.requireNonNull(item, "item");
+            Node<E> node = new Node<>(item);
+            while (true) {
+                Node<E> current = top.get();
+                node.next = current;
+                if (top.compareAndSet(current, node)) {
+                    return item;
+                }
+                casFailures.increment();
+                if (offerToPopper(node)) {
+                    return item;
+                }
+            }
+        }
+
+        /**
+         * Removes the top element, throwing EmptyStackException if there is none
+         */
+        public E pop() {
+            E item = poll();
+            if (item == null) {
+                throw new EmptyStackException();
+            }
+            return item;
+        }
+
+        /**
+         * Removes the top element, or returns null if the stack is empty
+         */
+        public E poll() {
+            while (true) {
+                Node<E> current = top.get();
+                if (current == null) {
+                    return null;
+                }
+                if (top.compareAndSet(current, current.next)) {
+                    return current.item;
+                }
+                casFailures.increment();
+                Node<E> exchanged = takeFromPusher();
+                if (exchanged != null) {
+                    return exchanged.item;
+                }
+            }
+        }
+
+        /**
+         * Returns the top element without removing it, throwing EmptyStackException if there is none
+         */
+        public E peek() {
+            Node<E> current = top.get();
+            if (current == null) {
+                throw new EmptyStackException();
+            }
+            return current.item;
+        }
+
+        public boolean empty() {
+            return top.get() == null;
+        }
+
+        public long casFailures() {
+            return casFailures.sum();
+        }
+
+        public long eliminations() {
+            return eliminations.sum();
+        }
+
+        // Parks the node in a slot briefly; true if a popper took it
+        private boolean offerToPopper(Node<E> node) {
+            int slot = ThreadLocalRandom.current().nextInt(ELIMINATION_SLOTS);
+            if (!elimination.compareAndSet(slot, null, node)) {
+                return false;
+            }
+            for (int i = 0; i < ELIMINATION_SPINS; i++) {
+                if (elimination.get(slot) != node) {
+                    return true;
+                }
+                Thread.onSpinWait();
+            }
+            // Withdraw the offer; if that fails a popper took it just now
+            return !elimination.compareAndSet(slot, node, null);
+        }
+
+        private Node<E> takeFromPusher() {
+            int slot = ThreadLocalRandom.current().nextInt(ELIMINATION_SLOTS);
+            Node<E> offered = elimination.get(slot);
+            if (offered != null && elimination.compareAndSet(slot, offered, null)) {
+                eliminations.increment();
+                return offered;
+            }
+            return null;
+        }
+
+        // Weakly consistent: concurrent pushes and pops may or may not be reflected
+        @Override
+        public String toString() {
+            List<E> items = new ArrayList<>();
+            for (Node<E> node = top.get(); node != null; node = node.next) {
+                items.add(node.item);
+            }
+            Collections.reverse(items); // Bottom first, matching Stack.toString()
+            return items.toString();
+        }
+    }
+
+    /**
+     * A circular-array deque guarded by a short spin lock.
+     *
+     * Each operation holds the lock for a few instructions, so a thread that
+     * finds it taken spins briefly instead of parking, which is what makes
+     * synchronized and ReentrantLock expensive under contention. Nodes are
+     * never allocated, unlike ConcurrentLinkedDeque.
+     */
+    static class ConcurrentArrayDeque<E> {
+        private static final VarHandle LOCKED;
+
+        static {
+            try {
+                LOCKED = MethodHandles.lookup().findVarHandle(ConcurrentArrayDeque.class, "locked", int.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        // Lock word in the deque itself, saving the indirection of a separate AtomicBoolean
+        private volatile int locked;
+        // Guarded by the lock
+        private Object[] elements = new Object[16];
+        private int head;
+        private int count;
+
+        private void lock() {
+            int spins = 0;
+            // Test before test-and-set so waiting threads do not bounce the cache line
+            while (locked != 0 || !LOCKED.compareAndSet(this, 0, 1)) {
+                if (++spins < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield(); // The holder may have been descheduled
+                }
+            }
+        }
+
+        // A release store is enough to publish the writes made under the lock
+        private void unlock() {
+            LOCKED.setRelease(this, 0);
+        }
+
+        public void push(E item) {
+            offerFirst(item);
+        }
+
+        /**
+         * Removes the first element, throwing NoSuchElementException if there is none
+         */
+        public E pop() {
+            E item = pollFirst();
+            if (item == null) {
+                throw new NoSuchElementException();
+            }
+            return item;
+        }
+
+        /**
+         * Returns the first element without removing it, or null if the deque is empty
+         */
+        public E peek() {
+            return peekFirst();
+        }
+
+        public boolean offerFirst(E item) {
+            Objects.requireNonNull(item, "item");
+            lock();
+            try {
+                ensureCapacity();
+                int newHead = (head - 1) & (elements.length - 1);
+                elements[newHead] = item;
+                head = newHead;
+                count++;
+                return true;
+            } finally {
+                unlock();
+            }
+        }
+
+        public boolean offerLast(E item) {
+            Objects.requireNonNull(item, "item");
+            lock();
+            try {
+                ensureCapacity();
+                elements[(head + count) & (elements.length - 1)] = item;
+                count++;
+                return true;
+            } finally {
+                unlock();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        public E pollFirst() {
+            lock();
+            try {
+                if (count == 0) {
+                    return null;
+                }
+                E item = (E) elements[head];
+                elements[head] = null;
+                head = (head + 1) & (elements.length - 1);
+                count--;
+                return item;
+            } finally {
+                unlock();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        public E pollLast() {
+            lock();
+            try {
+                if (count == 0) {
+                    return null;
+                }
+                int index = (head + count - 1) & (elements.length - 1);
+                E item = (E) elements[index];
+                elements[index] = null;
+                count--;
+                return item;
+            } finally {
+                unlock();
+            }
+        }
+
+        // Called with the lock held; doubles the array when full
+        private void ensureCapacity() {
+            if (count < elements.length) {
+                return;
+            }
+            Object[] grown = new Object[elements.length * 2];
+            for (int i = 0; i < count; i++) {
+                grown[i] = elements[(head + i) & (elements.length - 1)];
+            }
+            elements = grown;
+            head = 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E peekFirst() {
+            lock();
+            try {
+                return count == 0 ? null : (E) elements[head];
+            } finally {
+                unlock();
+            }
+        }
+
+        public int size() {
+            lock();
+            try {
+                return count;
+            } finally {
+                unlock();
+            }
+        }
+
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        @Override
+        public String toString() {
+            lock();
+            try {
+                List<Object> items = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    items.add(elements[(head + i) & (elements.length - 1)]);
+                }
+                return items.toString();
+            } finally {
+                unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,669 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * This class demonstrates a concurrent sorted map specialized for long keys
+ */
+public class LongSortedMapExamples {
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Concurrent Sorted Maps with Long Keys ===\n");
+
+        // 1. Navigation Examples
+        System.out.println("1. Navigation Examples:");
+        navigationExamples();
+
+        // 2. Range Scans and Counts
+        System.out.println("\n2. Range Scans and Counts:");
+        rangeExamples();
+
+        // 3. Concurrent Updates
+        System.out.println("\n3. Concurrent Updates:");
+        concurrentUpdates();
+
+        // 4. Workload Benchmark
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        System.out.println("\n4. Workload Benchmark:");
+        workloadBenchmark(keys);
+    }
+
+    /**
+     * Demonstrates the TreeMap navigation calls from treeMapExamples() on long keys
+     */
+    private static void navigationExamples() {
+        ConcurrentLongSortedMap<String> orders = new ConcurrentLongSortedMap<>();
+        orders.put(1005, "Keyboard");
+        orders.put(1001, "Laptop");
+        orders.put(1009, "Monitor");
+        orders.put(1003, "Mouse");
+
+        System.out.println("Orders (sorted by id): " + orders);
+        System.out.println("First key: " + orders.firstKey() + ", last key: " + orders.lastKey());
+
+        // floorKey and ceilingKey return OptionalLong instead of a nullable Long
+        System.out.println("Floor key of 1004: " + orders.floorKey(1004));
+        System.out.println("Ceiling key of 1004: " + orders.ceilingKey(1004));
+        System.out.println("Floor key of 1000: " + orders.floorKey(1000));
+
+        // headMap/tailMap become range operations with explicit bounds
+        StringBuilder head = new StringBuilder();
+        orders.forEachInRange(Long.MIN_VALUE, 1005, (id, item) -> head.append(id).append('=').append(item).append(' '));
+        System.out.println("Head map (keys < 1005): " + head.toString().trim());
+
+        System.out.println("Removed 1003: " + orders.remove(1003) + ", size now " + orders.size());
+    }
+
+    /**
+     * Demonstrates range scans and range counts across many chunks
+     */
+    private static void rangeExamples() {
+        ConcurrentLongSortedMap<Long> readings = new ConcurrentLongSortedMap<>();
+        // One reading per second for a day, keyed by timestamp
+        long start = 1_700_000_000L;
+        for (long t = start; t < start + 86_400; t++) {
+            readings.put(t, t % 100);
+        }
+
+        // Keys are stored in sorted arrays of up to 64, so a range is a few binary searches plus whole chunks
+        long hourStart = start + 3_600 * 12;
+        System.out.println("Readings in hour 12: " + readings.rangeCount(hourStart, hourStart + 3_600));
+        long[] sum = new long[1];
+        readings.forEachInRange(hourStart, hourStart + 60, (time, value) -> sum[0] += value);
+        System.out.println("Sum of first minute of hour 12: " + sum[0]);
+        System.out.println("Chunks used for " + readings.size() + " keys: " + readings.chunkCount());
+    }
+
+    /**
+     * Demonstrates writers on different chunks proceeding in parallel while readers take no locks
+     */
+    private static void concurrentUpdates() throws InterruptedException {
+        ConcurrentLongSortedMap<Integer> map = new ConcurrentLongSortedMap<>();
+        int threads = 4;
+        int perThread = 50_000;
+        Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    map.put((long) i * threads + id, id); // Interleaved keys, so threads share chunks
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        System.out.println("Size after " + threads + " writers: " + map.size());
+        System.out.println("Range count of everything: " + map.rangeCount(Long.MIN_VALUE, Long.MAX_VALUE));
+        long expected = 0;
+        long[] previous = {Long.MIN_VALUE};
+        boolean[] sorted = {true};
+        map.forEachInRange(Long.MIN_VALUE, Long.MAX_VALUE, (key, value) -> {
+            sorted[0] &= key > previous[0];
+            previous[0] = key;
+        });
+        for (long key = 0; key < (long) threads * perThread; key++) {
+            expected += map.get(key) != null ? 1 : 0;
+        }
+        System.out.println("All keys present: " + (expected == (long) threads * perThread) + ", scan in order: " + sorted[0]);
+    }
+
+    /**
+     * Compares point lookups, range scans, range counts and a mixed workload
+     */
+    private static void workloadBenchmark(int keyCount) throws Exception {
+        int threads = 4;
+        long[] keys = new SplittableRandom(42).longs(keyCount, 0, keyCount * 10L).distinct().toArray();
+        long keySpace = keyCount * 10L;
+        System.out.println(keys.length + " keys, " + threads + " threads ("
+                           + Runtime.getRuntime().availableProcessors() + " CPUs), ns per operation:");
+        System.out.printf("%-28s %12s %12s %12s%n", "workload", "TreeMap+sync", "SkipListMap", "LongSorted");
+
+        String[] workloads = {"point get", "scan ~100 keys", "count ~10,000 keys", "mixed 90/9/1 get/put/scan"};
+        int[] operations = {400_000, 40_000, 4_000, 400_000};
+        for (int w = 0; w < workloads.length; w++) {
+            int workload = w;
+            double[] results = new double[3];
+            for (int impl = 0; impl < 3; impl++) {
+                int kind = impl;
+                results[impl] = measure(() -> newTarget(kind, keys), threads, operations[w],
+                                        (target, random) -> runOperation(target, workload, random, keys, keySpace));
+            }
+            System.out.printf("%-28s %12.0f %12.0f %12.0f%n", workloads[w], results[0], results[1], results[2]);
+        }
+
+        System.out.println("\nRecommendations:");
+        System.out.println("- Use TreeMap for single-threaded sorted maps of object keys");
+        System.out.println("- Use ConcurrentSkipListMap for concurrent sorted maps of object keys");
+        System.out.println("- Use a primitive chunked map when keys are longs and range queries dominate");
+    }
+
+    private static long runOperation(SortedTarget target, int workload, SplittableRandom random, long[] keys, long keySpace) {
+        switch (workload) {
+            case 0:
+                return target.get(keys[random.nextInt(keys.length)]);
+            case 1: {
+                long from = random.nextLong(keySpace);
+                return target.scanSum(from, from + 1_000);
+            }
+            case 2: {
+                long from = random.nextLong(keySpace);
+                return target.count(from, from + 100_000);
+            }
+            default: {
+                int dice = random.nextInt(100);
+                if (dice < 90) {
+                    return target.get(keys[random.nextInt(keys.length)]);
+                }
+                if (dice < 99) {
+                    long key = random.nextLong(keySpace);
+                    target.put(key, key);
+                    return 1;
+                }
+                long from = random.nextLong(keySpace);
+                return target.scanSum(from, from + 1_000);
+            }
+        }
+    }
+
+    /**
+     * The operations the benchmark needs, implemented once per map type
+     */
+    interface SortedTarget {
+        long get(long key);
+
+        void put(long key, long value);
+
+        long scanSum(long from, long to);
+
+        long count(long from, long to);
+    }
+
+    interface Operation {
+        long run(SortedTarget target, SplittableRandom random);
+    }
+
+    private static SortedTarget newTarget(int kind, long[] keys) {
+        if (kind == 0 || kind == 1) {
+            NavigableMap<Long, Long> map = kind == 0
+                    ? Collections.synchronizedNavigableMap(new TreeMap<>())
+                    : new ConcurrentSkipListMap<>();
+            for (long key : keys) {
+                map.put(key, key);
+            }
+            return new SortedTarget() {
+                @Override
+                public long get(long key) {
+                    Long value = map.get(key);
+                    return value == null ? 0 : value;
+                }
+
+                @Override
+                public void put(long key, long value) {
+                    map.put(key, value);
+                }
+
+                // Iterating a synchronized map's views requires holding its lock
+                @Override
+                public long scanSum(long from, long to) {
+                    if (kind == 0) {
+                        synchronized (map) {
+                            return sum(map.subMap(from, true, to, false).values());
+                        }
+                    }
+                    return sum(map.subMap(from, true, to, false).values());
+                }
+
+                @Override
+                public long count(long from, long to) {
+                    return map.subMap(from, true, to, false).size();
+                }
+
+                private long sum(Collection<Long> values) {
+                    long total = 0;
+                    for (Long value : values) {
+                        total += value;
+                    }
+                    return total;
+                }
+            };
+        }
+        ConcurrentLongSortedMap<Long> map = new ConcurrentLongSortedMap<>();
+        for (long key : keys) {
+            map.put(key, key);
+        }
+        return new SortedTarget() {
+            @Override
+            public long get(long key) {
+                Long value = map.get(key);
+                return value == null ? 0 : value;
+            }
+
+            @Override
+            public void put(long key, long value) {
+                map.put(key, value);
+            }
+
+            @Override
+            public long scanSum(long from, long to) {
+                long[] total = new long[1];
+                map.forEachInRange(from, to, (key, value) -> total[0] += value);
+                return total[0];
+            }
+
+            @Override
+            public long count(long from, long to) {
+                return map.rangeCount(from, to);
+            }
+        };
+    }
+
+    // One warm-up round, then the better of two timed rounds, in ns per operation
+    private static double measure(Callable<SortedTarget> factory, int threads, int operations, Operation operation) throws Exception {
+        long best = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < 3; round++) {
+            SortedTarget target = factory.call();
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                List<Callable<Long>> tasks = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    final int seed = t;
+                    tasks.add(() -> {
+                        SplittableRandom random = new SplittableRandom(seed);
+                        long sum = 0;
+                        for (int i = 0; i < operations / threads; i++) {
+                            sum += operation.run(target, random);
+                        }
+                        return sum;
+                    });
+                }
+                long start = System.nanoTime();
+                for (Future<Long> result : pool.invokeAll(tasks)) {
+                    checksum += result.get();
+                }
+                if (round > 0) {
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+        if (checksum == 42) {
+            System.out.println(); // Keeps the checksum alive
+        }
+        return (double) best / operations;
+    }
+
+    /**
+     * Receives each key and value of a range scan
+     */
+    interface LongObjConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    /**
+     * A concurrent sorted map from primitive long keys to values.
+     *
+     * Keys live in chunks: sorted long[] arrays of up to 64 keys, linked in key
+     * order, so a range scan reads contiguous memory instead of chasing one node
+     * per key as TreeMap and ConcurrentSkipListMap do. Each chunk covers the keys
+     * from its low key up to the next chunk's low key and has its own
+     * StampedLock: writers lock one chunk, readers use optimistic reads and take
+     * no lock at all unless a write raced with them.
+     *
+     * A ConcurrentSkipListMap from each chunk's low key to the chunk finds the
+     * right chunk in O(log n). A full chunk splits in half; the new chunk is
+     * linked before it is indexed, so anyone who lands on the old chunk and sees
+     * that the key belongs further right simply follows the link. Emptied chunks
+     * are kept rather than merged.
+     */
+    static class ConcurrentLongSortedMap<V> {
+        static final int CHUNK_CAPACITY = 64;
+
+        private final ConcurrentSkipListMap<Long, Chunk> index = new ConcurrentSkipListMap<>();
+        private final LongAdder size = new LongAdder();
+
+        private static final class Chunk {
+            final long lowKey;
+            final StampedLock lock = new StampedLock();
+            // Guarded by lock; readers read optimistically and validate
+            final long[] keys = new long[CHUNK_CAPACITY];
+            final Object[] values = new Object[CHUNK_CAPACITY];
+            int count;
+            volatile Chunk next;
+
+            Chunk(long lowKey) {
+                this.lowKey = lowKey;
+            }
+
+            // First position whose key is >= key, among the first count keys
+            int lowerBound(int count, long key) {
+                int found = Arrays.binarySearch(keys, 0, count, key);
+                return found >= 0 ? found : -found - 1;
+            }
+        }
+
+        public ConcurrentLongSortedMap() {
+            index.put(Long.MIN_VALUE, new Chunk(Long.MIN_VALUE));
+        }
+
+        // The chunk whose range holds key, following links past chunks not yet indexed
+        private Chunk chunkFor(long key) {
+            Chunk chunk = index.floorEntry(key).getValue();
+            Chunk next;
+            while ((next = chunk.next) != null && key >= next.lowKey) {
+                chunk = next;
+            }
+            return chunk;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V get(long key) {
+            Chunk chunk = chunkFor(key);
+            while (true) {
+                long stamp = chunk.lock.tryOptimisticRead();
+                Chunk next = chunk.next;
+                if (next != null && key >= next.lowKey) {
+                    chunk = next; // Split since we found it; the key moved right
+                    continue;
+                }
+                int count = chunk.count;
+                int found = Arrays.binarySearch(chunk.keys, 0, count, key);
+                Object value = found >= 0 ? chunk.values[found] : null;
+                if (chunk.lock.validate(stamp)) {
+                    return (V) value;
+                }
+                // A writer got in the way: retry under the read lock
+                stamp = chunk.lock.readLock();
+                try {
+                    next = chunk.next;
+                    if (next == null || key < next.lowKey) {
+                        found = Arrays.binarySearch(chunk.keys, 0, chunk.count, key);
+                        return found >= 0 ? (V) chunk.values[found] : null;
+                    }
+                } finally {
+                    chunk.lock.unlockRead(stamp);
+                }
+                chunk = next;
+            }
+        }
+
+        public boolean containsKey(long key) {
+            return get(key) != null;
+        }
+
+        /**
+         * Associates value with key and returns the previous value, or null
+         */
+        @SuppressWarnings("unchecked")
+        public V put(long key, V value) {
+            Objects.requireNonNull(value, "value");
+            Chunk chunk = chunkFor(key);
+            while (true) {
+                long stamp = chunk.lock.writeLock();
+                try {
+                    Chunk next = chunk.next;
+                    if (next != null && key >= next.lowKey) {
+                        chunk = next;
+                        continue;
+                    }
+                    int found = Arrays.binarySearch(chunk.keys, 0, chunk.count, key);
+                    if (found >= 0) {
+                        V previous = (V) chunk.values[found];
+                        chunk.values[found] = value;
+                        return previous;
+                    }
+                    if (chunk.count == CHUNK_CAPACITY) {
+                        splitAndInsert(chunk, key, value);
+                    } else {
+                        insertAt(chunk, -found - 1, key, value);
+                    }
+                    size.increment();
+                    return null;
+                } finally {
+                    chunk.lock.unlockWrite(stamp);
+                }
+            }
+        }
+
+        private static void insertAt(Chunk chunk, int position, long key, Object value) {
+            int tail = chunk.count - position;
+            System.arraycopy(chunk.keys, position, chunk.keys, position + 1, tail);
+            System.arraycopy(chunk.values, position, chunk.values, position + 1, tail);
+            chunk.keys[position] = key;
+            chunk.values[position] = value;
+            chunk.count++;
+        }
+
+        // Called with chunk's write lock held. The new chunk is complete before it is linked in.
+        private void splitAndInsert(Chunk chunk, long key, Object value) {
+            // Appending past the last key (timestamps, sequence numbers) leaves the old chunk full, not half empty
+            boolean append = chunk.next == null && key > chunk.keys[CHUNK_CAPACITY - 1];
+            int half = append ? CHUNK_CAPACITY : CHUNK_CAPACITY / 2;
+            Chunk right = new Chunk(append ? key : chunk.keys[half]);
+            System.arraycopy(chunk.keys, half, right.keys, 0, CHUNK_CAPACITY - half);
+            System.arraycopy(chunk.values, half, right.values, 0, CHUNK_CAPACITY - half);
+            right.count = CHUNK_CAPACITY - half;
+            if (key >= right.lowKey) {
+                insertAt(right, right.lowerBound(right.count, key), key, value);
+            }
+            right.next = chunk.next;
+            chunk.next = right;
+            Arrays.fill(chunk.values, half, CHUNK_CAPACITY, null);
+            chunk.count = half;
+            if (key < right.lowKey) {
+                insertAt(chunk, chunk.lowerBound(half, key), key, value);
+            }
+            index.put(right.lowKey, right);
+        }
+
+        /**
+         * Removes key and returns its value, or null if it was absent
+         */
+        @SuppressWarnings("unchecked")
+        public V remove(long key) {
+            Chunk chunk = chunkFor(key);
+            while (true) {
+                long stamp = chunk.lock.writeLock();
+                try {
+                    Chunk next = chunk.next;
+                    if (next != null && key >= next.lowKey) {
+                        chunk = next;
+                        continue;
+                    }
+                    int found = Arrays.binarySearch(chunk.keys, 0, chunk.count, key);
+                    if (found < 0) {
+                        return null;
+                    }
+                    V previous = (V) chunk.values[found];
+                    int tail = chunk.count - found - 1;
+                    System.arraycopy(chunk.keys, found + 1, chunk.keys, found, tail);
+                    System.arraycopy(chunk.values, found + 1, chunk.values, found, tail);
+                    chunk.values[--chunk.count] = null;
+                    size.decrement();
+                    return previous;
+                } finally {
+                    chunk.lock.unlockWrite(stamp);
+                }
+            }
+        }
+
+        /**
+         * Greatest key less than or equal to the given key
+         */
+        public OptionalLong floorKey(long key) {
+            while (true) {
+                Chunk chunk = chunkFor(key);
+                long stamp = chunk.lock.readLock();
+                try {
+                    Chunk next = chunk.next;
+                    if (next == null || key < next.lowKey) {
+                        int position = chunk.lowerBound(chunk.count, key);
+                        if (position < chunk.count && chunk.keys[position] == key) {
+                            return OptionalLong.of(key);
+                        }
+                        if (position > 0) {
+                            return OptionalLong.of(chunk.keys[position - 1]);
+                        }
+                        if (chunk.lowKey == Long.MIN_VALUE) {
+                            return OptionalLong.empty();
+                        }
+                        // Nothing here: every key in earlier chunks is below this chunk's low key
+                        key = chunk.lowKey - 1;
+                    }
+                } finally {
+                    chunk.lock.unlockRead(stamp);
+                }
+            }
+        }
+
+        /**
+         * Least key greater than or equal to the given key
+         */
+        public OptionalLong ceilingKey(long key) {
+            Chunk chunk = chunkFor(key);
+            while (chunk != null) {
+                Chunk next;
+                long stamp = chunk.lock.readLock();
+                try {
+                    int position = chunk.lowerBound(chunk.count, key);
+                    if (position < chunk.count) {
+                        return OptionalLong.of(chunk.keys[position]);
+                    }
+                    next = chunk.next;
+                } finally {
+                    chunk.lock.unlockRead(stamp);
+                }
+                chunk = next;
+            }
+            return OptionalLong.empty();
+        }
+
+        public OptionalLong firstKey() {
+            return ceilingKey(Long.MIN_VALUE);
+        }
+
+        public OptionalLong lastKey() {
+            return floorKey(Long.MAX_VALUE);
+        }
+
+        /**
+         * Calls action for each key in [from, to) in ascending order.
+         * Each chunk is copied under an optimistic read before any callback runs,
+         * so callbacks never hold a lock; the scan is weakly consistent across chunks.
+         */
+        @SuppressWarnings("unchecked")
+        public void forEachInRange(long from, long to, LongObjConsumer<? super V> action) {
+            if (from >= to) {
+                return;
+            }
+            long[] keys = new long[CHUNK_CAPACITY];
+            Object[] values = new Object[CHUNK_CAPACITY];
+            Chunk chunk = chunkFor(from);
+            while (chunk != null) {
+                Chunk next;
+                int copied;
+                long stamp = chunk.lock.tryOptimisticRead();
+                next = chunk.next;
+                copied = copyRange(chunk, from, to, keys, values);
+                if (!chunk.lock.validate(stamp)) {
+                    stamp = chunk.lock.readLock();
+                    try {
+                        next = chunk.next;
+                        copied = copyRange(chunk, from, to, keys, values);
+                    } finally {
+                        chunk.lock.unlockRead(stamp);
+                    }
+                }
+                for (int i = 0; i < copied; i++) {
+                    action.accept(keys[i], (V) values[i]);
+                }
+                if (next == null || next.lowKey >= to) {
+                    return;
+                }
+                chunk = next;
+            }
+        }
+
+        private static int copyRange(Chunk chunk, long from, long to, long[] keys, Object[] values) {
+            int count = chunk.count;
+            int lo = chunk.lowerBound(count, from);
+            int hi = chunk.lowerBound(count, to);
+            if (hi <= lo) {
+                return 0;
+            }
+            System.arraycopy(chunk.keys, lo, keys, 0, hi - lo);
+            System.arraycopy(chunk.values, lo, values, 0, hi - lo);
+            return hi - lo;
+        }
+
+        /**
+         * Number of keys in [from, to): two binary searches per chunk at the
+         * ends of the range and a single read of the count for chunks inside it.
+         */
+        public long rangeCount(long from, long to) {
+            if (from >= to) {
+                return 0;
+            }
+            long total = 0;
+            Chunk chunk = chunkFor(from);
+            while (chunk != null) {
+                long stamp = chunk.lock.tryOptimisticRead();
+                Chunk next = chunk.next;
+                int inRange = countRange(chunk, from, to);
+                if (!chunk.lock.validate(stamp)) {
+                    stamp = chunk.lock.readLock();
+                    try {
+                        next = chunk.next;
+                        inRange = countRange(chunk, from, to);
+                    } finally {
+                        chunk.lock.unlockRead(stamp);
+                    }
+                }
+                total += inRange;
+                if (next == null || next.lowKey >= to) {
+                    return total;
+                }
+                chunk = next;
+            }
+            return total;
+        }
+
+        private static int countRange(Chunk chunk, long from, long to) {
+            int count = chunk.count;
+            if (count == 0) {
+                return 0;
+            }
+            boolean startsInside = from <= chunk.keys[0];
+            boolean endsInside = to > chunk.keys[count - 1];
+            if (startsInside && endsInside) {
+                return count;
+            }
+            int lo = startsInside ? 0 : chunk.lowerBound(count, from);
+            int hi = endsInside ? count : chunk.lowerBound(count, to);
+            return Math.max(0, hi - lo);
+        }
+
+        public long size() {
+            return size.sum();
+        }
+
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        int chunkCount() {
+            return index.size();
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(", ", "{", "}");
+            forEachInRange(Long.MIN_VALUE, Long.MAX_VALUE, (key, value) -> joiner.add(key + "=" + value));
+            return joiner.toString();
+        }
+    }
+}
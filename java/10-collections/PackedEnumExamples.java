@@ -0,0 +1,768 @@
+import java.io.*;
+import java.util.*;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * This class demonstrates packed, enum-keyed containers for storing per-day
+ * flags and counters for very many entities
+ */
+public class PackedEnumExamples {
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== Packed Enum Containers in Java ===\n");
+
+        // 1. Packed Enum Sets
+        System.out.println("1. Packed Enum Sets:");
+        packedEnumSetExamples();
+
+        // 2. Columnar Counter Tables
+        System.out.println("\n2. Columnar Counter Tables:");
+        counterTableExamples();
+
+        // 3. Compact Serialized Form
+        System.out.println("\n3. Compact Serialized Form:");
+        serializationExamples();
+
+        // 4. Memory and Bulk-Operation Benchmark
+        int entities = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        System.out.println("\n4. Memory and Bulk-Operation Benchmark:");
+        memoryAndBulkBenchmark(entities);
+    }
+
+    /**
+     * Demonstrates per-entity day sets packed one byte per entity
+     */
+    private static void packedEnumSetExamples() {
+        // Which days each of 5 stores is open
+        EnumSetArray<Day> open = new EnumSetArray<>(Day.class, 5);
+        for (int store = 0; store < 5; store++) {
+            for (Day day : Day.values()) {
+                if (day.isWeekday()) {
+                    open.add(store, day);
+                }
+            }
+        }
+        open.add(2, Day.SATURDAY);
+        open.remove(4, Day.MONDAY);
+
+        for (int store = 0; store < 5; store++) {
+            System.out.println("Store " + store + " open: " + open.get(store));
+        }
+        System.out.println("Store 2 open on Saturday? " + open.contains(2, Day.SATURDAY));
+        System.out.println("Stores open on Monday: " + open.count(Day.MONDAY));
+
+        // Bulk operations combine every entity's set at once
+        EnumSetArray<Day> staffed = new EnumSetArray<>(Day.class, 5);
+        for (int store = 0; store < 5; store++) {
+            staffed.set(store, EnumSet.of(Day.MONDAY, Day.SATURDAY, Day.SUNDAY));
+        }
+        EnumSetArray<Day> openAndStaffed = open.copy();
+        openAndStaffed.retainAll(staffed);
+        System.out.println("Open and staffed, store 2: " + openAndStaffed.get(2) + ", store 4: " + openAndStaffed.get(4));
+        System.out.println(open.bitsPerEntity() + " bits per entity for " + Day.values().length + " days");
+    }
+
+    /**
+     * Demonstrates per-entity day counters stored one int column per day
+     */
+    private static void counterTableExamples() {
+        // Visits per day for 3 users
+        EnumCounterTable<Day> visits = new EnumCounterTable<>(Day.class, 3);
+        visits.increment(0, Day.MONDAY);
+        visits.increment(0, Day.MONDAY);
+        visits.add(1, Day.FRIDAY, 5);
+        visits.add(2, Day.SUNDAY, 3);
+
+        for (int user = 0; user < 3; user++) {
+            System.out.println("User " + user + ": " + visits.get(user));
+        }
+
+        // Merging another week adds counters column by column
+        EnumCounterTable<Day> nextWeek = new EnumCounterTable<>(Day.class, 3);
+        nextWeek.add(0, Day.MONDAY, 1);
+        nextWeek.add(1, Day.FRIDAY, 2);
+        visits.addAll(nextWeek);
+        System.out.println("After merging next week, user 0 Monday: " + visits.get(0, Day.MONDAY)
+                           + ", user 1 Friday: " + visits.get(1, Day.FRIDAY));
+
+        // Union and intersection are element-wise max and min
+        EnumCounterTable<Day> peak = visits.copy();
+        peak.unionMax(nextWeek);
+        EnumCounterTable<Day> common = visits.copy();
+        common.intersectMin(nextWeek);
+        System.out.println("Max per cell, user 1: " + peak.get(1) + "; min per cell, user 1: " + common.get(1));
+        System.out.println("Total Friday visits: " + visits.total(Day.FRIDAY));
+    }
+
+    /**
+     * Demonstrates the compact binary form of both containers
+     */
+    private static void serializationExamples() throws IOException {
+        int entities = 100_000;
+        Random random = new Random(42);
+        EnumSetArray<Day> flags = new EnumSetArray<>(Day.class, entities);
+        EnumCounterTable<Day> counters = new EnumCounterTable<>(Day.class, entities);
+        for (int i = 0; i < entities; i++) {
+            for (Day day : Day.values()) {
+                if (random.nextInt(3) == 0) {
+                    flags.add(i, day);
+                    counters.add(i, day, random.nextInt(20));
+                }
+            }
+        }
+
+        byte[] flagBytes = toBytes(flags::writeTo);
+        byte[] counterBytes = toBytes(counters::writeTo);
+        EnumSetArray<Day> flagsBack = EnumSetArray.readFrom(Day.class, new DataInputStream(new ByteArrayInputStream(flagBytes)));
+        EnumCounterTable<Day> countersBack = EnumCounterTable.readFrom(Day.class, new DataInputStream(new ByteArrayInputStream(counterBytes)));
+
+        System.out.printf("Flags for %d entities: %d bytes (%.2f bytes per entity), round trip equal: %b%n",
+                          entities, flagBytes.length, (double) flagBytes.length / entities, flags.equals(flagsBack));
+        System.out.printf("Counters for %d entities: %d bytes (%.2f bytes per entity), round trip equal: %b%n",
+                          entities, counterBytes.length, (double) counterBytes.length / entities, counters.equals(countersBack));
+    }
+
+    interface Writer {
+        void writeTo(DataOutput out) throws IOException;
+    }
+
+    private static byte[] toBytes(Writer writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.writeTo(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Compares memory per entity and bulk union throughput with per-entity collections
+     */
+    private static void memoryAndBulkBenchmark(int entities) {
+        Day[] days = Day.values();
+        Random random = new Random(7);
+        int[][] visits = new int[entities][days.length];
+        for (int[] row : visits) {
+            for (int d = 0; d < days.length; d++) {
+                row[d] = random.nextInt(4) == 0 ? random.nextInt(50) : 0;
+            }
+        }
+
+        System.out.println(entities + " entities, " + days.length + " days; memory measured from heap usage:");
+        System.out.printf("%-34s %14s %18s%n", "structure", "bytes/entity", "bulk union (ms)");
+
+        EnumSetArray<Day> packedA = new EnumSetArray<>(Day.class, entities);
+        EnumSetArray<Day> packedB = new EnumSetArray<>(Day.class, entities);
+        fillFlags(visits, packedA, packedB);
+        EnumCounterTable<Day> tableA = new EnumCounterTable<>(Day.class, entities);
+        fillCounters(visits, tableA);
+
+        // Measure memory first, while the sources are the only large live structures
+        long packedBytes = retainedBytes(packedA::copy);
+        long enumSetBytes = retainedBytes(() -> toEnumSets(packedA));
+        long tableBytes = retainedBytes(tableA::copy);
+        long enumMapBytes = retainedBytes(() -> toMaps(visits, () -> new EnumMap<>(Day.class)));
+        long hashMapBytes = retainedBytes(() -> toMaps(visits, HashMap::new));
+
+        // Flags: union of two sets per entity
+        report("EnumSetArray<Day>", packedBytes, entities, time(() -> {
+            EnumSetArray<Day> union = packedA.copy();
+            union.addAll(packedB);
+            return union.count(Day.MONDAY);
+        }));
+
+        List<EnumSet<Day>> enumSetsA = toEnumSets(packedA);
+        List<EnumSet<Day>> enumSetsB = toEnumSets(packedB);
+        report("EnumSet<Day>[]", enumSetBytes, entities, time(() -> {
+            long count = 0;
+            for (int i = 0; i < entities; i++) {
+                EnumSet<Day> union = enumSetsA.get(i).clone();
+                union.addAll(enumSetsB.get(i));
+                count += union.contains(Day.MONDAY) ? 1 : 0;
+            }
+            return count;
+        }));
+
+        // Counters: element-wise sum of two tables
+        EnumCounterTable<Day> tableB = tableA.copy();
+        report("EnumCounterTable<Day>", tableBytes, entities, time(() -> {
+            EnumCounterTable<Day> merged = tableA.copy();
+            merged.addAll(tableB);
+            return merged.total(Day.MONDAY);
+        }));
+
+        List<Map<Day, Integer>> enumMaps = toMaps(visits, () -> new EnumMap<>(Day.class));
+        report("EnumMap<Day,Integer>[]", enumMapBytes, entities,
+               time(() -> mergeMaps(enumMaps, enumMaps, () -> new EnumMap<>(Day.class))));
+
+        List<Map<Day, Integer>> hashMaps = toMaps(visits, HashMap::new);
+        report("HashMap<Day,Integer>[]", hashMapBytes, entities,
+               time(() -> mergeMaps(hashMaps, hashMaps, HashMap::new)));
+
+        System.out.println("\nRecommendations:");
+        System.out.println("- Use EnumSet and EnumMap for a handful of sets and maps");
+        System.out.println("- Use packed arrays indexed by entity when there are millions of them");
+        System.out.println("- Store counters column by column so bulk operations run as simple array loops");
+    }
+
+    private static void fillFlags(int[][] visits, EnumSetArray<Day> a, EnumSetArray<Day> b) {
+        Day[] days = Day.values();
+        for (int i = 0; i < visits.length; i++) {
+            for (int d = 0; d < days.length; d++) {
+                if (visits[i][d] != 0) {
+                    a.add(i, days[d]);
+                }
+                if ((i + d) % 3 == 0) {
+                    b.add(i, days[d]);
+                }
+            }
+        }
+    }
+
+    private static List<EnumSet<Day>> toEnumSets(EnumSetArray<Day> packed) {
+        List<EnumSet<Day>> sets = new ArrayList<>(packed.size());
+        for (int i = 0; i < packed.size(); i++) {
+            sets.add(packed.get(i));
+        }
+        return sets;
+    }
+
+    private static List<Map<Day, Integer>> toMaps(int[][] visits, Supplier<Map<Day, Integer>> factory) {
+        Day[] days = Day.values();
+        List<Map<Day, Integer>> maps = new ArrayList<>(visits.length);
+        for (int[] row : visits) {
+            Map<Day, Integer> map = factory.get();
+            for (int d = 0; d < days.length; d++) {
+                if (row[d] != 0) {
+                    map.put(days[d], row[d]);
+                }
+            }
+            maps.add(map);
+        }
+        return maps;
+    }
+
+    // Same steady-GC measurement as PerfectHashMapExamples.retainedBytes
+    private static long retainedBytes(Supplier<Object> builder) {
+        Object[] holder = {builder.get()};
+        long with = usedMemory();
+        holder[0] = null;
+        return with - usedMemory();
+    }
+
+    private static void fillCounters(int[][] visits, EnumCounterTable<Day> table) {
+        Day[] days = Day.values();
+        for (int i = 0; i < visits.length; i++) {
+            for (int d = 0; d < days.length; d++) {
+                table.add(i, days[d], visits[i][d]);
+            }
+        }
+    }
+
+    private static long mergeMaps(List<Map<Day, Integer>> a, List<Map<Day, Integer>> b,
+                                  Supplier<Map<Day, Integer>> factory) {
+        long total = 0;
+        for (int i = 0; i < a.size(); i++) {
+            Map<Day, Integer> merged = factory.get();
+            merged.putAll(a.get(i));
+            for (Map.Entry<Day, Integer> entry : b.get(i).entrySet()) {
+                merged.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            }
+            total += merged.getOrDefault(Day.MONDAY, 0);
+        }
+        return total;
+    }
+
+    private static void report(String name, long bytes, int entities, double millis) {
+        System.out.printf("%-34s %14.1f %18.2f%n", name, (double) bytes / entities, millis);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int steady = 0, i = 0; steady < 3 && i < 20; i++) {
+            System.gc();
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            steady = now < used ? 0 : steady + 1;
+            used = Math.min(used, now);
+        }
+        return used;
+    }
+
+    // Best of five timed rounds after three warm-up rounds, in milliseconds
+    private static double time(LongSupplier body) {
+        long checksum = 0;
+        for (int i = 0; i < 3; i++) {
+            checksum += body.getAsLong();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            checksum += body.getAsLong();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (checksum == 42) {
+            System.out.println(); // Keeps the checksum alive
+        }
+        return best / 1e6;
+    }
+
+    /**
+     * One enum set per entity, packed into long words.
+     *
+     * Each entity gets a power-of-two number of bits at least as large as the
+     * enum (8 for Day), so a long holds 8 entities and an entity never straddles
+     * two words. Bulk union and intersection are then a single OR or AND per
+     * word: a plain array loop the JIT compiles to SIMD instructions.
+     */
+    static class EnumSetArray<E extends Enum<E>> {
+        private final Class<E> type;
+        private final E[] universe;
+        private final int size;
+        private final int shift;        // log2 of bits per entity
+        private final int perWordShift; // log2 of entities per word
+        private final long entityMask;
+        private final long[] words;
+
+        public EnumSetArray(Class<E> type, int size) {
+            this.type = type;
+            this.universe = type.getEnumConstants();
+            if (universe.length > 64) {
+                throw new IllegalArgumentException(type.getSimpleName() + " has more than 64 constants");
+            }
+            this.size = size;
+            int bits = Math.max(1, Integer.highestOneBit(Math.max(1, universe.length - 1)) << 1);
+            bits = universe.length == 1 ? 1 : bits;
+            this.shift = Integer.numberOfTrailingZeros(bits);
+            this.perWordShift = 6 - shift;
+            this.entityMask = bits == 64 ? -1L : (1L << bits) - 1;
+            this.words = new long[(int) (((long) size << shift) + 63 >>> 6)];
+        }
+
+        private EnumSetArray(EnumSetArray<E> other) {
+            this.type = other.type;
+            this.universe = other.universe;
+            this.size = other.size;
+            this.shift = other.shift;
+            this.perWordShift = other.perWordShift;
+            this.entityMask = other.entityMask;
+            this.words = other.words.clone();
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int bitsPerEntity() {
+            return 1 << shift;
+        }
+
+        public EnumSetArray<E> copy() {
+            return new EnumSetArray<>(this);
+        }
+
+        // Bit position of the given constant for the given entity
+        private int word(int entity) {
+            Objects.checkIndex(entity, size);
+            return entity >>> perWordShift;
+        }
+
+        private int bit(int entity, E element) {
+            return ((entity & ((1 << perWordShift) - 1)) << shift) + element.ordinal();
+        }
+
+        public void add(int entity, E element) {
+            words[word(entity)] |= 1L << bit(entity, element);
+        }
+
+        public void remove(int entity, E element) {
+            words[word(entity)] &= ~(1L << bit(entity, element));
+        }
+
+        public boolean contains(int entity, E element) {
+            return (words[word(entity)] & (1L << bit(entity, element))) != 0;
+        }
+
+        // The entity's set as a bitmask with bit i for ordinal i
+        public long mask(int entity) {
+            int offset = (entity & ((1 << perWordShift) - 1)) << shift;
+            return (words[word(entity)] >>> offset) & entityMask;
+        }
+
+        public void setMask(int entity, long mask) {
+            int offset = (entity & ((1 << perWordShift) - 1)) << shift;
+            int index = word(entity);
+            words[index] = (words[index] & ~(entityMask << offset)) | ((mask & entityMask) << offset);
+        }
+
+        public EnumSet<E> get(int entity) {
+            EnumSet<E> set = EnumSet.noneOf(type);
+            long mask = mask(entity);
+            while (mask != 0) {
+                set.add(universe[Long.numberOfTrailingZeros(mask)]);
+                mask &= mask - 1;
+            }
+            return set;
+        }
+
+        public void set(int entity, Set<E> elements) {
+            long mask = 0;
+            for (E element : elements) {
+                mask |= 1L << element.ordinal();
+            }
+            setMask(entity, mask);
+        }
+
+        public int cardinality(int entity) {
+            return Long.bitCount(mask(entity));
+        }
+
+        // Number of entities whose set contains element
+        public int count(E element) {
+            long pattern = 0;
+            for (int i = 0; i < 1 << perWordShift; i++) {
+                pattern |= 1L << ((i << shift) + element.ordinal());
+            }
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word & pattern);
+            }
+            return count;
+        }
+
+        private void checkCompatible(EnumSetArray<E> other) {
+            if (other.type != type || other.size != size) {
+                throw new IllegalArgumentException("Arrays differ in enum type or size");
+            }
+        }
+
+        // Bulk union: each entity's set becomes the union with the same entity's set in other
+        public void addAll(EnumSetArray<E> other) {
+            checkCompatible(other);
+            long[] a = words;
+            long[] b = other.words;
+            for (int i = 0; i < a.length; i++) {
+                a[i] |= b[i];
+            }
+        }
+
+        // Bulk intersection
+        public void retainAll(EnumSetArray<E> other) {
+            checkCompatible(other);
+            long[] a = words;
+            long[] b = other.words;
+            for (int i = 0; i < a.length; i++) {
+                a[i] &= b[i];
+            }
+        }
+
+        // Bulk difference
+        public void removeAll(EnumSetArray<E> other) {
+            checkCompatible(other);
+            long[] a = words;
+            long[] b = other.words;
+            for (int i = 0; i < a.length; i++) {
+                a[i] &= ~b[i];
+            }
+        }
+
+        /**
+         * Writes exactly as many bits per entity as the enum has constants
+         * (7 for Day), after a header of constant count and entity count.
+         */
+        public void writeTo(DataOutput out) throws IOException {
+            int width = universe.length;
+            out.writeByte(width);
+            out.writeInt(size);
+            long buffer = 0;
+            int buffered = 0;
+            for (int entity = 0; entity < size; entity++) {
+                long mask = mask(entity);
+                buffer |= mask << buffered;
+                buffered += width;
+                if (buffered >= 64) {
+                    out.writeLong(buffer);
+                    buffered -= 64;
+                    buffer = buffered == 0 ? 0 : mask >>> (width - buffered);
+                }
+            }
+            for (int written = 0; written < buffered; written += 8) {
+                out.writeByte((int) (buffer >>> written));
+            }
+        }
+
+        public static <E extends Enum<E>> EnumSetArray<E> readFrom(Class<E> type, DataInput in) throws IOException {
+            int width = in.readUnsignedByte();
+            int size = in.readInt();
+            EnumSetArray<E> array = new EnumSetArray<>(type, size);
+            if (width != array.universe.length) {
+                throw new InvalidObjectException("Written for " + width + " constants, " + type.getSimpleName()
+                                                 + " has " + array.universe.length);
+            }
+            long totalBits = (long) size * width;
+            long fullWords = totalBits >>> 6;
+            long mask = width == 64 ? -1L : (1L << width) - 1;
+            long buffer = 0;
+            int available = 0;
+            long wordsRead = 0;
+            for (int entity = 0; entity < size; entity++) {
+                long value;
+                if (available >= width) {
+                    value = buffer & mask;
+                    buffer = width == 64 ? 0 : buffer >>> width;
+                    available -= width;
+                } else {
+                    long next;
+                    if (wordsRead < fullWords) {
+                        next = in.readLong();
+                        wordsRead++;
+                    } else {
+                        next = 0;
+                        int tailBits = (int) (totalBits & 63);
+                        for (int read = 0; read < tailBits; read += 8) {
+                            next |= (long) in.readUnsignedByte() << read;
+                        }
+                    }
+                    int needed = width - available;
+                    value = (buffer | (next << available)) & mask;
+                    buffer = needed == 64 ? 0 : next >>> needed;
+                    available = 64 - needed;
+                }
+                array.setMask(entity, value);
+            }
+            return array;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof EnumSetArray)) {
+                return false;
+            }
+            EnumSetArray<?> other = (EnumSetArray<?>) o;
+            return type == other.type && size == other.size && Arrays.equals(words, other.words);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + Arrays.hashCode(words);
+        }
+    }
+
+    /**
+     * One int counter per entity per enum constant, stored as one column per constant.
+     *
+     * A row-per-entity layout (an EnumMap per entity) scatters each entity's
+     * counters across objects; columns keep each constant's counters contiguous,
+     * so totals and element-wise merges are plain loops over int arrays.
+     */
+    static class EnumCounterTable<E extends Enum<E>> {
+        private final Class<E> type;
+        private final E[] universe;
+        private final int size;
+        private final int[][] columns;
+
+        public EnumCounterTable(Class<E> type, int size) {
+            this.type = type;
+            this.universe = type.getEnumConstants();
+            this.size = size;
+            this.columns = new int[universe.length][size];
+        }
+
+        private EnumCounterTable(EnumCounterTable<E> other) {
+            this.type = other.type;
+            this.universe = other.universe;
+            this.size = other.size;
+            this.columns = new int[universe.length][];
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = other.columns[c].clone();
+            }
+        }
+
+        public EnumCounterTable<E> copy() {
+            return new EnumCounterTable<>(this);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int get(int entity, E key) {
+            return columns[key.ordinal()][entity];
+        }
+
+        public void increment(int entity, E key) {
+            columns[key.ordinal()][entity]++;
+        }
+
+        public void add(int entity, E key, int delta) {
+            columns[key.ordinal()][entity] += delta;
+        }
+
+        // The entity's non-zero counters, as an EnumMap for display
+        public EnumMap<E, Integer> get(int entity) {
+            EnumMap<E, Integer> map = new EnumMap<>(type);
+            for (E key : universe) {
+                int value = columns[key.ordinal()][entity];
+                if (value != 0) {
+                    map.put(key, value);
+                }
+            }
+            return map;
+        }
+
+        public long total(E key) {
+            long total = 0;
+            for (int value : columns[key.ordinal()]) {
+                total += value;
+            }
+            return total;
+        }
+
+        private void checkCompatible(EnumCounterTable<E> other) {
+            if (other.type != type || other.size != size) {
+                throw new IllegalArgumentException("Tables differ in enum type or size");
+            }
+        }
+
+        // Element-wise sum: merging counts from another period or shard
+        public void addAll(EnumCounterTable<E> other) {
+            checkCompatible(other);
+            for (int c = 0; c < columns.length; c++) {
+                int[] a = columns[c];
+                int[] b = other.columns[c];
+                for (int i = 0; i < a.length; i++) {
+                    a[i] += b[i];
+                }
+            }
+        }
+
+        // Element-wise max: multiset union
+        public void unionMax(EnumCounterTable<E> other) {
+            checkCompatible(other);
+            for (int c = 0; c < columns.length; c++) {
+                int[] a = columns[c];
+                int[] b = other.columns[c];
+                for (int i = 0; i < a.length; i++) {
+                    a[i] = Math.max(a[i], b[i]);
+                }
+            }
+        }
+
+        // Element-wise min: multiset intersection
+        public void intersectMin(EnumCounterTable<E> other) {
+            checkCompatible(other);
+            for (int c = 0; c < columns.length; c++) {
+                int[] a = columns[c];
+                int[] b = other.columns[c];
+                for (int i = 0; i < a.length; i++) {
+                    a[i] = Math.min(a[i], b[i]);
+                }
+            }
+        }
+
+        /**
+         * Writes each column as varints: a run of zeros is one token, and any
+         * other counter is its zig-zag value, so sparse tables of small counts
+         * take well under a byte per counter.
+         */
+        public void writeTo(DataOutput out) throws IOException {
+            out.writeByte(universe.length);
+            out.writeInt(size);
+            for (int[] column : columns) {
+                int zeros = 0;
+                for (int value : column) {
+                    if (value == 0) {
+                        zeros++;
+                        continue;
+                    }
+                    if (zeros > 0) {
+                        writeVarLong(out, ((long) zeros << 1) | 1);
+                        zeros = 0;
+                    }
+                    long zigzag = ((long) value << 1) ^ (value >> 31);
+                    writeVarLong(out, zigzag << 1);
+                }
+                if (zeros > 0) {
+                    writeVarLong(out, ((long) zeros << 1) | 1);
+                }
+            }
+        }
+
+        public static <E extends Enum<E>> EnumCounterTable<E> readFrom(Class<E> type, DataInput in) throws IOException {
+            int width = in.readUnsignedByte();
+            int size = in.readInt();
+            EnumCounterTable<E> table = new EnumCounterTable<>(type, size);
+            if (width != table.universe.length) {
+                throw new InvalidObjectException("Written for " + width + " constants, " + type.getSimpleName()
+                                                 + " has " + table.universe.length);
+            }
+            for (int[] column : table.columns) {
+                int i = 0;
+                while (i < size) {
+                    long token = readVarLong(in);
+                    if ((token & 1) != 0) {
+                        long zeros = token >>> 1;
+                        if (zeros > size - i) {
+                            throw new StreamCorruptedException("Zero run past end of column");
+                        }
+                        i += (int) zeros; // Columns start zeroed
+                    } else {
+                        long zigzag = token >>> 1;
+                        column[i++] = (int) ((zigzag >>> 1) ^ -(zigzag & 1));
+                    }
+                }
+            }
+            return table;
+        }
+
+        private static void writeVarLong(DataOutput out, long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+
+        private static long readVarLong(DataInput in) throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new StreamCorruptedException("Varint longer than 10 bytes");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof EnumCounterTable)) {
+                return false;
+            }
+            EnumCounterTable<?> other = (EnumCounterTable<?>) o;
+            return type == other.type && size == other.size && Arrays.deepEquals(columns, other.columns);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + Arrays.deepHashCode(columns);
+        }
+    }
+
+    /**
+     * Enum for day of week
+     */
+    enum Day {
+        MONDAY, TUESDAY, WEDNESDAY, THURSDAY, FRIDAY, SATURDAY, SUNDAY;
+
+        public boolean isWeekday() {
+            return this != SATURDAY && this != SUNDAY;
+        }
+    }
+}
@@ -0,0 +1,725 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * This class demonstrates immutable maps built on a minimal perfect hash for
+ * large static lookup tables
+ */
+public class PerfectHashMapExamples {
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== Perfect-Hash Immutable Maps in Java ===\n");
+
+        // 1. Building a Perfect-Hash Map
+        System.out.println("1. Building a Perfect-Hash Map:");
+        builderExamples();
+
+        // 2. Primitive Tables and the On-Disk Form
+        System.out.println("\n2. Primitive Tables and the On-Disk Form:");
+        onDiskExamples();
+
+        // 3. Lookup and Memory Benchmark
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.println("\n3. Lookup and Memory Benchmark:");
+        lookupBenchmark(keys);
+    }
+
+    /**
+     * Demonstrates the builder and the read-only Map view it produces
+     */
+    private static void builderExamples() {
+        PerfectHashMap<String, String> capitals = PerfectHashMap.<String, String>builder()
+                .put("France", "Paris")
+                .put("Japan", "Tokyo")
+                .put("Kenya", "Nairobi")
+                .put("Peru", "Lima")
+                .put("Norway", "Oslo")
+                .build();
+
+        System.out.println("Capital of Japan: " + capitals.get("Japan"));
+        System.out.println("Contains Spain? " + capitals.containsKey("Spain"));
+        System.out.println("Size: " + capitals.size() + ", equal to Map.of version: "
+                           + capitals.equals(Map.of("France", "Paris", "Japan", "Tokyo", "Kenya", "Nairobi",
+                                                    "Peru", "Lima", "Norway", "Oslo")));
+
+        // Like Map.of, the result rejects updates and duplicate keys
+        try {
+            capitals.put("Spain", "Madrid");
+        } catch (UnsupportedOperationException e) {
+            System.out.println("put() on the perfect-hash map: UnsupportedOperationException");
+        }
+        try {
+            PerfectHashMap.<String, Integer>builder().put("One", 1).put("One", 2).build();
+        } catch (IllegalArgumentException e) {
+            System.out.println("Building with a repeated key: " + e.getMessage());
+        }
+
+        // copyOf works from any existing map
+        Map<Integer, String> codes = new HashMap<>();
+        for (int code = 200; code < 210; code++) {
+            codes.put(code, "status-" + code);
+        }
+        PerfectHashMap<Integer, String> statuses = PerfectHashMap.copyOf(codes);
+        System.out.println("Status 204: " + statuses.get(204) + ", status 404: " + statuses.get(404));
+    }
+
+    /**
+     * Demonstrates a long-to-long table written once and loaded through a memory map
+     */
+    private static void onDiskExamples() throws IOException {
+        int size = 100_000;
+        long[] keys = new long[size];
+        long[] values = new long[size];
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            keys[i] = random.nextLong();
+            values[i] = i;
+        }
+        LongPerfectHashMap table = LongPerfectHashMap.of(keys, values);
+
+        Path file = Files.createTempFile("perfect-hash", ".bin");
+        try {
+            table.writeTo(file);
+            LongPerfectHashMap mapped = LongPerfectHashMap.load(file);
+
+            boolean same = true;
+            for (int i = 0; i < size; i++) {
+                same &= mapped.get(keys[i], -1) == values[i];
+            }
+            System.out.println("Wrote " + size + " entries in " + Files.size(file) + " bytes");
+            System.out.println("Mapped table is off-heap: " + mapped.isMapped() + ", all lookups agree: " + same);
+            System.out.println("Lookup of a missing key: " + mapped.get(12345L, -1));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Compares lookup time and heap per entry with Map.copyOf and HashMap
+     */
+    private static void lookupBenchmark(int size) throws IOException {
+        Random random = new Random(7);
+        String[] stringKeys = new String[size];
+        long[] longKeys = new long[size];
+        for (int i = 0; i < size; i++) {
+            stringKeys[i] = "item-" + Integer.toString(random.nextInt(1 << 20), 36) + "-" + i;
+            longKeys[i] = random.nextLong();
+        }
+
+        // Probe with equal but distinct strings, as keys parsed from requests would be
+        String[] stringProbes = new String[size];
+        long[] longProbes = new long[size];
+        for (int i = 0; i < size; i++) {
+            int index = random.nextInt(size);
+            stringProbes[i] = new String(stringKeys[index].toCharArray());
+            longProbes[i] = longKeys[index];
+        }
+
+        System.out.println(size + " keys; heap per entry excludes the key and value objects:");
+        System.out.printf("%-40s %14s %14s%n", "structure", "bytes/entry", "ns/lookup");
+        stringKeyBenchmark(stringKeys, stringProbes);
+        longKeyBenchmark(longKeys, longProbes);
+
+        System.out.println("\nRecommendations:");
+        System.out.println("- Use Map.of and Map.copyOf for small and medium immutable maps");
+        System.out.println("- Use a perfect-hash table for large static tables read far more often than built");
+        System.out.println("- Expect hashCode() collisions in large key sets and keep them out of the perfect hash");
+        System.out.println("- Build big primitive tables offline and memory-map them so startup does no work");
+    }
+
+    private static void stringKeyBenchmark(String[] keys, String[] probes) {
+        int size = keys.length;
+        Map<String, Integer> hashMap = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            hashMap.put(keys[i], i);
+        }
+
+        // Measure memory first, while the source map is the only live structure
+        long hashMapBytes = retainedBytes(() -> new HashMap<>(hashMap));
+        long copyOfBytes = retainedBytes(() -> Map.copyOf(hashMap));
+        long perfectBytes = retainedBytes(() -> PerfectHashMap.copyOf(hashMap));
+
+        Map<String, Integer> copyOf = Map.copyOf(hashMap);
+        long start = System.nanoTime();
+        PerfectHashMap<String, Integer> perfect = PerfectHashMap.copyOf(hashMap);
+        double buildMillis = (System.nanoTime() - start) / 1e6;
+
+        report("HashMap<String,Integer>", hashMapBytes, size, time(() -> lookupAll(hashMap, probes), size));
+        report("Map.copyOf<String,Integer>", copyOfBytes, size, time(() -> lookupAll(copyOf, probes), size));
+        report("PerfectHashMap<String,Integer>", perfectBytes, size, time(() -> lookupAll(perfect, probes), size));
+        System.out.printf("  (built in %.0f ms; %d keys share a hashCode() and overflow)%n",
+                          buildMillis, perfect.overflowSize());
+    }
+
+    private static void longKeyBenchmark(long[] keys, long[] probes) throws IOException {
+        int size = keys.length;
+        long[] values = new long[size];
+        Arrays.setAll(values, i -> i);
+        Map<Long, Long> hashMap = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            hashMap.put(keys[i], values[i]);
+        }
+
+        Path file = Files.createTempFile("perfect-hash", ".bin");
+        try {
+            LongPerfectHashMap.of(keys, values).writeTo(file);
+            long hashMapBytes = retainedBytes(() -> new HashMap<>(hashMap));
+            long tableBytes = retainedBytes(() -> LongPerfectHashMap.of(keys, values));
+            long mappedBytes = retainedBytes(() -> {
+                try {
+                    return LongPerfectHashMap.load(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            LongPerfectHashMap table = LongPerfectHashMap.of(keys, values);
+            LongPerfectHashMap mapped = LongPerfectHashMap.load(file);
+            report("HashMap<Long,Long>", hashMapBytes, size, time(() -> {
+                long sum = 0;
+                for (long probe : probes) {
+                    sum += hashMap.get(probe);
+                }
+                return sum;
+            }, size));
+            report("LongPerfectHashMap (heap)", tableBytes, size, time(() -> lookupAll(table, probes), size));
+            report("LongPerfectHashMap (mmap)", mappedBytes, size, time(() -> lookupAll(mapped, probes), size));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static long lookupAll(Map<String, Integer> map, String[] probes) {
+        long sum = 0;
+        for (String probe : probes) {
+            sum += map.get(probe);
+        }
+        return sum;
+    }
+
+    private static long lookupAll(LongPerfectHashMap map, long[] probes) {
+        long sum = 0;
+        for (long probe : probes) {
+            sum += map.get(probe, 0);
+        }
+        return sum;
+    }
+
+    private static void report(String name, long bytes, int size, double nanosPerLookup) {
+        System.out.printf("%-40s %14.1f %14.1f%n", name, (double) bytes / size, nanosPerLookup);
+    }
+
+    // Heap freed when the structure is dropped; under G1 this is steadier than growth while building it
+    private static long retainedBytes(Supplier<Object> builder) {
+        Object[] holder = {builder.get()};
+        long with = usedMemory();
+        holder[0] = null;
+        return with - usedMemory();
+    }
+
+    // Collects until usage has not dropped for three collections in a row
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int steady = 0, i = 0; steady < 3 && i < 20; i++) {
+            System.gc();
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            steady = now < used ? 0 : steady + 1;
+            used = Math.min(used, now);
+        }
+        return used;
+    }
+
+    // Best of five timed rounds after three warm-up rounds, in nanoseconds per operation
+    private static double time(LongSupplier body, int operations) {
+        long checksum = 0;
+        for (int i = 0; i < 3; i++) {
+            checksum += body.getAsLong();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            checksum += body.getAsLong();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (checksum == 42) {
+            System.out.println(); // Keeps the checksum alive
+        }
+        return (double) best / operations;
+    }
+
+    /**
+     * Minimal perfect hash in the style of CHD (hash, displace and compress).
+     *
+     * Keys are grouped into buckets of about three by the high half of their
+     * 64-bit hash. Buckets are placed largest first: each one gets the smallest
+     * pilot value that sends all of its keys to free slots, so a lookup is one
+     * pilot read plus one slot computation. Buckets holding a single key skip
+     * the search and store their slot directly as a negative pilot, which is
+     * what lets the table be minimal (n keys in exactly n slots) without a long
+     * search for the last free slots.
+     */
+    static final class PerfectHash {
+        static final int KEYS_PER_BUCKET = 3;
+        private static final int MAX_PILOT = 1 << 24;
+
+        private PerfectHash() {
+        }
+
+        interface CollisionHandler {
+            /** Describes two keys, by index, that no pilot can separate */
+            RuntimeException collision(int first, int second);
+        }
+
+        static int bucketCount(int size) {
+            return Math.max(1, (size + KEYS_PER_BUCKET - 1) / KEYS_PER_BUCKET);
+        }
+
+        static int bucket(long hash, int buckets) {
+            return (int) (((hash >>> 32) * buckets) >>> 32);
+        }
+
+        static int slot(long hash, int pilot, int size) {
+            if (pilot < 0) {
+                return -pilot - 1;
+            }
+            long mixed = mix(hash ^ (pilot + 1L) * 0x9E3779B97F4A7C15L);
+            return (int) (((mixed & 0xFFFFFFFFL) * size) >>> 32);
+        }
+
+        // SplitMix64 finalizer
+        static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+
+        /**
+         * Fills {@code pilots} (of length {@link #bucketCount}) and returns the
+         * slot assigned to each hash.
+         */
+        static int[] build(long[] hashes, int[] pilots, CollisionHandler onCollision) {
+            int size = hashes.length;
+            int buckets = pilots.length;
+
+            // Group key indexes by bucket
+            int[] start = new int[buckets + 1];
+            for (long hash : hashes) {
+                start[bucket(hash, buckets) + 1]++;
+            }
+            int largest = 0;
+            for (int b = 0; b < buckets; b++) {
+                largest = Math.max(largest, start[b + 1]);
+                start[b + 1] += start[b];
+            }
+            int[] members = new int[size];
+            int[] fill = Arrays.copyOf(start, buckets);
+            for (int i = 0; i < size; i++) {
+                members[fill[bucket(hashes[i], buckets)]++] = i;
+            }
+
+            // Order buckets largest first, while most slots are still free
+            int[] bySize = new int[largest + 2];
+            for (int b = 0; b < buckets; b++) {
+                bySize[largest - (start[b + 1] - start[b]) + 1]++;
+            }
+            for (int s = 0; s <= largest; s++) {
+                bySize[s + 1] += bySize[s];
+            }
+            int[] order = new int[buckets];
+            for (int b = 0; b < buckets; b++) {
+                order[bySize[largest - (start[b + 1] - start[b])]++] = b;
+            }
+
+            long[] taken = new long[(size + 63) >>> 6];
+            int[] slots = new int[size];
+            int[] placed = new int[largest];
+            int nextFree = 0;
+            for (int b : order) {
+                int from = start[b];
+                int count = start[b + 1] - from;
+                if (count == 0) {
+                    break; // Only empty buckets remain; their pilots are never read for a present key
+                }
+                if (count == 1) {
+                    while ((taken[nextFree >>> 6] & (1L << nextFree)) != 0) {
+                        nextFree++;
+                    }
+                    taken[nextFree >>> 6] |= 1L << nextFree;
+                    slots[members[from]] = nextFree;
+                    pilots[b] = -nextFree - 1;
+                    continue;
+                }
+                checkDistinct(hashes, members, from, count, onCollision);
+                pilots[b] = place(hashes, members, from, count, size, taken, placed, slots);
+            }
+            return slots;
+        }
+
+        private static int place(long[] hashes, int[] members, int from, int count, int size,
+                                 long[] taken, int[] placed, int[] slots) {
+            for (int pilot = 0; pilot < MAX_PILOT; pilot++) {
+                int n = 0;
+                while (n < count) {
+                    int slot = slot(hashes[members[from + n]], pilot, size);
+                    if ((taken[slot >>> 6] & (1L << slot)) != 0) {
+                        break;
+                    }
+                    taken[slot >>> 6] |= 1L << slot;
+                    placed[n++] = slot;
+                }
+                if (n == count) {
+                    for (int k = 0; k < count; k++) {
+                        slots[members[from + k]] = placed[k];
+                    }
+                    return pilot;
+                }
+                for (int k = 0; k < n; k++) {
+                    taken[placed[k] >>> 6] &= ~(1L << placed[k]);
+                }
+            }
+            throw new IllegalStateException("No pilot places a bucket of " + count + " keys");
+        }
+
+        private static void checkDistinct(long[] hashes, int[] members, int from, int count,
+                                          CollisionHandler onCollision) {
+            for (int i = from; i < from + count; i++) {
+                for (int j = i + 1; j < from + count; j++) {
+                    if (hashes[members[i]] == hashes[members[j]]) {
+                        throw onCollision.collision(members[i], members[j]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Immutable map whose keys and values sit side by side in one flat array in
+     * perfect-hash slot order. A lookup reads one pilot and compares one key,
+     * whose value is on the same cache line: there are no chains, probes or
+     * per-entry node objects.
+     *
+     * Keys are placed by their hashCode(), which Strings cache, so a lookup
+     * costs no more hashing than HashMap. A 32-bit hash does collide in large
+     * key sets (about a hundred pairs per million random keys), and no pilot
+     * can separate two keys with the same hash, so all but the first key of
+     * each colliding group go to a small overflow map, consulted only when
+     * the probed slot holds a different key with the same hashCode().
+     *
+     * Like Map.of, it rejects null keys and values and duplicate keys, and
+     * every mutator throws UnsupportedOperationException.
+     */
+    static class PerfectHashMap<K, V> extends AbstractMap<K, V> {
+        private final int[] pilots;
+        private final Object[] table; // key at 2 * slot, value at 2 * slot + 1
+        private final int slots;
+        private final Map<K, V> overflow;
+
+        private PerfectHashMap(int[] pilots, Object[] table, Map<K, V> overflow) {
+            this.pilots = pilots;
+            this.table = table;
+            this.slots = table.length / 2;
+            this.overflow = overflow;
+        }
+
+        public static <K, V> Builder<K, V> builder() {
+            return new Builder<>();
+        }
+
+        public static <K, V> PerfectHashMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+            return PerfectHashMap.<K, V>builder().putAll(map).build();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            int hashCode = key.hashCode();
+            if (slots == 0) {
+                return null;
+            }
+            long hash = PerfectHash.mix(hashCode);
+            int slot = PerfectHash.slot(hash, pilots[PerfectHash.bucket(hash, pilots.length)], slots);
+            Object candidate = table[2 * slot];
+            if (candidate.equals(key)) {
+                return (V) table[2 * slot + 1];
+            }
+            return overflow.isEmpty() || candidate.hashCode() != hashCode ? null : overflow.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return slots + overflow.size();
+        }
+
+        /** Entries that share a hashCode() with another key and live outside the table */
+        public int overflowSize() {
+            return overflow.size();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEach(BiConsumer<? super K, ? super V> action) {
+            for (int i = 0; i < table.length; i += 2) {
+                action.accept((K) table[i], (V) table[i + 1]);
+            }
+            overflow.forEach(action);
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() {
+                    return PerfectHashMap.this.size();
+                }
+
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    Iterator<Entry<K, V>> rest = overflow.entrySet().iterator();
+                    return new Iterator<>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < slots || rest.hasNext();
+                        }
+
+                        @Override
+                        @SuppressWarnings("unchecked")
+                        public Entry<K, V> next() {
+                            if (next >= slots) {
+                                return rest.next();
+                            }
+                            int slot = next++;
+                            return new SimpleImmutableEntry<>((K) table[2 * slot], (V) table[2 * slot + 1]);
+                        }
+                    };
+                }
+            };
+        }
+
+        static class Builder<K, V> {
+            private final List<K> keys = new ArrayList<>();
+            private final List<V> values = new ArrayList<>();
+
+            private Builder() {
+            }
+
+            public Builder<K, V> put(K key, V value) {
+                keys.add(Objects.requireNonNull(key));
+                values.add(Objects.requireNonNull(value));
+                return this;
+            }
+
+            public Builder<K, V> putAll(Map<? extends K, ? extends V> map) {
+                map.forEach(this::put);
+                return this;
+            }
+
+            public PerfectHashMap<K, V> build() {
+                // Sort (hashCode, index) pairs so keys sharing a hashCode are adjacent
+                int size = keys.size();
+                long[] byHash = new long[size];
+                for (int i = 0; i < size; i++) {
+                    byHash[i] = (long) keys.get(i).hashCode() << 32 | i;
+                }
+                Arrays.sort(byHash);
+
+                int[] placed = new int[size];
+                int count = 0;
+                Map<K, V> overflow = new HashMap<>();
+                for (int i = 0; i < size; i++) {
+                    int index = (int) byHash[i];
+                    if (i > 0 && byHash[i] >>> 32 == byHash[i - 1] >>> 32) {
+                        K key = keys.get(index);
+                        if (key.equals(keys.get(placed[count - 1])) || overflow.put(key, values.get(index)) != null) {
+                            throw new IllegalArgumentException("duplicate key: " + key);
+                        }
+                    } else {
+                        placed[count++] = index;
+                    }
+                }
+
+                long[] hashes = new long[count];
+                for (int i = 0; i < count; i++) {
+                    hashes[i] = PerfectHash.mix(keys.get(placed[i]).hashCode());
+                }
+                int[] pilots = new int[PerfectHash.bucketCount(count)];
+                // mix() is a bijection, so distinct hashCode() values never collide here
+                int[] slots = PerfectHash.build(hashes, pilots, (first, second) ->
+                        new IllegalStateException("Distinct hashCode() values mixed to one hash"));
+
+                Object[] table = new Object[2 * count];
+                for (int i = 0; i < count; i++) {
+                    table[2 * slots[i]] = keys.get(placed[i]);
+                    table[2 * slots[i] + 1] = values.get(placed[i]);
+                }
+                return new PerfectHashMap<>(pilots, table, Map.copyOf(overflow));
+            }
+        }
+    }
+
+    /**
+     * Immutable long-to-long perfect-hash table held in flat int and long
+     * buffers, so the same lookup code serves a table built on the heap and one
+     * memory-mapped from a file written by {@link #writeTo}.
+     *
+     * File layout, little-endian: a 16-byte header (magic, size, bucket count,
+     * reserved), the int pilots, padding to 8 bytes, the long keys in slot
+     * order, then the long values in slot order. Each section is mapped on its
+     * own, so a table can hold up to 2^28 entries.
+     */
+    static class LongPerfectHashMap {
+        private static final int MAGIC = 0x50484D31; // "PHM1"
+        private static final int HEADER_BYTES = 16;
+        private static final int MAX_MAPPED_SIZE = Integer.MAX_VALUE / Long.BYTES;
+
+        private final int size;
+        private final IntBuffer pilots;
+        private final LongBuffer keys;
+        private final LongBuffer values;
+
+        private LongPerfectHashMap(int size, IntBuffer pilots, LongBuffer keys, LongBuffer values) {
+            this.size = size;
+            this.pilots = pilots;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        public static LongPerfectHashMap of(long[] keys, long[] values) {
+            if (keys.length != values.length) {
+                throw new IllegalArgumentException(keys.length + " keys but " + values.length + " values");
+            }
+            int size = keys.length;
+            long[] hashes = new long[size];
+            for (int i = 0; i < size; i++) {
+                hashes[i] = PerfectHash.mix(keys[i]);
+            }
+            int[] pilots = new int[PerfectHash.bucketCount(size)];
+            // mix() is a bijection, so equal hashes mean equal keys
+            int[] slots = PerfectHash.build(hashes, pilots,
+                    (first, second) -> new IllegalArgumentException("duplicate key: " + keys[first]));
+
+            long[] slotKeys = new long[size];
+            long[] slotValues = new long[size];
+            for (int i = 0; i < size; i++) {
+                slotKeys[slots[i]] = keys[i];
+                slotValues[slots[i]] = values[i];
+            }
+            return new LongPerfectHashMap(size, IntBuffer.wrap(pilots), LongBuffer.wrap(slotKeys),
+                                          LongBuffer.wrap(slotValues));
+        }
+
+        public static LongPerfectHashMap load(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() < HEADER_BYTES) {
+                    throw new IOException("Not a perfect-hash table: " + file);
+                }
+                ByteBuffer header = map(channel, 0, HEADER_BYTES);
+                int size = header.getInt(4);
+                int buckets = header.getInt(8);
+                if (header.getInt(0) != MAGIC || size < 0 || size > MAX_MAPPED_SIZE
+                    || buckets != PerfectHash.bucketCount(size)) {
+                    throw new IOException("Not a perfect-hash table: " + file);
+                }
+                long keysAt = keysOffset(buckets);
+                if (channel.size() != keysAt + 2L * Long.BYTES * size) {
+                    throw new IOException("Truncated perfect-hash table: " + file);
+                }
+                // The mappings stay valid after the channel is closed
+                return new LongPerfectHashMap(size,
+                        map(channel, HEADER_BYTES, (long) Integer.BYTES * buckets).asIntBuffer(),
+                        map(channel, keysAt, (long) Long.BYTES * size).asLongBuffer(),
+                        map(channel, keysAt + (long) Long.BYTES * size, (long) Long.BYTES * size).asLongBuffer());
+            }
+        }
+
+        private static ByteBuffer map(FileChannel channel, long position, long bytes) throws IOException {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private static long keysOffset(int buckets) {
+            return (HEADER_BYTES + (long) Integer.BYTES * buckets + 7) & ~7L;
+        }
+
+        public void writeTo(Path file) throws IOException {
+            if (size > MAX_MAPPED_SIZE) {
+                throw new IOException(size + " entries is too many to map back in");
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer chunk = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+                chunk.putInt(MAGIC).putInt(size).putInt(pilots.capacity()).putInt(0);
+                for (int i = 0; i < pilots.capacity(); i++) {
+                    chunk = ensure(channel, chunk, Integer.BYTES).putInt(pilots.get(i));
+                }
+                while (chunk.position() % Long.BYTES != 0) {
+                    chunk.put((byte) 0);
+                }
+                for (LongBuffer column : List.of(keys, values)) {
+                    for (int i = 0; i < size; i++) {
+                        chunk = ensure(channel, chunk, Long.BYTES).putLong(column.get(i));
+                    }
+                }
+                flush(channel, chunk);
+            }
+        }
+
+        private static ByteBuffer ensure(FileChannel channel, ByteBuffer chunk, int bytes) throws IOException {
+            if (chunk.remaining() < bytes) {
+                flush(channel, chunk);
+            }
+            return chunk;
+        }
+
+        private static void flush(FileChannel channel, ByteBuffer chunk) throws IOException {
+            chunk.flip();
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+            chunk.clear();
+        }
+
+        private int slotOf(long key) {
+            if (size == 0) {
+                return -1;
+            }
+            long hash = PerfectHash.mix(key);
+            int slot = PerfectHash.slot(hash, pilots.get(PerfectHash.bucket(hash, pilots.capacity())), size);
+            return keys.get(slot) == key ? slot : -1;
+        }
+
+        public long get(long key, long defaultValue) {
+            int slot = slotOf(key);
+            return slot < 0 ? defaultValue : values.get(slot);
+        }
+
+        public boolean containsKey(long key) {
+            return slotOf(key) >= 0;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isMapped() {
+            return keys.isDirect();
+        }
+    }
+}
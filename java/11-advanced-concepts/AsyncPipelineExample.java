@@ -0,0 +1,515 @@
+package advanced;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.*;
+
+/**
+ * This class demonstrates an asynchronous request pipeline built on CompletableFuture.
+ *
+ * MultithreadingExample.completableFutureExample() runs supplyAsync on the common
+ * pool and blocks with get(). That is fine for a demo, but under load blocking IO
+ * in the common pool starves every parallel stream in the JVM. Here each kind of
+ * work gets its own named, bounded executor, every stage has a timeout and an
+ * optional fallback, fan-out calls are joined with partial results, and a limiter
+ * caps the number of requests in flight. Each stage records how long tasks waited
+ * in the queue and how long they ran.
+ */
+public class AsyncPipelineExample {
+
+    public static void main(String[] args) throws Exception {
+        // Stages, timeouts, fallbacks, fan-in and limiting on single requests
+        asyncPipelineExample();
+
+        // Simulated 3-stage IO pipeline under load
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        loadTest(rate, seconds);
+    }
+
+    // Stages, timeouts, fallbacks, fan-in and limiting on single requests
+    private static void asyncPipelineExample() {
+        System.out.println("\n=== Async Pipeline ===");
+
+        StageExecutor cpu = StageExecutor.create("demo-cpu", 2, 100);
+        StageExecutor io = StageExecutor.create("demo-io", 4, 100);
+        try {
+            // Same chain as completableFutureExample(), on dedicated executors
+            Stage<String, String> fetch = Stage.of("fetch", io, (String key) -> {
+                sleepMillis(20);
+                return "Result for " + key;
+            });
+            Stage<String, String> transform = Stage.of("transform", cpu, (String value) -> value + " - transformed");
+            System.out.println(fetch.apply("a").thenCompose(transform::apply).join());
+
+            // A slow call times out and the fallback supplies a value instead
+            Stage<String, String> slow = Stage.of("slow", io, (String key) -> {
+                sleepMillis(200);
+                return "fresh " + key;
+            }).timeout(Duration.ofMillis(50)).fallback((key, error) -> "cached " + key + " (" + error.getClass().getSimpleName() + ")");
+            System.out.println("Slow call: " + slow.apply("b").join());
+
+            // Fan-out to three shards and keep whatever arrives within the deadline
+            List<CompletableFuture<String>> shards = List.of(
+                    fetch.apply("shard-1"),
+                    slow.timeout(Duration.ofSeconds(1)).fallback(null).apply("shard-2"),
+                    CompletableFuture.failedFuture(new IllegalStateException("shard-3 down")));
+            Partial<String> partial = Fanout.allOfPartial(shards, Duration.ofMillis(100)).join();
+            System.out.println("Fan-in: " + partial.values() + ", missing " + partial.missing() + " of " + partial.requested());
+
+            // The limiter sheds work beyond its permits instead of queueing it
+            ConcurrencyLimiter limiter = new ConcurrencyLimiter("demo", 2);
+            List<CompletableFuture<String>> calls = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                String key = "call-" + i;
+                calls.add(limiter.submit(() -> fetch.apply(key)));
+            }
+            for (CompletableFuture<String> call : calls) {
+                System.out.println("  " + call.handle((value, error) -> value != null ? value : "rejected: " + error.getMessage()).join());
+            }
+
+            System.out.println();
+            Stage.printHeader();
+            fetch.printStats();
+            transform.printStats();
+            slow.printStats();
+        } finally {
+            cpu.shutdown();
+            io.shutdown();
+        }
+    }
+
+    // Simulated 3-stage IO pipeline under load: fetch (IO) -> parse (CPU) -> enrich (fan-out IO)
+    private static void loadTest(int rate, int seconds) throws InterruptedException {
+        System.out.println("\n=== Load test: " + rate + " req/s for " + seconds + " s ("
+                           + Runtime.getRuntime().availableProcessors() + " CPUs) ===");
+
+        StageExecutor cpu = StageExecutor.create("cpu", Runtime.getRuntime().availableProcessors(), 10_000);
+        StageExecutor io = StageExecutor.create("io", 64, 50_000);
+        try {
+            // 1% of fetches hit a slow backend and fall back to a cached value
+            Stage<Integer, byte[]> fetch = Stage.of("fetch", io, (Integer id) -> {
+                simulateIo(id % 100 == 0 ? 20_000 : 200);
+                return payload(id);
+            }).timeout(Duration.ofMillis(5)).fallback((id, error) -> payload(0));
+
+            Stage<byte[], Integer> parse = Stage.of("parse", cpu, AsyncPipelineExample::checksum);
+
+            // Each shard lookup may time out; the request still succeeds with what arrived
+            Stage<Integer, Integer> shard = Stage.of("enrich-shard", io, (Integer key) -> {
+                simulateIo(key % 50 == 7 ? 10_000 : 150);
+                return key & 0xFF;
+            }).timeout(Duration.ofMillis(3));
+
+            ConcurrencyLimiter limiter = new ConcurrencyLimiter("requests", 4_096);
+            LatencyHistogram endToEnd = new LatencyHistogram();
+            LongAdder succeeded = new LongAdder();
+            LongAdder failed = new LongAdder();
+            LongAdder partialResults = new LongAdder();
+
+            Function<Integer, CompletableFuture<Integer>> request = id -> fetch.apply(id)
+                    .thenCompose(parse::apply)
+                    .thenCompose(sum -> Fanout.allOfPartial(List.of(
+                            shard.apply(sum), shard.apply(sum + 1), shard.apply(sum + 2)), Duration.ofMillis(4)))
+                    .thenApply(result -> {
+                        if (result.missing() > 0) {
+                            partialResults.increment();
+                        }
+                        int total = 0;
+                        for (int value : result.values()) {
+                            total += value;
+                        }
+                        return total;
+                    });
+
+            // Open-loop generator: requests are due on a fixed schedule whether or not earlier ones finished
+            long intervalNanos = 1_000_000_000L / rate;
+            long start = System.nanoTime();
+            long end = start + seconds * 1_000_000_000L;
+            int sent = 0;
+            long next = start;
+            while (next < end) {
+                long now = System.nanoTime();
+                if (now < next) {
+                    LockSupport.parkNanos(Math.min(next - now, 1_000_000));
+                    continue;
+                }
+                // Catch up on everything due by now, as a real client backlog would
+                while (next <= now && next < end) {
+                    long issued = next;
+                    int id = sent++;
+                    limiter.submit(() -> request.apply(id)).whenComplete((value, error) -> {
+                        endToEnd.record(System.nanoTime() - issued);
+                        if (error == null) {
+                            succeeded.increment();
+                        } else {
+                            failed.increment();
+                        }
+                    });
+                    next += intervalNanos;
+                }
+            }
+            boolean drained = limiter.awaitIdle(Duration.ofSeconds(10));
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("Sent %d, succeeded %d, failed %d, shed by limiter %d, partial fan-in %d%s%n",
+                              sent, succeeded.sum(), failed.sum(), limiter.shed(), partialResults.sum(),
+                              drained ? "" : " (not drained)");
+            System.out.printf("Throughput %.0f req/s, end-to-end p50 %s p99 %s p99.9 %s%n",
+                              succeeded.sum() / elapsed, LatencyHistogram.format(endToEnd.percentile(50)),
+                              LatencyHistogram.format(endToEnd.percentile(99)), LatencyHistogram.format(endToEnd.percentile(99.9)));
+            System.out.println();
+            Stage.printHeader();
+            fetch.printStats();
+            parse.printStats();
+            shard.printStats();
+            System.out.println();
+            System.out.printf("Executor %-6s threads %d, rejected %d%n", cpu.name(), cpu.threads(), cpu.rejected());
+            System.out.printf("Executor %-6s threads %d, rejected %d%n", io.name(), io.threads(), io.rejected());
+        } finally {
+            cpu.shutdown();
+            io.shutdown();
+        }
+    }
+
+    private static byte[] payload(int id) {
+        byte[] bytes = new byte[64];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (id * 31 + i);
+        }
+        return bytes;
+    }
+
+    private static int checksum(byte[] bytes) {
+        int h = 1;
+        for (byte b : bytes) {
+            h = h * 31 + b;
+        }
+        return h & 0x7FFF_FFFF;
+    }
+
+    // Blocks the calling thread the way a socket read would
+    private static void simulateIo(long micros) {
+        LockSupport.parkNanos(micros * 1_000);
+    }
+
+    private static void sleepMillis(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A named thread pool with a bounded queue.
+     * Tasks record how long they waited in the queue and how long they ran;
+     * a task whose future already completed (for example, by timeout) while it
+     * was queued is skipped instead of run.
+     */
+    static final class StageExecutor {
+        private final String name;
+        private final ThreadPoolExecutor pool;
+        private final LongAdder rejected = new LongAdder();
+
+        private StageExecutor(String name, ThreadPoolExecutor pool) {
+            this.name = name;
+            this.pool = pool;
+        }
+
+        public static StageExecutor create(String name, int threads, int queueCapacity) {
+            AtomicInteger counter = new AtomicInteger();
+            ThreadFactory factory = runnable -> {
+                Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), factory, new ThreadPoolExecutor.AbortPolicy());
+            pool.prestartAllCoreThreads();
+            return new StageExecutor(name, pool);
+        }
+
+        <T> CompletableFuture<T> submit(Supplier<T> work, LatencyHistogram queueWait, LatencyHistogram execution) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            long enqueued = System.nanoTime();
+            try {
+                pool.execute(() -> {
+                    long started = System.nanoTime();
+                    queueWait.record(started - enqueued);
+                    if (future.isDone()) {
+                        return;
+                    }
+                    try {
+                        future.complete(work.get());
+                    } catch (Throwable t) {
+                        future.completeExceptionally(t);
+                    } finally {
+                        execution.record(System.nanoTime() - started);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public int threads() {
+            return pool.getMaximumPoolSize();
+        }
+
+        public long rejected() {
+            return rejected.sum();
+        }
+
+        public void shutdown() {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * One step of a pipeline: a function run on a given executor, with an
+     * optional timeout and an optional fallback for failures and timeouts.
+     * Stages are immutable; timeout() and fallback() return configured copies
+     * that share the same statistics.
+     */
+    static final class Stage<I, O> {
+        private final String name;
+        private final StageExecutor executor;
+        private final Function<I, O> work;
+        private final Duration timeout;
+        private final BiFunction<I, Throwable, O> fallback;
+        private final Stats stats;
+
+        private Stage(String name, StageExecutor executor, Function<I, O> work, Duration timeout,
+                      BiFunction<I, Throwable, O> fallback, Stats stats) {
+            this.name = name;
+            this.executor = executor;
+            this.work = work;
+            this.timeout = timeout;
+            this.fallback = fallback;
+            this.stats = stats;
+        }
+
+        public static <I, O> Stage<I, O> of(String name, StageExecutor executor, Function<I, O> work) {
+            return new Stage<>(name, executor, work, null, null, new Stats());
+        }
+
+        public Stage<I, O> timeout(Duration timeout) {
+            return new Stage<>(name, executor, work, timeout, fallback, stats);
+        }
+
+        public Stage<I, O> fallback(BiFunction<I, Throwable, O> fallback) {
+            return new Stage<>(name, executor, work, timeout, fallback, stats);
+        }
+
+        public CompletableFuture<O> apply(I input) {
+            CompletableFuture<O> future = executor.submit(() -> work.apply(input), stats.queueWait, stats.execution);
+            if (timeout != null) {
+                future.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            }
+            return future.handle((value, error) -> {
+                if (error == null) {
+                    stats.succeeded.increment();
+                    return value;
+                }
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause instanceof TimeoutException) {
+                    stats.timedOut.increment();
+                } else {
+                    stats.failed.increment();
+                }
+                if (fallback == null) {
+                    throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(cause);
+                }
+                stats.fallbacks.increment();
+                return fallback.apply(input, cause);
+            });
+        }
+
+        static void printHeader() {
+            System.out.printf("%-14s %9s %8s %7s %9s %11s %11s %11s %11s%n", "stage", "ok", "timeout", "failed",
+                              "fallback", "wait p50", "wait p99", "exec p50", "exec p99");
+        }
+
+        void printStats() {
+            System.out.printf("%-14s %9d %8d %7d %9d %11s %11s %11s %11s%n", name,
+                              stats.succeeded.sum(), stats.timedOut.sum(), stats.failed.sum(), stats.fallbacks.sum(),
+                              LatencyHistogram.format(stats.queueWait.percentile(50)),
+                              LatencyHistogram.format(stats.queueWait.percentile(99)),
+                              LatencyHistogram.format(stats.execution.percentile(50)),
+                              LatencyHistogram.format(stats.execution.percentile(99)));
+        }
+
+        private static final class Stats {
+            final LatencyHistogram queueWait = new LatencyHistogram();
+            final LatencyHistogram execution = new LatencyHistogram();
+            final LongAdder succeeded = new LongAdder();
+            final LongAdder timedOut = new LongAdder();
+            final LongAdder failed = new LongAdder();
+            final LongAdder fallbacks = new LongAdder();
+        }
+    }
+
+    /**
+     * Result of a fan-out: the values that arrived, in request order, and how many did not.
+     */
+    record Partial<T>(List<T> values, int requested) {
+        public int missing() {
+            return requested - values.size();
+        }
+    }
+
+    /**
+     * Fan-out/fan-in helpers.
+     */
+    static final class Fanout {
+        private static final Object MISSING = new Object();
+
+        private Fanout() {
+        }
+
+        /**
+         * Waits for all futures, but never longer than the deadline, and never fails:
+         * futures that fail or are still running at the deadline are left out.
+         * The given futures are not modified.
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public static <T> CompletableFuture<Partial<T>> allOfPartial(List<CompletableFuture<T>> futures, Duration deadline) {
+            long nanos = deadline.toNanos();
+            CompletableFuture<Object>[] settled = new CompletableFuture[futures.size()];
+            for (int i = 0; i < settled.length; i++) {
+                settled[i] = futures.get(i).copy()
+                        .orTimeout(nanos, TimeUnit.NANOSECONDS)
+                        .handle((value, error) -> error == null ? value : MISSING);
+            }
+            return CompletableFuture.allOf(settled).thenApply(ignored -> {
+                List<T> values = new ArrayList<>(settled.length);
+                for (CompletableFuture<Object> future : settled) {
+                    Object value = future.join();
+                    if (value != MISSING) {
+                        values.add((T) value);
+                    }
+                }
+                return new Partial<>(values, settled.length);
+            });
+        }
+    }
+
+    /**
+     * Caps the number of requests in flight. A request over the limit fails
+     * immediately with RejectedExecutionException rather than waiting, so an
+     * overloaded pipeline sheds load instead of growing its queues.
+     */
+    static final class ConcurrencyLimiter {
+        private final String name;
+        private final int limit;
+        private final Semaphore permits;
+        private final LongAdder shed = new LongAdder();
+
+        ConcurrencyLimiter(String name, int limit) {
+            this.name = name;
+            this.limit = limit;
+            this.permits = new Semaphore(limit);
+        }
+
+        public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> request) {
+            if (!permits.tryAcquire()) {
+                shed.increment();
+                return CompletableFuture.failedFuture(new RejectedExecutionException(name + " limit of " + limit + " reached"));
+            }
+            CompletableFuture<T> future;
+            try {
+                future = request.get();
+            } catch (Throwable t) {
+                permits.release();
+                return CompletableFuture.failedFuture(t);
+            }
+            future.whenComplete((value, error) -> permits.release());
+            return future;
+        }
+
+        public long shed() {
+            return shed.sum();
+        }
+
+        // Waits until every admitted request has completed
+        public boolean awaitIdle(Duration timeout) throws InterruptedException {
+            if (permits.tryAcquire(limit, timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                permits.release(limit);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Lock-free latency histogram with log-linear buckets (8 per power of two,
+     * so percentiles are accurate to about 12%).
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BITS = 3;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(64 << SUB_BITS);
+
+        public void record(long nanos) {
+            counts.incrementAndGet(index(Math.max(0, nanos)));
+        }
+
+        private static int index(long value) {
+            if (value < 2 * SUB_COUNT) {
+                return (int) value;
+            }
+            int msb = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (msb - SUB_BITS)) & (SUB_COUNT - 1);
+            return ((msb - SUB_BITS + 1) << SUB_BITS) + sub;
+        }
+
+        // Lowest value that falls into the given bucket
+        private static long lowerBound(int index) {
+            if (index < 2 * SUB_COUNT) {
+                return index;
+            }
+            int bucket = index >>> SUB_BITS;
+            int sub = index & (SUB_COUNT - 1);
+            return (long) (SUB_COUNT + sub) << (bucket - 1);
+        }
+
+        public long percentile(double percent) {
+            long total = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                total += counts.get(i);
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percent / 100.0);
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return lowerBound(i);
+                }
+            }
+            return lowerBound(counts.length() - 1);
+        }
+
+        static String format(long nanos) {
+            if (nanos < 1_000_000) {
+                return String.format("%.1f us", nanos / 1e3);
+            }
+            return String.format("%.2f ms", nanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,760 @@
+package advanced;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * This class demonstrates a small, reusable pipeline engine with stage fusion.
+ *
+ * A Stream pipeline is built anew for every run and passes each element through
+ * one Sink per intermediate operation. IntPipeline describes the operations once
+ * and compiles them into a short list of phases:
+ *   - runs of map/filter are fused into a single kernel applied in one loop
+ *   - limit stops that loop as soon as enough elements have been produced
+ *   - sorted().limit(k) becomes a bounded top-k heap instead of a full sort
+ *   - distinct() on data known to be sorted only compares neighbours
+ *   - other distinct() calls use a primitive int hash set, no boxing
+ * A compiled pipeline is immutable and can be applied to any number of inputs.
+ */
+public class FusedPipelineExample {
+
+    public static void main(String[] args) {
+        // Building and reusing pipelines
+        pipelineExample();
+
+        // Element count can be changed from the command line
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        benchmark(count);
+    }
+
+    // Building and reusing pipelines
+    private static void pipelineExample() {
+        System.out.println("\n=== Fused Pipelines ===");
+
+        IntPipeline evenSquares = IntPipeline.create()
+                .filter(n -> n % 2 == 0)
+                .map(n -> n * n)
+                .filter(n -> n > 10)
+                .limit(3);
+        System.out.println("Plan: " + evenSquares.explain());
+        System.out.println("1..20: " + Arrays.toString(evenSquares.apply(IntStream.rangeClosed(1, 20).toArray())));
+        System.out.println("Reused on 100..120: " + Arrays.toString(evenSquares.apply(IntStream.rangeClosed(100, 120).toArray())));
+
+        IntPipeline smallestDistinct = IntPipeline.create().sorted().distinct().limit(4);
+        System.out.println("Plan: " + smallestDistinct.explain());
+        System.out.println("Smallest distinct: " + Arrays.toString(smallestDistinct.apply(new int[] {9, 3, 7, 3, 1, 9, 1, 5})));
+
+        IntPipeline topThree = IntPipeline.create().sorted().limit(3);
+        System.out.println("Plan: " + topThree.explain());
+        System.out.println("Top three: " + Arrays.toString(topThree.apply(new int[] {9, 3, 7, 3, 1, 9, 1, 5})));
+
+        // Object source, same query shapes as LambdaAndStreamExample.streamCollectors()
+        List<Person> people = Arrays.asList(
+                new Person("Alice", 25),
+                new Person("Bob", 30),
+                new Person("Charlie", 35),
+                new Person("David", 25),
+                new Person("Eve", 30)
+        );
+        IntPipeline agesOver28 = ObjPipeline.<Person>create()
+                .filter(p -> p.getAge() > 28)
+                .mapToInt(Person::getAge)
+                .distinct()
+                .sorted();
+        System.out.println("Plan: " + agesOver28.explain());
+        System.out.println("Distinct ages over 28: " + Arrays.toString(agesOver28.apply(people)));
+
+        IntPipeline nameLengths = ObjPipeline.<Person>create()
+                .map(Person::getName)
+                .filter(name -> name.length() > 3)
+                .mapToInt(String::length);
+        System.out.println("Name lengths over 3: " + Arrays.toString(nameLengths.apply(people)));
+    }
+
+    // IntPipeline vs Stream on integer and Person queries
+    private static void benchmark(int count) {
+        System.out.println("\n=== Benchmark: " + count + " elements ===");
+
+        int[] numbers = new Random(42).ints(count, 0, 1_000_000).toArray();
+        String[] names = {"Alice", "Bob", "Charlie", "David", "Eve", "Frank", "Grace", "Heidi"};
+        Random random = new Random(7);
+        List<Person> people = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            people.add(new Person(names[i & 7], 18 + random.nextInt(70)));
+        }
+
+        // map/filter chain
+        IntPipeline chain = IntPipeline.create().filter(n -> n % 3 == 0).map(n -> n * 2).filter(n -> n > 1000).map(n -> n + 1);
+        runBenchmark("map/filter chain: IntStream", count, () ->
+                IntStream.of(numbers).filter(n -> n % 3 == 0).map(n -> n * 2).filter(n -> n > 1000).map(n -> n + 1).toArray().length);
+        runBenchmark("map/filter chain: IntPipeline", count, () -> chain.apply(numbers).length);
+
+        // sorted + limit
+        IntPipeline smallest = IntPipeline.create().filter(n -> n % 3 == 0).sorted().limit(100);
+        runBenchmark("filter.sorted.limit(100): IntStream", count, () ->
+                IntStream.of(numbers).filter(n -> n % 3 == 0).sorted().limit(100).toArray()[99]);
+        runBenchmark("filter.sorted.limit(100): IntPipeline", count, () -> smallest.apply(numbers)[99]);
+
+        // sorted + distinct
+        IntPipeline sortedDistinct = IntPipeline.create().map(n -> n / 10).sorted().distinct();
+        runBenchmark("map.sorted.distinct: IntStream", count, () ->
+                IntStream.of(numbers).map(n -> n / 10).sorted().distinct().toArray().length);
+        runBenchmark("map.sorted.distinct: IntPipeline", count, () -> sortedDistinct.apply(numbers).length);
+
+        // Person queries
+        IntPipeline ages = ObjPipeline.<Person>create().filter(p -> p.getAge() > 28).mapToInt(Person::getAge).distinct().sorted();
+        runBenchmark("Person ages distinct sorted: Stream", count, () ->
+                people.stream().filter(p -> p.getAge() > 28).map(Person::getAge).distinct().sorted()
+                      .collect(Collectors.toList()).size());
+        runBenchmark("Person ages distinct sorted: IntPipeline", count, () -> ages.apply(people).length);
+
+        IntPipeline firstLongNames = ObjPipeline.<Person>create().map(Person::getName)
+                .filter(name -> name.length() > 4).mapToInt(String::length).limit(1000);
+        runBenchmark("Person name lengths limit: Stream", count, () ->
+                people.stream().map(Person::getName).filter(name -> name.length() > 4).map(String::length)
+                      .limit(1000).collect(Collectors.toList()).size());
+        runBenchmark("Person name lengths limit: IntPipeline", count, () -> firstLongNames.apply(people).length);
+    }
+
+    // Best of five rounds after three warm-up rounds
+    private static void runBenchmark(String name, int count, IntSupplier body) {
+        long checksum = 0;
+        for (int i = 0; i < 3; i++) {
+            checksum += body.getAsInt();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            checksum += body.getAsInt();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-42s %8.2f ms  (checksum %d)%n", name, best / 1e6, checksum & 0xFFFF);
+    }
+
+    /**
+     * Fused map/filter step over ints. Returns the mapped value in the low
+     * 32 bits, or REJECT when a filter drops the element.
+     */
+    @FunctionalInterface
+    interface IntKernel {
+        long REJECT = Long.MIN_VALUE;
+
+        long apply(int value);
+    }
+
+    /**
+     * Fused map/filter step over objects. Returns REJECT when a filter drops the element.
+     */
+    @FunctionalInterface
+    interface ObjKernel {
+        Object REJECT = new Object();
+
+        Object apply(Object value);
+    }
+
+    /**
+     * Pipeline over objects that ends in mapToInt, handing over to an IntPipeline.
+     */
+    static final class ObjPipeline<T> {
+        private final List<Object> ops;
+
+        private ObjPipeline(List<Object> ops) {
+            this.ops = ops;
+        }
+
+        public static <T> ObjPipeline<T> create() {
+            return new ObjPipeline<>(List.of());
+        }
+
+        public ObjPipeline<T> filter(Predicate<? super T> predicate) {
+            return new ObjPipeline<>(append(ops, predicate));
+        }
+
+        public <R> ObjPipeline<R> map(Function<? super T, ? extends R> mapper) {
+            return new ObjPipeline<>(append(ops, mapper));
+        }
+
+        @SuppressWarnings("unchecked")
+        public IntPipeline mapToInt(ToIntFunction<? super T> mapper) {
+            return new IntPipeline(new ObjSource(fuse(ops), (ToIntFunction<Object>) mapper, ops.size()), List.of());
+        }
+
+        // Adjacent maps and filters collapse first, then the runs are chained into one kernel
+        @SuppressWarnings("unchecked")
+        private static ObjKernel fuse(List<Object> ops) {
+            ObjKernel kernel = null;
+            for (int i = 0; i < ops.size(); ) {
+                ObjKernel step;
+                if (ops.get(i) instanceof Predicate) {
+                    Predicate<Object> predicate = (Predicate<Object>) ops.get(i++);
+                    while (i < ops.size() && ops.get(i) instanceof Predicate) {
+                        predicate = predicate.and((Predicate<Object>) ops.get(i++));
+                    }
+                    Predicate<Object> test = predicate;
+                    step = value -> test.test(value) ? value : ObjKernel.REJECT;
+                } else {
+                    Function<Object, Object> function = (Function<Object, Object>) ops.get(i++);
+                    while (i < ops.size() && ops.get(i) instanceof Function) {
+                        function = function.andThen((Function<Object, Object>) ops.get(i++));
+                    }
+                    Function<Object, Object> map = function;
+                    step = map::apply;
+                }
+                kernel = kernel == null ? step : chain(kernel, step);
+            }
+            return kernel;
+        }
+
+        private static ObjKernel chain(ObjKernel first, ObjKernel second) {
+            return value -> {
+                Object result = first.apply(value);
+                return result == ObjKernel.REJECT ? result : second.apply(result);
+            };
+        }
+    }
+
+    private static final class ObjSource {
+        final ObjKernel kernel; // null when there are no object stages
+        final ToIntFunction<Object> toInt;
+        final int stages;
+
+        ObjSource(ObjKernel kernel, ToIntFunction<Object> toInt, int stages) {
+            this.kernel = kernel;
+            this.toInt = toInt;
+            this.stages = stages;
+        }
+    }
+
+    private static List<Object> append(List<Object> ops, Object op) {
+        List<Object> copy = new ArrayList<>(ops);
+        copy.add(op);
+        return Collections.unmodifiableList(copy);
+    }
+
+    private enum OpKind { MAP, FILTER, DISTINCT, SORTED, LIMIT }
+
+    private static final class Op {
+        final OpKind kind;
+        final Object function;
+        final long limit;
+
+        Op(OpKind kind, Object function, long limit) {
+            this.kind = kind;
+            this.function = function;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * Immutable description of an int pipeline. Every operation returns a new
+     * pipeline; the plan is compiled on first use and cached.
+     */
+    static final class IntPipeline {
+        private final ObjSource source;
+        private final List<Op> ops;
+        private volatile Plan plan;
+
+        private IntPipeline(ObjSource source, List<Op> ops) {
+            this.source = source;
+            this.ops = ops;
+        }
+
+        public static IntPipeline create() {
+            return new IntPipeline(null, List.of());
+        }
+
+        public IntPipeline map(IntUnaryOperator mapper) {
+            return with(new Op(OpKind.MAP, mapper, 0));
+        }
+
+        public IntPipeline filter(IntPredicate predicate) {
+            return with(new Op(OpKind.FILTER, predicate, 0));
+        }
+
+        public IntPipeline distinct() {
+            return with(new Op(OpKind.DISTINCT, null, 0));
+        }
+
+        public IntPipeline sorted() {
+            return with(new Op(OpKind.SORTED, null, 0));
+        }
+
+        public IntPipeline limit(long maxSize) {
+            if (maxSize < 0) {
+                throw new IllegalArgumentException("maxSize must not be negative: " + maxSize);
+            }
+            return with(new Op(OpKind.LIMIT, null, maxSize));
+        }
+
+        public int[] apply(int[] input) {
+            if (source != null) {
+                throw new IllegalStateException("Pipeline starts from objects; use apply(List)");
+            }
+            return plan().run(input, input.length);
+        }
+
+        public int[] apply(List<?> input) {
+            if (source == null) {
+                throw new IllegalStateException("Pipeline starts from ints; use apply(int[])");
+            }
+            return plan().run(input);
+        }
+
+        public String explain() {
+            return plan().toString();
+        }
+
+        private IntPipeline with(Op op) {
+            List<Op> copy = new ArrayList<>(ops);
+            copy.add(op);
+            return new IntPipeline(source, Collections.unmodifiableList(copy));
+        }
+
+        private Plan plan() {
+            Plan result = plan;
+            if (result == null) {
+                result = Plan.compile(source, ops);
+                plan = result;
+            }
+            return result;
+        }
+    }
+
+    private enum DistinctMode { NONE, ADJACENT, HASH }
+
+    /**
+     * Compiled form: a list of phases, each a single pass over an int[].
+     */
+    private static final class Plan {
+        private final ObjSource source;
+        private final List<Phase> phases;
+
+        private Plan(ObjSource source, List<Phase> phases) {
+            this.source = source;
+            this.phases = phases;
+        }
+
+        static Plan compile(ObjSource source, List<Op> ops) {
+            List<Phase> phases = new ArrayList<>();
+            StreamPhase current = new StreamPhase();
+            boolean sorted = false;
+
+            for (int i = 0; i < ops.size(); i++) {
+                Op op = ops.get(i);
+                switch (op.kind) {
+                    case MAP:
+                    case FILTER:
+                        // Elements after a limit or distinct must see the reduced stream, so start a new loop
+                        if (current.distinct != DistinctMode.NONE || current.limit != Long.MAX_VALUE) {
+                            current = flush(phases, current);
+                        }
+                        current.add(op);
+                        sorted &= op.kind == OpKind.FILTER;
+                        break;
+                    case DISTINCT:
+                        if (current.distinct != DistinctMode.NONE || current.limit != Long.MAX_VALUE) {
+                            current = flush(phases, current);
+                        }
+                        current.distinct = sorted ? DistinctMode.ADJACENT : DistinctMode.HASH;
+                        break;
+                    case SORTED:
+                        current = flush(phases, current);
+                        if (i + 1 < ops.size() && ops.get(i + 1).kind == OpKind.LIMIT) {
+                            // Push the limit into the sort: keep only the k smallest
+                            phases.add(new SortPhase(ops.get(++i).limit));
+                        } else {
+                            phases.add(new SortPhase(Long.MAX_VALUE));
+                        }
+                        sorted = true;
+                        break;
+                    case LIMIT:
+                        current.limit = Math.min(current.limit, op.limit);
+                        break;
+                    default:
+                        throw new AssertionError(op.kind);
+                }
+            }
+            flush(phases, current);
+
+            // An object source always needs a first loop to convert to ints
+            if (source != null && (phases.isEmpty() || !(phases.get(0) instanceof StreamPhase))) {
+                phases.add(0, new StreamPhase());
+            }
+            return new Plan(source, List.copyOf(phases));
+        }
+
+        private static StreamPhase flush(List<Phase> phases, StreamPhase current) {
+            if (!current.isEmpty()) {
+                phases.add(current);
+                return new StreamPhase();
+            }
+            return current;
+        }
+
+        int[] run(List<?> input) {
+            StreamPhase first = (StreamPhase) phases.get(0);
+            IntBuffer out = first.runObjects(input, source);
+            return runFrom(1, out.values, out.size);
+        }
+
+        int[] run(int[] input, int length) {
+            return runFrom(0, input, length);
+        }
+
+        private int[] runFrom(int phaseIndex, int[] values, int length) {
+            boolean owned = phaseIndex > 0; // never modify the caller's array
+            for (int i = phaseIndex; i < phases.size(); i++) {
+                IntBuffer out = phases.get(i).run(values, length, owned);
+                values = out.values;
+                length = out.size;
+                owned = true;
+            }
+            return values.length == length && owned ? values : Arrays.copyOf(values, length);
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(" -> ");
+            if (source != null) {
+                joiner.add("objects(" + source.stages + " fused ops, mapToInt)");
+            }
+            for (Phase phase : phases) {
+                joiner.add(phase.toString());
+            }
+            return joiner.toString();
+        }
+    }
+
+    private static final class IntBuffer {
+        int[] values;
+        int size;
+
+        IntBuffer(int capacity) {
+            values = new int[Math.max(16, capacity)];
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private interface Phase {
+        IntBuffer run(int[] input, int length, boolean owned);
+    }
+
+    /**
+     * One loop: fused kernel, then optional distinct, then optional limit.
+     */
+    private static final class StreamPhase implements Phase {
+        private final List<Op> ops = new ArrayList<>();
+        private IntKernel kernel;
+        DistinctMode distinct = DistinctMode.NONE;
+        long limit = Long.MAX_VALUE;
+
+        // Only called while compiling, before the plan is published
+        void add(Op op) {
+            ops.add(op);
+            kernel = fuse(ops);
+        }
+
+        boolean isEmpty() {
+            return ops.isEmpty() && distinct == DistinctMode.NONE && limit == Long.MAX_VALUE;
+        }
+
+        @Override
+        public IntBuffer run(int[] input, int length, boolean owned) {
+            IntKernel k = kernel;
+            IntBuffer out = new IntBuffer(limit < length ? (int) limit : (k == null ? length : length / 4));
+            Emitter emitter = new Emitter(out, distinct, limit);
+            if (emitter.done()) {
+                return out;
+            }
+            if (k == null) {
+                for (int i = 0; i < length; i++) {
+                    if (emitter.emit(input[i])) {
+                        break;
+                    }
+                }
+            } else {
+                for (int i = 0; i < length; i++) {
+                    long result = k.apply(input[i]);
+                    if (result != IntKernel.REJECT && emitter.emit((int) result)) {
+                        break;
+                    }
+                }
+            }
+            return out;
+        }
+
+        IntBuffer runObjects(List<?> input, ObjSource source) {
+            IntKernel k = kernel;
+            ObjKernel objectKernel = source.kernel;
+            ToIntFunction<Object> toInt = source.toInt;
+            int length = input.size();
+            IntBuffer out = new IntBuffer(limit < length ? (int) limit : length / 4);
+            Emitter emitter = new Emitter(out, distinct, limit);
+            if (emitter.done()) {
+                return out;
+            }
+            for (int i = 0; i < length; i++) {
+                Object value = input.get(i);
+                if (objectKernel != null) {
+                    value = objectKernel.apply(value);
+                    if (value == ObjKernel.REJECT) {
+                        continue;
+                    }
+                }
+                int intValue = toInt.applyAsInt(value);
+                if (k != null) {
+                    long result = k.apply(intValue);
+                    if (result == IntKernel.REJECT) {
+                        continue;
+                    }
+                    intValue = (int) result;
+                }
+                if (emitter.emit(intValue)) {
+                    break;
+                }
+            }
+            return out;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static IntKernel fuse(List<Op> ops) {
+            IntKernel kernel = null;
+            for (int i = 0; i < ops.size(); ) {
+                IntKernel step;
+                if (ops.get(i).kind == OpKind.FILTER) {
+                    IntPredicate predicate = (IntPredicate) ops.get(i++).function;
+                    while (i < ops.size() && ops.get(i).kind == OpKind.FILTER) {
+                        predicate = predicate.and((IntPredicate) ops.get(i++).function);
+                    }
+                    IntPredicate test = predicate;
+                    if (i < ops.size()) {
+                        // filter-then-map is the most common shape; one kernel saves a level of dispatch
+                        IntUnaryOperator operator = (IntUnaryOperator) ops.get(i++).function;
+                        while (i < ops.size() && ops.get(i).kind == OpKind.MAP) {
+                            operator = operator.andThen((IntUnaryOperator) ops.get(i++).function);
+                        }
+                        IntUnaryOperator map = operator;
+                        step = value -> test.test(value) ? map.applyAsInt(value) : IntKernel.REJECT;
+                    } else {
+                        step = value -> test.test(value) ? value : IntKernel.REJECT;
+                    }
+                } else {
+                    IntUnaryOperator operator = (IntUnaryOperator) ops.get(i++).function;
+                    while (i < ops.size() && ops.get(i).kind == OpKind.MAP) {
+                        operator = operator.andThen((IntUnaryOperator) ops.get(i++).function);
+                    }
+                    IntUnaryOperator map = operator;
+                    step = map::applyAsInt;
+                }
+                kernel = kernel == null ? step : chain(kernel, step);
+            }
+            return kernel;
+        }
+
+        private static IntKernel chain(IntKernel first, IntKernel second) {
+            return value -> {
+                long result = first.apply(value);
+                return result == IntKernel.REJECT ? result : second.apply((int) result);
+            };
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("loop(");
+            sb.append(ops.size()).append(" fused ops");
+            if (distinct != DistinctMode.NONE) {
+                sb.append(", distinct=").append(distinct);
+            }
+            if (limit != Long.MAX_VALUE) {
+                sb.append(", stop after ").append(limit);
+            }
+            return sb.append(')').toString();
+        }
+    }
+
+    /**
+     * Applies distinct and limit to elements leaving a loop.
+     */
+    private static final class Emitter {
+        private final IntBuffer out;
+        private final DistinctMode distinct;
+        private final long limit;
+        private final IntHashSet seen;
+        private boolean hasPrevious;
+        private int previous;
+
+        Emitter(IntBuffer out, DistinctMode distinct, long limit) {
+            this.out = out;
+            this.distinct = distinct;
+            this.limit = limit;
+            this.seen = distinct == DistinctMode.HASH ? new IntHashSet() : null;
+        }
+
+        boolean done() {
+            return out.size >= limit;
+        }
+
+        // Returns true once the limit is reached and the loop can stop
+        boolean emit(int value) {
+            if (distinct == DistinctMode.ADJACENT) {
+                if (hasPrevious && previous == value) {
+                    return false;
+                }
+                hasPrevious = true;
+                previous = value;
+            } else if (distinct == DistinctMode.HASH && !seen.add(value)) {
+                return false;
+            }
+            out.add(value);
+            return out.size >= limit;
+        }
+    }
+
+    /**
+     * Full sort, or a bounded max-heap of the k smallest values when a limit follows.
+     */
+    private static final class SortPhase implements Phase {
+        private final long limit;
+
+        SortPhase(long limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public IntBuffer run(int[] input, int length, boolean owned) {
+            IntBuffer out = new IntBuffer(0);
+            if (limit >= length) {
+                out.values = owned ? input : Arrays.copyOf(input, length);
+                out.size = length;
+                Arrays.sort(out.values, 0, length);
+                return out;
+            }
+
+            int k = (int) limit;
+            int[] heap = new int[k];
+            int size = 0;
+            for (int i = 0; i < length; i++) {
+                int value = input[i];
+                if (size < k) {
+                    heap[size] = value;
+                    siftUp(heap, size++);
+                } else if (k > 0 && value < heap[0]) {
+                    heap[0] = value;
+                    siftDown(heap, k);
+                }
+            }
+            Arrays.sort(heap, 0, size);
+            out.values = heap;
+            out.size = size;
+            return out;
+        }
+
+        private static void siftUp(int[] heap, int index) {
+            int value = heap[index];
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (heap[parent] >= value) {
+                    break;
+                }
+                heap[index] = heap[parent];
+                index = parent;
+            }
+            heap[index] = value;
+        }
+
+        private static void siftDown(int[] heap, int size) {
+            int index = 0;
+            int value = heap[0];
+            int half = size >>> 1;
+            while (index < half) {
+                int child = 2 * index + 1;
+                if (child + 1 < size && heap[child + 1] > heap[child]) {
+                    child++;
+                }
+                if (value >= heap[child]) {
+                    break;
+                }
+                heap[index] = heap[child];
+                index = child;
+            }
+            heap[index] = value;
+        }
+
+        @Override
+        public String toString() {
+            return limit == Long.MAX_VALUE ? "sort" : "top-" + limit + " heap";
+        }
+    }
+
+    /**
+     * Open-addressing set of ints used by hash-based distinct.
+     */
+    private static final class IntHashSet {
+        private int[] keys = new int[64];
+        private boolean[] used = new boolean[64];
+        private int size;
+
+        boolean add(int key) {
+            int mask = keys.length - 1;
+            // HashMap-style spread: dense small keys (ages, ids) land in distinct slots,
+            // which keeps probe lengths, and branch mispredictions, low
+            int slot = (key ^ (key >>> 16)) & mask;
+            while (used[slot]) {
+                if (keys[slot] == key) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            used[slot] = true;
+            keys[slot] = key;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+            return true;
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            boolean[] oldUsed = used;
+            keys = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    add(oldKeys[i]);
+                }
+            }
+        }
+    }
+
+    // Person class for pipeline examples
+    static class Person {
+        private String name;
+        private int age;
+
+        public Person(String name, int age) {
+            this.name = name;
+            this.age = age;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        @Override
+        public String toString() {
+            return name + "(" + age + ")";
+        }
+    }
+}
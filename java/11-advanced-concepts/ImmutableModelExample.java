@@ -0,0 +1,635 @@
+package advanced;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.IntStream;
+
+/**
+ * This class demonstrates immutable domain objects that share structure
+ * instead of copying it.
+ *
+ * EncapsulationExample.Employee protects its mutable Address by copying it
+ * in the constructor, in setAddress() and in every getAddress(), so each
+ * read allocates. When Address and Employee are immutable there is nothing
+ * to protect: getters return the shared instance, and a change builds a new
+ * version that reuses every unchanged field, including the Address itself.
+ * Employees are stored in an EmployeeDirectory of fixed-size pages, so a
+ * batch update copies only the pages it touches and the previous version
+ * stays valid as a snapshot.
+ */
+public class ImmutableModelExample {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final String[] CITIES = {"Anytown", "Newtown", "Springfield", "Riverside", "Fairview"};
+
+    public static void main(String[] args) {
+        // Builders, withers and shared instances
+        immutableModelExample();
+
+        // Employee count can be raised from the command line, e.g. 5000000 with a large -Xmx
+        int employees = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        readHeavyBenchmark(employees);
+        batchUpdateBenchmark(employees);
+    }
+
+    // Builders, withers and shared instances
+    private static void immutableModelExample() {
+        System.out.println("\n=== Immutable Employee and Address ===");
+
+        Address address = Address.builder()
+                .street("123 Main St")
+                .city("Anytown")
+                .state("State")
+                .zipCode("12345")
+                .build();
+        Employee employee = Employee.builder()
+                .id("E001")
+                .name("Bob Smith")
+                .address(address)
+                .salary(50000.00)
+                .build();
+        System.out.println("Employee: " + employee);
+        System.out.println("getAddress() returns the shared instance: " + (employee.getAddress() == address));
+
+        // A change produces a new version; the old one is untouched
+        Employee moved = employee.withAddress(address.withStreet("456 Oak Ave").withZipCode("67890"));
+        System.out.println("Moved: " + moved);
+        System.out.println("Original: " + employee);
+        System.out.println("Name shared between versions: " + (moved.getName() == employee.getName()));
+
+        Employee raised = moved.toBuilder().salary(moved.getSalary() * 1.05).build();
+        System.out.println("Raise keeps the same Address: " + (raised.getAddress() == moved.getAddress()));
+
+        System.out.println("\n=== Employee Directory ===");
+
+        EmployeeDirectory directory = EmployeeDirectory.of(createEmployees(5_000));
+        EmployeeDirectory afterRaise = directory.giveRaise(e -> e.getAddress().getCity().equals("Springfield"), 3.0);
+        System.out.printf("Payroll before %.2f, after %.2f%n", directory.totalPayroll(), afterRaise.totalPayroll());
+        System.out.println("Pages shared with the previous version: "
+                           + afterRaise.sharedPages(directory) + " of " + afterRaise.pageCount());
+        System.out.println("Employee 0 unchanged and shared: " + (afterRaise.get(0) == directory.get(0)));
+    }
+
+    // Employees in offices of contiguous ids, all sharing five Address instances
+    private static List<Employee> createEmployees(int count) {
+        Address[] offices = new Address[CITIES.length];
+        for (int i = 0; i < offices.length; i++) {
+            offices[i] = new Address(i + 1 + " Main St", CITIES[i], "State", String.format("%05d", 10000 + i));
+        }
+        List<Employee> employees = new ArrayList<>(count);
+        int perOffice = (count + offices.length - 1) / offices.length;
+        for (int i = 0; i < count; i++) {
+            employees.add(new Employee("E" + i, "Employee " + i, offices[i / perOffice], 40_000 + i % 50 * 1_000));
+        }
+        return employees;
+    }
+
+    // Reads return the address to the caller; one operation in a hundred moves an employee
+    private static void readHeavyBenchmark(int count) {
+        int operations = 20_000_000;
+        System.out.println("\n=== Benchmark: " + operations + " operations on " + count
+                           + " employees, 99% reads ===");
+
+        int[] targets = new int[operations];
+        Random random = new Random(42);
+        for (int i = 0; i < operations; i++) {
+            targets[i] = random.nextInt(count);
+        }
+        Object[] sink = new Object[1024];
+        // Rounds replay the same targets, so the office also alternates per round
+        int[] round = new int[1];
+
+        MutableEmployee[] mutable = new MutableEmployee[count];
+        for (Employee e : createEmployees(count)) {
+            int index = Integer.parseInt(e.getId().substring(1));
+            mutable[index] = new MutableEmployee(e.getId(), e.getName(), e.getAddress().toMutable(), e.getSalary());
+        }
+        // Moves alternate between two offices so that every write really changes the address
+        MutableAddress[] newOffices = {
+                new MutableAddress("1 New St", "Newtown", "State", "99999"),
+                new MutableAddress("2 New St", "Newtown", "State", "99998")};
+        runBenchmark("defensive copies", operations, () -> {
+            long checksum = 0;
+            int parity = round[0]++;
+            for (int i = 0; i < operations; i++) {
+                MutableEmployee employee = mutable[targets[i]];
+                if (i % 100 == 0) {
+                    employee.setAddress(newOffices[(i / 100 + parity) & 1]);
+                } else {
+                    MutableAddress address = employee.getAddress();
+                    sink[i & 1023] = address;
+                    checksum += address.getZipCode().length();
+                }
+            }
+            return checksum;
+        });
+
+        Employee[] shared = createEmployees(count).toArray(new Employee[0]);
+        Address[] newAddresses = {
+                new Address("1 New St", "Newtown", "State", "99999"),
+                new Address("2 New St", "Newtown", "State", "99998")};
+        runBenchmark("immutable, shared instances", operations, () -> {
+            long checksum = 0;
+            int parity = round[0]++;
+            for (int i = 0; i < operations; i++) {
+                int target = targets[i];
+                if (i % 100 == 0) {
+                    shared[target] = shared[target].withAddress(newAddresses[(i / 100 + parity) & 1]);
+                } else {
+                    Address address = shared[target].getAddress();
+                    sink[i & 1023] = address;
+                    checksum += address.getZipCode().length();
+                }
+            }
+            return checksum;
+        });
+    }
+
+    // Raises for one office (contiguous ids) and for every tenth employee (spread over all pages)
+    private static void batchUpdateBenchmark(int count) {
+        System.out.println("\n=== Benchmark: payroll raises across " + count + " employees ===");
+
+        List<Employee> employees = createEmployees(count);
+        Map<String, Predicate<Employee>> raises = new LinkedHashMap<>();
+        raises.put("one office", e -> e.getAddress().getCity().equals("Springfield"));
+        raises.put("every tenth", e -> Math.floorMod(e.getId().hashCode(), 10) == 0);
+
+        for (Map.Entry<String, Predicate<Employee>> raise : raises.entrySet()) {
+            Predicate<Employee> filter = raise.getValue();
+
+            MutableEmployee[] mutable = employees.stream()
+                    .map(e -> new MutableEmployee(e.getId(), e.getName(), e.getAddress().toMutable(), e.getSalary()))
+                    .toArray(MutableEmployee[]::new);
+            boolean[] selected = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                selected[i] = filter.test(employees.get(i));
+            }
+            runBenchmark("in place, no snapshot (" + raise.getKey() + ")", count, () -> {
+                for (int i = 0; i < mutable.length; i++) {
+                    if (selected[i]) {
+                        mutable[i].setSalary(mutable[i].getSalary() * 1.03);
+                    }
+                }
+                return mutable.length;
+            });
+            runBenchmark("deep copy, then raise (" + raise.getKey() + ")", count, () -> {
+                MutableEmployee[] copy = new MutableEmployee[mutable.length];
+                for (int i = 0; i < mutable.length; i++) {
+                    copy[i] = new MutableEmployee(mutable[i]);
+                    if (selected[i]) {
+                        copy[i].setSalary(copy[i].getSalary() * 1.03);
+                    }
+                }
+                return copy.length;
+            });
+
+            EmployeeDirectory directory = EmployeeDirectory.of(employees);
+            EmployeeDirectory[] result = new EmployeeDirectory[1];
+            runBenchmark("EmployeeDirectory.giveRaise (" + raise.getKey() + ")", count, () -> {
+                result[0] = directory.giveRaise(filter, 3.0);
+                return result[0].size();
+            });
+            System.out.println("    pages shared with the previous version: "
+                               + result[0].sharedPages(directory) + " of " + directory.pageCount());
+        }
+    }
+
+    // Best of three rounds after two warm-up rounds, with bytes allocated by this thread and GC activity
+    private static void runBenchmark(String name, int operations, LongSupplier body) {
+        long checksum = 0;
+        for (int i = 0; i < 2; i++) {
+            checksum += body.getAsLong();
+        }
+        long thread = Thread.currentThread().getId();
+        long best = Long.MAX_VALUE;
+        long allocated = 0;
+        long collections = 0;
+        long gcMillis = 0;
+        for (int i = 0; i < 3; i++) {
+            long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+            long collectionsBefore = gcCount();
+            long gcMillisBefore = gcMillis();
+            long start = System.nanoTime();
+            checksum += body.getAsLong();
+            best = Math.min(best, System.nanoTime() - start);
+            allocated += THREADS.getThreadAllocatedBytes(thread) - allocatedBefore;
+            collections += gcCount() - collectionsBefore;
+            gcMillis += gcMillis() - gcMillisBefore;
+        }
+        System.out.printf("%-50s %7.2f ns/op %7.2f bytes/op %5.1f GCs %6.1f ms GC  (checksum %d)%n",
+                          name, (double) best / operations, allocated / 3.0 / operations,
+                          collections / 3.0, gcMillis / 3.0, checksum & 0xFFFF);
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Immutable address. Changes go through withers or toBuilder() and leave
+     * this instance as it was, so one Address can be shared by any number of
+     * employees.
+     */
+    static final class Address {
+        private final String street;
+        private final String city;
+        private final String state;
+        private final String zipCode;
+
+        Address(String street, String city, String state, String zipCode) {
+            this.street = Objects.requireNonNull(street, "street");
+            this.city = Objects.requireNonNull(city, "city");
+            this.state = Objects.requireNonNull(state, "state");
+            this.zipCode = Objects.requireNonNull(zipCode, "zipCode");
+        }
+
+        static Builder builder() {
+            return new Builder();
+        }
+
+        Builder toBuilder() {
+            return new Builder().street(street).city(city).state(state).zipCode(zipCode);
+        }
+
+        public String getStreet() {
+            return street;
+        }
+
+        public String getCity() {
+            return city;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public String getZipCode() {
+            return zipCode;
+        }
+
+        public Address withStreet(String street) {
+            return street.equals(this.street) ? this : new Address(street, city, state, zipCode);
+        }
+
+        public Address withCity(String city) {
+            return city.equals(this.city) ? this : new Address(street, city, state, zipCode);
+        }
+
+        public Address withState(String state) {
+            return state.equals(this.state) ? this : new Address(street, city, state, zipCode);
+        }
+
+        public Address withZipCode(String zipCode) {
+            return zipCode.equals(this.zipCode) ? this : new Address(street, city, state, zipCode);
+        }
+
+        // Bridge to code that still expects the mutable EncapsulationExample style
+        MutableAddress toMutable() {
+            return new MutableAddress(street, city, state, zipCode);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Address)) return false;
+            Address other = (Address) obj;
+            return street.equals(other.street) && city.equals(other.city)
+                   && state.equals(other.state) && zipCode.equals(other.zipCode);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(street, city, state, zipCode);
+        }
+
+        @Override
+        public String toString() {
+            return street + ", " + city + ", " + state + " " + zipCode;
+        }
+
+        static final class Builder {
+            private String street;
+            private String city;
+            private String state;
+            private String zipCode;
+
+            private Builder() {
+            }
+
+            Builder street(String street) {
+                this.street = street;
+                return this;
+            }
+
+            Builder city(String city) {
+                this.city = city;
+                return this;
+            }
+
+            Builder state(String state) {
+                this.state = state;
+                return this;
+            }
+
+            Builder zipCode(String zipCode) {
+                this.zipCode = zipCode;
+                return this;
+            }
+
+            Address build() {
+                return new Address(street, city, state, zipCode);
+            }
+        }
+    }
+
+    /**
+     * Immutable employee. The Address is held by reference, never copied,
+     * and a new version shares every field it does not change.
+     */
+    static final class Employee {
+        private final String id;
+        private final String name;
+        private final Address address;
+        private final double salary;
+
+        Employee(String id, String name, Address address, double salary) {
+            if (salary < 0) {
+                throw new IllegalArgumentException("Salary cannot be negative: " + salary);
+            }
+            this.id = Objects.requireNonNull(id, "id");
+            this.name = Objects.requireNonNull(name, "name");
+            this.address = Objects.requireNonNull(address, "address");
+            this.salary = salary;
+        }
+
+        static Builder builder() {
+            return new Builder();
+        }
+
+        Builder toBuilder() {
+            return new Builder().id(id).name(name).address(address).salary(salary);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // No copy needed: nobody can change the Address
+        public Address getAddress() {
+            return address;
+        }
+
+        public double getSalary() {
+            return salary;
+        }
+
+        public Employee withName(String name) {
+            return name.equals(this.name) ? this : new Employee(id, name, address, salary);
+        }
+
+        public Employee withAddress(Address address) {
+            return address.equals(this.address) ? this : new Employee(id, name, address, salary);
+        }
+
+        public Employee withSalary(double salary) {
+            return salary == this.salary ? this : new Employee(id, name, address, salary);
+        }
+
+        @Override
+        public String toString() {
+            return "Employee[" +
+                   "id='" + id + "', " +
+                   "name='" + name + "', " +
+                   "address=" + address + ", " +
+                   "salary=$" + salary + "]";
+        }
+
+        static final class Builder {
+            private String id;
+            private String name;
+            private Address address;
+            private double salary;
+
+            private Builder() {
+            }
+
+            Builder id(String id) {
+                this.id = id;
+                return this;
+            }
+
+            Builder name(String name) {
+                this.name = name;
+                return this;
+            }
+
+            Builder address(Address address) {
+                this.address = address;
+                return this;
+            }
+
+            Builder salary(double salary) {
+                this.salary = salary;
+                return this;
+            }
+
+            Employee build() {
+                return new Employee(id, name, address, salary);
+            }
+        }
+    }
+
+    /**
+     * Immutable, indexed collection of employees in pages of PAGE_SIZE.
+     *
+     * An update returns a new directory that reuses every page in which no
+     * employee changed, and within a changed page every employee that did not
+     * change. Batch updates process pages in parallel, since pages are
+     * independent.
+     */
+    static final class EmployeeDirectory {
+        private static final int PAGE_BITS = 10;
+        private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+        private final Employee[][] pages;
+        private final int size;
+
+        private EmployeeDirectory(Employee[][] pages, int size) {
+            this.pages = pages;
+            this.size = size;
+        }
+
+        static EmployeeDirectory of(List<Employee> employees) {
+            int size = employees.size();
+            Employee[][] pages = new Employee[(size + PAGE_SIZE - 1) >>> PAGE_BITS][];
+            for (int page = 0; page < pages.length; page++) {
+                int from = page << PAGE_BITS;
+                pages[page] = employees.subList(from, Math.min(size, from + PAGE_SIZE)).toArray(new Employee[0]);
+            }
+            return new EmployeeDirectory(pages, size);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int pageCount() {
+            return pages.length;
+        }
+
+        public Employee get(int index) {
+            Objects.checkIndex(index, size);
+            return pages[index >>> PAGE_BITS][index & (PAGE_SIZE - 1)];
+        }
+
+        // Copies one page and the page table, nothing else
+        public EmployeeDirectory with(int index, Employee employee) {
+            Objects.checkIndex(index, size);
+            Objects.requireNonNull(employee, "employee");
+            Employee[][] newPages = pages.clone();
+            Employee[] page = pages[index >>> PAGE_BITS].clone();
+            page[index & (PAGE_SIZE - 1)] = employee;
+            newPages[index >>> PAGE_BITS] = page;
+            return new EmployeeDirectory(newPages, size);
+        }
+
+        /**
+         * Applies update to every employee that matches filter. An update
+         * returning the same instance counts as no change.
+         */
+        public EmployeeDirectory updateAll(Predicate<? super Employee> filter, UnaryOperator<Employee> update) {
+            Employee[][] newPages = pages.clone();
+            IntStream.range(0, pages.length).parallel().forEach(p -> {
+                Employee[] page = pages[p];
+                Employee[] copy = null;
+                for (int i = 0; i < page.length; i++) {
+                    Employee employee = page[i];
+                    if (!filter.test(employee)) {
+                        continue;
+                    }
+                    Employee updated = Objects.requireNonNull(update.apply(employee), "update result");
+                    if (updated != employee) {
+                        if (copy == null) {
+                            copy = page.clone();
+                        }
+                        copy[i] = updated;
+                    }
+                }
+                if (copy != null) {
+                    newPages[p] = copy;
+                }
+            });
+            return new EmployeeDirectory(newPages, size);
+        }
+
+        public EmployeeDirectory giveRaise(Predicate<? super Employee> filter, double percent) {
+            double factor = 1 + percent / 100;
+            return updateAll(filter, e -> e.withSalary(e.getSalary() * factor));
+        }
+
+        public double totalPayroll() {
+            double total = 0;
+            for (Employee[] page : pages) {
+                for (Employee employee : page) {
+                    total += employee.getSalary();
+                }
+            }
+            return total;
+        }
+
+        // Pages this directory shares with another version of it
+        public int sharedPages(EmployeeDirectory other) {
+            int shared = 0;
+            for (int p = 0; p < Math.min(pages.length, other.pages.length); p++) {
+                if (pages[p] == other.pages[p]) {
+                    shared++;
+                }
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * The mutable Address from EncapsulationExample.
+     */
+    static final class MutableAddress {
+        private String street;
+        private String city;
+        private String state;
+        private String zipCode;
+
+        MutableAddress(String street, String city, String state, String zipCode) {
+            this.street = street;
+            this.city = city;
+            this.state = state;
+            this.zipCode = zipCode;
+        }
+
+        MutableAddress(MutableAddress other) {
+            this(other.street, other.city, other.state, other.zipCode);
+        }
+
+        public String getZipCode() {
+            return zipCode;
+        }
+
+        public void setStreet(String street) {
+            this.street = street;
+        }
+    }
+
+    /**
+     * The Employee from EncapsulationExample, copying its Address on every access.
+     */
+    static final class MutableEmployee {
+        private final String id;
+        private String name;
+        private MutableAddress address;
+        private double salary;
+
+        MutableEmployee(String id, String name, MutableAddress address, double salary) {
+            this.id = id;
+            this.name = name;
+            this.address = new MutableAddress(address);
+            this.salary = salary;
+        }
+
+        MutableEmployee(MutableEmployee other) {
+            this(other.id, other.name, other.address, other.salary);
+        }
+
+        public MutableAddress getAddress() {
+            return new MutableAddress(address);
+        }
+
+        public void setAddress(MutableAddress address) {
+            this.address = new MutableAddress(address);
+        }
+
+        public double getSalary() {
+            return salary;
+        }
+
+        public void setSalary(double salary) {
+            this.salary = salary;
+        }
+    }
+}
@@ -0,0 +1,609 @@
+package advanced;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class demonstrates an instrumented work-stealing executor.
+ *
+ * The fixed pool in MultithreadingExample.executorFramework() is a black box: it
+ * does not say how long tasks waited, how busy each thread was, or whether three
+ * threads was the right number. The executor below gives each worker its own
+ * deque (newest task first for the owner, oldest first for thieves), records
+ * queue-wait and run-time histograms, per-worker utilization, steals and
+ * rejections, and exposes them as a metrics snapshot. It also resizes itself:
+ * threads that spend most of each task blocked (wall time well above CPU time)
+ * are a sign the pool needs more of them.
+ */
+public class InstrumentedExecutorExample {
+
+    public static void main(String[] args) throws Exception {
+        // Metrics snapshot and work stealing
+        instrumentedExecutorExample();
+
+        // Mixed CPU and IO workload against newFixedThreadPool
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 4_000;
+        mixedWorkloadBenchmark(tasks);
+    }
+
+    // Metrics snapshot and work stealing
+    private static void instrumentedExecutorExample() throws Exception {
+        System.out.println("\n=== Instrumented Executor ===");
+
+        InstrumentedExecutor executor = InstrumentedExecutor.create("demo", 3, 3, 100);
+        try {
+            // Same tasks as executorFramework()
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                final int taskId = i;
+                results.add(executor.submit(() -> {
+                    Thread.sleep(100); // Simulate work
+                    return "Task " + taskId + " executed by " + Thread.currentThread().getName();
+                }));
+            }
+            for (Future<String> result : results) {
+                System.out.println(result.get());
+            }
+
+            // A task that forks subtasks pushes them onto its own worker's deque; idle workers steal them
+            Future<Integer> parent = executor.submit(() -> {
+                List<Future<Integer>> children = new ArrayList<>();
+                for (int i = 0; i < 20; i++) {
+                    final int n = i;
+                    children.add(executor.submit(() -> {
+                        Thread.sleep(5);
+                        return n;
+                    }));
+                }
+                return children.size();
+            });
+            System.out.println("Forked " + parent.get() + " subtasks");
+
+            // A full queue rejects instead of growing without bound
+            int rejected = 0;
+            for (int i = 0; i < 200; i++) {
+                try {
+                    executor.execute(() -> sleepMillis(10));
+                } catch (RejectedExecutionException e) {
+                    rejected++;
+                }
+            }
+            System.out.println("Rejected " + rejected + " of 200 submissions with a queue capacity of 100");
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+
+            System.out.println();
+            System.out.print(executor.metrics().describe());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Mixed CPU and IO workload against newFixedThreadPool
+    private static void mixedWorkloadBenchmark(int tasks) throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("\n=== Benchmark: " + tasks + " tasks, half CPU bursts and half IO (1 ms sleep), "
+                           + cores + " CPUs ===");
+
+        double fixedThree = best(() -> Executors.newFixedThreadPool(3), tasks);
+        double fixedCores = best(() -> Executors.newFixedThreadPool(cores), tasks);
+        InstrumentedExecutor[] last = new InstrumentedExecutor[1];
+        double adaptive = best(() -> last[0] = InstrumentedExecutor.create("mixed", cores, 64, 100_000), tasks);
+
+        System.out.printf("%-36s %9.1f ms%n", "newFixedThreadPool(3)", fixedThree);
+        System.out.printf("%-36s %9.1f ms%n", "newFixedThreadPool(" + cores + ")", fixedCores);
+        System.out.printf("%-36s %9.1f ms%n", "InstrumentedExecutor(" + cores + "..64, adaptive)", adaptive);
+        System.out.println();
+        System.out.print(last[0].metrics().describe());
+    }
+
+    // Best of three rounds after one warm-up round, each on a fresh executor, in milliseconds
+    private static double best(Callable<ExecutorService> factory, int tasks) throws Exception {
+        long best = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < 4; round++) {
+            ExecutorService executor = factory.call();
+            try {
+                long start = System.nanoTime();
+                checksum += runMixed(executor, tasks);
+                long elapsed = System.nanoTime() - start;
+                if (round > 0) {
+                    best = Math.min(best, elapsed);
+                }
+            } finally {
+                executor.shutdown();
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        }
+        if (checksum == 42) {
+            System.out.println(); // Keeps the checksum alive
+        }
+        return best / 1e6;
+    }
+
+    private static long runMixed(ExecutorService executor, int tasks) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(tasks);
+        LongAdder sum = new LongAdder();
+        for (int i = 0; i < tasks; i++) {
+            final int n = i;
+            executor.execute(() -> {
+                try {
+                    if (n % 2 == 0) {
+                        sum.add(burn(n));
+                    } else {
+                        sleepMillis(1);
+                        sum.increment();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        return sum.sum();
+    }
+
+    // A short burst of arithmetic, well under a millisecond
+    private static int burn(int seed) {
+        int h = seed;
+        for (int i = 0; i < 50_000; i++) {
+            h = h * 31 + (h >>> 7);
+        }
+        return h & 0xFF;
+    }
+
+    private static void sleepMillis(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * An ExecutorService with per-worker deques, work stealing and metrics.
+     *
+     * Submissions from outside the pool go to a shared bounded queue; tasks
+     * submitted from a worker go to the front of that worker's own deque. An
+     * idle worker takes from its own deque, then the shared queue, then steals
+     * from the back of another worker's deque.
+     *
+     * When minThreads is below maxThreads a sizing thread samples, every 50 ms,
+     * how much of the measured task time was spent off-CPU and targets
+     * cores * (1 + blocked / cpu) threads, the classic sizing rule for a pool
+     * that waits on IO.
+     */
+    static final class InstrumentedExecutor extends AbstractExecutorService {
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+        private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+        private static final long SIZING_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+        private final String name;
+        private final int minThreads;
+        private final int maxThreads;
+        private final int queueCapacity;
+        private final boolean measureCpu;
+        private final ConcurrentLinkedQueue<Task> submissions = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final ConcurrentLinkedQueue<Worker> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger threadIds = new AtomicInteger();
+
+        private final LatencyHistogram queueWait = new LatencyHistogram();
+        private final LatencyHistogram runTime = new LatencyHistogram();
+        private final LongAdder submitted = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder steals = new LongAdder();
+        private final LongAdder cpuNanos = new LongAdder();
+        private final LongAdder blockedNanos = new LongAdder();
+
+        // Workers accepting new work; replaced as a whole under the lock
+        private volatile Worker[] workers = new Worker[0];
+        private volatile boolean shutdown;
+        private volatile double blockingRatio;
+        // Guarded by this
+        private int liveWorkers;
+        private int resizes;
+        private final List<Worker> exited = new ArrayList<>();
+
+        private InstrumentedExecutor(String name, int minThreads, int maxThreads, int queueCapacity) {
+            this.name = name;
+            this.minThreads = minThreads;
+            this.maxThreads = maxThreads;
+            this.queueCapacity = queueCapacity;
+            this.measureCpu = THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+        }
+
+        public static InstrumentedExecutor create(String name, int minThreads, int maxThreads, int queueCapacity) {
+            if (minThreads < 1 || maxThreads < minThreads || queueCapacity < 1) {
+                throw new IllegalArgumentException("Need 1 <= minThreads <= maxThreads and queueCapacity >= 1");
+            }
+            InstrumentedExecutor executor = new InstrumentedExecutor(name, minThreads, maxThreads, queueCapacity);
+            executor.resize(minThreads);
+            if (minThreads < maxThreads && executor.measureCpu) {
+                Thread sizer = new Thread(executor::sizeLoop, name + "-sizer");
+                sizer.setDaemon(true);
+                sizer.start();
+            }
+            return executor;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            Objects.requireNonNull(command, "command");
+            if (shutdown) {
+                rejected.increment();
+                throw new RejectedExecutionException(name + " is shut down");
+            }
+            Task task = new Task(command, System.nanoTime());
+            Worker self = currentWorker();
+            if (self != null) {
+                self.local.addFirst(task);
+            } else {
+                if (queued.incrementAndGet() > queueCapacity) {
+                    queued.decrementAndGet();
+                    rejected.increment();
+                    throw new RejectedExecutionException(name + " queue is full (" + queueCapacity + ")");
+                }
+                submissions.add(task);
+                // Lost a race with shutdown(): take the task back if no worker has yet
+                if (shutdown && submissions.remove(task)) {
+                    queued.decrementAndGet();
+                    rejected.increment();
+                    throw new RejectedExecutionException(name + " is shut down");
+                }
+            }
+            submitted.increment();
+            Worker sleeper = idle.poll();
+            if (sleeper != null) {
+                LockSupport.unpark(sleeper.thread);
+            }
+        }
+
+        private Worker currentWorker() {
+            Thread thread = Thread.currentThread();
+            if (thread instanceof WorkerThread) {
+                Worker worker = ((WorkerThread) thread).worker;
+                if (worker.pool() == this && !worker.retiring) {
+                    return worker;
+                }
+            }
+            return null;
+        }
+
+        // Starts or retires workers until the number accepting work equals target
+        private synchronized void resize(int target) {
+            if (shutdown || target == workers.length) {
+                return;
+            }
+            resizes++;
+            Worker[] current = workers;
+            if (target > current.length) {
+                Worker[] grown = Arrays.copyOf(current, target);
+                for (int i = current.length; i < target; i++) {
+                    grown[i] = new Worker(name + "-" + threadIds.incrementAndGet());
+                    liveWorkers++;
+                }
+                workers = grown;
+                for (int i = current.length; i < target; i++) {
+                    grown[i].thread.start();
+                }
+            } else {
+                // Retiring workers finish their own deque, then exit
+                for (int i = target; i < current.length; i++) {
+                    current[i].retiring = true;
+                    LockSupport.unpark(current[i].thread);
+                }
+                workers = Arrays.copyOf(current, target);
+            }
+        }
+
+        private void sizeLoop() {
+            int cores = Runtime.getRuntime().availableProcessors();
+            long lastCpu = 0;
+            long lastBlocked = 0;
+            while (!shutdown) {
+                LockSupport.parkNanos(this, SIZING_INTERVAL_NANOS);
+                long cpu = cpuNanos.sum();
+                long blocked = blockedNanos.sum();
+                long cpuDelta = cpu - lastCpu;
+                long blockedDelta = blocked - lastBlocked;
+                lastCpu = cpu;
+                lastBlocked = blocked;
+                int target;
+                if (cpuDelta + blockedDelta == 0) {
+                    target = minThreads; // Idle interval: fall back to the minimum
+                } else {
+                    double ratio = (double) blockedDelta / Math.max(1, cpuDelta);
+                    blockingRatio = (double) blockedDelta / (cpuDelta + blockedDelta);
+                    target = (int) Math.ceil(cores * (1 + ratio));
+                    // Only grow while there is a backlog to work on
+                    if (target > workers.length && queued.get() == 0) {
+                        target = workers.length;
+                    }
+                }
+                resize(Math.max(minThreads, Math.min(maxThreads, target)));
+            }
+        }
+
+        private synchronized void workerExited(Worker worker) {
+            Worker[] current = workers;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == worker) {
+                    Worker[] shrunk = Arrays.copyOf(current, current.length - 1);
+                    System.arraycopy(current, i + 1, shrunk, i, current.length - i - 1);
+                    workers = shrunk;
+                    break;
+                }
+            }
+            exited.add(worker);
+            liveWorkers--;
+            if (liveWorkers == 0) {
+                notifyAll();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+            for (Worker worker : workers) {
+                LockSupport.unpark(worker.thread);
+            }
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown();
+            List<Runnable> pending = new ArrayList<>();
+            Task task;
+            while ((task = submissions.poll()) != null) {
+                queued.decrementAndGet();
+                pending.add(task.body);
+            }
+            for (Worker worker : workers) {
+                while ((task = worker.local.pollLast()) != null) {
+                    pending.add(task.body);
+                }
+                worker.thread.interrupt();
+            }
+            return pending;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public synchronized boolean isTerminated() {
+            return shutdown && liveWorkers == 0;
+        }
+
+        @Override
+        public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!isTerminated()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        }
+
+        public synchronized Metrics metrics() {
+            List<WorkerMetrics> perWorker = new ArrayList<>();
+            long now = System.nanoTime();
+            List<Worker> all = new ArrayList<>(Arrays.asList(workers));
+            all.addAll(exited);
+            for (Worker worker : all) {
+                long alive = (worker.stopped != 0 ? worker.stopped : now) - worker.started;
+                perWorker.add(new WorkerMetrics(worker.thread.getName(), worker.stopped == 0, worker.tasks, worker.steals,
+                                                alive == 0 ? 0 : (double) worker.busyNanos / alive));
+            }
+            return new Metrics(name, workers.length, liveWorkers, resizes, submitted.sum(), completed.sum(), failed.sum(),
+                               rejected.sum(), steals.sum(), queued.get(), blockingRatio,
+                               queueWait.percentile(50), queueWait.percentile(99),
+                               runTime.percentile(50), runTime.percentile(99), perWorker);
+        }
+
+        private static long currentCpuTime(boolean enabled) {
+            return enabled ? THREADS.getCurrentThreadCpuTime() : 0;
+        }
+
+        private static final class Task {
+            final Runnable body;
+            final long enqueued;
+
+            Task(Runnable body, long enqueued) {
+                this.body = body;
+                this.enqueued = enqueued;
+            }
+        }
+
+        private static final class WorkerThread extends Thread {
+            final Worker worker;
+
+            WorkerThread(Worker worker, String name) {
+                super(worker, name);
+                this.worker = worker;
+                setDaemon(true);
+            }
+        }
+
+        private final class Worker implements Runnable {
+            final ConcurrentLinkedDeque<Task> local = new ConcurrentLinkedDeque<>();
+            final Thread thread;
+            final long started = System.nanoTime();
+            volatile boolean retiring;
+            // Written only by the worker thread, read by metrics()
+            volatile long tasks;
+            volatile long steals;
+            volatile long busyNanos;
+            volatile long stopped;
+
+            Worker(String threadName) {
+                this.thread = new WorkerThread(this, threadName);
+            }
+
+            InstrumentedExecutor pool() {
+                return InstrumentedExecutor.this;
+            }
+
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Task task = findTask();
+                        if (task == null) {
+                            if (shutdown || retiring) {
+                                break;
+                            }
+                            // Advertise as idle, then look once more so a submission in between is not missed
+                            idle.add(this);
+                            task = findTask();
+                            if (task == null) {
+                                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                                idle.remove(this);
+                                continue;
+                            }
+                            idle.remove(this);
+                        }
+                        runTask(task);
+                    }
+                } finally {
+                    stopped = System.nanoTime();
+                    workerExited(this);
+                }
+            }
+
+            private Task findTask() {
+                Task task = local.pollFirst();
+                if (task != null || retiring) {
+                    return task;
+                }
+                task = submissions.poll();
+                if (task != null) {
+                    queued.decrementAndGet();
+                    return task;
+                }
+                Worker[] victims = workers;
+                int n = victims.length;
+                if (n > 1) {
+                    int start = ThreadLocalRandom.current().nextInt(n);
+                    for (int i = 0; i < n; i++) {
+                        Worker victim = victims[(start + i) % n];
+                        if (victim != this && (task = victim.local.pollLast()) != null) {
+                            steals++;
+                            InstrumentedExecutor.this.steals.increment();
+                            return task;
+                        }
+                    }
+                }
+                return null;
+            }
+
+            private void runTask(Task task) {
+                long start = System.nanoTime();
+                queueWait.record(start - task.enqueued);
+                long cpuStart = currentCpuTime(measureCpu);
+                try {
+                    task.body.run();
+                } catch (Throwable t) {
+                    // Futures capture their own exceptions; this is a plain Runnable that threw
+                    failed.increment();
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    runTime.record(elapsed);
+                    busyNanos += elapsed;
+                    tasks++;
+                    completed.increment();
+                    if (measureCpu) {
+                        long cpu = currentCpuTime(true) - cpuStart;
+                        cpuNanos.add(cpu);
+                        blockedNanos.add(Math.max(0, elapsed - cpu));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Per-worker counters. Utilization is busy time over the worker's lifetime.
+     */
+    record WorkerMetrics(String name, boolean alive, long tasks, long steals, double utilization) {
+    }
+
+    /**
+     * A point-in-time copy of an InstrumentedExecutor's counters.
+     */
+    record Metrics(String name, int poolSize, int liveThreads, int resizes, long submitted, long completed, long failed,
+                   long rejected, long steals, int queued, double blockingRatio,
+                   long queueWaitP50, long queueWaitP99, long runTimeP50, long runTimeP99, List<WorkerMetrics> workers) {
+
+        String describe() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("Executor %s: %d threads (%d live, %d resizes), submitted %d, completed %d, failed %d, rejected %d%n",
+                                    name, poolSize, liveThreads, resizes, submitted, completed, failed, rejected));
+            sb.append(String.format("  queued %d, steals %d, blocked %.0f%% of task time%n",
+                                    queued, steals, blockingRatio * 100));
+            sb.append(String.format("  queue wait p50 %s p99 %s, run time p50 %s p99 %s%n",
+                                    formatNanos(queueWaitP50), formatNanos(queueWaitP99),
+                                    formatNanos(runTimeP50), formatNanos(runTimeP99)));
+            // Long-lived pools can have many workers; show the busiest few
+            List<WorkerMetrics> sorted = new ArrayList<>(workers);
+            sorted.sort(Comparator.comparingLong(WorkerMetrics::tasks).reversed());
+            for (WorkerMetrics worker : sorted.subList(0, Math.min(8, sorted.size()))) {
+                sb.append(String.format("  %-12s %-8s tasks %6d, steals %5d, utilization %5.1f%%%n", worker.name(),
+                                        worker.alive() ? "live" : "retired", worker.tasks(), worker.steals(),
+                                        worker.utilization() * 100));
+            }
+            if (sorted.size() > 8) {
+                sb.append("  ... ").append(sorted.size() - 8).append(" more workers\n");
+            }
+            return sb.toString();
+        }
+
+        private static String formatNanos(long nanos) {
+            if (nanos < 1_000_000) {
+                return String.format("%.1f us", nanos / 1e3);
+            }
+            return String.format("%.2f ms", nanos / 1e6);
+        }
+    }
+
+    // Counts latencies per power of two; coarse, but enough for the p50 and p99 in Metrics
+    static final class LatencyHistogram {
+        // Bucket b > 0 holds [2^(b-1), 2^b); bucket 0 holds zero
+        private final AtomicLongArray counts = new AtomicLongArray(64);
+
+        public void record(long nanos) {
+            counts.incrementAndGet(64 - Long.numberOfLeadingZeros(Math.max(0, nanos)));
+        }
+
+        // Lower bound of the bucket holding the given percentile, or 0 if nothing was recorded
+        public long percentile(double percent) {
+            long total = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                total += counts.get(i);
+            }
+            long rank = (long) Math.ceil(total * percent / 100.0);
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return i == 0 ? 0 : 1L << (i - 1);
+                }
+            }
+            return 1L << 62;
+        }
+    }
+}
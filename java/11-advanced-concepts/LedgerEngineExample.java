@@ -0,0 +1,782 @@
+package advanced;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * This class demonstrates a concurrent account ledger.
+ *
+ * EncapsulationExample.BankAccount keeps a double balance, updates it without
+ * synchronization and prints on every call, so it is neither exact nor safe to
+ * share. The ledger below stores balances as longs in minor units (cents),
+ * applies deposits and withdrawals with a compare-and-set on one account, and
+ * moves money between two accounts under striped locks always taken in stripe
+ * order, so transfers cannot deadlock. Every applied operation is appended to
+ * a journal that can be replayed to rebuild the balances.
+ */
+public class LedgerEngineExample {
+
+    public static void main(String[] args) throws Exception {
+        // The BankAccount walkthrough on the ledger
+        ledgerExample();
+
+        // Many threads moving money between a few accounts
+        concurrentTransfersExample();
+
+        // Throughput under skewed account hotness
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        contentionBenchmark(operations);
+    }
+
+    // The BankAccount walkthrough on the ledger
+    private static void ledgerExample() {
+        System.out.println("\n=== Ledger Accounts ===");
+
+        Ledger ledger = new Ledger(4, 4);
+        int account = 0;
+        ledger.deposit(account, 1000_00);
+        System.out.println("Initial balance: " + format(ledger.balance(account)));
+
+        ledger.deposit(account, 500_00);
+        System.out.println("After depositing $500: " + format(ledger.balance(account)));
+        ledger.withdraw(account, 200_00);
+        System.out.println("After withdrawing $200: " + format(ledger.balance(account)));
+
+        // Insufficient funds is a normal outcome, not an error
+        boolean success = ledger.withdraw(account, 2000_00);
+        System.out.println("Withdrawal of $2000 successful? " + success + ", balance " + format(ledger.balance(account)));
+
+        // Invalid amounts are programming errors
+        try {
+            ledger.deposit(account, -5_00);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Negative deposit: " + e.getMessage());
+        }
+
+        ledger.transfer(account, 1, 300_00);
+        System.out.println("After transferring $300 to account 1: " + format(ledger.balance(account))
+                           + " and " + format(ledger.balance(1)));
+
+        // 2.5% interest is 250 basis points, rounded down to the cent
+        long interest = ledger.applyInterest(250);
+        System.out.println("Interest applied: " + format(interest) + ", balance " + format(ledger.balance(account)));
+
+        System.out.println("Journal:");
+        ledger.journal().forEach((sequence, kind, from, to, amount) -> {
+            if (amount != 0) {
+                System.out.println("  #" + sequence + " " + kind + " account " + from
+                                   + (kind == Kind.TRANSFER ? " -> " + to : "") + " " + format(amount));
+            }
+        });
+
+        // Interest that would overflow a balance is rolled back and leaves no gap in the journal
+        Ledger overflowing = new Ledger(2, 1);
+        overflowing.deposit(0, 100_00);
+        overflowing.deposit(1, Long.MAX_VALUE - 1);
+        try {
+            overflowing.applyInterest(250);
+        } catch (ArithmeticException e) {
+            System.out.println("Overflowing interest: " + e.getMessage() + ", balance " + format(overflowing.balance(0)));
+        }
+        overflowing.deposit(0, 1_00);
+        long[] replayed = overflowing.journal().replay(2);
+        System.out.println("Later deposit replayed: " + (replayed[0] == overflowing.balance(0)
+                                                         && replayed[1] == overflowing.balance(1)));
+    }
+
+    // Many threads moving money between a few accounts
+    private static void concurrentTransfersExample() throws InterruptedException {
+        System.out.println("\n=== Concurrent Transfers ===");
+
+        int accounts = 100;
+        Ledger ledger = new Ledger(accounts, 16);
+        for (int i = 0; i < accounts; i++) {
+            ledger.deposit(i, 1_000_00);
+        }
+        long before = ledger.totalBalance();
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 100_000; i++) {
+                    int from = random.nextInt(accounts);
+                    int to = random.nextInt(accounts);
+                    if (from != to) {
+                        ledger.transfer(from, to, 1 + random.nextInt(500_00));
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        // Interest runs alongside the transfers; each stripe is updated while no transfer touches it
+        long interest = ledger.applyInterest(100);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        boolean nonNegative = true;
+        for (int i = 0; i < accounts; i++) {
+            nonNegative &= ledger.balance(i) >= 0;
+        }
+        long[] replayed = ledger.journal().replay(accounts);
+        boolean replayMatches = true;
+        for (int i = 0; i < accounts; i++) {
+            replayMatches &= replayed[i] == ledger.balance(i);
+        }
+        System.out.println("Total before: " + format(before) + ", interest: " + format(interest)
+                           + ", total after: " + format(ledger.totalBalance()));
+        System.out.println("Money conserved: " + (before + interest == ledger.totalBalance())
+                           + ", no negative balances: " + nonNegative);
+        System.out.println("Journal entries: " + ledger.journal().size() + ", replay matches balances: " + replayMatches);
+    }
+
+    // Throughput under skewed account hotness
+    private static void contentionBenchmark(int operations) throws InterruptedException {
+        int accounts = 10_000;
+        int threads = 4;
+        System.out.println("\n=== Benchmark: " + operations + " operations, " + accounts + " accounts, "
+                           + threads + " threads, " + Runtime.getRuntime().availableProcessors() + " CPUs ===");
+        System.out.println("80% transfers, 10% deposits, 10% withdrawals, all journaled; Zipf exponent 0 is uniform");
+        System.out.printf("%-10s %18s %18s %18s%n", "Zipf s", "global lock", "account monitors", "ledger engine");
+
+        for (double skew : new double[]{0.0, 0.99, 1.3}) {
+            Workload[] workloads = new Workload[threads];
+            ZipfSampler sampler = new ZipfSampler(accounts, skew, 42);
+            for (int t = 0; t < threads; t++) {
+                workloads[t] = new Workload(operations / threads, sampler, new Random(t));
+            }
+            System.out.printf("%-10.2f %18s %18s %18s%n", skew,
+                    throughput(() -> new GlobalLockAccounts(accounts), workloads),
+                    throughput(() -> new MonitorAccounts(accounts), workloads),
+                    throughput(() -> new LedgerAccounts(new Ledger(accounts, 256)), workloads));
+        }
+        System.out.println("(million operations per second, best of three runs after one warm-up)");
+    }
+
+    // Best of three runs after one warm-up, each on a fresh set of accounts
+    private static String throughput(Supplier<Accounts> factory, Workload[] workloads)
+            throws InterruptedException {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 4; round++) {
+            Accounts target = factory.get();
+            for (int i = 0; i < target.size(); i++) {
+                target.deposit(i, 1_000_00);
+            }
+            long expected = target.total();
+
+            CountDownLatch start = new CountDownLatch(1);
+            long[] netFlows = new long[workloads.length];
+            Thread[] threads = new Thread[workloads.length];
+            for (int t = 0; t < threads.length; t++) {
+                int index = t;
+                threads[t] = new Thread(() -> {
+                    awaitQuietly(start);
+                    netFlows[index] = workloads[index].run(target);
+                });
+                threads[t].start();
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            long elapsed = System.nanoTime() - begin;
+            for (long flow : netFlows) {
+                expected += flow;
+            }
+            if (target.total() != expected) {
+                throw new IllegalStateException("Balances do not add up for " + target.getClass().getSimpleName());
+            }
+            if (round > 0) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        int operations = 0;
+        for (Workload workload : workloads) {
+            operations += workload.size();
+        }
+        return String.format("%.2f", operations * 1e3 / best);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static String format(long minor) {
+        String sign = minor < 0 ? "-" : "";
+        long abs = Math.abs(minor);
+        return String.format("%s$%d.%02d", sign, abs / 100, abs % 100);
+    }
+
+    enum Kind {
+        DEPOSIT, WITHDRAWAL, TRANSFER, INTEREST
+    }
+
+    /**
+     * Balances in minor units for a fixed set of accounts numbered from 0.
+     *
+     * Deposits and withdrawals touch one account and update it with a CAS
+     * loop, never blocking. Transfers and interest must change several
+     * accounts as one step, so they lock the stripes of the accounts involved,
+     * lower stripe first; a transfer's debit still uses CAS because lock-free
+     * withdrawals may hit the same account at the same time.
+     */
+    static final class Ledger {
+        // One 64-byte cache line per account, so two hot accounts never share a line
+        private static final int STRIDE = 8;
+
+        private final int size;
+        private final AtomicLongArray balances;
+        private final ReentrantLock[] stripes;
+        private final int stripeMask;
+        private final Journal journal = new Journal();
+
+        Ledger(int size, int stripes) {
+            if (Integer.bitCount(stripes) != 1) {
+                throw new IllegalArgumentException("Stripe count must be a power of two: " + stripes);
+            }
+            this.size = size;
+            this.balances = new AtomicLongArray(size * STRIDE);
+            this.stripes = new ReentrantLock[stripes];
+            for (int i = 0; i < stripes; i++) {
+                this.stripes[i] = new ReentrantLock();
+            }
+            this.stripeMask = stripes - 1;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public Journal journal() {
+            return journal;
+        }
+
+        public long balance(int account) {
+            return balances.get(index(account));
+        }
+
+        public void deposit(int account, long amount) {
+            checkAmount(amount);
+            credit(account, amount);
+            journal.append(Kind.DEPOSIT, account, account, amount);
+        }
+
+        /** Returns false, leaving the balance unchanged, if the account holds less than amount */
+        public boolean withdraw(int account, long amount) {
+            checkAmount(amount);
+            if (!tryDebit(account, amount)) {
+                return false;
+            }
+            journal.append(Kind.WITHDRAWAL, account, account, amount);
+            return true;
+        }
+
+        /** Returns false, leaving both balances unchanged, if from holds less than amount */
+        public boolean transfer(int from, int to, long amount) {
+            checkAmount(amount);
+            if (from == to) {
+                throw new IllegalArgumentException("Transfer from account " + from + " to itself");
+            }
+            index(to);
+            int a = from & stripeMask;
+            int b = to & stripeMask;
+            ReentrantLock first = stripes[Math.min(a, b)];
+            ReentrantLock second = stripes[Math.max(a, b)];
+            first.lock();
+            try {
+                if (second != first) {
+                    second.lock();
+                }
+                try {
+                    if (!tryDebit(from, amount)) {
+                        return false;
+                    }
+                    try {
+                        credit(to, amount);
+                    } catch (ArithmeticException e) {
+                        credit(from, amount);
+                        throw e;
+                    }
+                } finally {
+                    if (second != first) {
+                        second.unlock();
+                    }
+                }
+            } finally {
+                first.unlock();
+            }
+            journal.append(Kind.TRANSFER, from, to, amount);
+            return true;
+        }
+
+        /**
+         * Adds interest at the given rate in basis points (1/100 of a percent)
+         * to every account, rounded down to the minor unit, and returns the
+         * total added. Each stripe is locked once and all of its accounts are
+         * updated and journaled in one batch, instead of one lock and one
+         * journal reservation per account. Journal slots are reserved only
+         * after the whole stripe is updated: if interest overflows a balance,
+         * that stripe is rolled back and the ArithmeticException propagates,
+         * leaving no unwritten gap for readers of the journal to stop at.
+         */
+        public long applyInterest(long basisPoints) {
+            if (basisPoints < 0) {
+                throw new IllegalArgumentException("Interest rate cannot be negative: " + basisPoints);
+            }
+            long total = 0;
+            for (int stripe = 0; stripe <= stripeMask && stripe < size; stripe++) {
+                int count = (size - stripe + stripeMask) / stripes.length;
+                long[] interest = new long[count];
+                stripes[stripe].lock();
+                try {
+                    int applied = 0;
+                    try {
+                        for (int account = stripe; account < size; account += stripes.length) {
+                            interest[applied] = addInterest(account, basisPoints);
+                            applied++;
+                        }
+                    } catch (ArithmeticException e) {
+                        for (int i = 0, account = stripe; i < applied; i++, account += stripes.length) {
+                            credit(account, -interest[i]);
+                        }
+                        throw e;
+                    }
+                    long sequence = journal.reserve(count);
+                    for (int i = 0, account = stripe; i < count; i++, account += stripes.length) {
+                        journal.write(sequence++, Kind.INTEREST, account, account, interest[i]);
+                        total += interest[i];
+                    }
+                } finally {
+                    stripes[stripe].unlock();
+                }
+            }
+            return total;
+        }
+
+        /** Sum of all balances; consistent with transfers and interest, which it excludes while it reads */
+        public long totalBalance() {
+            for (ReentrantLock stripe : stripes) {
+                stripe.lock();
+            }
+            try {
+                long total = 0;
+                for (int account = 0; account < size; account++) {
+                    total += balance(account);
+                }
+                return total;
+            } finally {
+                for (int i = stripes.length - 1; i >= 0; i--) {
+                    stripes[i].unlock();
+                }
+            }
+        }
+
+        private long addInterest(int account, long basisPoints) {
+            int index = index(account);
+            while (true) {
+                long balance = balances.get(index);
+                long interest = Math.addExact(Math.multiplyExact(balance / 10_000, basisPoints),
+                                              balance % 10_000 * basisPoints / 10_000);
+                if (balances.compareAndSet(index, balance, Math.addExact(balance, interest))) {
+                    return interest;
+                }
+            }
+        }
+
+        private void credit(int account, long amount) {
+            int index = index(account);
+            while (true) {
+                long balance = balances.get(index);
+                if (balances.compareAndSet(index, balance, Math.addExact(balance, amount))) {
+                    return;
+                }
+            }
+        }
+
+        private boolean tryDebit(int account, long amount) {
+            int index = index(account);
+            while (true) {
+                long balance = balances.get(index);
+                if (balance < amount) {
+                    return false;
+                }
+                if (balances.compareAndSet(index, balance, balance - amount)) {
+                    return true;
+                }
+            }
+        }
+
+        private int index(int account) {
+            Objects.checkIndex(account, size);
+            return account * STRIDE;
+        }
+
+        private static void checkAmount(long amount) {
+            if (amount <= 0) {
+                throw new IllegalArgumentException("Amount must be positive: " + amount);
+            }
+        }
+    }
+
+    interface EntryVisitor {
+        void accept(long sequence, Kind kind, int account, int counterparty, long amount);
+    }
+
+    /**
+     * Append-only journal of applied operations.
+     *
+     * Writers claim sequence numbers with one atomic add and fill four longs
+     * per entry in fixed-size segments allocated on demand, so appends never
+     * copy or lock. The kind is written last with release semantics; readers
+     * stop at the first entry whose kind is not yet visible. Entries appear
+     * in the order operations claimed their sequence numbers, and replaying
+     * them in that order gives the final balances because every entry is a
+     * sum.
+     */
+    static final class Journal {
+        private static final int SEGMENT_SHIFT = 16;
+        private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+        private static final int FIELDS = 4; // kind + 1, account, counterparty, amount
+        private static final int MAX_SEGMENTS = 1 << 15;
+
+        private final AtomicLong next = new AtomicLong();
+        private final AtomicReferenceArray<AtomicLongArray> segments = new AtomicReferenceArray<>(MAX_SEGMENTS);
+
+        public long append(Kind kind, int account, int counterparty, long amount) {
+            long sequence = next.getAndIncrement();
+            write(sequence, kind, account, counterparty, amount);
+            return sequence;
+        }
+
+        /** Claims count consecutive sequence numbers and returns the first; each must then be written */
+        public long reserve(int count) {
+            return next.getAndAdd(count);
+        }
+
+        public void write(long sequence, Kind kind, int account, int counterparty, long amount) {
+            AtomicLongArray segment = segment(sequence >>> SEGMENT_SHIFT);
+            int offset = (int) (sequence & (SEGMENT_SIZE - 1)) * FIELDS;
+            segment.setPlain(offset + 1, account);
+            segment.setPlain(offset + 2, counterparty);
+            segment.setPlain(offset + 3, amount);
+            segment.setRelease(offset, kind.ordinal() + 1);
+        }
+
+        /** Number of sequence numbers claimed, including entries still being written */
+        public long size() {
+            return next.get();
+        }
+
+        public void forEach(EntryVisitor visitor) {
+            Kind[] kinds = Kind.values();
+            long end = next.get();
+            for (long sequence = 0; sequence < end; sequence++) {
+                AtomicLongArray segment = segments.get((int) (sequence >>> SEGMENT_SHIFT));
+                int offset = (int) (sequence & (SEGMENT_SIZE - 1)) * FIELDS;
+                long kind = segment == null ? 0 : segment.getAcquire(offset);
+                if (kind == 0) {
+                    return;
+                }
+                visitor.accept(sequence, kinds[(int) kind - 1], (int) segment.getPlain(offset + 1),
+                               (int) segment.getPlain(offset + 2), segment.getPlain(offset + 3));
+            }
+        }
+
+        public long[] replay(int accounts) {
+            long[] balances = new long[accounts];
+            forEach((sequence, kind, account, counterparty, amount) -> {
+                switch (kind) {
+                    case DEPOSIT, INTEREST -> balances[account] += amount;
+                    case WITHDRAWAL -> balances[account] -= amount;
+                    case TRANSFER -> {
+                        balances[account] -= amount;
+                        balances[counterparty] += amount;
+                    }
+                }
+            });
+            return balances;
+        }
+
+        private AtomicLongArray segment(long index) {
+            if (index >= MAX_SEGMENTS) {
+                throw new IllegalStateException("Journal is full");
+            }
+            AtomicLongArray segment = segments.get((int) index);
+            if (segment == null) {
+                AtomicLongArray created = new AtomicLongArray(SEGMENT_SIZE * FIELDS);
+                segment = segments.compareAndExchange((int) index, null, created);
+                if (segment == null) {
+                    segment = created;
+                }
+            }
+            return segment;
+        }
+    }
+
+    // Benchmark targets
+
+    interface Accounts {
+        int size();
+
+        void deposit(int account, long amount);
+
+        boolean withdraw(int account, long amount);
+
+        boolean transfer(int from, int to, long amount);
+
+        long total();
+    }
+
+    // The baselines journal too, into one growable array behind a monitor
+    static final class SynchronizedJournal {
+        private long[] entries = new long[4096];
+        private int size;
+
+        synchronized void append(Kind kind, int account, int counterparty, long amount) {
+            if (size + 4 > entries.length) {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+            }
+            entries[size++] = kind.ordinal();
+            entries[size++] = account;
+            entries[size++] = counterparty;
+            entries[size++] = amount;
+        }
+    }
+
+    // BankAccount made thread-safe the simplest way: one lock for everything
+    static final class GlobalLockAccounts implements Accounts {
+        private final long[] balances;
+        private final SynchronizedJournal journal = new SynchronizedJournal();
+
+        GlobalLockAccounts(int size) {
+            this.balances = new long[size];
+        }
+
+        public int size() {
+            return balances.length;
+        }
+
+        public synchronized void deposit(int account, long amount) {
+            balances[account] += amount;
+            journal.append(Kind.DEPOSIT, account, account, amount);
+        }
+
+        public synchronized boolean withdraw(int account, long amount) {
+            if (balances[account] < amount) {
+                return false;
+            }
+            balances[account] -= amount;
+            journal.append(Kind.WITHDRAWAL, account, account, amount);
+            return true;
+        }
+
+        public synchronized boolean transfer(int from, int to, long amount) {
+            if (balances[from] < amount) {
+                return false;
+            }
+            balances[from] -= amount;
+            balances[to] += amount;
+            journal.append(Kind.TRANSFER, from, to, amount);
+            return true;
+        }
+
+        public synchronized long total() {
+            long total = 0;
+            for (long balance : balances) {
+                total += balance;
+            }
+            return total;
+        }
+    }
+
+    // One synchronized object per account, both monitors taken in account order for a transfer
+    static final class MonitorAccounts implements Accounts {
+        private static final class Account {
+            long balance;
+        }
+
+        private final Account[] accounts;
+        private final SynchronizedJournal journal = new SynchronizedJournal();
+
+        MonitorAccounts(int size) {
+            accounts = new Account[size];
+            for (int i = 0; i < size; i++) {
+                accounts[i] = new Account();
+            }
+        }
+
+        public int size() {
+            return accounts.length;
+        }
+
+        public void deposit(int account, long amount) {
+            Account target = accounts[account];
+            synchronized (target) {
+                target.balance += amount;
+            }
+            journal.append(Kind.DEPOSIT, account, account, amount);
+        }
+
+        public boolean withdraw(int account, long amount) {
+            Account target = accounts[account];
+            synchronized (target) {
+                if (target.balance < amount) {
+                    return false;
+                }
+                target.balance -= amount;
+            }
+            journal.append(Kind.WITHDRAWAL, account, account, amount);
+            return true;
+        }
+
+        public boolean transfer(int from, int to, long amount) {
+            Account first = accounts[Math.min(from, to)];
+            Account second = accounts[Math.max(from, to)];
+            synchronized (first) {
+                synchronized (second) {
+                    Account source = accounts[from];
+                    if (source.balance < amount) {
+                        return false;
+                    }
+                    source.balance -= amount;
+                    accounts[to].balance += amount;
+                }
+            }
+            journal.append(Kind.TRANSFER, from, to, amount);
+            return true;
+        }
+
+        public long total() {
+            long total = 0;
+            for (Account account : accounts) {
+                synchronized (account) {
+                    total += account.balance;
+                }
+            }
+            return total;
+        }
+    }
+
+    static final class LedgerAccounts implements Accounts {
+        private final Ledger ledger;
+
+        LedgerAccounts(Ledger ledger) {
+            this.ledger = ledger;
+        }
+
+        public int size() {
+            return ledger.size();
+        }
+
+        public void deposit(int account, long amount) {
+            ledger.deposit(account, amount);
+        }
+
+        public boolean withdraw(int account, long amount) {
+            return ledger.withdraw(account, amount);
+        }
+
+        public boolean transfer(int from, int to, long amount) {
+            return ledger.transfer(from, to, amount);
+        }
+
+        public long total() {
+            return ledger.totalBalance();
+        }
+    }
+
+    /**
+     * Draws account numbers with probability proportional to 1 / rank^s.
+     * Ranks are shuffled over the accounts so the hottest ones do not all
+     * share the lowest lock stripes.
+     */
+    static final class ZipfSampler {
+        private final double[] cumulative;
+        private final int[] accountOfRank;
+
+        ZipfSampler(int accounts, double exponent, long seed) {
+            cumulative = new double[accounts];
+            double sum = 0;
+            for (int rank = 0; rank < accounts; rank++) {
+                sum += 1 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = sum;
+            }
+            for (int rank = 0; rank < accounts; rank++) {
+                cumulative[rank] /= sum;
+            }
+            accountOfRank = new int[accounts];
+            Arrays.setAll(accountOfRank, i -> i);
+            Random random = new Random(seed);
+            for (int i = accounts - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = accountOfRank[i];
+                accountOfRank[i] = accountOfRank[j];
+                accountOfRank[j] = swap;
+            }
+        }
+
+        int next(Random random) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+            rank = rank < 0 ? -rank - 1 : rank;
+            return accountOfRank[Math.min(rank, accountOfRank.length - 1)];
+        }
+    }
+
+    // Pregenerated operations for one thread, so sampling is not timed
+    static final class Workload {
+        private final byte[] kinds;
+        private final int[] from;
+        private final int[] to;
+        private final long[] amounts;
+
+        Workload(int size, ZipfSampler sampler, Random random) {
+            kinds = new byte[size];
+            from = new int[size];
+            to = new int[size];
+            amounts = new long[size];
+            for (int i = 0; i < size; i++) {
+                int roll = random.nextInt(10);
+                kinds[i] = (byte) (roll < 8 ? Kind.TRANSFER.ordinal() : roll == 8 ? Kind.DEPOSIT.ordinal()
+                                                                                  : Kind.WITHDRAWAL.ordinal());
+                from[i] = sampler.next(random);
+                do {
+                    to[i] = sampler.next(random);
+                } while (to[i] == from[i]);
+                amounts[i] = 1 + random.nextInt(200_00);
+            }
+        }
+
+        int size() {
+            return kinds.length;
+        }
+
+        // Returns money added minus money removed
+        long run(Accounts target) {
+            long net = 0;
+            for (int i = 0; i < kinds.length; i++) {
+                if (kinds[i] == Kind.TRANSFER.ordinal()) {
+                    target.transfer(from[i], to[i], amounts[i]);
+                } else if (kinds[i] == Kind.DEPOSIT.ordinal()) {
+                    target.deposit(from[i], amounts[i]);
+                    net += amounts[i];
+                } else if (target.withdraw(from[i], amounts[i])) {
+                    net -= amounts[i];
+                }
+            }
+            return net;
+        }
+    }
+}
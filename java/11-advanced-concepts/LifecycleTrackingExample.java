@@ -0,0 +1,436 @@
+package advanced;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Cleaner;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * This class demonstrates tracking object lifecycles with java.lang.ref.Cleaner
+ * instead of finalize().
+ *
+ * ClassesAndObjects.Person used to decrement its instance count in finalize().
+ * An object with a finalizer is registered with the JVM when it is allocated,
+ * survives the collection that finds it unreachable, waits in a queue for the
+ * single finalizer thread, and is only reclaimed by a later collection. A
+ * Cleaner watches objects through PhantomReferences instead: the object is
+ * never resurrected, so its memory is reclaimed in the collection that finds
+ * it unreachable, and only the small registration is processed afterwards.
+ * The LifecycleTracker below keeps created and collected counts per class and
+ * reports resources that were collected without being closed.
+ */
+public class LifecycleTrackingExample {
+
+    public static void main(String[] args) throws Exception {
+        // Live-instance counts and leak reports
+        lifecycleTrackingExample();
+
+        // Allocation count can be raised from the command line, e.g. 100000000
+        int allocations = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        allocationBenchmark(allocations);
+    }
+
+    // Live-instance counts and leak reports
+    private static void lifecycleTrackingExample() throws InterruptedException {
+        System.out.println("\n=== Live Instance Counts ===");
+
+        List<TrackedPerson> kept = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            TrackedPerson person = new TrackedPerson("Temporary", i);
+            if (i < 10) {
+                kept.add(person);
+            }
+        }
+        System.out.println("After creating 1000: " + LifecycleTracker.counts(TrackedPerson.class));
+        awaitCollected(TrackedPerson.class, 10);
+        System.out.println("After GC, 10 still referenced: " + LifecycleTracker.counts(TrackedPerson.class));
+        System.out.println("Kept " + kept.size() + " people, first " + kept.get(0).getName());
+
+        System.out.println("\n=== Leak Reports ===");
+
+        try (LeakyFile closed = new LeakyFile("closed.txt")) {
+            System.out.println("Using " + closed.name);
+        }
+        new LeakyFile("forgotten.txt");
+        awaitCollected(LeakyFile.class, 0);
+        for (LifecycleTracker.Leak leak : LifecycleTracker.drainLeaks()) {
+            System.out.println("Leaked: " + leak);
+        }
+        System.out.println("Tracked classes: " + LifecycleTracker.snapshot().keySet());
+    }
+
+    // Collects until at most `live` instances of the class remain, for up to a second
+    private static void awaitCollected(Class<?> type, long live) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (LifecycleTracker.counts(type).live() > live && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+    }
+
+    // Allocation throughput and GC pauses: no hook, Cleaner registrations, and finalize()
+    private static void allocationBenchmark(int allocations) throws InterruptedException {
+        System.out.println("\n=== Benchmark: " + allocations + " Person allocations ===");
+        GcPauses pauses = GcPauses.install();
+
+        System.out.printf("%-22s %9s %9s %6s %10s %10s %12s%n",
+                          "variant", "ns/alloc", "total ms", "GCs", "pause ms", "max pause", "not yet freed");
+        // Cheapest first: a variant that leaves a backlog grows the heap for the ones after it
+        runBenchmark("plain", allocations, pauses, PlainPerson::new, () -> 0);
+        LifecycleTracker.sampleEvery(SampledPerson.class, 256);
+        runBenchmark("Cleaner, 1 in 256", allocations, pauses, SampledPerson::new,
+                     () -> LifecycleTracker.counts(SampledPerson.class).live());
+        runBenchmark("Cleaner, every object", allocations, pauses, TrackedPerson::new,
+                     () -> LifecycleTracker.counts(TrackedPerson.class).live());
+        runBenchmark("finalize()", allocations, pauses, FinalizedPerson::new, FinalizedPerson::live);
+    }
+
+    private static void runBenchmark(String name, int allocations, GcPauses pauses,
+                                     IntFunction<Object> factory, LongSupplier live)
+            throws InterruptedException {
+        // A short warm-up so the allocation path is compiled before timing
+        Object[] sink = new Object[256];
+        for (int i = 0; i < 100_000; i++) {
+            sink[i & 255] = factory.apply(i);
+        }
+        Arrays.fill(sink, null);
+        settle(live);
+
+        pauses.reset();
+        long start = System.nanoTime();
+        for (int i = 0; i < allocations; i++) {
+            sink[i & 255] = factory.apply(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        Arrays.fill(sink, null);
+        long pending = live.getAsLong();
+        System.out.printf("%-22s %9.2f %9d %6d %10.1f %10.1f %12d%n",
+                          name, (double) elapsed / allocations, elapsed / 1_000_000, pauses.count(),
+                          pauses.totalMillis(), pauses.maxMillis(), pending);
+        settle(live);
+    }
+
+    // Runs collections until the tracked objects from the previous variant are gone, for up to thirty seconds
+    private static void settle(LongSupplier live) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        do {
+            System.gc();
+            Thread.sleep(20);
+        } while (live.getAsLong() > 0 && System.nanoTime() < deadline);
+    }
+
+    /**
+     * Per-class created and collected counts, and leak reports for resources
+     * that are collected before they are closed.
+     *
+     * Every tracked object is registered with one shared Cleaner. The cleaning
+     * action must not refer to the object, or it could never become phantom
+     * reachable, so it only holds the counters of the object's class (or the
+     * leak state of a resource).
+     */
+    static final class LifecycleTracker {
+        private static final Cleaner CLEANER = Cleaner.create();
+        private static final ConcurrentHashMap<Class<?>, ClassCounters> BY_CLASS = new ConcurrentHashMap<>();
+        private static final ClassValue<ClassCounters> COUNTERS = new ClassValue<>() {
+            @Override
+            protected ClassCounters computeValue(Class<?> type) {
+                return BY_CLASS.computeIfAbsent(type, key -> new ClassCounters());
+            }
+        };
+        private static final ConcurrentLinkedQueue<Leak> LEAKS = new ConcurrentLinkedQueue<>();
+
+        private LifecycleTracker() {
+        }
+
+        private static final class ClassCounters {
+            private final LongAdder created = new LongAdder();
+            private final LongAdder sampled = new LongAdder();
+            private final LongAdder sampledCollected = new LongAdder();
+            private volatile int sampleInterval = 1;
+        }
+
+        /**
+         * Exact created count and the live count, which is estimated from the
+         * sampled instances when the class is sampled.
+         */
+        record Counts(long created, long live, int sampleInterval) {
+            @Override
+            public String toString() {
+                return "created=" + created + ", live=" + (sampleInterval == 1 ? "" : "~") + live;
+            }
+        }
+
+        record Leak(Class<?> type, String description, long ageMillis) {
+            @Override
+            public String toString() {
+                return type.getSimpleName() + " '" + description + "' collected without close() after "
+                       + ageMillis + " ms";
+            }
+        }
+
+        /**
+         * Watches only about one instance in `interval` of the class with the
+         * Cleaner. Registering every instance costs hundreds of nanoseconds and
+         * keeps the cleaner thread busy; for classes allocated at high rates a
+         * sample estimates the live count well enough.
+         */
+        public static void sampleEvery(Class<?> type, int interval) {
+            if (interval < 1) {
+                throw new IllegalArgumentException("Sample interval must be positive: " + interval);
+            }
+            COUNTERS.get(type).sampleInterval = interval;
+        }
+
+        /**
+         * Counts the instance and counts it again once it has been collected.
+         * Call from the constructor, as the last statement.
+         */
+        public static void track(Object instance) {
+            ClassCounters counters = COUNTERS.get(instance.getClass());
+            counters.created.increment();
+            int interval = counters.sampleInterval;
+            if (interval == 1 || ThreadLocalRandom.current().nextInt(interval) == 0) {
+                counters.sampled.increment();
+                CLEANER.register(instance, counters.sampledCollected::increment);
+            }
+        }
+
+        /**
+         * Tracks an object that owns a resource. Closing the returned handle
+         * marks the resource released; if the owner is collected first, a
+         * Leak is recorded. Resources are never sampled.
+         */
+        public static ResourceHandle trackResource(Object owner, String description) {
+            ClassCounters counters = COUNTERS.get(owner.getClass());
+            counters.created.increment();
+            counters.sampled.increment();
+            LeakCheck check = new LeakCheck(owner.getClass(), description, counters);
+            return new ResourceHandle(check, CLEANER.register(owner, check));
+        }
+
+        public static Counts counts(Class<?> type) {
+            ClassCounters counters = BY_CLASS.get(type);
+            if (counters == null) {
+                return new Counts(0, 0, 1);
+            }
+            // Collected first, so live never goes negative while objects are being collected
+            long collected = counters.sampledCollected.sum();
+            int interval = counters.sampleInterval;
+            return new Counts(counters.created.sum(), (counters.sampled.sum() - collected) * interval, interval);
+        }
+
+        public static Map<String, Counts> snapshot() {
+            Map<String, Counts> snapshot = new TreeMap<>();
+            BY_CLASS.keySet().forEach(type -> snapshot.put(type.getName(), counts(type)));
+            return snapshot;
+        }
+
+        public static List<Leak> drainLeaks() {
+            List<Leak> drained = new ArrayList<>();
+            for (Leak leak; (leak = LEAKS.poll()) != null; ) {
+                drained.add(leak);
+            }
+            return drained;
+        }
+
+        private static final class LeakCheck implements Runnable {
+            private final Class<?> type;
+            private final String description;
+            private final ClassCounters counters;
+            private final long createdNanos = System.nanoTime();
+            private volatile boolean closed;
+
+            private LeakCheck(Class<?> type, String description, ClassCounters counters) {
+                this.type = type;
+                this.description = description;
+                this.counters = counters;
+            }
+
+            // Runs once: from ResourceHandle.close() or from the Cleaner thread
+            @Override
+            public void run() {
+                counters.sampledCollected.increment();
+                if (!closed) {
+                    LEAKS.add(new Leak(type, description,
+                                       TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - createdNanos)));
+                }
+            }
+        }
+
+        static final class ResourceHandle implements AutoCloseable {
+            private final LeakCheck check;
+            private final Cleaner.Cleanable cleanable;
+
+            private ResourceHandle(LeakCheck check, Cleaner.Cleanable cleanable) {
+                this.check = check;
+                this.cleanable = cleanable;
+            }
+
+            @Override
+            public void close() {
+                check.closed = true;
+                cleanable.clean();
+            }
+        }
+    }
+
+    /**
+     * Collection count and pauses, from the GC notifications of every collector.
+     */
+    static final class GcPauses {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalMillis = new LongAdder();
+        private volatile long maxMillis;
+
+        static GcPauses install() {
+            GcPauses pauses = new GcPauses();
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                ((NotificationEmitter) gc).addNotificationListener((notification, handback) -> {
+                    if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                        GarbageCollectionNotificationInfo info =
+                                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                        pauses.record(info.getGcInfo().getDuration());
+                    }
+                }, null, null);
+            }
+            return pauses;
+        }
+
+        private synchronized void record(long millis) {
+            count.increment();
+            totalMillis.add(millis);
+            maxMillis = Math.max(maxMillis, millis);
+        }
+
+        synchronized void reset() {
+            count.reset();
+            totalMillis.reset();
+            maxMillis = 0;
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        double totalMillis() {
+            return totalMillis.sum();
+        }
+
+        double maxMillis() {
+            return maxMillis;
+        }
+    }
+
+    /**
+     * Person without any lifecycle hook, the baseline.
+     */
+    static final class PlainPerson {
+        private final String name;
+        private final int age;
+
+        PlainPerson(int age) {
+            this.name = "Temporary";
+            this.age = age;
+        }
+    }
+
+    /**
+     * Person counting live instances the way ClassesAndObjects.Person did.
+     */
+    static final class FinalizedPerson {
+        private static final LongAdder CREATED = new LongAdder();
+        private static final LongAdder FINALIZED = new LongAdder();
+
+        private final String name;
+        private final int age;
+
+        FinalizedPerson(int age) {
+            this.name = "Temporary";
+            this.age = age;
+            CREATED.increment();
+        }
+
+        static long live() {
+            return CREATED.sum() - FINALIZED.sum();
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        protected void finalize() throws Throwable {
+            try {
+                FINALIZED.increment();
+            } finally {
+                super.finalize();
+            }
+        }
+    }
+
+    /**
+     * Person counted by the LifecycleTracker.
+     */
+    static final class TrackedPerson {
+        private final String name;
+        private final int age;
+
+        TrackedPerson(int age) {
+            this("Temporary", age);
+        }
+
+        TrackedPerson(String name, int age) {
+            this.name = name;
+            this.age = age;
+            LifecycleTracker.track(this);
+        }
+
+        String getName() {
+            return name;
+        }
+
+        int getAge() {
+            return age;
+        }
+    }
+
+    /**
+     * Person counted by the LifecycleTracker, with one instance in 256 watched.
+     */
+    static final class SampledPerson {
+        private final String name;
+        private final int age;
+
+        SampledPerson(int age) {
+            this.name = "Temporary";
+            this.age = age;
+            LifecycleTracker.track(this);
+        }
+    }
+
+    /**
+     * A resource owner that reports itself when it is collected without close().
+     */
+    static final class LeakyFile implements AutoCloseable {
+        private final String name;
+        private final LifecycleTracker.ResourceHandle handle;
+
+        LeakyFile(String name) {
+            this.name = name;
+            this.handle = LifecycleTracker.trackResource(this, name);
+        }
+
+        @Override
+        public void close() {
+            handle.close();
+        }
+    }
+}
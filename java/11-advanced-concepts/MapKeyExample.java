@@ -0,0 +1,474 @@
+package advanced;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * This class demonstrates immutable map keys with precomputed hashes, and a
+ * debug check for keys that change while they are in a map.
+ *
+ * ClassesAndObjects.Person recomputes its hash on every call and can be
+ * changed through setName() and setAge(); Rectangle has setters too. A
+ * HashMap files an entry under the key's hash at insertion, so a key that
+ * is changed afterwards stays in the wrong bucket: get() misses it, put()
+ * adds a duplicate, and nothing reports an error. The keys below are
+ * immutable and compute their hash once, in the constructor, and their
+ * equals() rejects unequal keys by comparing hashes before any field.
+ * Computing the hash once also makes it affordable to mix every bit of the
+ * fields, which matters for doubles.
+ * MutationCheckedMap, used when -Dmapkeys.debug=true, remembers each key's
+ * hash at insertion and fails on the first lookup miss after one changed.
+ */
+public class MapKeyExample {
+
+    public static void main(String[] args) {
+        // Immutable keys and the mutation check
+        mapKeyExample();
+
+        // Entry count can be raised from the command line, e.g. 10000000 with -Xmx4g
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        lookupBenchmark(entries);
+    }
+
+    // Immutable keys and the mutation check
+    private static void mapKeyExample() {
+        System.out.println("\n=== Mutable Keys ===");
+
+        Map<MutablePerson, String> roles = new HashMap<>();
+        MutablePerson alice = new MutablePerson("Alice", 25);
+        roles.put(alice, "admin");
+        alice.setAge(26);
+        System.out.println("After changing the key, get() finds: " + roles.get(alice));
+        System.out.println("containsKey(Alice, 26): " + roles.containsKey(new MutablePerson("Alice", 26)));
+        System.out.println("containsKey(Alice, 25): " + roles.containsKey(new MutablePerson("Alice", 25)));
+
+        System.out.println("\n=== Immutable Keys ===");
+
+        Map<PersonKey, String> keyedRoles = new HashMap<>();
+        PersonKey aliceKey = new MutablePerson("Alice", 25).toKey();
+        keyedRoles.put(aliceKey, "admin");
+        PersonKey older = aliceKey.withAge(26);
+        System.out.println("withAge() returns a new key; the stored one still finds: "
+                           + keyedRoles.get(new PersonKey("Alice", 25)));
+        System.out.println("The new key is a different entry: " + keyedRoles.get(older));
+
+        Map<RectangleKey, String> shapes = new HashMap<>();
+        shapes.put(new RectangleKey(5.0, 3.0), "door");
+        System.out.println("RectangleKey(5.0, 3.0): " + shapes.get(new MutableRectangle(5.0, 3.0).toKey()));
+
+        System.out.println("\n=== Mutation Check ===");
+
+        // Replacing a value through an equal key keeps the original key, so changing the new one is harmless
+        MutationCheckedMap<MutablePerson, String> replaced = new MutationCheckedMap<>(new HashMap<>());
+        replaced.put(new MutablePerson("Carol", 41), "editor");
+        MutablePerson carol = new MutablePerson("Carol", 41);
+        replaced.put(carol, "owner");
+        carol.setAge(42);
+        System.out.println("After replacing through an equal key and changing it: "
+                           + replaced.get(new MutablePerson("Carol", 41)) + ", miss without error: "
+                           + (replaced.get(new MutablePerson("Dave", 50)) == null));
+
+        MutationCheckedMap<MutablePerson, String> checked = new MutationCheckedMap<>(new HashMap<>());
+        MutablePerson bob = new MutablePerson("Bob", 30);
+        checked.put(bob, "auditor");
+        bob.setName("Robert");
+        try {
+            checked.get(bob);
+            System.out.println("Not detected");
+        } catch (IllegalStateException e) {
+            System.out.println("Detected: " + e.getMessage());
+        }
+        System.out.println("Maps from KeyedMaps.newHashMap() are checked: " + KeyedMaps.DEBUG
+                           + " (run with -Dmapkeys.debug=true to enable)");
+    }
+
+    // Lookups with equal, not identical, keys in maps of the given size
+    private static void lookupBenchmark(int entries) {
+        int lookups = 5_000_000;
+        System.out.println("\n=== Benchmark: " + lookups + " lookups in " + entries + "-entry maps ===");
+
+        // 100,000 names with 100 ages each gives enough distinct people; names are shared between keys
+        int nameCount = Math.max(1, entries / 100);
+        String[] names = new String[nameCount];
+        for (int i = 0; i < nameCount; i++) {
+            names[i] = "Person" + i;
+        }
+        Random random = new Random(42);
+        int[] targets = new int[lookups];
+        for (int i = 0; i < lookups; i++) {
+            targets[i] = random.nextInt(entries);
+        }
+        Integer value = 1;
+
+        // Each map is built after a collection, so it is not laid out among the previous map's garbage
+
+        {
+            System.gc();
+            Map<MutablePerson, Integer> map = new HashMap<>(entries * 2);
+            for (int i = 0; i < entries; i++) {
+                map.put(new MutablePerson(names[i / 100], i % 100), value);
+            }
+            MutablePerson[] keys = new MutablePerson[lookups];
+            for (int i = 0; i < lookups; i++) {
+                keys[i] = new MutablePerson(names[targets[i] / 100], targets[i] % 100);
+            }
+            runBenchmark("HashMap<Person>", lookups, () -> countHits(map, keys));
+        }
+        {
+            System.gc();
+            Map<PersonKey, Integer> map = new HashMap<>(entries * 2);
+            for (int i = 0; i < entries; i++) {
+                map.put(new PersonKey(names[i / 100], i % 100), value);
+            }
+            PersonKey[] keys = new PersonKey[lookups];
+            for (int i = 0; i < lookups; i++) {
+                keys[i] = new PersonKey(names[targets[i] / 100], targets[i] % 100);
+            }
+            runBenchmark("HashMap<PersonKey>", lookups, () -> countHits(map, keys));
+
+            MutationCheckedMap<PersonKey, Integer> checked = new MutationCheckedMap<>(map);
+            runBenchmark("MutationCheckedMap<PersonKey> (all hits)", lookups, () -> countHits(checked, keys));
+        }
+        {
+            System.gc();
+            Map<MutableRectangle, Integer> map = new HashMap<>(entries * 2);
+            for (int i = 0; i < entries; i++) {
+                map.put(new MutableRectangle(i / 1000 + 0.5, i % 1000 + 0.25), value);
+            }
+            MutableRectangle[] keys = new MutableRectangle[lookups];
+            for (int i = 0; i < lookups; i++) {
+                keys[i] = new MutableRectangle(targets[i] / 1000 + 0.5, targets[i] % 1000 + 0.25);
+            }
+            runBenchmark("HashMap<Rectangle>", lookups, () -> countHits(map, keys));
+        }
+        {
+            System.gc();
+            Map<RectangleKey, Integer> map = new HashMap<>(entries * 2);
+            for (int i = 0; i < entries; i++) {
+                map.put(new RectangleKey(i / 1000 + 0.5, i % 1000 + 0.25), value);
+            }
+            RectangleKey[] keys = new RectangleKey[lookups];
+            for (int i = 0; i < lookups; i++) {
+                keys[i] = new RectangleKey(targets[i] / 1000 + 0.5, targets[i] % 1000 + 0.25);
+            }
+            runBenchmark("HashMap<RectangleKey>", lookups, () -> countHits(map, keys));
+        }
+    }
+
+    private static <K> long countHits(Map<K, Integer> map, K[] keys) {
+        long hits = 0;
+        for (K key : keys) {
+            if (map.get(key) != null) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    // Best of three rounds after two warm-up rounds
+    private static void runBenchmark(String name, int count, LongSupplier body) {
+        long checksum = 0;
+        for (int i = 0; i < 2; i++) {
+            checksum += body.getAsLong();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            checksum += body.getAsLong();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-42s %7.2f ns/lookup  (checksum %d)%n",
+                          name, (double) best / count, checksum & 0xFFFF);
+    }
+
+    /**
+     * Immutable (name, age) key with its hash computed once.
+     */
+    static final class PersonKey {
+        private final String name;
+        private final int age;
+        private final int hash;
+
+        PersonKey(String name, int age) {
+            this.name = Objects.requireNonNull(name, "name");
+            this.age = age;
+            // Same formula as Person.hashCode(); HashMap spreads the bits itself
+            this.hash = 31 * name.hashCode() + age;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public PersonKey withName(String name) {
+            return new PersonKey(name, age);
+        }
+
+        public PersonKey withAge(int age) {
+            return new PersonKey(name, age);
+        }
+
+        // Hash first, so most unequal keys are rejected without reading the name
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof PersonKey)) return false;
+            PersonKey other = (PersonKey) obj;
+            if (hash != other.hash) return false;
+            if (this == other) return true;
+            return age == other.age && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return "PersonKey{name='" + name + "', age=" + age + "}";
+        }
+    }
+
+    /**
+     * Immutable (width, height) key with its hash computed once. Doubles are
+     * compared by bit pattern, like Double.equals, so NaN equals NaN and
+     * 0.0 differs from -0.0, keeping equals consistent with hashCode.
+     */
+    static final class RectangleKey {
+        private final double width;
+        private final double height;
+        private final int hash;
+
+        RectangleKey(double width, double height) {
+            this.width = width;
+            this.height = height;
+            // Mixes all 64 bits of each value; Double.hashCode folds them to 32 first, and
+            // values such as 3.5 and 2.25 leave the low half zero, so 31 * a + b collides a lot
+            long h = Double.doubleToLongBits(width) * 0x9E3779B97F4A7C15L + Double.doubleToLongBits(height);
+            h *= 0xC2B2AE3D27D4EB4FL;
+            this.hash = (int) (h ^ (h >>> 32));
+        }
+
+        public double getWidth() {
+            return width;
+        }
+
+        public double getHeight() {
+            return height;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof RectangleKey)) return false;
+            RectangleKey other = (RectangleKey) obj;
+            if (hash != other.hash) return false;
+            if (this == other) return true;
+            return Double.doubleToLongBits(width) == Double.doubleToLongBits(other.width)
+                   && Double.doubleToLongBits(height) == Double.doubleToLongBits(other.height);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return "RectangleKey{width=" + width + ", height=" + height + "}";
+        }
+    }
+
+    /**
+     * Chooses between plain and checked maps with the mapkeys.debug system property.
+     */
+    static final class KeyedMaps {
+        static final boolean DEBUG = Boolean.getBoolean("mapkeys.debug");
+
+        private KeyedMaps() {
+        }
+
+        static <K, V> Map<K, V> newHashMap() {
+            return DEBUG ? new MutationCheckedMap<>(new HashMap<>()) : new HashMap<>();
+        }
+    }
+
+    /**
+     * Map wrapper that records every key's hash when it is inserted. A lookup
+     * miss is what a changed key looks like from the outside, so after each
+     * miss the recorded hashes are compared with the current ones and the
+     * first changed key is reported. Hits cost one extra call; misses cost a
+     * scan of all keys, which is why this is for debugging only.
+     */
+    static final class MutationCheckedMap<K, V> extends AbstractMap<K, V> {
+        private final Map<K, V> map;
+        private final IdentityHashMap<K, Integer> hashes = new IdentityHashMap<>();
+
+        MutationCheckedMap(Map<K, V> map) {
+            this.map = map;
+            for (K key : map.keySet()) {
+                hashes.put(key, key.hashCode());
+            }
+        }
+
+        @Override
+        public V get(Object key) {
+            V value = map.get(key);
+            if (value == null) {
+                checkKeys();
+            }
+            return value;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            boolean found = map.containsKey(key);
+            if (!found) {
+                checkKeys();
+            }
+            return found;
+        }
+
+        @Override
+        public V put(K key, V value) {
+            // Replacing a value keeps the stored key object, so only a new key is recorded
+            boolean present = map.containsKey(key);
+            if (!present) {
+                checkKeys();
+            }
+            V previous = map.put(key, value);
+            if (!present) {
+                hashes.put(key, key.hashCode());
+            }
+            return previous;
+        }
+
+        @Override
+        public V remove(Object key) {
+            if (!map.containsKey(key)) {
+                checkKeys();
+                return null;
+            }
+            // The stored key object may be a different, equal instance
+            for (Iterator<K> keys = hashes.keySet().iterator(); keys.hasNext(); ) {
+                if (keys.next().equals(key)) {
+                    keys.remove();
+                    break;
+                }
+            }
+            return map.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+            hashes.clear();
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        // Read-only, so keys cannot leave the map without their recorded hash
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return Collections.unmodifiableMap(map).entrySet();
+        }
+
+        public void checkKeys() {
+            for (Map.Entry<K, Integer> entry : hashes.entrySet()) {
+                int now = entry.getKey().hashCode();
+                if (now != entry.getValue()) {
+                    throw new IllegalStateException("Key " + entry.getKey() + " changed while in the map (hash "
+                                                    + entry.getValue() + " at insertion, now " + now + ")");
+                }
+            }
+        }
+    }
+
+    /**
+     * The Person from ClassesAndObjects: mutable, hash recomputed on every call.
+     */
+    static final class MutablePerson {
+        private String name;
+        private int age;
+
+        MutablePerson(String name, int age) {
+            this.name = name;
+            this.age = age;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        public PersonKey toKey() {
+            return new PersonKey(name, age);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+
+            MutablePerson person = (MutablePerson) obj;
+            return age == person.age &&
+                   (name == null ? person.name == null : name.equals(person.name));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = name != null ? name.hashCode() : 0;
+            result = 31 * result + age;
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Person{name='" + name + "', age=" + age + "}";
+        }
+    }
+
+    /**
+     * The Rectangle from ClassesAndObjects, given value equality so it can be a key at all.
+     */
+    static final class MutableRectangle {
+        private double width;
+        private double height;
+
+        MutableRectangle(double width, double height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        public void setWidth(double width) {
+            this.width = width;
+        }
+
+        public RectangleKey toKey() {
+            return new RectangleKey(width, height);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+
+            MutableRectangle other = (MutableRectangle) obj;
+            return Double.compare(width, other.width) == 0 && Double.compare(height, other.height) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Double.hashCode(width) + Double.hashCode(height);
+        }
+    }
+}
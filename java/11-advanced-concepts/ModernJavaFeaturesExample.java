@@ -12,6 +12,10 @@ import java.net.http.*;
 
 public class ModernJavaFeaturesExample {
 
+    // DateTimeFormatter is immutable and thread-safe, so build it once and share it
+    private static final DateTimeFormatter DISPLAY_FORMATTER =
+            DateTimeFormatter.ofPattern("MMMM dd, yyyy 'at' hh:mm a");
+
     public static void main(String[] args) throws Exception {
         // Date and Time API (Java 8)
         dateTimeApiExample();
@@ -71,8 +75,7 @@ public class ModernJavaFeaturesExample {
         System.out.println("Current date and time: " + dateTime);
         
         // Formatting
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMMM dd, yyyy 'at' hh:mm a");
-        System.out.println("Formatted: " + dateTime.format(formatter));
+        System.out.println("Formatted: " + dateTime.format(DISPLAY_FORMATTER));
         
         // ZonedDateTime - date and time with timezone
         ZonedDateTime zonedDateTime = ZonedDateTime.now();
@@ -0,0 +1,357 @@
+package advanced;
+
+import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * This class demonstrates custom Spliterators for parallel streams.
+ *
+ * How well a parallel stream scales depends mostly on its source: it must split
+ * into balanced halves cheaply and report exact sizes (SIZED | SUBSIZED) so the
+ * framework can size its tasks. An ArrayList of boxed Integers splits fine but
+ * touches one object per element. The sources below stream primitive arrays
+ * and memory-mapped files directly, stop splitting below a configurable
+ * threshold, and can run in a dedicated ForkJoinPool instead of the common pool.
+ */
+public class ParallelSourcesExample {
+
+    public static void main(String[] args) throws Exception {
+        // Primitive array and memory-mapped file sources
+        parallelSourcesExample();
+
+        // Where parallel beats sequential
+        crossoverBenchmark();
+    }
+
+    // Primitive array and memory-mapped file sources
+    private static void parallelSourcesExample() throws Exception {
+        System.out.println("\n=== Parallel Sources ===");
+
+        int[] numbers = IntStream.rangeClosed(1, 10_000_000).toArray();
+
+        // Same query as LambdaAndStreamExample.parallelStreams(), without boxing
+        long evenSum = ParallelSources.stream(numbers, 64 * 1024, true)
+                .filter(n -> n % 2 == 0)
+                .asLongStream()
+                .sum();
+        System.out.println("Parallel sum of even numbers: " + evenSum);
+
+        // Run in a dedicated pool so blocking or long work does not occupy the common pool
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            long count = ParallelSources.runIn(pool, () ->
+                    ParallelSources.stream(numbers, 64 * 1024, true)
+                            .filter(n -> Thread.currentThread() instanceof ForkJoinWorkerThread
+                                         && ((ForkJoinWorkerThread) Thread.currentThread()).getPool() == pool)
+                            .count());
+            System.out.println("Elements processed by the dedicated pool: " + count + " of " + numbers.length);
+        } finally {
+            pool.shutdown();
+        }
+
+        // Memory-mapped file of ints
+        Path file = Files.createTempFile("ints", ".bin");
+        try {
+            writeInts(file, 1_000_000);
+            try (MappedIntFile mapped = MappedIntFile.open(file)) {
+                System.out.println("Mapped " + mapped.size() + " ints from " + file.getFileName());
+                long fileSum = ParallelSources.stream(mapped, 16 * 1024, true).asLongStream().sum();
+                System.out.println("Parallel sum over mapped file: " + fileSum);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        // Characteristics reported to the stream framework
+        Spliterator.OfInt spliterator = new IntArraySpliterator(numbers, 0, numbers.length, 1024);
+        System.out.println("SIZED: " + spliterator.hasCharacteristics(Spliterator.SIZED)
+                           + ", SUBSIZED: " + spliterator.hasCharacteristics(Spliterator.SUBSIZED)
+                           + ", estimateSize: " + spliterator.estimateSize());
+    }
+
+    private static void writeInts(Path file, int count) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (int i = 1; i <= count; i++) {
+                out.writeInt(i); // DataOutputStream writes big-endian, matching the mapping below
+            }
+        }
+    }
+
+    // Where parallel beats sequential
+    private static void crossoverBenchmark() {
+        System.out.println("\n=== Benchmark: sequential vs parallel (" + ForkJoinPool.getCommonPoolParallelism()
+                           + "-way common pool, " + Runtime.getRuntime().availableProcessors() + " CPUs) ===");
+        System.out.printf("%-10s %-10s %12s %12s %8s%n", "elements", "work/elem", "sequential", "parallel", "speedup");
+
+        int[] sizes = {1_000, 10_000, 100_000, 1_000_000, 10_000_000};
+        int[] workPerElement = {1, 10, 100};
+        int[] data = new Random(42).ints(sizes[sizes.length - 1], 0, 1000).toArray();
+
+        for (int work : workPerElement) {
+            for (int size : sizes) {
+                // Skip combinations that would take too long per round
+                if ((long) size * work > 200_000_000L) {
+                    continue;
+                }
+                IntUnaryOperator cost = x -> burn(x, work);
+                double sequential = measure(() -> ParallelSources.stream(data, 0, size, 4096, false).map(cost).asLongStream().sum());
+                double parallel = measure(() -> ParallelSources.stream(data, 0, size, 4096, true).map(cost).asLongStream().sum());
+                System.out.printf("%-10d %-10d %9.2f ms %9.2f ms %7.2fx%n",
+                                  size, work, sequential, parallel, sequential / parallel);
+            }
+        }
+    }
+
+    // Simulated per-element cost: a short dependent arithmetic chain
+    private static int burn(int x, int rounds) {
+        int h = x;
+        for (int i = 0; i < rounds; i++) {
+            h = h * 31 + (h >>> 7);
+        }
+        return h & 0xFF;
+    }
+
+    // Best of five rounds after three warm-up rounds, in milliseconds
+    private static double measure(LongSupplier body) {
+        long checksum = 0;
+        for (int i = 0; i < 3; i++) {
+            checksum += body.getAsLong();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            checksum += body.getAsLong();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (checksum == 42) {
+            System.out.println(); // Keeps the checksum alive
+        }
+        return best / 1e6;
+    }
+
+    /**
+     * Factory methods for primitive parallel stream sources.
+     */
+    static final class ParallelSources {
+        private ParallelSources() {
+        }
+
+        public static IntStream stream(int[] array, int splitThreshold, boolean parallel) {
+            return stream(array, 0, array.length, splitThreshold, parallel);
+        }
+
+        public static IntStream stream(int[] array, int from, int to, int splitThreshold, boolean parallel) {
+            return StreamSupport.intStream(new IntArraySpliterator(array, from, to, splitThreshold), parallel);
+        }
+
+        public static IntStream stream(MappedIntFile file, int splitThreshold, boolean parallel) {
+            return StreamSupport.intStream(new MappedIntSpliterator(file, 0, file.size(), splitThreshold), parallel);
+        }
+
+        /**
+         * Runs a stream pipeline inside the given pool. A parallel stream forks its
+         * subtasks into the pool of the thread that starts the terminal operation,
+         * so submitting the whole pipeline keeps the work out of the common pool.
+         */
+        public static <T> T runIn(ForkJoinPool pool, Supplier<T> pipeline) {
+            try {
+                return pool.submit(pipeline::get).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for pipeline");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new CompletionException(cause);
+            }
+        }
+    }
+
+    /**
+     * Balanced spliterator over a slice of an int[].
+     * Splits in half until a slice is no larger than splitThreshold.
+     */
+    static final class IntArraySpliterator implements Spliterator.OfInt {
+        // Same as Arrays.spliterator: not IMMUTABLE, since the caller still owns the array
+        private static final int CHARACTERISTICS = ORDERED | SIZED | SUBSIZED | NONNULL;
+
+        private final int[] array;
+        private final int splitThreshold;
+        private int index;
+        private final int fence;
+
+        IntArraySpliterator(int[] array, int from, int to, int splitThreshold) {
+            Objects.checkFromToIndex(from, to, array.length);
+            this.array = array;
+            this.index = from;
+            this.fence = to;
+            this.splitThreshold = Math.max(1, splitThreshold);
+        }
+
+        @Override
+        public OfInt trySplit() {
+            int remaining = fence - index;
+            if (remaining <= splitThreshold) {
+                return null;
+            }
+            int mid = index + (remaining >>> 1);
+            IntArraySpliterator prefix = new IntArraySpliterator(array, index, mid, splitThreshold);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (index < fence) {
+                action.accept(array[index++]);
+                return true;
+            }
+            return false;
+        }
+
+        // Bulk traversal: a plain indexed loop the JIT can optimize well
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            int[] a = array;
+            int end = fence;
+            for (int i = index; i < end; i++) {
+                action.accept(a[i]);
+            }
+            index = end;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return CHARACTERISTICS;
+        }
+    }
+
+    /**
+     * A file of big-endian ints mapped into memory in chunks.
+     * A single MappedByteBuffer is limited to 2 GB, so larger files use several.
+     */
+    static final class MappedIntFile implements Closeable {
+        private static final int CHUNK_SHIFT = 28; // 2^28 ints = 1 GB per chunk
+        private static final long CHUNK_INTS = 1L << CHUNK_SHIFT;
+        private static final int CHUNK_MASK = (int) CHUNK_INTS - 1;
+
+        private final FileChannel channel;
+        private final IntBuffer[] chunks;
+        private final long size;
+
+        private MappedIntFile(FileChannel channel, IntBuffer[] chunks, long size) {
+            this.channel = channel;
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        public static MappedIntFile open(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long size = channel.size() / Integer.BYTES;
+                int chunkCount = (int) ((size + CHUNK_INTS - 1) >>> CHUNK_SHIFT);
+                IntBuffer[] chunks = new IntBuffer[chunkCount];
+                for (int i = 0; i < chunkCount; i++) {
+                    long first = (long) i << CHUNK_SHIFT;
+                    long ints = Math.min(CHUNK_INTS, size - first);
+                    chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, first * Integer.BYTES, ints * Integer.BYTES)
+                                       .order(ByteOrder.BIG_ENDIAN)
+                                       .asIntBuffer();
+                }
+                return new MappedIntFile(channel, chunks, size);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        public long size() {
+            return size;
+        }
+
+        public int get(long index) {
+            return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) index & CHUNK_MASK);
+        }
+
+        // The mapping itself stays valid until the buffers are garbage collected
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Balanced spliterator over a range of a MappedIntFile.
+     */
+    static final class MappedIntSpliterator implements Spliterator.OfInt {
+        private static final int CHARACTERISTICS = SIZED | SUBSIZED | ORDERED | IMMUTABLE | NONNULL;
+
+        private final MappedIntFile file;
+        private final long splitThreshold;
+        private long index;
+        private final long fence;
+
+        MappedIntSpliterator(MappedIntFile file, long from, long to, long splitThreshold) {
+            this.file = file;
+            this.index = from;
+            this.fence = to;
+            this.splitThreshold = Math.max(1, splitThreshold);
+        }
+
+        @Override
+        public OfInt trySplit() {
+            long remaining = fence - index;
+            if (remaining <= splitThreshold) {
+                return null;
+            }
+            long mid = index + (remaining >>> 1);
+            MappedIntSpliterator prefix = new MappedIntSpliterator(file, index, mid, splitThreshold);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (index < fence) {
+                action.accept(file.get(index++));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            for (long i = index; i < fence; i++) {
+                action.accept(file.get(i));
+            }
+            index = fence;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return CHARACTERISTICS;
+        }
+    }
+}
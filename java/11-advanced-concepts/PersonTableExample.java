@@ -0,0 +1,420 @@
+package advanced;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * This class demonstrates a columnar table of people, queried with tight
+ * loops over primitive arrays instead of streams over objects.
+ *
+ * LambdaAndStreamExample, ListExamples, ArrayListExample and the 03/07
+ * examples each keep people as a List of small Person objects: one header
+ * and one pointer per row, scattered over the heap, and every query chases
+ * those pointers. PersonTable stores the same rows as columns:
+ *   - ages in an int[], scanned sequentially by every age query
+ *   - names dictionary-encoded: an int[] of codes into a table of distinct names
+ *   - filters produce selection vectors (int[] of row numbers), filled without
+ *     branches so that unpredictable predicates do not stall the loop
+ *   - grouping and sorting by age use counting sort, since ages are small ints
+ * PersonRow is a view of one row with the getters of the existing Person
+ * classes, for code that still wants objects.
+ */
+public class PersonTableExample {
+
+    public static void main(String[] args) {
+        // The streamCollectors() queries against a PersonTable
+        personTableExample();
+
+        // Row count can be raised from the command line, e.g. 50000000 with -Xmx4g
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        benchmark(rows);
+    }
+
+    // The streamCollectors() queries against a PersonTable
+    private static void personTableExample() {
+        System.out.println("\n=== Person Table ===");
+
+        PersonTable people = new PersonTable();
+        people.add("Alice", 25);
+        people.add("Bob", 30);
+        people.add("Charlie", 35);
+        people.add("David", 25);
+        people.add("Eve", 30);
+
+        System.out.println("Rows: " + people.asList());
+        System.out.println("Distinct names: " + people.distinctNames());
+
+        PersonTable.AgeGroups byAge = people.groupByAge();
+        for (int age : byAge.ages()) {
+            System.out.println("Age " + age + ": " + people.rows(byAge.rows(age)));
+        }
+
+        int[] older = people.filterAgeGreaterThan(28);
+        System.out.println("People older than 28: " + people.rows(older));
+        System.out.println("People 28 or younger: " + people.rows(people.filterAge(age -> age <= 28)));
+
+        System.out.println("Sorted by age: " + people.rows(people.sortedByAge()));
+        System.out.println("Age statistics: " + people.ageStatistics());
+
+        // Back to objects for existing code
+        List<LambdaPerson> objects = people.toObjects(LambdaPerson::new);
+        System.out.println("As Person objects: " + objects);
+        PersonTable copy = PersonTable.from(objects, LambdaPerson::getName, LambdaPerson::getAge);
+        System.out.println("Round trip: " + copy.asList());
+    }
+
+    // List<Person> with streams against PersonTable, for each streamCollectors() query
+    private static void benchmark(int rows) {
+        System.out.println("\n=== Benchmark: " + rows + " rows ===");
+
+        String[] names = {"Alice", "Bob", "Charlie", "David", "Eve", "Frank", "Grace", "Heidi"};
+        Random random = new Random(42);
+        List<LambdaPerson> list = new ArrayList<>(rows);
+        PersonTable table = new PersonTable(rows);
+        for (int i = 0; i < rows; i++) {
+            String name = names[random.nextInt(names.length)];
+            int age = 18 + random.nextInt(70);
+            list.add(new LambdaPerson(name, age));
+            table.add(name, age);
+        }
+
+        runBenchmark("groupingBy(age, counting)", rows,
+                     () -> list.stream().collect(Collectors.groupingBy(LambdaPerson::getAge, Collectors.counting())).get(30));
+        runBenchmark("PersonTable.countByAge", rows,
+                     () -> table.countByAge()[30]);
+
+        runBenchmark("groupingBy(age)", rows,
+                     () -> (long) list.stream().collect(Collectors.groupingBy(LambdaPerson::getAge)).get(30).size());
+        runBenchmark("PersonTable.groupByAge", rows,
+                     () -> (long) table.groupByAge().rows(30).length);
+
+        runBenchmark("partitioningBy(age > 28)", rows,
+                     () -> (long) list.stream().collect(Collectors.partitioningBy(p -> p.getAge() > 28)).get(true).size());
+        runBenchmark("PersonTable.filterAgeGreaterThan(28)", rows,
+                     () -> (long) table.filterAgeGreaterThan(28).length);
+
+        runBenchmark("sorted(comparingInt(age))", rows,
+                     () -> (long) list.stream().sorted(Comparator.comparingInt(LambdaPerson::getAge))
+                                      .collect(Collectors.toList()).get(rows / 2).getAge());
+        runBenchmark("PersonTable.sortedByAge", rows,
+                     () -> (long) table.getAge(table.sortedByAge()[rows / 2]));
+
+        runBenchmark("summarizingInt(age)", rows,
+                     () -> list.stream().collect(Collectors.summarizingInt(LambdaPerson::getAge)).getSum());
+        runBenchmark("PersonTable.ageStatistics", rows,
+                     () -> table.ageStatistics().getSum());
+
+        runBenchmark("filter(name = Eve).count()", rows,
+                     () -> list.stream().filter(p -> p.getName().equals("Eve")).count());
+        runBenchmark("PersonTable.filterName(Eve)", rows,
+                     () -> (long) table.filterName("Eve").length);
+    }
+
+    // Best of three rounds after two warm-up rounds
+    private static void runBenchmark(String name, int count, Supplier<Long> body) {
+        long checksum = 0;
+        for (int i = 0; i < 2; i++) {
+            checksum += body.get();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            checksum += body.get();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-40s %7.2f ns/row  (checksum %d)%n",
+                          name, (double) best / count, checksum & 0xFFFF);
+    }
+
+    /**
+     * People stored as columns: ages, and name codes into a dictionary of
+     * distinct names. Rows are appended and never removed; queries return
+     * row numbers, which rows() or getName()/getAge() turn back into values.
+     */
+    static final class PersonTable {
+        // Bounds the counting-sort arrays, which have one slot per possible age
+        static final int MAX_AGE = 150;
+
+        private int[] ages;
+        private int[] nameCodes;
+        private int size;
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+        private int maxAge = -1;
+
+        PersonTable() {
+            this(16);
+        }
+
+        PersonTable(int expectedRows) {
+            ages = new int[Math.max(1, expectedRows)];
+            nameCodes = new int[Math.max(1, expectedRows)];
+        }
+
+        static <T> PersonTable from(Collection<? extends T> people, Function<? super T, String> name,
+                                    ToIntFunction<? super T> age) {
+            PersonTable table = new PersonTable(people.size());
+            for (T person : people) {
+                table.add(name.apply(person), age.applyAsInt(person));
+            }
+            return table;
+        }
+
+        public void add(String name, int age) {
+            Objects.requireNonNull(name, "name");
+            if (age < 0 || age > MAX_AGE) {
+                throw new IllegalArgumentException("Age must be between 0 and " + MAX_AGE + ": " + age);
+            }
+            if (size == ages.length) {
+                ages = Arrays.copyOf(ages, size * 2);
+                nameCodes = Arrays.copyOf(nameCodes, size * 2);
+            }
+            Integer code = codes.get(name);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(name);
+                codes.put(name, code);
+            }
+            ages[size] = age;
+            nameCodes[size] = code;
+            size++;
+            maxAge = Math.max(maxAge, age);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int getAge(int row) {
+            Objects.checkIndex(row, size);
+            return ages[row];
+        }
+
+        public String getName(int row) {
+            Objects.checkIndex(row, size);
+            return dictionary.get(nameCodes[row]);
+        }
+
+        public List<String> distinctNames() {
+            return Collections.unmodifiableList(dictionary);
+        }
+
+        // Selection vector of rows whose age passes the predicate
+        public int[] filterAge(IntPredicate predicate) {
+            int[] selected = new int[size];
+            int count = 0;
+            for (int row = 0; row < size; row++) {
+                selected[count] = row;
+                count += predicate.test(ages[row]) ? 1 : 0;
+            }
+            return Arrays.copyOf(selected, count);
+        }
+
+        // Same as filterAge(age -> age > threshold), written out so the loop has no call in it
+        public int[] filterAgeGreaterThan(int threshold) {
+            // Every age passes below -1; clamping keeps limit - age from overflowing
+            int limit = Math.max(threshold, -1);
+            int[] selected = new int[size];
+            int[] ages = this.ages;
+            int count = 0;
+            for (int row = 0; row < size; row++) {
+                selected[count] = row;
+                count += (limit - ages[row]) >>> 31;
+            }
+            return Arrays.copyOf(selected, count);
+        }
+
+        // Compares name codes, so the name is looked up once instead of compared per row
+        public int[] filterName(String name) {
+            Integer code = codes.get(name);
+            if (code == null) {
+                return new int[0];
+            }
+            int target = code;
+            int[] selected = new int[size];
+            int count = 0;
+            for (int row = 0; row < size; row++) {
+                selected[count] = row;
+                count += nameCodes[row] == target ? 1 : 0;
+            }
+            return Arrays.copyOf(selected, count);
+        }
+
+        // Index is the age, value the number of rows with that age
+        public long[] countByAge() {
+            long[] counts = new long[maxAge + 1];
+            for (int row = 0; row < size; row++) {
+                counts[ages[row]]++;
+            }
+            return counts;
+        }
+
+        public IntSummaryStatistics ageStatistics() {
+            IntSummaryStatistics statistics = new IntSummaryStatistics();
+            if (size == 0) {
+                return statistics;
+            }
+            long sum = 0;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int row = 0; row < size; row++) {
+                int age = ages[row];
+                sum += age;
+                min = Math.min(min, age);
+                max = Math.max(max, age);
+            }
+            return new IntSummaryStatistics(size, min, max, sum);
+        }
+
+        /**
+         * Rows grouped by age with one counting-sort pass: a histogram gives
+         * each age its offset in a single int[] of row numbers.
+         */
+        public AgeGroups groupByAge() {
+            int[] offsets = new int[maxAge + 2];
+            for (int row = 0; row < size; row++) {
+                offsets[ages[row] + 1]++;
+            }
+            for (int age = 0; age <= maxAge; age++) {
+                offsets[age + 1] += offsets[age];
+            }
+            int[] rows = new int[size];
+            int[] next = Arrays.copyOf(offsets, maxAge + 1);
+            for (int row = 0; row < size; row++) {
+                rows[next[ages[row]]++] = row;
+            }
+            return new AgeGroups(offsets, rows);
+        }
+
+        // Row numbers in ascending age order; stable, so equal ages keep insertion order
+        public int[] sortedByAge() {
+            return groupByAge().rows;
+        }
+
+        public PersonRow row(int row) {
+            Objects.checkIndex(row, size);
+            return new PersonRow(this, row);
+        }
+
+        public List<PersonRow> rows(int[] selection) {
+            List<PersonRow> rows = new ArrayList<>(selection.length);
+            for (int row : selection) {
+                rows.add(row(row));
+            }
+            return rows;
+        }
+
+        // Read-only list view; rows are created on access
+        public List<PersonRow> asList() {
+            return new AbstractList<>() {
+                @Override
+                public PersonRow get(int index) {
+                    return row(index);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        public <T> List<T> toObjects(BiFunction<String, Integer, T> factory) {
+            List<T> objects = new ArrayList<>(size);
+            for (int row = 0; row < size; row++) {
+                objects.add(factory.apply(dictionary.get(nameCodes[row]), ages[row]));
+            }
+            return objects;
+        }
+
+        /**
+         * Result of groupByAge(): the row numbers of all rows, ordered by age,
+         * and for each age the range of that array holding its rows.
+         */
+        static final class AgeGroups {
+            private final int[] offsets;
+            private final int[] rows;
+
+            private AgeGroups(int[] offsets, int[] rows) {
+                this.offsets = offsets;
+                this.rows = rows;
+            }
+
+            // Ages that have at least one row, ascending
+            public int[] ages() {
+                return IntStream.range(0, offsets.length - 1)
+                        .filter(age -> offsets[age + 1] > offsets[age])
+                        .toArray();
+            }
+
+            public int[] rows(int age) {
+                if (age < 0 || age >= offsets.length - 1) {
+                    return new int[0];
+                }
+                return Arrays.copyOfRange(rows, offsets[age], offsets[age + 1]);
+            }
+
+            public int count(int age) {
+                return age < 0 || age >= offsets.length - 1 ? 0 : offsets[age + 1] - offsets[age];
+            }
+        }
+    }
+
+    /**
+     * One row of a PersonTable, with the getters of the Person classes in
+     * the other examples.
+     */
+    static final class PersonRow {
+        private final PersonTable table;
+        private final int row;
+
+        private PersonRow(PersonTable table, int row) {
+            this.table = table;
+            this.row = row;
+        }
+
+        public String getName() {
+            return table.getName(row);
+        }
+
+        public int getAge() {
+            return table.getAge(row);
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        @Override
+        public String toString() {
+            return getName() + "(" + getAge() + ")";
+        }
+    }
+
+    /**
+     * The Person from LambdaAndStreamExample, the object layout being compared against.
+     */
+    static class LambdaPerson {
+        private final String name;
+        private final int age;
+
+        public LambdaPerson(String name, int age) {
+            this.name = name;
+            this.age = age;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        @Override
+        public String toString() {
+            return name + "(" + age + ")";
+        }
+    }
+}
@@ -0,0 +1,516 @@
+package advanced;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * This class demonstrates collectors that group by primitive int keys.
+ *
+ * Collectors.groupingBy boxes every key into an Integer and, for parallel
+ * streams, builds one HashMap per split that is merged at the end. The
+ * collectors below keep keys as ints in open-addressing tables:
+ *   - countingByInt / groupingByInt: per-split primitive maps, cheap to merge
+ *   - concurrentCountingByInt: one shared, lock-striped map for all threads
+ *   - statsByInt: count, sum, min and max per key in a single pass
+ */
+public class PrimitiveCollectorsExample {
+
+    public static void main(String[] args) {
+        // The streamCollectors() queries rewritten with primitive collectors
+        primitiveCollectorsExample();
+
+        // Record count can be raised from the command line, e.g. 100000000 with a large -Xmx
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        benchmark(count);
+    }
+
+    // The streamCollectors() queries rewritten with primitive collectors
+    private static void primitiveCollectorsExample() {
+        System.out.println("\n=== Primitive Collectors ===");
+
+        List<Person> people = Arrays.asList(
+                new Person("Alice", 25),
+                new Person("Bob", 30),
+                new Person("Charlie", 35),
+                new Person("David", 25),
+                new Person("Eve", 30)
+        );
+
+        IntObjectMap<List<Person>> peopleByAge = people.stream()
+                .collect(PrimitiveCollectors.groupingByInt(Person::getAge));
+        System.out.println("People grouped by age: " + peopleByAge);
+
+        IntLongMap countByAge = people.parallelStream()
+                .collect(PrimitiveCollectors.concurrentCountingByInt(Person::getAge));
+        System.out.println("Count by age (concurrent): " + countByAge);
+
+        long[] partitioned = people.stream()
+                .collect(PrimitiveCollectors.partitioningCount(p -> p.getAge() > 28));
+        System.out.println("Older than 28: " + partitioned[1] + ", 28 or younger: " + partitioned[0]);
+
+        IntStatsTable statsByFirstLetter = people.stream()
+                .collect(PrimitiveCollectors.statsByInt(p -> p.getName().charAt(0), Person::getAge));
+        System.out.println("Age statistics by first letter: " + statsByFirstLetter);
+        System.out.println("Overall: " + people.stream().collect(PrimitiveCollectors.statsByInt(p -> 0, Person::getAge)).get(0));
+    }
+
+    // JDK Collectors vs primitive collectors, sequential and parallel
+    private static void benchmark(int count) {
+        System.out.println("\n=== Benchmark: " + count + " Person records ===");
+
+        String[] names = {"Alice", "Bob", "Charlie", "David", "Eve", "Frank", "Grace", "Heidi"};
+        Random random = new Random(42);
+        Person[] array = new Person[count];
+        for (int i = 0; i < count; i++) {
+            array[i] = new Person(names[i & 7], 18 + random.nextInt(70));
+        }
+        List<Person> people = Arrays.asList(array);
+
+        for (boolean parallel : new boolean[] {false, true}) {
+            String mode = parallel ? "parallel" : "sequential";
+            Supplier<Stream<Person>> source = () -> parallel ? people.parallelStream() : people.stream();
+
+            runBenchmark("groupingBy(age, counting) " + mode, count,
+                         () -> source.get().collect(Collectors.groupingBy(Person::getAge, Collectors.counting())).get(30));
+            runBenchmark("groupingByConcurrent " + mode, count,
+                         () -> source.get().collect(Collectors.groupingByConcurrent(Person::getAge, Collectors.counting())).get(30));
+            runBenchmark("countingByInt " + mode, count,
+                         () -> source.get().collect(PrimitiveCollectors.countingByInt(Person::getAge)).get(30));
+            runBenchmark("concurrentCountingByInt " + mode, count,
+                         () -> source.get().collect(PrimitiveCollectors.concurrentCountingByInt(Person::getAge)).get(30));
+            runBenchmark("groupingBy(summarizingInt) " + mode, count,
+                         () -> source.get().collect(Collectors.groupingBy(p -> p.getName().length(),
+                                                                          Collectors.summarizingInt(Person::getAge))).get(5).getSum());
+            runBenchmark("statsByInt " + mode, count,
+                         () -> source.get().collect(PrimitiveCollectors.statsByInt(p -> p.getName().length(),
+                                                                                   Person::getAge)).get(5).getSum());
+            runBenchmark("partitioningBy(counting) " + mode, count,
+                         () -> source.get().collect(Collectors.partitioningBy(p -> p.getAge() > 28, Collectors.counting())).get(true));
+            runBenchmark("partitioningCount " + mode, count,
+                         () -> source.get().collect(PrimitiveCollectors.partitioningCount(p -> p.getAge() > 28))[1]);
+        }
+    }
+
+    // Best of three rounds after two warm-up rounds
+    private static void runBenchmark(String name, int count, Supplier<Long> body) {
+        long checksum = 0;
+        for (int i = 0; i < 2; i++) {
+            checksum += body.get();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            checksum += body.get();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-40s %7.2f ns/record  (checksum %d)%n",
+                          name, (double) best / count, checksum & 0xFFFF);
+    }
+
+    /**
+     * Factory methods for the primitive-keyed collectors.
+     */
+    static final class PrimitiveCollectors {
+        private PrimitiveCollectors() {
+        }
+
+        public static <T> Collector<T, ?, IntObjectMap<List<T>>> groupingByInt(ToIntFunction<? super T> classifier) {
+            return Collector.of(
+                    IntObjectMap::new,
+                    (map, element) -> map.computeIfAbsent(classifier.applyAsInt(element), k -> new ArrayList<>()).add(element),
+                    (left, right) -> {
+                        right.forEach((key, list) -> left.computeIfAbsent(key, k -> new ArrayList<>()).addAll(list));
+                        return left;
+                    });
+        }
+
+        public static <T> Collector<T, ?, IntLongMap> countingByInt(ToIntFunction<? super T> classifier) {
+            return Collector.of(
+                    IntLongMap::new,
+                    (map, element) -> map.addTo(classifier.applyAsInt(element), 1),
+                    (left, right) -> {
+                        left.addAll(right);
+                        return left;
+                    });
+        }
+
+        /**
+         * All threads accumulate into one shared map, so nothing is merged at the end.
+         * Contention is spread over lock stripes chosen by key hash.
+         */
+        public static <T> Collector<T, ?, IntLongMap> concurrentCountingByInt(ToIntFunction<? super T> classifier) {
+            return Collector.<T, StripedIntLongMap, IntLongMap>of(
+                    StripedIntLongMap::new,
+                    (map, element) -> map.addTo(classifier.applyAsInt(element), 1),
+                    (left, right) -> {
+                        // Only reached when the stream is ordered and cannot run concurrently
+                        left.addAll(right);
+                        return left;
+                    },
+                    StripedIntLongMap::snapshot,
+                    Collector.Characteristics.CONCURRENT,
+                    Collector.Characteristics.UNORDERED);
+        }
+
+        // Fused groupingBy + summarizingInt: no IntSummaryStatistics object per group while collecting
+        public static <T> Collector<T, ?, IntStatsTable> statsByInt(ToIntFunction<? super T> classifier,
+                                                                   ToIntFunction<? super T> mapper) {
+            return Collector.of(
+                    IntStatsTable::new,
+                    (table, element) -> table.accept(classifier.applyAsInt(element), mapper.applyAsInt(element)),
+                    (left, right) -> {
+                        left.addAll(right);
+                        return left;
+                    });
+        }
+
+        // Index 0 counts non-matching elements, index 1 matching ones
+        public static <T> Collector<T, ?, long[]> partitioningCount(Predicate<? super T> predicate) {
+            return Collector.of(
+                    () -> new long[2],
+                    (counts, element) -> counts[predicate.test(element) ? 1 : 0]++,
+                    (left, right) -> {
+                        left[0] += right[0];
+                        left[1] += right[1];
+                        return left;
+                    });
+        }
+    }
+
+    @FunctionalInterface
+    interface IntLongConsumer {
+        void accept(int key, long value);
+    }
+
+    @FunctionalInterface
+    interface IntObjectConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    // Spreads nearby keys (ages, ids) across the table
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Open-addressing int to long map with linear probing.
+     */
+    static final class IntLongMap {
+        private int[] keys;
+        private long[] values;
+        private boolean[] used;
+        private int size;
+
+        IntLongMap() {
+            this(16);
+        }
+
+        IntLongMap(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+            keys = new int[capacity];
+            values = new long[capacity];
+            used = new boolean[capacity];
+        }
+
+        public void addTo(int key, long delta) {
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (used[slot]) {
+                if (keys[slot] == key) {
+                    values[slot] += delta;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            used[slot] = true;
+            keys[slot] = key;
+            values[slot] = delta;
+            if (++size * 4 > keys.length * 3) {
+                resize();
+            }
+        }
+
+        public long get(int key) {
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (used[slot]) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return 0;
+        }
+
+        public boolean containsKey(int key) {
+            int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; used[slot]; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void addAll(IntLongMap other) {
+            other.forEach(this::addTo);
+        }
+
+        public void forEach(IntLongConsumer action) {
+            for (int i = 0; i < keys.length; i++) {
+                if (used[i]) {
+                    action.accept(keys[i], values[i]);
+                }
+            }
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            long[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new int[oldKeys.length * 2];
+            values = new long[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    addTo(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        // Sorted by key, like a TreeMap, so output is stable
+        @Override
+        public String toString() {
+            TreeMap<Integer, Long> sorted = new TreeMap<>();
+            forEach(sorted::put);
+            return sorted.toString();
+        }
+    }
+
+    /**
+     * Open-addressing int to object map with linear probing.
+     */
+    static final class IntObjectMap<V> {
+        private int[] keys = new int[16];
+        private Object[] values = new Object[16];
+        private int size;
+
+        @SuppressWarnings("unchecked")
+        public V get(int key) {
+            int slot = find(key);
+            return slot < 0 ? null : (V) values[slot];
+        }
+
+        @SuppressWarnings("unchecked")
+        public V computeIfAbsent(int key, IntFunction<? extends V> factory) {
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (values[slot] != null) {
+                if (keys[slot] == key) {
+                    return (V) values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            V value = Objects.requireNonNull(factory.apply(key));
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size * 4 > keys.length * 3) {
+                resize();
+            }
+            return value;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        public void forEach(IntObjectConsumer<? super V> action) {
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != null) {
+                    action.accept(keys[i], (V) values[i]);
+                }
+            }
+        }
+
+        private int find(int key) {
+            int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void resize() {
+            int[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new Object[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    V value = (V) oldValues[i];
+                    computeIfAbsent(oldKeys[i], k -> value);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            TreeMap<Integer, V> sorted = new TreeMap<>();
+            forEach(sorted::put);
+            return sorted.toString();
+        }
+    }
+
+    /**
+     * IntLongMap split into lock stripes so many threads can update it at once.
+     */
+    static final class StripedIntLongMap {
+        private static final int STRIPES = 64;
+
+        private final IntLongMap[] stripes = new IntLongMap[STRIPES];
+
+        StripedIntLongMap() {
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new IntLongMap();
+            }
+        }
+
+        public void addTo(int key, long delta) {
+            // High bits pick the stripe so the low bits stay spread inside it
+            IntLongMap stripe = stripes[(mix(key) >>> 26) & (STRIPES - 1)];
+            synchronized (stripe) {
+                stripe.addTo(key, delta);
+            }
+        }
+
+        public void addAll(StripedIntLongMap other) {
+            for (IntLongMap stripe : other.stripes) {
+                synchronized (stripe) {
+                    stripe.forEach(this::addTo);
+                }
+            }
+        }
+
+        public IntLongMap snapshot() {
+            IntLongMap result = new IntLongMap();
+            for (IntLongMap stripe : stripes) {
+                synchronized (stripe) {
+                    result.addAll(stripe);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Count, sum, min and max per int key, stored column-wise.
+     */
+    static final class IntStatsTable {
+        // key -> slot + 1, so a missing key reads as 0
+        private final IntLongMap slots = new IntLongMap();
+        private int[] keys = new int[8];
+        private long[] counts = new long[8];
+        private long[] sums = new long[8];
+        private int[] mins = new int[8];
+        private int[] maxes = new int[8];
+        private int size;
+
+        public void accept(int key, int value) {
+            int slot = slotFor(key);
+            counts[slot]++;
+            sums[slot] += value;
+            mins[slot] = Math.min(mins[slot], value);
+            maxes[slot] = Math.max(maxes[slot], value);
+        }
+
+        public void addAll(IntStatsTable other) {
+            for (int i = 0; i < other.size; i++) {
+                int slot = slotFor(other.keys[i]);
+                counts[slot] += other.counts[i];
+                sums[slot] += other.sums[i];
+                mins[slot] = Math.min(mins[slot], other.mins[i]);
+                maxes[slot] = Math.max(maxes[slot], other.maxes[i]);
+            }
+        }
+
+        // Same view the JDK summarizingInt collector would return; null if the key is absent
+        public IntSummaryStatistics get(int key) {
+            int slot = (int) slots.get(key) - 1;
+            if (slot < 0) {
+                return null;
+            }
+            return new IntSummaryStatistics(counts[slot], mins[slot], maxes[slot], sums[slot]);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private int slotFor(int key) {
+            int existing = (int) slots.get(key) - 1;
+            if (existing >= 0) {
+                return existing;
+            }
+            if (size == keys.length) {
+                int capacity = size * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+                sums = Arrays.copyOf(sums, capacity);
+                mins = Arrays.copyOf(mins, capacity);
+                maxes = Arrays.copyOf(maxes, capacity);
+            }
+            int slot = size++;
+            slots.addTo(key, slot + 1);
+            keys[slot] = key;
+            mins[slot] = Integer.MAX_VALUE;
+            maxes[slot] = Integer.MIN_VALUE;
+            return slot;
+        }
+
+        @Override
+        public String toString() {
+            TreeMap<Integer, String> sorted = new TreeMap<>();
+            for (int i = 0; i < size; i++) {
+                sorted.put(keys[i], "{count=" + counts[i] + ", sum=" + sums[i]
+                                    + ", min=" + mins[i] + ", max=" + maxes[i] + "}");
+            }
+            return sorted.toString();
+        }
+    }
+
+    // Person class for collector examples
+    static class Person {
+        private String name;
+        private int age;
+
+        public Person(String name, int age) {
+            this.name = name;
+            this.age = age;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        @Override
+        public String toString() {
+            return name + "(" + age + ")";
+        }
+    }
+}
@@ -0,0 +1,882 @@
+package advanced;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.lang.reflect.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * This class demonstrates schema-driven binary serialization for records (Java 16+).
+ *
+ * RecordCodec inspects a record type once through Class.getRecordComponents(),
+ * turns every accessor into a generated lambda with LambdaMetafactory and caches
+ * the result per type. Writing a record afterwards is a plain loop over those
+ * field codecs - no reflection and no boxing on the write path.
+ *
+ * Wire format (no type tags, the record type is the schema):
+ *   int, short, long    zig-zag varint
+ *   char                varint
+ *   byte, boolean       1 byte
+ *   float, double       IEEE 754 bits, big-endian
+ *   String, byte[]      varint (length + 1) followed by the bytes, 0 means null
+ *   enum                varint (ordinal + 1), 0 means null
+ *   record              1 presence byte followed by its components
+ */
+public class RecordCodecExample {
+
+    public static void main(String[] args) throws IOException {
+        // Round trips through ByteBuffer and DataOutputStream
+        recordCodecExample();
+
+        // Size and speed against Java serialization and hand-written DataOutputStream code
+        benchmark();
+    }
+
+    // Round trips through ByteBuffer and DataOutputStream
+    private static void recordCodecExample() throws IOException {
+        System.out.println("\n=== Record Codec ===");
+
+        RecordCodec<Person> personCodec = RecordCodec.of(Person.class);
+        System.out.println("Schema: " + personCodec);
+
+        // ByteBuffer
+        Person person = new Person("John Doe", 30);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        int written = personCodec.write(person, buffer);
+        buffer.flip();
+        System.out.println("Wrote " + person + " in " + written + " bytes: " + toHex(buffer));
+        System.out.println("Read back: " + personCodec.read(buffer));
+
+        // DataOutputStream, with nested records, enums and nulls
+        RecordCodec<Employee> employeeCodec = RecordCodec.of(Employee.class);
+        List<Employee> employees = List.of(
+                new Employee(new Person("Jane Doe", 28), Department.ENGINEERING, 95_000L, 4.5f, true),
+                new Employee(new Person("Łukasz Żółw", 41), Department.SALES, -1L, 3.0f, false),
+                new Employee(null, null, 0L, 0f, false)
+        );
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(baos)) {
+            for (Employee employee : employees) {
+                employeeCodec.write(employee, dos);
+            }
+        }
+        System.out.println("Wrote " + employees.size() + " employees in " + baos.size() + " bytes");
+
+        try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            for (int i = 0; i < employees.size(); i++) {
+                Employee employee = employeeCodec.read(dis);
+                System.out.println("  " + employee + " equal: " + employee.equals(employees.get(i)));
+            }
+        }
+
+        // The codec is generated once per record type
+        System.out.println("Same codec instance: " + (RecordCodec.of(Person.class) == personCodec));
+    }
+
+    // Size and speed against Java serialization and hand-written DataOutputStream code
+    private static void benchmark() throws IOException {
+        System.out.println("\n=== Benchmark: 1,000,000 Person records ===");
+
+        final int count = 1_000_000;
+        List<Person> people = new ArrayList<>(count);
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            people.add(new Person("Person " + i, random.nextInt(90)));
+        }
+
+        RecordCodec<Person> codec = RecordCodec.of(Person.class);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(32 * count);
+        ByteBuffer buffer = ByteBuffer.allocate(32 * count);
+
+        // Java serialization
+        timeWrite("Java serialization", count, () -> {
+            baos.reset();
+            try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+                for (Person person : people) {
+                    oos.writeObject(person);
+                }
+            }
+            return baos.size();
+        });
+        byte[] javaBytes = baos.toByteArray();
+        timeRead("Java deserialization", count, () -> {
+            long sum = 0;
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(javaBytes))) {
+                for (int i = 0; i < count; i++) {
+                    sum += ((Person) ois.readObject()).age();
+                }
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+            return sum;
+        });
+
+        // Hand-written DataOutputStream, as in ByteStreamsExample
+        timeWrite("DataOutputStream (hand-written)", count, () -> {
+            baos.reset();
+            try (DataOutputStream dos = new DataOutputStream(baos)) {
+                for (Person person : people) {
+                    dos.writeUTF(person.name());
+                    dos.writeInt(person.age());
+                }
+            }
+            return baos.size();
+        });
+        byte[] handBytes = baos.toByteArray();
+        timeRead("DataInputStream (hand-written)", count, () -> {
+            long sum = 0;
+            try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(handBytes))) {
+                for (int i = 0; i < count; i++) {
+                    sum += new Person(dis.readUTF(), dis.readInt()).age();
+                }
+            }
+            return sum;
+        });
+
+        // RecordCodec over DataOutputStream
+        timeWrite("RecordCodec -> DataOutputStream", count, () -> {
+            baos.reset();
+            try (DataOutputStream dos = new DataOutputStream(baos)) {
+                for (Person person : people) {
+                    codec.write(person, dos);
+                }
+            }
+            return baos.size();
+        });
+        byte[] codecBytes = baos.toByteArray();
+        timeRead("RecordCodec <- DataInputStream", count, () -> {
+            long sum = 0;
+            try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(codecBytes))) {
+                for (int i = 0; i < count; i++) {
+                    sum += codec.read(dis).age();
+                }
+            }
+            return sum;
+        });
+
+        // RecordCodec over ByteBuffer
+        timeWrite("RecordCodec -> ByteBuffer", count, () -> {
+            buffer.clear();
+            for (Person person : people) {
+                codec.write(person, buffer);
+            }
+            return buffer.position();
+        });
+        timeRead("RecordCodec <- ByteBuffer", count, () -> {
+            buffer.flip();
+            long sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += codec.read(buffer).age();
+            }
+            return sum;
+        });
+    }
+
+    @FunctionalInterface
+    interface IoTask {
+        long run() throws IOException;
+    }
+
+    // Best of five rounds after two warm-up rounds; also prints the encoded size
+    private static void timeWrite(String name, int count, IoTask task) throws IOException {
+        long size = 0;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 7; round++) {
+            long start = System.nanoTime();
+            size = task.run();
+            if (round >= 2) {
+                best = Math.min(best, System.nanoTime() - start);
+            }
+        }
+        System.out.printf("%-34s %7.1f ns/record  %6.2f bytes/record%n",
+                          name, (double) best / count, (double) size / count);
+    }
+
+    private static void timeRead(String name, int count, IoTask task) throws IOException {
+        long checksum = 0;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 7; round++) {
+            long start = System.nanoTime();
+            checksum += task.run();
+            if (round >= 2) {
+                best = Math.min(best, System.nanoTime() - start);
+            }
+        }
+        System.out.printf("%-34s %7.1f ns/record  (checksum %d)%n",
+                          name, (double) best / count, checksum & 0xFFFF);
+    }
+
+    private static String toHex(ByteBuffer buffer) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            sb.append(String.format("%02x ", buffer.get(i)));
+        }
+        return sb.toString().trim();
+    }
+
+    // Same shape as ModernJavaFeaturesExample.Person; Serializable only for the comparison
+    record Person(String name, int age) implements Serializable {
+        public Person {
+            if (age < 0) {
+                age = 0; // Normalize age
+            }
+        }
+    }
+
+    enum Department { ENGINEERING, SALES, SUPPORT }
+
+    record Employee(Person person, Department department, long salary, float rating, boolean active) {
+    }
+
+    /**
+     * Serializer for one record type, built once and cached in a ClassValue.
+     */
+    static final class RecordCodec<R extends Record> {
+        private static final ClassValue<RecordCodec<?>> CODECS = new ClassValue<>() {
+            @Override
+            protected RecordCodec<?> computeValue(Class<?> type) {
+                if (!type.isRecord()) {
+                    throw new IllegalArgumentException(type.getName() + " is not a record");
+                }
+                return new RecordCodec<>(type.asSubclass(Record.class));
+            }
+        };
+
+        private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+
+        private final Class<R> type;
+        private final FieldCodec[] fields;
+        private final MethodHandle constructor;
+
+        @SuppressWarnings("unchecked")
+        public static <R extends Record> RecordCodec<R> of(Class<R> type) {
+            return (RecordCodec<R>) CODECS.get(type);
+        }
+
+        private RecordCodec(Class<R> type) {
+            this.type = type;
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+                RecordComponent[] components = type.getRecordComponents();
+                Class<?>[] parameterTypes = new Class<?>[components.length];
+                fields = new FieldCodec[components.length];
+                for (int i = 0; i < components.length; i++) {
+                    parameterTypes[i] = components[i].getType();
+                    fields[i] = FieldCodec.create(lookup, type, components[i]);
+                }
+                constructor = lookup.unreflectConstructor(type.getDeclaredConstructor(parameterTypes))
+                                    .asSpreader(Object[].class, components.length)
+                                    .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (ReflectiveOperationException | LambdaConversionException e) {
+                throw new IllegalArgumentException("Cannot build codec for " + type.getName(), e);
+            }
+        }
+
+        // Writes the record and returns the number of bytes written
+        public int write(R value, ByteBuffer buffer) {
+            int start = buffer.position();
+            for (FieldCodec field : fields) {
+                field.write(value, buffer);
+            }
+            return buffer.position() - start;
+        }
+
+        public void write(R value, DataOutput out) throws IOException {
+            for (FieldCodec field : fields) {
+                field.write(value, out);
+            }
+        }
+
+        public R read(ByteBuffer buffer) {
+            Object[] values = new Object[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                values[i] = fields[i].read(buffer);
+            }
+            return construct(values);
+        }
+
+        public R read(DataInput in) throws IOException {
+            Object[] values = new Object[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                values[i] = fields[i].read(in);
+            }
+            return construct(values);
+        }
+
+        private R construct(Object[] values) {
+            try {
+                return type.cast((Object) constructor.invokeExact(values));
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Constructor of " + type.getName() + " failed", t);
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(", ", type.getSimpleName() + "(", ")");
+            for (FieldCodec field : fields) {
+                joiner.add(field.toString());
+            }
+            return joiner.toString();
+        }
+
+        /**
+         * Reads and writes one record component.
+         * The accessor is a generated lambda, so the JIT can inline it like a direct call.
+         */
+        private abstract static class FieldCodec {
+            private final String description;
+
+            FieldCodec(RecordComponent component) {
+                this.description = component.getType().getSimpleName() + " " + component.getName();
+            }
+
+            abstract void write(Object record, ByteBuffer buffer);
+
+            abstract void write(Object record, DataOutput out) throws IOException;
+
+            abstract Object read(ByteBuffer buffer);
+
+            abstract Object read(DataInput in) throws IOException;
+
+            @Override
+            public String toString() {
+                return description;
+            }
+
+            @SuppressWarnings("unchecked")
+            static FieldCodec create(MethodHandles.Lookup lookup, Class<?> recordType, RecordComponent component)
+                    throws ReflectiveOperationException, LambdaConversionException {
+                Class<?> fieldType = component.getType();
+                MethodHandle getter = lookup.unreflect(component.getAccessor());
+
+                if (fieldType == int.class || fieldType == short.class || fieldType == char.class || fieldType == byte.class) {
+                    ToIntFunction<Object> accessor = generate(lookup, getter, recordType, ToIntFunction.class,
+                                                              "applyAsInt", int.class);
+                    if (fieldType == int.class) {
+                        return new IntField(component, accessor);
+                    }
+                    return new SmallIntField(component, accessor, fieldType);
+                }
+                if (fieldType == long.class) {
+                    ToLongFunction<Object> accessor = generate(lookup, getter, recordType, ToLongFunction.class,
+                                                               "applyAsLong", long.class);
+                    return new LongField(component, accessor);
+                }
+                if (fieldType == double.class || fieldType == float.class) {
+                    ToDoubleFunction<Object> accessor = generate(lookup, getter, recordType, ToDoubleFunction.class,
+                                                                 "applyAsDouble", double.class);
+                    return new FloatingField(component, accessor, fieldType == float.class);
+                }
+                if (fieldType == boolean.class) {
+                    Predicate<Object> accessor = generate(lookup, getter, recordType, Predicate.class,
+                                                          "test", boolean.class);
+                    return new BooleanField(component, accessor);
+                }
+
+                Function<Object, Object> accessor = generate(lookup, getter, recordType, Function.class,
+                                                             "apply", Object.class);
+                if (fieldType == String.class) {
+                    return new StringField(component, accessor);
+                }
+                if (fieldType == byte[].class) {
+                    return new BytesField(component, accessor);
+                }
+                if (fieldType.isEnum()) {
+                    return new EnumField(component, accessor, fieldType.getEnumConstants());
+                }
+                if (fieldType.isRecord()) {
+                    return new RecordField(component, accessor, fieldType.asSubclass(Record.class));
+                }
+                throw new IllegalArgumentException("Unsupported component type " + fieldType.getName()
+                                                   + " in " + recordType.getName());
+            }
+
+            // Spins a functional-interface implementation that calls the accessor directly
+            @SuppressWarnings("unchecked")
+            private static <F> F generate(MethodHandles.Lookup lookup, MethodHandle getter, Class<?> recordType,
+                                          Class<?> functionType, String methodName, Class<?> erasedReturn)
+                    throws LambdaConversionException {
+                Class<?> returnType = getter.type().returnType();
+                CallSite site = LambdaMetafactory.metafactory(
+                        lookup,
+                        methodName,
+                        MethodType.methodType(functionType),
+                        MethodType.methodType(erasedReturn, Object.class),
+                        getter,
+                        MethodType.methodType(returnType.isPrimitive() ? erasedReturn : returnType, recordType));
+                try {
+                    return (F) site.getTarget().invoke();
+                } catch (Throwable t) {
+                    throw new LambdaConversionException("Cannot create an accessor for " + getter, t);
+                }
+            }
+        }
+
+        private static final class IntField extends FieldCodec {
+            private final ToIntFunction<Object> accessor;
+
+            IntField(RecordComponent component, ToIntFunction<Object> accessor) {
+                super(component);
+                this.accessor = accessor;
+            }
+
+            void write(Object record, ByteBuffer buffer) {
+                putVarLong(buffer, zigZag(accessor.applyAsInt(record)));
+            }
+
+            void write(Object record, DataOutput out) throws IOException {
+                writeVarLong(out, zigZag(accessor.applyAsInt(record)));
+            }
+
+            Object read(ByteBuffer buffer) {
+                return (int) unZigZag(getVarLong(buffer));
+            }
+
+            Object read(DataInput in) throws IOException {
+                return (int) unZigZag(readVarLong(in));
+            }
+        }
+
+        // byte is stored raw, short as a zig-zag varint and char as an unsigned varint
+        private static final class SmallIntField extends FieldCodec {
+            private final ToIntFunction<Object> accessor;
+            private final Class<?> fieldType;
+
+            SmallIntField(RecordComponent component, ToIntFunction<Object> accessor, Class<?> fieldType) {
+                super(component);
+                this.accessor = accessor;
+                this.fieldType = fieldType;
+            }
+
+            void write(Object record, ByteBuffer buffer) {
+                int value = accessor.applyAsInt(record);
+                if (fieldType == byte.class) {
+                    buffer.put((byte) value);
+                } else {
+                    putVarLong(buffer, fieldType == char.class ? value : zigZag(value));
+                }
+            }
+
+            void write(Object record, DataOutput out) throws IOException {
+                int value = accessor.applyAsInt(record);
+                if (fieldType == byte.class) {
+                    out.writeByte(value);
+                } else {
+                    writeVarLong(out, fieldType == char.class ? value : zigZag(value));
+                }
+            }
+
+            Object read(ByteBuffer buffer) {
+                if (fieldType == byte.class) {
+                    return buffer.get();
+                }
+                long raw = getVarLong(buffer);
+                return fieldType == char.class ? (Object) (char) raw : (Object) (short) unZigZag(raw);
+            }
+
+            Object read(DataInput in) throws IOException {
+                if (fieldType == byte.class) {
+                    return in.readByte();
+                }
+                long raw = readVarLong(in);
+                return fieldType == char.class ? (Object) (char) raw : (Object) (short) unZigZag(raw);
+            }
+        }
+
+        private static final class LongField extends FieldCodec {
+            private final ToLongFunction<Object> accessor;
+
+            LongField(RecordComponent component, ToLongFunction<Object> accessor) {
+                super(component);
+                this.accessor = accessor;
+            }
+
+            void write(Object record, ByteBuffer buffer) {
+                putVarLong(buffer, zigZag(accessor.applyAsLong(record)));
+            }
+
+            void write(Object record, DataOutput out) throws IOException {
+                writeVarLong(out, zigZag(accessor.applyAsLong(record)));
+            }
+
+            Object read(ByteBuffer buffer) {
+                return unZigZag(getVarLong(buffer));
+            }
+
+            Object read(DataInput in) throws IOException {
+                return unZigZag(readVarLong(in));
+            }
+        }
+
+        private static final class FloatingField extends FieldCodec {
+            private final ToDoubleFunction<Object> accessor;
+            private final boolean isFloat;
+
+            FloatingField(RecordComponent component, ToDoubleFunction<Object> accessor, boolean isFloat) {
+                super(component);
+                this.accessor = accessor;
+                this.isFloat = isFloat;
+            }
+
+            void write(Object record, ByteBuffer buffer) {
+                double value = accessor.applyAsDouble(record);
+                if (isFloat) {
+                    buffer.putFloat((float) value);
+                } else {
+                    buffer.putDouble(value);
+                }
+            }
+
+            void write(Object record, DataOutput out) throws IOException {
+                double value = accessor.applyAsDouble(record);
+                if (isFloat) {
+                    out.writeFloat((float) value);
+                } else {
+                    out.writeDouble(value);
+                }
+            }
+
+            Object read(ByteBuffer buffer) {
+                return isFloat ? (Object) buffer.getFloat() : (Object) buffer.getDouble();
+            }
+
+            Object read(DataInput in) throws IOException {
+                return isFloat ? (Object) in.readFloat() : (Object) in.readDouble();
+            }
+        }
+
+        private static final class BooleanField extends FieldCodec {
+            private final Predicate<Object> accessor;
+
+            BooleanField(RecordComponent component, Predicate<Object> accessor) {
+                super(component);
+                this.accessor = accessor;
+            }
+
+            void write(Object record, ByteBuffer buffer) {
+                buffer.put(accessor.test(record) ? (byte) 1 : (byte) 0);
+            }
+
+            void write(Object record, DataOutput out) throws IOException {
+                out.writeBoolean(accessor.test(record));
+            }
+
+            Object read(ByteBuffer buffer) {
+                return buffer.get() != 0;
+            }
+
+            Object read(DataInput in) throws IOException {
+                return in.readBoolean();
+            }
+        }
+
+        private static final class StringField extends FieldCodec {
+            private final Function<Object, Object> accessor;
+
+            StringField(RecordComponent component, Function<Object, Object> accessor) {
+                super(component);
+                this.accessor = accessor;
+            }
+
+            void write(Object record, ByteBuffer buffer) {
+                String value = (String) accessor.apply(record);
+                if (value == null) {
+                    buffer.put((byte) 0);
+                    return;
+                }
+                putVarLong(buffer, utf8Length(value) + 1L);
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    if (c < 0x80) {
+                        buffer.put((byte) c);
+                    } else {
+                        i = putUtf8(buffer, value, i);
+                    }
+                }
+            }
+
+            void write(Object record, DataOutput out) throws IOException {
+                String value = (String) accessor.apply(record);
+                if (value == null) {
+                    out.writeByte(0);
+                    return;
+                }
+                int length = utf8Length(value);
+                writeVarLong(out, length + 1L);
+                byte[] scratch = scratch(length);
+                ByteBuffer target = ByteBuffer.wrap(scratch, 0, length);
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    if (c < 0x80) {
+                        target.put((byte) c);
+                    } else {
+                        i = putUtf8(target, value, i);
+                    }
+                }
+                out.write(scratch, 0, length);
+            }
+
+            Object read(ByteBuffer buffer) {
+                int length = (int) getVarLong(buffer) - 1;
+                if (length < 0) {
+                    return null;
+                }
+                String value;
+                if (buffer.hasArray()) {
+                    value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                                       StandardCharsets.UTF_8);
+                    buffer.position(buffer.position() + length);
+                } else {
+                    byte[] scratch = scratch(length);
+                    buffer.get(scratch, 0, length);
+                    value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+                }
+                return value;
+            }
+
+            Object read(DataInput in) throws IOException {
+                int length = (int) readVarLong(in) - 1;
+                if (length < 0) {
+                    return null;
+                }
+                byte[] scratch = scratch(length);
+                in.readFully(scratch, 0, length);
+                return new String(scratch, 0, length, StandardCharsets.UTF_8);
+            }
+        }
+
+        private static final class BytesField extends FieldCodec {
+            private final Function<Object, Object> accessor;
+
+            BytesField(RecordComponent component, Function<Object, Object> accessor) {
+                super(component);
+                this.accessor = accessor;
+            }
+
+            void write(Object record, ByteBuffer buffer) {
+                byte[] value = (byte[]) accessor.apply(record);
+                putVarLong(buffer, value == null ? 0 : value.length + 1L);
+                if (value != null) {
+                    buffer.put(value);
+                }
+            }
+
+            void write(Object record, DataOutput out) throws IOException {
+                byte[] value = (byte[]) accessor.apply(record);
+                writeVarLong(out, value == null ? 0 : value.length + 1L);
+                if (value != null) {
+                    out.write(value);
+                }
+            }
+
+            Object read(ByteBuffer buffer) {
+                int length = (int) getVarLong(buffer) - 1;
+                if (length < 0) {
+                    return null;
+                }
+                byte[] value = new byte[length];
+                buffer.get(value);
+                return value;
+            }
+
+            Object read(DataInput in) throws IOException {
+                int length = (int) readVarLong(in) - 1;
+                if (length < 0) {
+                    return null;
+                }
+                byte[] value = new byte[length];
+                in.readFully(value);
+                return value;
+            }
+        }
+
+        private static final class EnumField extends FieldCodec {
+            private final Function<Object, Object> accessor;
+            private final Object[] constants;
+
+            EnumField(RecordComponent component, Function<Object, Object> accessor, Object[] constants) {
+                super(component);
+                this.accessor = accessor;
+                this.constants = constants;
+            }
+
+            void write(Object record, ByteBuffer buffer) {
+                Enum<?> value = (Enum<?>) accessor.apply(record);
+                putVarLong(buffer, value == null ? 0 : value.ordinal() + 1L);
+            }
+
+            void write(Object record, DataOutput out) throws IOException {
+                Enum<?> value = (Enum<?>) accessor.apply(record);
+                writeVarLong(out, value == null ? 0 : value.ordinal() + 1L);
+            }
+
+            Object read(ByteBuffer buffer) {
+                int ordinal = (int) getVarLong(buffer) - 1;
+                return ordinal < 0 ? null : constants[ordinal];
+            }
+
+            Object read(DataInput in) throws IOException {
+                int ordinal = (int) readVarLong(in) - 1;
+                return ordinal < 0 ? null : constants[ordinal];
+            }
+        }
+
+        // Nested codecs are resolved lazily so recursive record types do not loop during construction
+        private static final class RecordField extends FieldCodec {
+            private final Function<Object, Object> accessor;
+            private final Class<? extends Record> nestedType;
+
+            RecordField(RecordComponent component, Function<Object, Object> accessor,
+                        Class<? extends Record> nestedType) {
+                super(component);
+                this.accessor = accessor;
+                this.nestedType = nestedType;
+            }
+
+            @SuppressWarnings("unchecked")
+            private RecordCodec<Record> codec() {
+                return (RecordCodec<Record>) CODECS.get(nestedType);
+            }
+
+            void write(Object record, ByteBuffer buffer) {
+                Record value = (Record) accessor.apply(record);
+                buffer.put(value == null ? (byte) 0 : (byte) 1);
+                if (value != null) {
+                    codec().write(value, buffer);
+                }
+            }
+
+            void write(Object record, DataOutput out) throws IOException {
+                Record value = (Record) accessor.apply(record);
+                out.writeBoolean(value != null);
+                if (value != null) {
+                    codec().write(value, out);
+                }
+            }
+
+            Object read(ByteBuffer buffer) {
+                return buffer.get() == 0 ? null : codec().read(buffer);
+            }
+
+            Object read(DataInput in) throws IOException {
+                return in.readBoolean() ? codec().read(in) : null;
+            }
+        }
+
+        // Encoding helpers
+
+        private static long zigZag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+
+        private static long unZigZag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private static void putVarLong(ByteBuffer buffer, long value) {
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private static void writeVarLong(DataOutput out, long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+
+        private static long getVarLong(ByteBuffer buffer) {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer.get();
+                result |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return result;
+                }
+            }
+            throw new IllegalStateException("Malformed varint");
+        }
+
+        private static long readVarLong(DataInput in) throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = in.readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return result;
+                }
+            }
+            throw new StreamCorruptedException("Malformed varint");
+        }
+
+        // Must agree byte for byte with putUtf8
+        private static int utf8Length(String value) {
+            int length = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    length += 1;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else if (Character.isSurrogate(c)) {
+                    length += 1;
+                } else {
+                    length += 3;
+                }
+            }
+            return length;
+        }
+
+        // Encodes the non-ASCII char at index and returns the index of the last char consumed
+        private static int putUtf8(ByteBuffer buffer, String value, int index) {
+            char c = value.charAt(index);
+            if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+                return index;
+            }
+            if (Character.isHighSurrogate(c) && index + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(index + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(index + 1));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+                return index + 1;
+            }
+            if (Character.isSurrogate(c)) {
+                // Unpaired surrogate: same replacement String.getBytes(UTF_8) uses
+                buffer.put((byte) '?');
+                return index;
+            }
+            buffer.put((byte) (0xE0 | (c >> 12)));
+            buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+            return index;
+        }
+
+        private static byte[] scratch(int length) {
+            byte[] scratch = SCRATCH.get();
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+                SCRATCH.set(scratch);
+            }
+            return scratch;
+        }
+    }
+}
@@ -0,0 +1,563 @@
+package advanced;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.*;
+
+/**
+ * This class demonstrates a bounded, preallocated ring buffer for handing work
+ * between threads, in the style of the LMAX Disruptor.
+ *
+ * MultithreadingExample.executorFramework() submits tasks to newFixedThreadPool,
+ * whose LinkedBlockingQueue allocates a node per task, takes a lock on every
+ * offer and poll, and grows without bound. The ring buffer below allocates its
+ * event objects once and reuses them, producers claim slots with a plain
+ * increment (one producer) or a CAS (several), consumers read everything
+ * published so far in one batch, and a full buffer makes producers wait instead
+ * of growing, which is backpressure for free.
+ */
+public class RingBufferExample {
+
+    public static void main(String[] args) throws Exception {
+        // Publishing and batch consumption
+        ringBufferExample();
+
+        // Throughput against the JDK blocking queues
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        queueBenchmark(events);
+        waitStrategyBenchmark(events);
+    }
+
+    // Publishing and batch consumption
+    private static void ringBufferExample() throws InterruptedException {
+        System.out.println("\n=== Ring Buffer ===");
+
+        RingBuffer<LongEvent> ring = RingBuffer.createSingleProducer(LongEvent::new, 8, WaitStrategy.PARK);
+        List<String> batches = Collections.synchronizedList(new ArrayList<>());
+        long[] batchSum = new long[1];
+        EventProcessor<LongEvent> processor = ring.createProcessor((event, sequence, endOfBatch) -> {
+            batchSum[0] += event.value;
+            if (endOfBatch) {
+                batches.add("up to #" + sequence + " sum " + batchSum[0]);
+                batchSum[0] = 0;
+            }
+        });
+        Thread consumer = new Thread(processor, "ring-consumer");
+        consumer.start();
+
+        // Claim, fill and publish one slot at a time
+        for (int i = 1; i <= 5; i++) {
+            long sequence = ring.next();
+            ring.get(sequence).value = i;
+            ring.publish(sequence);
+        }
+
+        // Claim a whole batch and publish it at once; the consumer sees it as one batch
+        long hi = ring.next(4);
+        long lo = hi - 3;
+        for (long sequence = lo; sequence <= hi; sequence++) {
+            ring.get(sequence).value = sequence * 10;
+        }
+        ring.publish(lo, hi);
+
+        // Translator style: the ring buffer does claim and publish around the lambda
+        ring.publishEvent((event, value) -> event.value = value, 1000L);
+
+        processor.awaitSequence(ring.cursor(), 5, TimeUnit.SECONDS);
+        processor.halt();
+        consumer.join();
+        System.out.println("Batches seen by the consumer: " + batches);
+        System.out.println("Capacity " + ring.bufferSize() + ", event objects allocated once and reused");
+    }
+
+    // Throughput against the JDK blocking queues
+    private static void queueBenchmark(int events) throws Exception {
+        System.out.println("\n=== Benchmark: " + events + " events, 1 consumer, ring of 1024 ("
+                           + Runtime.getRuntime().availableProcessors() + " CPUs) ===");
+        System.out.printf("%-10s %16s %16s %16s%n", "producers", "RingBuffer", "ArrayBlocking", "LinkedBlocking");
+        for (int producers : new int[] {1, 2, 4, 8}) {
+            int perProducer = events / producers;
+            double ring = best(() -> runRing(producers, perProducer, WaitStrategy.YIELD));
+            double array = best(() -> runQueue(new ArrayBlockingQueue<>(1024), producers, perProducer));
+            double linked = best(() -> runQueue(new LinkedBlockingQueue<>(), producers, perProducer));
+            long total = (long) producers * perProducer;
+            System.out.printf("%-10d %10.1f Mops %10.1f Mops %10.1f Mops%n",
+                              producers, total / ring / 1e3, total / array / 1e3, total / linked / 1e3);
+        }
+    }
+
+    private static void waitStrategyBenchmark(int events) throws Exception {
+        System.out.println("\n=== Benchmark: wait strategies, 1 producer ===");
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            double millis = best(() -> runRing(1, events, strategy));
+            System.out.printf("%-10s %10.1f Mops%n", strategy, events / millis / 1e3);
+        }
+    }
+
+    // Best of three timed rounds after one warm-up round, in milliseconds
+    private static double best(Callable<Long> round) throws Exception {
+        long checksum = round.call();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            checksum += round.call();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (checksum == 42) {
+            System.out.println(); // Keeps the checksum alive
+        }
+        return best / 1e6;
+    }
+
+    private static long runRing(int producers, int perProducer, WaitStrategy strategy) throws InterruptedException {
+        RingBuffer<LongEvent> ring = producers == 1
+                ? RingBuffer.createSingleProducer(LongEvent::new, 1024, strategy)
+                : RingBuffer.createMultiProducer(LongEvent::new, 1024, strategy);
+        long[] sum = new long[1];
+        EventProcessor<LongEvent> processor = ring.createProcessor((event, sequence, endOfBatch) -> sum[0] += event.value);
+        Thread consumer = new Thread(processor);
+        consumer.start();
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    long sequence = ring.next();
+                    ring.get(sequence).value = i;
+                    ring.publish(sequence);
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        processor.awaitSequence((long) producers * perProducer - 1, 1, TimeUnit.MINUTES);
+        processor.halt();
+        consumer.join();
+        return sum[0];
+    }
+
+    private static long runQueue(BlockingQueue<Long> queue, int producers, int perProducer) throws InterruptedException {
+        long total = (long) producers * perProducer;
+        long[] sum = new long[1];
+        Thread consumer = new Thread(() -> {
+            try {
+                for (long i = 0; i < total; i++) {
+                    sum[0] += queue.take();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < perProducer; i++) {
+                        queue.put((long) i);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        consumer.join();
+        return sum[0];
+    }
+
+    /**
+     * Mutable event reused for every trip around the ring.
+     */
+    static final class LongEvent {
+        long value;
+    }
+
+    /**
+     * Called by the consumer for each event; endOfBatch marks the last event
+     * currently available, which is where a consumer should flush any output.
+     */
+    @FunctionalInterface
+    interface EventHandler<E> {
+        void onEvent(E event, long sequence, boolean endOfBatch);
+    }
+
+    /**
+     * How a consumer waits for events that have not been published yet.
+     * Spinning gives the lowest latency but burns a core per consumer;
+     * parking costs tens of microseconds of wake-up latency but no CPU.
+     */
+    enum WaitStrategy {
+        BUSY_SPIN {
+            @Override
+            int idle(int attempt) {
+                Thread.onSpinWait();
+                return attempt + 1;
+            }
+        },
+        YIELD {
+            @Override
+            int idle(int attempt) {
+                if (attempt < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+                return attempt + 1;
+            }
+        },
+        PARK {
+            @Override
+            int idle(int attempt) {
+                if (attempt < 100) {
+                    Thread.onSpinWait();
+                } else if (attempt < 200) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(50_000);
+                }
+                return attempt + 1;
+            }
+        };
+
+        // Called once per unsuccessful check; returns the next attempt count
+        abstract int idle(int attempt);
+    }
+
+    // Padding on both sides keeps a hot counter on its own cache line
+    static class LhsPadding {
+        protected long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    static class Value extends LhsPadding {
+        protected volatile long value;
+    }
+
+    static class RhsPadding extends Value {
+        protected long p9, p10, p11, p12, p13, p14, p15;
+    }
+
+    /**
+     * A padded sequence counter, written by one thread and read by others.
+     */
+    static final class Sequence extends RhsPadding {
+        private static final VarHandle VALUE;
+
+        static {
+            try {
+                VALUE = MethodHandles.lookup().findVarHandle(Value.class, "value", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        Sequence(long initial) {
+            value = initial;
+        }
+
+        long get() {
+            return value;
+        }
+
+        // Release store: cheaper than a volatile write, and enough for a single writer
+        void set(long newValue) {
+            VALUE.setRelease(this, newValue);
+        }
+
+        boolean compareAndSet(long expected, long newValue) {
+            return VALUE.compareAndSet(this, expected, newValue);
+        }
+    }
+
+    /**
+     * A fixed-size ring of preallocated events.
+     * Producers call next() to claim a sequence, fill get(sequence) in place, then
+     * publish(sequence). A producer that would overwrite an event the slowest
+     * consumer has not processed yet waits until it has.
+     */
+    static final class RingBuffer<E> {
+        private final Object[] entries;
+        private final int mask;
+        private final Sequencer sequencer;
+
+        private RingBuffer(Supplier<E> factory, Sequencer sequencer) {
+            int size = sequencer.bufferSize;
+            this.entries = new Object[size];
+            for (int i = 0; i < size; i++) {
+                entries[i] = factory.get();
+            }
+            this.mask = size - 1;
+            this.sequencer = sequencer;
+        }
+
+        public static <E> RingBuffer<E> createSingleProducer(Supplier<E> factory, int bufferSize, WaitStrategy waitStrategy) {
+            return new RingBuffer<>(factory, new SingleProducerSequencer(bufferSize, waitStrategy));
+        }
+
+        public static <E> RingBuffer<E> createMultiProducer(Supplier<E> factory, int bufferSize, WaitStrategy waitStrategy) {
+            return new RingBuffer<>(factory, new MultiProducerSequencer(bufferSize, waitStrategy));
+        }
+
+        public int bufferSize() {
+            return entries.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E get(long sequence) {
+            return (E) entries[(int) sequence & mask];
+        }
+
+        public long next() {
+            return sequencer.next(1);
+        }
+
+        // Claims n consecutive slots and returns the highest sequence claimed
+        public long next(int n) {
+            if (n < 1 || n > entries.length) {
+                throw new IllegalArgumentException("n must be between 1 and " + entries.length + ": " + n);
+            }
+            return sequencer.next(n);
+        }
+
+        public void publish(long sequence) {
+            sequencer.publish(sequence, sequence);
+        }
+
+        public void publish(long lo, long hi) {
+            sequencer.publish(lo, hi);
+        }
+
+        public <A> void publishEvent(BiConsumer<E, A> translator, A argument) {
+            long sequence = sequencer.next(1);
+            try {
+                translator.accept(get(sequence), argument);
+            } finally {
+                sequencer.publish(sequence, sequence);
+            }
+        }
+
+        // Highest sequence claimed so far (not necessarily published by every producer yet)
+        public long cursor() {
+            return sequencer.cursor.get();
+        }
+
+        /**
+         * Creates a consumer and registers it so producers never overtake it.
+         * Register all consumers before publishing starts.
+         */
+        public EventProcessor<E> createProcessor(EventHandler<E> handler) {
+            EventProcessor<E> processor = new EventProcessor<>(this, handler);
+            sequencer.addGatingSequence(processor.sequence);
+            return processor;
+        }
+
+        Sequencer sequencer() {
+            return sequencer;
+        }
+    }
+
+    /**
+     * Coordinates claiming and publishing sequences.
+     */
+    abstract static class Sequencer {
+        final int bufferSize;
+        final WaitStrategy waitStrategy;
+        final Sequence cursor = new Sequence(-1);
+        volatile Sequence[] gatingSequences = new Sequence[0];
+
+        Sequencer(int bufferSize, WaitStrategy waitStrategy) {
+            if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1) {
+                throw new IllegalArgumentException("bufferSize must be a power of 2: " + bufferSize);
+            }
+            this.bufferSize = bufferSize;
+            this.waitStrategy = waitStrategy;
+        }
+
+        synchronized void addGatingSequence(Sequence sequence) {
+            Sequence[] current = gatingSequences;
+            Sequence[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = sequence;
+            gatingSequences = updated;
+        }
+
+        long minimumGatingSequence(long fallback) {
+            long minimum = fallback;
+            for (Sequence sequence : gatingSequences) {
+                minimum = Math.min(minimum, sequence.get());
+            }
+            return minimum;
+        }
+
+        abstract long next(int n);
+
+        abstract void publish(long lo, long hi);
+
+        // Highest sequence in [lo, available] that a consumer may read
+        abstract long highestPublished(long lo, long available);
+    }
+
+    /**
+     * Only one thread may claim sequences, so claiming needs no atomic operation.
+     */
+    static final class SingleProducerSequencer extends Sequencer {
+        // Producer thread only
+        private long nextValue = -1;
+        private long cachedGating = -1;
+
+        SingleProducerSequencer(int bufferSize, WaitStrategy waitStrategy) {
+            super(bufferSize, waitStrategy);
+        }
+
+        @Override
+        long next(int n) {
+            long next = nextValue + n;
+            long wrapPoint = next - bufferSize;
+            if (wrapPoint > cachedGating) {
+                long gating;
+                while (wrapPoint > (gating = minimumGatingSequence(nextValue))) {
+                    LockSupport.parkNanos(1); // Buffer full: back off and let the consumer run
+                }
+                cachedGating = gating;
+            }
+            nextValue = next;
+            return next;
+        }
+
+        @Override
+        void publish(long lo, long hi) {
+            cursor.set(hi);
+        }
+
+        @Override
+        long highestPublished(long lo, long available) {
+            return available;
+        }
+    }
+
+    /**
+     * Any number of threads may claim sequences. The cursor tracks claims, so a
+     * consumer also checks a per-slot flag recording which lap of the ring the
+     * slot was last published for.
+     */
+    static final class MultiProducerSequencer extends Sequencer {
+        private static final VarHandle AVAILABLE = MethodHandles.arrayElementVarHandle(int[].class);
+
+        private final int[] available;
+        private final int mask;
+        private final int shift;
+        private final Sequence gatingCache = new Sequence(-1);
+
+        MultiProducerSequencer(int bufferSize, WaitStrategy waitStrategy) {
+            super(bufferSize, waitStrategy);
+            this.available = new int[bufferSize];
+            Arrays.fill(available, -1);
+            this.mask = bufferSize - 1;
+            this.shift = Integer.numberOfTrailingZeros(bufferSize);
+        }
+
+        @Override
+        long next(int n) {
+            while (true) {
+                long current = cursor.get();
+                long next = current + n;
+                long wrapPoint = next - bufferSize;
+                long cachedGating = gatingCache.get();
+                if (wrapPoint > cachedGating || cachedGating > current) {
+                    long gating = minimumGatingSequence(current);
+                    if (wrapPoint > gating) {
+                        LockSupport.parkNanos(1); // Buffer full
+                        continue;
+                    }
+                    gatingCache.set(gating);
+                } else if (cursor.compareAndSet(current, next)) {
+                    return next;
+                }
+            }
+        }
+
+        @Override
+        void publish(long lo, long hi) {
+            for (long sequence = lo; sequence <= hi; sequence++) {
+                AVAILABLE.setRelease(available, (int) sequence & mask, (int) (sequence >>> shift));
+            }
+        }
+
+        @Override
+        long highestPublished(long lo, long availableSequence) {
+            for (long sequence = lo; sequence <= availableSequence; sequence++) {
+                if ((int) AVAILABLE.getAcquire(available, (int) sequence & mask) != (int) (sequence >>> shift)) {
+                    return sequence - 1;
+                }
+            }
+            return availableSequence;
+        }
+    }
+
+    /**
+     * Runs on a consumer thread: waits for published events and hands every
+     * available event to the handler in one batch before advancing its sequence.
+     */
+    static final class EventProcessor<E> implements Runnable {
+        private final RingBuffer<E> ring;
+        private final EventHandler<E> handler;
+        private final Sequence sequence = new Sequence(-1);
+        private volatile boolean running = true;
+
+        EventProcessor(RingBuffer<E> ring, EventHandler<E> handler) {
+            this.ring = ring;
+            this.handler = handler;
+        }
+
+        @Override
+        public void run() {
+            Sequencer sequencer = ring.sequencer();
+            WaitStrategy waitStrategy = sequencer.waitStrategy;
+            long next = sequence.get() + 1;
+            int attempt = 0;
+            while (running) {
+                long available = sequencer.cursor.get();
+                if (available >= next) {
+                    available = sequencer.highestPublished(next, available);
+                }
+                if (available < next) {
+                    attempt = waitStrategy.idle(attempt);
+                    continue;
+                }
+                attempt = 0;
+                for (long s = next; s <= available; s++) {
+                    handler.onEvent(ring.get(s), s, s == available);
+                }
+                sequence.set(available);
+                next = available + 1;
+            }
+        }
+
+        public long sequence() {
+            return sequence.get();
+        }
+
+        // Waits until this consumer has processed the given sequence
+        public boolean awaitSequence(long target, long timeout, TimeUnit unit) {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (sequence.get() < target) {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                LockSupport.parkNanos(10_000);
+            }
+            return true;
+        }
+
+        // Stops the loop; events published afterwards are not processed
+        public void halt() {
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package advanced;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * This class demonstrates O(1) type dispatch for sealed hierarchies (Java 17+).
+ *
+ * An instanceof chain tests one type after another, so the last branch pays for
+ * every branch before it. TypeDispatcher resolves each runtime class to its
+ * handler once, caches the answer in a ClassValue and afterwards dispatches with
+ * a single lookup. For sealed roots the builder also checks at construction time
+ * that every permitted subclass is covered - the same guarantee an exhaustive
+ * pattern-matching switch gives once that feature is available without preview.
+ */
+public class SealedDispatchExample {
+
+    // Built once: the exhaustiveness check runs here, not on every call
+    private static final TypeDispatcher<Shape, String> SHAPE_DESCRIPTIONS =
+            TypeDispatcher.<Shape, String>sealed(Shape.class)
+                    .on(Circle.class, circle -> "Circle with radius " + circle.radius())
+                    .on(Rectangle.class, rectangle -> "Rectangle with width " + rectangle.width()
+                                                      + " and height " + rectangle.height())
+                    .on(Square.class, square -> "Square with side " + square.side())
+                    .build();
+
+    private static final TypeDispatcher<Object, String> OBJECT_TYPES =
+            TypeDispatcher.<Object, String>open(Object.class)
+                    .on(String.class, s -> "String of length " + s.length())
+                    .on(Integer.class, i -> "Integer with value " + i)
+                    .on(Double.class, d -> "Double with value " + d)
+                    .on(List.class, list -> "List with " + list.size() + " elements")
+                    .otherwise(obj -> "Unknown type")
+                    .build();
+
+    public static void main(String[] args) {
+        // Dispatch replacing the instanceof chains
+        dispatchExample();
+
+        // Exhaustiveness checking
+        exhaustivenessExample();
+
+        // instanceof chain vs virtual call vs switch vs ClassValue
+        benchmark();
+    }
+
+    // Dispatch replacing the instanceof chains
+    private static void dispatchExample() {
+        System.out.println("\n=== Type Dispatch ===");
+
+        printShapeDescription(new Circle(5.0));
+        printShapeDescription(new Rectangle(4.0, 6.0));
+        printShapeDescription(new Square(3.0));
+        // Subclass of the non-sealed Rectangle resolves to the Rectangle handler
+        printShapeDescription(new LabeledRectangle("door", 1.0, 2.0));
+
+        printObjectType("Hello, pattern matching!");
+        printObjectType(42);
+        printObjectType(3.14);
+        printObjectType(new ArrayList<>(List.of("a", "b", "c"))); // Matched through the List interface
+        printObjectType('x');
+    }
+
+    private static void printShapeDescription(Shape shape) {
+        System.out.println(SHAPE_DESCRIPTIONS.apply(shape));
+    }
+
+    private static void printObjectType(Object obj) {
+        System.out.println(OBJECT_TYPES.apply(obj));
+    }
+
+    // Exhaustiveness checking
+    private static void exhaustivenessExample() {
+        System.out.println("\n=== Exhaustiveness Check ===");
+
+        try {
+            TypeDispatcher.<Shape, Double>sealed(Shape.class)
+                    .on(Circle.class, Circle::radius)
+                    .on(Square.class, Square::side)
+                    .build();
+        } catch (IllegalStateException e) {
+            System.out.println("Build failed: " + e.getMessage());
+        }
+    }
+
+    // instanceof chain vs virtual call vs switch vs ClassValue
+    private static void benchmark() {
+        System.out.println("\n=== Benchmark: dispatch cost per call ===");
+        System.out.printf("%-8s %12s %12s %12s %12s%n", "subtypes", "instanceof", "virtual", "tag switch", "ClassValue");
+
+        TypeDispatcher.Builder<Node, Integer> builder = TypeDispatcher.sealed(Node.class);
+        builder.on(N0.class, n -> n.v).on(N1.class, n -> n.v + 1).on(N2.class, n -> n.v + 2)
+               .on(N3.class, n -> n.v + 3).on(N4.class, n -> n.v + 4).on(N5.class, n -> n.v + 5)
+               .on(N6.class, n -> n.v + 6).on(N7.class, n -> n.v + 7).on(N8.class, n -> n.v + 8)
+               .on(N9.class, n -> n.v + 9).on(N10.class, n -> n.v + 10).on(N11.class, n -> n.v + 11)
+               .on(N12.class, n -> n.v + 12).on(N13.class, n -> n.v + 13).on(N14.class, n -> n.v + 14)
+               .on(N15.class, n -> n.v + 15);
+        TypeDispatcher<Node, Integer> dispatcher = builder.build();
+
+        final int count = 1 << 20;
+        for (int subtypes : new int[] {2, 4, 8, 16}) {
+            Node[] nodes = randomNodes(count, subtypes);
+            double instanceOf = measure(count, () -> {
+                long sum = 0;
+                for (Node node : nodes) {
+                    sum += evalInstanceOf(node);
+                }
+                return sum;
+            });
+            double virtual = measure(count, () -> {
+                long sum = 0;
+                for (Node node : nodes) {
+                    sum += node.eval();
+                }
+                return sum;
+            });
+            double tagSwitch = measure(count, () -> {
+                long sum = 0;
+                for (Node node : nodes) {
+                    sum += evalSwitch(node);
+                }
+                return sum;
+            });
+            // Includes the generic Function call and Integer boxing of the result
+            double classValue = measure(count, () -> {
+                long sum = 0;
+                for (Node node : nodes) {
+                    sum += dispatcher.apply(node);
+                }
+                return sum;
+            });
+            System.out.printf("%-8d %9.2f ns %9.2f ns %9.2f ns %9.2f ns%n",
+                              subtypes, instanceOf, virtual, tagSwitch, classValue);
+        }
+    }
+
+    private static Node[] randomNodes(int count, int subtypes) {
+        Random random = new Random(42);
+        Node[] nodes = new Node[count];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = Node.create(random.nextInt(subtypes), i & 0xFF);
+        }
+        return nodes;
+    }
+
+    // Best of five rounds after three warm-up rounds, in ns per call
+    private static double measure(int count, LongSupplier body) {
+        long checksum = 0;
+        for (int i = 0; i < 3; i++) {
+            checksum += body.getAsLong();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            checksum += body.getAsLong();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (checksum == 42) {
+            System.out.println(); // Keeps the checksum alive
+        }
+        return (double) best / count;
+    }
+
+    private static int evalInstanceOf(Node node) {
+        if (node instanceof N0 n) return n.v;
+        else if (node instanceof N1 n) return n.v + 1;
+        else if (node instanceof N2 n) return n.v + 2;
+        else if (node instanceof N3 n) return n.v + 3;
+        else if (node instanceof N4 n) return n.v + 4;
+        else if (node instanceof N5 n) return n.v + 5;
+        else if (node instanceof N6 n) return n.v + 6;
+        else if (node instanceof N7 n) return n.v + 7;
+        else if (node instanceof N8 n) return n.v + 8;
+        else if (node instanceof N9 n) return n.v + 9;
+        else if (node instanceof N10 n) return n.v + 10;
+        else if (node instanceof N11 n) return n.v + 11;
+        else if (node instanceof N12 n) return n.v + 12;
+        else if (node instanceof N13 n) return n.v + 13;
+        else if (node instanceof N14 n) return n.v + 14;
+        else if (node instanceof N15 n) return n.v + 15;
+        throw new IllegalArgumentException("Unknown node " + node);
+    }
+
+    // Classic type switch: every subtype carries a small int tag
+    private static int evalSwitch(Node node) {
+        switch (node.tag) {
+            case 0: return node.v;
+            case 1: return node.v + 1;
+            case 2: return node.v + 2;
+            case 3: return node.v + 3;
+            case 4: return node.v + 4;
+            case 5: return node.v + 5;
+            case 6: return node.v + 6;
+            case 7: return node.v + 7;
+            case 8: return node.v + 8;
+            case 9: return node.v + 9;
+            case 10: return node.v + 10;
+            case 11: return node.v + 11;
+            case 12: return node.v + 12;
+            case 13: return node.v + 13;
+            case 14: return node.v + 14;
+            case 15: return node.v + 15;
+            default: throw new IllegalArgumentException("Unknown tag " + node.tag);
+        }
+    }
+
+    /**
+     * Maps a runtime class to a handler registered for it or for its nearest
+     * supertype. Resolution walks the superclass chain first, then interfaces,
+     * and the result is cached per class in a ClassValue.
+     */
+    static final class TypeDispatcher<T, R> {
+        private final Map<Class<?>, Function<Object, ? extends R>> handlers;
+        private final Function<Object, ? extends R> fallback;
+        private final ClassValue<Function<Object, ? extends R>> table = new ClassValue<>() {
+            @Override
+            protected Function<Object, ? extends R> computeValue(Class<?> type) {
+                return resolve(type);
+            }
+        };
+
+        private TypeDispatcher(Map<Class<?>, Function<Object, ? extends R>> handlers,
+                               Function<Object, ? extends R> fallback) {
+            this.handlers = handlers;
+            this.fallback = fallback;
+        }
+
+        // Requires a handler for every permitted subclass of root, checked in build()
+        public static <T, R> Builder<T, R> sealed(Class<T> root) {
+            if (!root.isSealed()) {
+                throw new IllegalArgumentException(root.getName() + " is not sealed");
+            }
+            return new Builder<>(root, true);
+        }
+
+        // Any subtype of root; unmatched values go to otherwise() or fail at call time
+        public static <T, R> Builder<T, R> open(Class<T> root) {
+            return new Builder<>(root, false);
+        }
+
+        public R apply(T value) {
+            return table.get(value.getClass()).apply(value);
+        }
+
+        private Function<Object, ? extends R> resolve(Class<?> type) {
+            // Most specific class first
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                Function<Object, ? extends R> handler = handlers.get(c);
+                if (handler != null) {
+                    return handler;
+                }
+            }
+
+            // Then interfaces, breadth-first so nearer interfaces win
+            Deque<Class<?>> queue = new ArrayDeque<>();
+            Set<Class<?>> seen = new HashSet<>();
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                queue.addAll(Arrays.asList(c.getInterfaces()));
+            }
+            while (!queue.isEmpty()) {
+                Class<?> candidate = queue.poll();
+                if (seen.add(candidate)) {
+                    Function<Object, ? extends R> handler = handlers.get(candidate);
+                    if (handler != null) {
+                        return handler;
+                    }
+                    queue.addAll(Arrays.asList(candidate.getInterfaces()));
+                }
+            }
+
+            Function<Object, ? extends R> handler = handlers.get(Object.class);
+            if (handler != null) {
+                return handler;
+            }
+            if (fallback != null) {
+                return fallback;
+            }
+            return value -> {
+                throw new IllegalArgumentException("No handler for " + type.getName());
+            };
+        }
+
+        public static final class Builder<T, R> {
+            private final Class<T> root;
+            private final boolean exhaustive;
+            private final Map<Class<?>, Function<Object, ? extends R>> handlers = new HashMap<>();
+            private Function<Object, ? extends R> fallback;
+
+            private Builder(Class<T> root, boolean exhaustive) {
+                this.root = root;
+                this.exhaustive = exhaustive;
+            }
+
+            @SuppressWarnings("unchecked")
+            public <S extends T> Builder<T, R> on(Class<S> type, Function<? super S, ? extends R> handler) {
+                if (handlers.putIfAbsent(type, (Function<Object, ? extends R>) handler) != null) {
+                    throw new IllegalArgumentException("Duplicate handler for " + type.getName());
+                }
+                return this;
+            }
+
+            @SuppressWarnings("unchecked")
+            public Builder<T, R> otherwise(Function<? super T, ? extends R> handler) {
+                this.fallback = (Function<Object, ? extends R>) handler;
+                return this;
+            }
+
+            public TypeDispatcher<T, R> build() {
+                if (exhaustive && fallback == null) {
+                    List<String> missing = new ArrayList<>();
+                    collectUncovered(root, missing);
+                    if (!missing.isEmpty()) {
+                        throw new IllegalStateException("No handler for " + String.join(", ", missing));
+                    }
+                }
+                return new TypeDispatcher<>(Map.copyOf(handlers), fallback);
+            }
+
+            // A permitted subclass is covered if it, or something between it and root, has a handler
+            private void collectUncovered(Class<?> type, List<String> missing) {
+                if (isCovered(type)) {
+                    return;
+                }
+                if (type.isSealed()) {
+                    for (Class<?> permitted : type.getPermittedSubclasses()) {
+                        collectUncovered(permitted, missing);
+                    }
+                } else if (type != root) {
+                    // final or non-sealed leaf
+                    missing.add(type.getSimpleName());
+                }
+            }
+
+            private boolean isCovered(Class<?> type) {
+                for (Class<?> c = type; c != null && root.isAssignableFrom(c); c = c.getSuperclass()) {
+                    if (handlers.containsKey(c)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+    }
+
+    // Same sealed hierarchy as ModernJavaFeaturesExample
+    static sealed abstract class Shape permits Circle, Rectangle, Square {
+        public abstract double area();
+    }
+
+    static final class Circle extends Shape {
+        private final double radius;
+
+        public Circle(double radius) {
+            this.radius = radius;
+        }
+
+        public double radius() {
+            return radius;
+        }
+
+        @Override
+        public double area() {
+            return Math.PI * radius * radius;
+        }
+    }
+
+    static non-sealed class Rectangle extends Shape {
+        private final double width;
+        private final double height;
+
+        public Rectangle(double width, double height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        public double width() {
+            return width;
+        }
+
+        public double height() {
+            return height;
+        }
+
+        @Override
+        public double area() {
+            return width * height;
+        }
+    }
+
+    static final class Square extends Shape {
+        private final double side;
+
+        public Square(double side) {
+            this.side = side;
+        }
+
+        public double side() {
+            return side;
+        }
+
+        @Override
+        public double area() {
+            return side * side;
+        }
+    }
+
+    static class LabeledRectangle extends Rectangle {
+        private final String label;
+
+        public LabeledRectangle(String label, double width, double height) {
+            super(width, height);
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    // Sixteen-way sealed hierarchy for the benchmark
+    static sealed abstract class Node permits N0, N1, N2, N3, N4, N5, N6, N7, N8, N9, N10, N11, N12, N13, N14, N15 {
+        final int tag;
+        final int v;
+
+        Node(int tag, int v) {
+            this.tag = tag;
+            this.v = v;
+        }
+
+        abstract int eval();
+
+        static Node create(int tag, int v) {
+            switch (tag) {
+                case 0: return new N0(v);
+                case 1: return new N1(v);
+                case 2: return new N2(v);
+                case 3: return new N3(v);
+                case 4: return new N4(v);
+                case 5: return new N5(v);
+                case 6: return new N6(v);
+                case 7: return new N7(v);
+                case 8: return new N8(v);
+                case 9: return new N9(v);
+                case 10: return new N10(v);
+                case 11: return new N11(v);
+                case 12: return new N12(v);
+                case 13: return new N13(v);
+                case 14: return new N14(v);
+                case 15: return new N15(v);
+                default: throw new IllegalArgumentException("Unknown tag " + tag);
+            }
+        }
+    }
+
+    static final class N0 extends Node { N0(int v) { super(0, v); } int eval() { return v; } }
+    static final class N1 extends Node { N1(int v) { super(1, v); } int eval() { return v + 1; } }
+    static final class N2 extends Node { N2(int v) { super(2, v); } int eval() { return v + 2; } }
+    static final class N3 extends Node { N3(int v) { super(3, v); } int eval() { return v + 3; } }
+    static final class N4 extends Node { N4(int v) { super(4, v); } int eval() { return v + 4; } }
+    static final class N5 extends Node { N5(int v) { super(5, v); } int eval() { return v + 5; } }
+    static final class N6 extends Node { N6(int v) { super(6, v); } int eval() { return v + 6; } }
+    static final class N7 extends Node { N7(int v) { super(7, v); } int eval() { return v + 7; } }
+    static final class N8 extends Node { N8(int v) { super(8, v); } int eval() { return v + 8; } }
+    static final class N9 extends Node { N9(int v) { super(9, v); } int eval() { return v + 9; } }
+    static final class N10 extends Node { N10(int v) { super(10, v); } int eval() { return v + 10; } }
+    static final class N11 extends Node { N11(int v) { super(11, v); } int eval() { return v + 11; } }
+    static final class N12 extends Node { N12(int v) { super(12, v); } int eval() { return v + 12; } }
+    static final class N13 extends Node { N13(int v) { super(13, v); } int eval() { return v + 13; } }
+    static final class N14 extends Node { N14(int v) { super(14, v); } int eval() { return v + 14; } }
+    static final class N15 extends Node { N15(int v) { super(15, v); } int eval() { return v + 15; } }
+}
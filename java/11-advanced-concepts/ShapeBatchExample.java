@@ -0,0 +1,439 @@
+package advanced;
+
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * This class demonstrates a structure-of-arrays (columnar) layout for shapes.
+ *
+ * A List<Shape> is an array of pointers to objects scattered across the heap,
+ * and summing areas means one virtual call per element. ShapeBatch keeps each
+ * shape type in its own primitive arrays instead, so aggregates become tight
+ * loops over contiguous doubles that the JIT can unroll and vectorize.
+ */
+public class ShapeBatchExample {
+
+    public static void main(String[] args) {
+        // Building a batch and running aggregates
+        shapeBatchExample();
+
+        // Shape count can be raised from the command line, e.g. 100000000 with a large -Xmx
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        benchmark(count);
+    }
+
+    // Building a batch and running aggregates
+    private static void shapeBatchExample() {
+        System.out.println("\n=== Shape Batch ===");
+
+        List<Shape> shapes = List.of(
+                new Circle(5.0),
+                new Rectangle(4.0, 6.0),
+                new Square(3.0),
+                new Circle(1.0),
+                new LabeledRectangle("door", 1.0, 2.0) // Rectangle is non-sealed
+        );
+
+        ShapeBatch batch = ShapeBatch.from(shapes);
+        System.out.println("Batch: " + batch);
+        System.out.println("Total area: " + batch.totalArea());
+        System.out.println("Total area (objects): " + shapes.stream().mapToDouble(Shape::area).sum());
+        System.out.println("Max area: " + batch.maxArea());
+
+        // Negative areas and an empty batch
+        List<Shape> flipped = List.of(new Rectangle(-2.0, 3.0), new Rectangle(4.0, -1.0));
+        System.out.println("Max area of flipped rectangles: " + ShapeBatch.from(flipped).maxArea()
+                           + " (objects: " + maxArea(flipped) + ")");
+        System.out.println("Max area of an empty batch: " + ShapeBatch.from(List.of()).maxArea());
+        System.out.println("Histogram [0, 100) in 4 buckets: " + Arrays.toString(batch.areaHistogram(0, 100, 4)));
+    }
+
+    // Columnar batch vs virtual calls
+    private static void benchmark(int count) {
+        System.out.println("\n=== Benchmark: " + count + " shapes ===");
+
+        Random random = new Random(42);
+        List<Shape> mixed = new ArrayList<>(count);
+        List<Shape> squares = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double size = 1 + random.nextDouble() * 10;
+            // Four receiver types at one call site make area() megamorphic
+            switch (i & 3) {
+                case 0 -> mixed.add(new Circle(size));
+                case 1 -> mixed.add(new Rectangle(size, size / 2));
+                case 2 -> mixed.add(new Square(size));
+                default -> mixed.add(new LabeledRectangle("r", size / 2, size));
+            }
+            squares.add(new Square(size));
+        }
+
+        long start = System.nanoTime();
+        ShapeBatch mixedBatch = ShapeBatch.from(mixed);
+        ShapeBatch squareBatch = ShapeBatch.from(squares);
+        System.out.printf("Conversion from List<Shape>: %.1f ms per list%n", (System.nanoTime() - start) / 2e6);
+
+        runBenchmark("sum area, megamorphic list", count, () -> (long) sumAreas(mixed));
+        runBenchmark("sum area, monomorphic list", count, () -> (long) sumAreas(squares));
+        runBenchmark("sum area, batch (mixed)", count, () -> (long) mixedBatch.totalArea());
+        runBenchmark("sum area, batch (squares)", count, () -> (long) squareBatch.totalArea());
+        runBenchmark("max area, megamorphic list", count, () -> (long) maxArea(mixed));
+        runBenchmark("max area, batch (mixed)", count, () -> (long) mixedBatch.maxArea());
+        runBenchmark("histogram, megamorphic list", count, () -> histogram(mixed, 0, 128, 16)[3]);
+        runBenchmark("histogram, batch (mixed)", count, () -> mixedBatch.areaHistogram(0, 128, 16)[3]);
+    }
+
+    private static double sumAreas(List<Shape> shapes) {
+        double total = 0;
+        for (Shape shape : shapes) {
+            total += shape.area();
+        }
+        return total;
+    }
+
+    private static double maxArea(List<Shape> shapes) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (Shape shape : shapes) {
+            max = Math.max(max, shape.area());
+        }
+        return shapes.isEmpty() ? Double.NaN : max;
+    }
+
+    private static long[] histogram(List<Shape> shapes, double min, double max, int buckets) {
+        long[] counts = new long[buckets];
+        double scale = buckets / (max - min);
+        for (Shape shape : shapes) {
+            int bucket = (int) ((shape.area() - min) * scale);
+            counts[Math.min(buckets - 1, Math.max(0, bucket))]++;
+        }
+        return counts;
+    }
+
+    // Best of five rounds after three warm-up rounds
+    private static void runBenchmark(String name, int count, LongSupplier body) {
+        long checksum = 0;
+        for (int i = 0; i < 3; i++) {
+            checksum += body.getAsLong();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            checksum += body.getAsLong();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-30s %7.2f ns/shape  (checksum %d)%n",
+                          name, (double) best / count, checksum & 0xFFFF);
+    }
+
+    /**
+     * Shapes stored column by column, one set of primitive arrays per shape type.
+     *
+     * Exact Circle, Rectangle and Square instances are decomposed into their
+     * dimensions. Subclasses of the non-sealed Rectangle may override area(), so
+     * they are never flattened into the rectangle columns; their area is computed
+     * once on insertion and kept in a separate column.
+     */
+    static final class ShapeBatch {
+        private double[] radii = new double[16];
+        private int circleCount;
+
+        private double[] widths = new double[16];
+        private double[] heights = new double[16];
+        private int rectangleCount;
+
+        private double[] sides = new double[16];
+        private int squareCount;
+
+        private double[] otherAreas = new double[16];
+        private int otherCount;
+
+        public static ShapeBatch from(Collection<? extends Shape> shapes) {
+            ShapeBatch batch = new ShapeBatch();
+            for (Shape shape : shapes) {
+                batch.add(shape);
+            }
+            batch.trimToSize();
+            return batch;
+        }
+
+        public void add(Shape shape) {
+            Class<?> type = shape.getClass();
+            if (type == Circle.class) {
+                addCircle(((Circle) shape).radius());
+            } else if (type == Rectangle.class) {
+                Rectangle rectangle = (Rectangle) shape;
+                addRectangle(rectangle.width(), rectangle.height());
+            } else if (type == Square.class) {
+                addSquare(((Square) shape).side());
+            } else {
+                addPrecomputed(shape.area());
+            }
+        }
+
+        public void addCircle(double radius) {
+            if (circleCount == radii.length) {
+                radii = Arrays.copyOf(radii, grow(circleCount));
+            }
+            radii[circleCount++] = radius;
+        }
+
+        public void addRectangle(double width, double height) {
+            if (rectangleCount == widths.length) {
+                widths = Arrays.copyOf(widths, grow(rectangleCount));
+                heights = Arrays.copyOf(heights, grow(rectangleCount));
+            }
+            widths[rectangleCount] = width;
+            heights[rectangleCount++] = height;
+        }
+
+        public void addSquare(double side) {
+            if (squareCount == sides.length) {
+                sides = Arrays.copyOf(sides, grow(squareCount));
+            }
+            sides[squareCount++] = side;
+        }
+
+        public void addPrecomputed(double area) {
+            if (otherCount == otherAreas.length) {
+                otherAreas = Arrays.copyOf(otherAreas, grow(otherCount));
+            }
+            otherAreas[otherCount++] = area;
+        }
+
+        public int size() {
+            return circleCount + rectangleCount + squareCount + otherCount;
+        }
+
+        public void trimToSize() {
+            radii = Arrays.copyOf(radii, circleCount);
+            widths = Arrays.copyOf(widths, rectangleCount);
+            heights = Arrays.copyOf(heights, rectangleCount);
+            sides = Arrays.copyOf(sides, squareCount);
+            otherAreas = Arrays.copyOf(otherAreas, otherCount);
+        }
+
+        public double totalArea() {
+            return Math.PI * sumOfSquares(radii, circleCount)
+                   + sumOfProducts(widths, heights, rectangleCount)
+                   + sumOfSquares(sides, squareCount)
+                   + sum(otherAreas, otherCount);
+        }
+
+        // NaN for an empty batch; areas can be negative, e.g. a rectangle with a negative width
+        public double maxArea() {
+            double max = maxOfProducts(widths, heights, rectangleCount);
+            if (circleCount > 0) {
+                double maxRadius = maxAbs(radii, circleCount);
+                max = Math.max(max, Math.PI * maxRadius * maxRadius);
+            }
+            if (squareCount > 0) {
+                double maxSide = maxAbs(sides, squareCount);
+                max = Math.max(max, maxSide * maxSide);
+            }
+            for (int i = 0; i < otherCount; i++) {
+                max = Math.max(max, otherAreas[i]);
+            }
+            return size() == 0 ? Double.NaN : max;
+        }
+
+        /**
+         * Counts shapes per area bucket over [min, max).
+         * Areas outside the range are clamped into the first or last bucket.
+         */
+        public long[] areaHistogram(double min, double max, int buckets) {
+            if (buckets <= 0 || !(max > min)) {
+                throw new IllegalArgumentException("Need buckets > 0 and max > min");
+            }
+            long[] counts = new long[buckets];
+            double scale = buckets / (max - min);
+            int last = buckets - 1;
+
+            double circleScale = Math.PI * scale;
+            for (int i = 0; i < circleCount; i++) {
+                double r = radii[i];
+                counts[clamp((int) (r * r * circleScale - min * scale), last)]++;
+            }
+            for (int i = 0; i < rectangleCount; i++) {
+                counts[clamp((int) ((widths[i] * heights[i] - min) * scale), last)]++;
+            }
+            for (int i = 0; i < squareCount; i++) {
+                double s = sides[i];
+                counts[clamp((int) ((s * s - min) * scale), last)]++;
+            }
+            for (int i = 0; i < otherCount; i++) {
+                counts[clamp((int) ((otherAreas[i] - min) * scale), last)]++;
+            }
+            return counts;
+        }
+
+        @Override
+        public String toString() {
+            return "ShapeBatch[circles=" + circleCount + ", rectangles=" + rectangleCount
+                   + ", squares=" + squareCount + ", other=" + otherCount + "]";
+        }
+
+        // The loops below use four independent accumulators. Floating point addition
+        // is not associative, so the JIT will not reorder a single running sum; the
+        // separate lanes remove the loop-carried dependency and map onto SIMD registers.
+
+        private static double sumOfSquares(double[] values, int length) {
+            double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            int i = 0;
+            for (; i + 3 < length; i += 4) {
+                s0 += values[i] * values[i];
+                s1 += values[i + 1] * values[i + 1];
+                s2 += values[i + 2] * values[i + 2];
+                s3 += values[i + 3] * values[i + 3];
+            }
+            for (; i < length; i++) {
+                s0 += values[i] * values[i];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+
+        private static double sumOfProducts(double[] a, double[] b, int length) {
+            double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            int i = 0;
+            for (; i + 3 < length; i += 4) {
+                s0 += a[i] * b[i];
+                s1 += a[i + 1] * b[i + 1];
+                s2 += a[i + 2] * b[i + 2];
+                s3 += a[i + 3] * b[i + 3];
+            }
+            for (; i < length; i++) {
+                s0 += a[i] * b[i];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+
+        private static double sum(double[] values, int length) {
+            double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            int i = 0;
+            for (; i + 3 < length; i += 4) {
+                s0 += values[i];
+                s1 += values[i + 1];
+                s2 += values[i + 2];
+                s3 += values[i + 3];
+            }
+            for (; i < length; i++) {
+                s0 += values[i];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+
+        // Area grows with |dimension|, so the largest circle or square comes from the largest dimension
+        private static double maxAbs(double[] values, int length) {
+            double m0 = Double.NEGATIVE_INFINITY, m1 = m0, m2 = m0, m3 = m0;
+            int i = 0;
+            for (; i + 3 < length; i += 4) {
+                m0 = Math.max(m0, Math.abs(values[i]));
+                m1 = Math.max(m1, Math.abs(values[i + 1]));
+                m2 = Math.max(m2, Math.abs(values[i + 2]));
+                m3 = Math.max(m3, Math.abs(values[i + 3]));
+            }
+            for (; i < length; i++) {
+                m0 = Math.max(m0, Math.abs(values[i]));
+            }
+            return Math.max(Math.max(m0, m1), Math.max(m2, m3));
+        }
+
+        private static double maxOfProducts(double[] a, double[] b, int length) {
+            double m0 = Double.NEGATIVE_INFINITY, m1 = m0, m2 = m0, m3 = m0;
+            int i = 0;
+            for (; i + 3 < length; i += 4) {
+                m0 = Math.max(m0, a[i] * b[i]);
+                m1 = Math.max(m1, a[i + 1] * b[i + 1]);
+                m2 = Math.max(m2, a[i + 2] * b[i + 2]);
+                m3 = Math.max(m3, a[i + 3] * b[i + 3]);
+            }
+            for (; i < length; i++) {
+                m0 = Math.max(m0, a[i] * b[i]);
+            }
+            return Math.max(Math.max(m0, m1), Math.max(m2, m3));
+        }
+
+        // trimToSize can leave empty columns, so never grow to zero
+        private static int grow(int length) {
+            return Math.max(16, length * 2);
+        }
+
+        private static int clamp(int bucket, int last) {
+            return bucket < 0 ? 0 : Math.min(bucket, last);
+        }
+    }
+
+    // Same sealed hierarchy as ModernJavaFeaturesExample (Java 17+)
+    static sealed abstract class Shape permits Circle, Rectangle, Square {
+        public abstract double area();
+    }
+
+    static final class Circle extends Shape {
+        private final double radius;
+
+        public Circle(double radius) {
+            this.radius = radius;
+        }
+
+        public double radius() {
+            return radius;
+        }
+
+        @Override
+        public double area() {
+            return Math.PI * radius * radius;
+        }
+    }
+
+    static non-sealed class Rectangle extends Shape {
+        private final double width;
+        private final double height;
+
+        public Rectangle(double width, double height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        public double width() {
+            return width;
+        }
+
+        public double height() {
+            return height;
+        }
+
+        @Override
+        public double area() {
+            return width * height;
+        }
+    }
+
+    static final class Square extends Shape {
+        private final double side;
+
+        public Square(double side) {
+            this.side = side;
+        }
+
+        public double side() {
+            return side;
+        }
+
+        @Override
+        public double area() {
+            return side * side;
+        }
+    }
+
+    // Open subclass allowed by the non-sealed Rectangle
+    static class LabeledRectangle extends Rectangle {
+        private final String label;
+
+        public LabeledRectangle(String label, double width, double height) {
+            super(width, height);
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+}
@@ -0,0 +1,606 @@
+package advanced;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * This class demonstrates a read-mostly concurrent list built on a persistent vector.
+ *
+ * MultithreadingExample.concurrentCollections() uses CopyOnWriteArrayList, whose
+ * readers never lock but whose writers copy the entire array. For a registry
+ * of a few listeners that is ideal; for a routing table with a hundred thousand
+ * entries and a steady trickle of updates, every write copies the whole table.
+ *
+ * A persistent vector stores elements in a tree of 32-element arrays. Changing
+ * one element copies only the path from the root to that element, about
+ * log32(n) small arrays, and shares everything else with the previous version.
+ * Readers still see immutable snapshots without taking a lock.
+ */
+public class SnapshotListExample {
+
+    public static void main(String[] args) throws Exception {
+        // Snapshots and structural sharing
+        snapshotListExample();
+
+        // Mixed read/write throughput
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        writeRatioBenchmark(operations);
+    }
+
+    // Snapshots and structural sharing
+    private static void snapshotListExample() {
+        System.out.println("\n=== Snapshot List ===");
+
+        // Same usage as the CopyOnWriteArrayList in concurrentCollections()
+        SnapshotList<String> list = new SnapshotList<>();
+        list.add("apple");
+        list.add("banana");
+        list.add("cherry");
+
+        // Iteration works on a snapshot, so modifying the list inside the loop is safe
+        for (String item : list) {
+            System.out.println("Item: " + item);
+            list.add("new item"); // This won't cause ConcurrentModificationException
+        }
+        System.out.println("SnapshotList size: " + list.size());
+
+        // A snapshot is an immutable List that later writes do not affect
+        List<String> before = list.snapshot();
+        list.set(0, "apricot");
+        list.remove("banana");
+        System.out.println("Snapshot: " + before + ", now: " + list);
+
+        // Bulk writes publish one new version each
+        list.replaceAll(String::toUpperCase);
+        System.out.println("replaceAll: " + list);
+        list.sort(Comparator.reverseOrder());
+        System.out.println("sort: " + list);
+        Collections.sort(list);
+        System.out.println("Collections.sort: " + list);
+        list.removeIf(item -> item.startsWith("NEW"));
+        System.out.println("removeIf: " + list);
+        list.addAll(List.of("date", "elderberry", "fig"));
+        list.removeAll(List.of("date", "fig"));
+        System.out.println("removeAll: " + list);
+        list.retainAll(List.of("CHERRY", "elderberry"));
+        System.out.println("retainAll: " + list);
+
+        // Versions share all but the changed path
+        PersistentVector<Integer> big = PersistentVector.empty();
+        for (int i = 0; i < 1_000_000; i++) {
+            big = big.append(i);
+        }
+        PersistentVector<Integer> changed = big.with(500_000, -1);
+        System.out.println("1M elements, tree depth " + big.depth() + "; set() copied "
+                           + changed.copiedArraysComparedTo(big) + " arrays of 32 instead of the whole array");
+        System.out.println("Original still has " + big.get(500_000) + ", new version has " + changed.get(500_000));
+    }
+
+    // Mixed read/write throughput
+    private static void writeRatioBenchmark(int operations) throws Exception {
+        int threads = 4;
+        System.out.println("\n=== Benchmark: " + operations + " operations over " + threads + " threads ("
+                           + Runtime.getRuntime().availableProcessors() + " CPUs), ns per operation ===");
+        System.out.printf("%-8s %-8s %16s %16s %16s%n", "size", "writes", "CopyOnWrite", "synchronized", "SnapshotList");
+        for (int size : new int[] {1_000, 100_000}) {
+            for (int writePercent : new int[] {1, 10, 50}) {
+                double cow = measure(() -> new CopyOnWriteArrayList<>(filled(size)), threads, operations, writePercent);
+                double sync = measure(() -> Collections.synchronizedList(new ArrayList<>(filled(size))), threads, operations, writePercent);
+                double snap = measure(() -> new SnapshotList<>(filled(size)), threads, operations, writePercent);
+                System.out.printf("%-8d %-8s %16.0f %16.0f %16.0f%n", size, writePercent + "%", cow, sync, snap);
+            }
+        }
+    }
+
+    private static List<Integer> filled(int size) {
+        List<Integer> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(i);
+        }
+        return values;
+    }
+
+    // One warm-up round, then the better of two timed rounds, in ns per operation
+    private static double measure(Callable<List<Integer>> factory, int threads, int operations, int writePercent) throws Exception {
+        long best = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < 3; round++) {
+            List<Integer> list = factory.call();
+            long start = System.nanoTime();
+            checksum += run(list, threads, operations / threads, writePercent);
+            if (round > 0) {
+                best = Math.min(best, System.nanoTime() - start);
+            }
+        }
+        if (checksum == 42) {
+            System.out.println(); // Keeps the checksum alive
+        }
+        return (double) best / operations;
+    }
+
+    // Reads are get(random); writes alternate set(random), append and remove so the size stays stable.
+    // Each thread removes only after its own append, so index `base` always exists when it does.
+    private static long run(List<Integer> list, int threads, int perThread, int writePercent) throws Exception {
+        int base = list.size();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int seed = t;
+                results.add(pool.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(seed);
+                    long sum = 0;
+                    int writes = 0;
+                    for (int i = 0; i < perThread; i++) {
+                        if (random.nextInt(100) < writePercent) {
+                            switch (writes++ % 3) {
+                                case 0:
+                                    list.set(random.nextInt(base), i);
+                                    break;
+                                case 1:
+                                    list.add(i);
+                                    break;
+                                default:
+                                    list.remove(base);
+                                    break;
+                            }
+                        } else {
+                            sum += list.get(random.nextInt(base));
+                        }
+                    }
+                    return sum;
+                }));
+            }
+            long total = 0;
+            for (Future<Long> result : results) {
+                total += result.get();
+            }
+            return total;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * An immutable vector of 32-way tree nodes plus a tail array for the last
+     * partial block, as in Clojure and Scala. Appending, replacing and removing
+     * the last element return a new vector in O(log32 n) time that shares all
+     * unchanged nodes with this one. Inserting or removing elsewhere shifts
+     * every later element and costs O(n - index).
+     */
+    static final class PersistentVector<E> extends AbstractList<E> implements RandomAccess {
+        private static final int BITS = 5;
+        private static final int WIDTH = 1 << BITS;
+        private static final int MASK = WIDTH - 1;
+        private static final Object[] EMPTY_NODE = new Object[WIDTH];
+        private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, BITS, EMPTY_NODE, new Object[0]);
+
+        private final int size;
+        private final int shift;
+        // Interior nodes hold child Object[] arrays; leaves hold elements
+        private final Object[] root;
+        private final Object[] tail;
+
+        private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+            this.size = size;
+            this.shift = shift;
+            this.root = root;
+            this.tail = tail;
+        }
+
+        @SuppressWarnings("unchecked")
+        public static <E> PersistentVector<E> empty() {
+            return (PersistentVector<E>) EMPTY;
+        }
+
+        public static <E> PersistentVector<E> copyOf(Collection<? extends E> elements) {
+            PersistentVector<E> vector = empty();
+            for (E element : elements) {
+                vector = vector.append(element);
+            }
+            return vector;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            Objects.checkIndex(index, size);
+            return (E) leafFor(index)[index & MASK];
+        }
+
+        // Index of the first element stored in the tail
+        private int tailOffset() {
+            return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+        }
+
+        private Object[] leafFor(int index) {
+            if (index >= tailOffset()) {
+                return tail;
+            }
+            Object[] node = root;
+            for (int level = shift; level > 0; level -= BITS) {
+                node = (Object[]) node[(index >>> level) & MASK];
+            }
+            return node;
+        }
+
+        public PersistentVector<E> append(E element) {
+            // Room in the tail: copy only the tail
+            if (size - tailOffset() < WIDTH) {
+                Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+                newTail[tail.length] = element;
+                return new PersistentVector<>(size + 1, shift, root, newTail);
+            }
+            // Full tail: push it into the tree and start a new one
+            Object[] newRoot;
+            int newShift = shift;
+            if ((size >>> BITS) > (1 << shift)) {
+                newRoot = new Object[WIDTH];
+                newRoot[0] = root;
+                newRoot[1] = newPath(shift, tail);
+                newShift += BITS;
+            } else {
+                newRoot = pushTail(shift, root, tail);
+            }
+            return new PersistentVector<>(size + 1, newShift, newRoot, new Object[] {element});
+        }
+
+        private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+            int index = ((size - 1) >>> level) & MASK;
+            Object[] copy = parent.clone();
+            Object[] child;
+            if (level == BITS) {
+                child = tailNode;
+            } else {
+                Object[] existing = (Object[]) parent[index];
+                child = existing != null ? pushTail(level - BITS, existing, tailNode) : newPath(level - BITS, tailNode);
+            }
+            copy[index] = child;
+            return copy;
+        }
+
+        private static Object[] newPath(int level, Object[] node) {
+            if (level == 0) {
+                return node;
+            }
+            Object[] path = new Object[WIDTH];
+            path[0] = newPath(level - BITS, node);
+            return path;
+        }
+
+        public PersistentVector<E> with(int index, E element) {
+            Objects.checkIndex(index, size);
+            if (index >= tailOffset()) {
+                Object[] newTail = tail.clone();
+                newTail[index & MASK] = element;
+                return new PersistentVector<>(size, shift, root, newTail);
+            }
+            return new PersistentVector<>(size, shift, assoc(shift, root, index, element), tail);
+        }
+
+        private static Object[] assoc(int level, Object[] node, int index, Object element) {
+            Object[] copy = node.clone();
+            if (level == 0) {
+                copy[index & MASK] = element;
+            } else {
+                int child = (index >>> level) & MASK;
+                copy[child] = assoc(level - BITS, (Object[]) node[child], index, element);
+            }
+            return copy;
+        }
+
+        public PersistentVector<E> withoutLast() {
+            if (size == 0) {
+                throw new NoSuchElementException("Vector is empty");
+            }
+            if (size == 1) {
+                return empty();
+            }
+            if (size - tailOffset() > 1) {
+                return new PersistentVector<>(size - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+            }
+            // The tail becomes empty: pull the last leaf out of the tree as the new tail
+            Object[] newTail = leafFor(size - 2);
+            Object[] newRoot = popTail(shift, root);
+            int newShift = shift;
+            if (newRoot == null) {
+                newRoot = EMPTY_NODE;
+            }
+            if (shift > BITS && newRoot[1] == null) {
+                newRoot = (Object[]) newRoot[0];
+                newShift -= BITS;
+            }
+            return new PersistentVector<>(size - 1, newShift, newRoot, newTail);
+        }
+
+        private Object[] popTail(int level, Object[] node) {
+            int index = ((size - 2) >>> level) & MASK;
+            if (level > BITS) {
+                Object[] child = popTail(level - BITS, (Object[]) node[index]);
+                if (child == null && index == 0) {
+                    return null;
+                }
+                Object[] copy = node.clone();
+                copy[index] = child;
+                return copy;
+            }
+            if (index == 0) {
+                return null;
+            }
+            Object[] copy = node.clone();
+            copy[index] = null;
+            return copy;
+        }
+
+        // Shifts later elements along by rebuilding the suffix: O(n - index)
+        public PersistentVector<E> inserting(int index, E element) {
+            Objects.checkIndex(index, size + 1);
+            return rebuildFrom(index, element, true);
+        }
+
+        public PersistentVector<E> without(int index) {
+            Objects.checkIndex(index, size);
+            return index == size - 1 ? withoutLast() : rebuildFrom(index, null, false);
+        }
+
+        private PersistentVector<E> rebuildFrom(int index, E inserted, boolean insert) {
+            List<E> suffix = new ArrayList<>(subList(index, size));
+            PersistentVector<E> vector = this;
+            while (vector.size > index) {
+                vector = vector.withoutLast();
+            }
+            if (insert) {
+                vector = vector.append(inserted);
+            } else {
+                suffix.remove(0);
+            }
+            for (E element : suffix) {
+                vector = vector.append(element);
+            }
+            return vector;
+        }
+
+        // Iterates leaf by leaf rather than walking the tree for every element
+        @Override
+        public Iterator<E> iterator() {
+            return new Iterator<>() {
+                private int index;
+                private int leafStart = -WIDTH;
+                private Object[] leaf;
+
+                @Override
+                public boolean hasNext() {
+                    return index < size;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public E next() {
+                    if (index >= size) {
+                        throw new NoSuchElementException();
+                    }
+                    if (index - leafStart == WIDTH) {
+                        leaf = leafFor(index);
+                        leafStart = index;
+                    }
+                    return (E) leaf[index++ - leafStart];
+                }
+            };
+        }
+
+        // Tree levels above the leaves
+        int depth() {
+            return shift / BITS;
+        }
+
+        // Counts this vector's arrays that are not shared with other; for demonstration only
+        int copiedArraysComparedTo(PersistentVector<?> other) {
+            Set<Object> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+            collect(other.root, other.shift, shared);
+            shared.add(other.tail);
+            Set<Object> mine = Collections.newSetFromMap(new IdentityHashMap<>());
+            collect(root, shift, mine);
+            mine.add(tail);
+            mine.removeAll(shared);
+            return mine.size();
+        }
+
+        private static void collect(Object[] node, int level, Set<Object> into) {
+            into.add(node);
+            if (level > 0) {
+                for (Object child : node) {
+                    if (child != null) {
+                        collect((Object[]) child, level - BITS, into);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A thread-safe List over a PersistentVector. Reads and iteration use the
+     * current version without locking, as CopyOnWriteArrayList does; writes
+     * are serialized by a lock and publish a new version.
+     */
+    static final class SnapshotList<E> extends AbstractList<E> implements RandomAccess {
+        private final Object lock = new Object();
+        private volatile PersistentVector<E> current;
+
+        SnapshotList() {
+            this.current = PersistentVector.empty();
+        }
+
+        SnapshotList(Collection<? extends E> elements) {
+            this.current = PersistentVector.copyOf(elements);
+        }
+
+        // An immutable view of the list as it is now
+        public PersistentVector<E> snapshot() {
+            return current;
+        }
+
+        @Override
+        public E get(int index) {
+            return current.get(index);
+        }
+
+        @Override
+        public int size() {
+            return current.size();
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return current.iterator();
+        }
+
+        @Override
+        public E set(int index, E element) {
+            synchronized (lock) {
+                PersistentVector<E> vector = current;
+                E previous = vector.get(index);
+                current = vector.with(index, element);
+                return previous;
+            }
+        }
+
+        @Override
+        public boolean add(E element) {
+            synchronized (lock) {
+                current = current.append(element);
+                return true;
+            }
+        }
+
+        @Override
+        public void add(int index, E element) {
+            synchronized (lock) {
+                current = current.inserting(index, element);
+            }
+        }
+
+        @Override
+        public E remove(int index) {
+            synchronized (lock) {
+                PersistentVector<E> vector = current;
+                E previous = vector.get(index);
+                current = vector.without(index);
+                return previous;
+            }
+        }
+
+        @Override
+        public boolean remove(Object element) {
+            synchronized (lock) {
+                int index = current.indexOf(element);
+                if (index < 0) {
+                    return false;
+                }
+                current = current.without(index);
+                return true;
+            }
+        }
+
+        @Override
+        public void clear() {
+            synchronized (lock) {
+                current = PersistentVector.empty();
+            }
+        }
+
+        // Bulk writes change a copy of the current version and publish the
+        // rebuilt vector in one step, so readers never see them half done
+        @Override
+        public void sort(Comparator<? super E> comparator) {
+            synchronized (lock) {
+                List<E> sorted = new ArrayList<>(current);
+                sorted.sort(comparator);
+                current = PersistentVector.copyOf(sorted);
+            }
+        }
+
+        @Override
+        public void replaceAll(UnaryOperator<E> operator) {
+            synchronized (lock) {
+                List<E> replaced = new ArrayList<>(current);
+                replaced.replaceAll(operator);
+                current = PersistentVector.copyOf(replaced);
+            }
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super E> filter) {
+            synchronized (lock) {
+                List<E> kept = new ArrayList<>(current);
+                if (!kept.removeIf(filter)) {
+                    return false;
+                }
+                current = PersistentVector.copyOf(kept);
+                return true;
+            }
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> elements) {
+            Objects.requireNonNull(elements);
+            return removeIf(elements::contains);
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> elements) {
+            Objects.requireNonNull(elements);
+            return removeIf(element -> !elements.contains(element));
+        }
+
+        // AbstractList implements everything below with repeated get(i) calls,
+        // each of which could see a different version, so each reads current
+        // once and works on that snapshot. Sublists are read-only snapshots too.
+        @Override
+        public ListIterator<E> listIterator(int index) {
+            return current.listIterator(index);
+        }
+
+        @Override
+        public Spliterator<E> spliterator() {
+            return current.spliterator();
+        }
+
+        @Override
+        public List<E> subList(int fromIndex, int toIndex) {
+            return current.subList(fromIndex, toIndex);
+        }
+
+        @Override
+        public int indexOf(Object element) {
+            return current.indexOf(element);
+        }
+
+        @Override
+        public int lastIndexOf(Object element) {
+            return current.lastIndexOf(element);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other == this || current.equals(other);
+        }
+
+        @Override
+        public int hashCode() {
+            return current.hashCode();
+        }
+
+        @Override
+        public <T> T[] toArray(IntFunction<T[]> generator) {
+            return current.toArray(generator.apply(0));
+        }
+    }
+}
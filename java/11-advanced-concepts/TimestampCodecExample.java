@@ -0,0 +1,453 @@
+package advanced;
+
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.time.format.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * This class demonstrates allocation-free timestamp formatting and parsing.
+ *
+ * DateTimeFormatter is immutable and thread-safe, so the cheapest fix is to
+ * stop creating formatters inline and share them through a registry. For hot
+ * paths such as logging, TimestampCodec goes one step further: it writes
+ * ISO-8601 and epoch-millis values straight into a byte[] or StringBuilder,
+ * caches the formatted "yyyy-MM-ddTHH:mm:ss" prefix per second (and the
+ * date part per day) and parses by hand.
+ */
+public class TimestampCodecExample {
+
+    public static void main(String[] args) {
+        // Reusable formatters
+        formatterRegistryExample();
+
+        // Formatting and parsing without DateTimeFormatter
+        timestampCodecExample();
+
+        // Compare against DateTimeFormatter
+        benchmark();
+    }
+
+    // Reusable formatters
+    private static void formatterRegistryExample() {
+        System.out.println("\n=== Formatter Registry ===");
+
+        DateTimeFormatter first = FormatterRegistry.get("MMMM dd, yyyy 'at' hh:mm a");
+        DateTimeFormatter second = FormatterRegistry.get("MMMM dd, yyyy 'at' hh:mm a");
+
+        System.out.println("Formatted: " + LocalDateTime.of(2023, 1, 1, 13, 30).format(first));
+        System.out.println("Same instance returned: " + (first == second));
+        System.out.println("German: " + LocalDate.of(2023, 1, 1).format(FormatterRegistry.get("EEEE, d. MMMM yyyy", Locale.GERMAN)));
+        System.out.println("Cached formatters: " + FormatterRegistry.size());
+    }
+
+    // Formatting and parsing without DateTimeFormatter
+    private static void timestampCodecExample() {
+        System.out.println("\n=== Timestamp Codec ===");
+
+        long millis = Instant.parse("2023-01-01T13:30:15.042Z").toEpochMilli();
+
+        // Into a byte[] (e.g. a log line buffer)
+        byte[] buffer = new byte[64];
+        int length = TimestampCodec.formatIso(millis, buffer, 0);
+        System.out.println("ISO into byte[]: " + new String(buffer, 0, length, StandardCharsets.US_ASCII));
+
+        // Into a StringBuilder
+        StringBuilder sb = new StringBuilder("[");
+        TimestampCodec.formatIso(millis, sb);
+        sb.append("] epoch=");
+        TimestampCodec.formatEpochMillis(millis, sb);
+        System.out.println("ISO into StringBuilder: " + sb);
+
+        // Parsing
+        System.out.println("Parsed ISO: " + TimestampCodec.parseIso("2023-01-01T13:30:15.042Z"));
+        System.out.println("Parsed without millis: " + TimestampCodec.parseIso("2023-01-01T13:30:15Z"));
+        System.out.println("Parsed epoch millis: " + TimestampCodec.parseEpochMillis("1672579815042"));
+        System.out.println("Round trip matches: " + (TimestampCodec.parseIso(sb.substring(1, 25)) == millis));
+
+        // Dates before the epoch
+        long past = Instant.parse("1969-12-31T23:59:59.999Z").toEpochMilli();
+        length = TimestampCodec.formatIso(past, buffer, 0);
+        System.out.println("Before epoch: " + new String(buffer, 0, length, StandardCharsets.US_ASCII));
+
+        // Invalid input
+        try {
+            TimestampCodec.parseIso("2023-13-01T00:00:00Z");
+        } catch (DateTimeParseException e) {
+            System.out.println("Parse error: " + e.getMessage());
+        }
+    }
+
+    // Compare against DateTimeFormatter
+    private static void benchmark() {
+        System.out.println("\n=== Benchmark: TimestampCodec vs DateTimeFormatter ===");
+
+        final int iterations = 2_000_000;
+        final long base = Instant.parse("2023-01-01T00:00:00Z").toEpochMilli();
+        final DateTimeFormatter isoFormatter = DateTimeFormatter.ISO_INSTANT;
+        final byte[] buffer = new byte[32];
+        final StringBuilder sb = new StringBuilder(32);
+        final String sample = "2023-06-15T08:45:12.345Z";
+
+        // Every timestamp advances by one millisecond, like a busy log stream
+        runBenchmark("DateTimeFormatter.format", iterations, () -> {
+            long sum = 0;
+            for (int i = 0; i < iterations; i++) {
+                sum += isoFormatter.format(Instant.ofEpochMilli(base + i)).length();
+            }
+            return sum;
+        });
+        runBenchmark("TimestampCodec -> byte[]", iterations, () -> {
+            long sum = 0;
+            for (int i = 0; i < iterations; i++) {
+                sum += TimestampCodec.formatIso(base + i, buffer, 0);
+            }
+            return sum;
+        });
+        runBenchmark("TimestampCodec -> StringBuilder", iterations, () -> {
+            long sum = 0;
+            for (int i = 0; i < iterations; i++) {
+                sb.setLength(0);
+                TimestampCodec.formatIso(base + i, sb);
+                sum += sb.length();
+            }
+            return sum;
+        });
+        runBenchmark("DateTimeFormatter.parse", iterations, () -> {
+            long sum = 0;
+            for (int i = 0; i < iterations; i++) {
+                sum += Instant.from(isoFormatter.parse(sample)).toEpochMilli();
+            }
+            return sum;
+        });
+        runBenchmark("TimestampCodec.parseIso", iterations, () -> {
+            long sum = 0;
+            for (int i = 0; i < iterations; i++) {
+                sum += TimestampCodec.parseIso(sample);
+            }
+            return sum;
+        });
+    }
+
+    // Simple timing harness: a few warm-up rounds, then the best of several measured rounds
+    private static void runBenchmark(String name, int iterations, LongSupplier body) {
+        long checksum = 0;
+        for (int i = 0; i < 3; i++) {
+            checksum += body.getAsLong();
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            checksum += body.getAsLong();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        System.out.printf("%-34s %8.1f ns/op  (checksum %d)%n",
+                          name, (double) best / iterations, checksum & 0xFFFF);
+    }
+
+    /**
+     * Shares DateTimeFormatter instances by pattern and locale.
+     * DateTimeFormatter is immutable, so one instance can serve every thread.
+     */
+    static final class FormatterRegistry {
+        private static final ConcurrentHashMap<String, DateTimeFormatter> CACHE = new ConcurrentHashMap<>();
+
+        private FormatterRegistry() {
+        }
+
+        public static DateTimeFormatter get(String pattern) {
+            return get(pattern, Locale.getDefault(Locale.Category.FORMAT));
+        }
+
+        public static DateTimeFormatter get(String pattern, Locale locale) {
+            String key = locale.toLanguageTag() + '|' + pattern;
+            DateTimeFormatter formatter = CACHE.get(key);
+            if (formatter == null) {
+                formatter = CACHE.computeIfAbsent(key, k -> DateTimeFormatter.ofPattern(pattern, locale));
+            }
+            return formatter;
+        }
+
+        public static int size() {
+            return CACHE.size();
+        }
+    }
+
+    /**
+     * Formats and parses UTC timestamps of the form yyyy-MM-ddTHH:mm:ss.SSSZ
+     * and plain epoch-millis values.
+     *
+     * The formatted seconds prefix is kept in an immutable holder published
+     * through a volatile field, so concurrent callers either reuse it or
+     * replace it; formatting only allocates once per distinct second.
+     */
+    static final class TimestampCodec {
+        /** Length of yyyy-MM-ddTHH:mm:ss.SSSZ */
+        public static final int ISO_LENGTH = 24;
+
+        private static final int PREFIX_LENGTH = 19;
+        private static final long MIN_MILLIS = Instant.parse("0000-01-01T00:00:00Z").toEpochMilli();
+        private static final long MAX_MILLIS = Instant.parse("9999-12-31T23:59:59.999Z").toEpochMilli();
+
+        private static volatile CachedDay cachedDay = new CachedDay(Long.MIN_VALUE, null);
+        private static volatile CachedSecond cachedSecond = new CachedSecond(Long.MIN_VALUE, null);
+
+        private TimestampCodec() {
+        }
+
+        // Formatting
+
+        public static int formatIso(long epochMillis, byte[] dest, int offset) {
+            checkRange(epochMillis);
+            long epochSecond = Math.floorDiv(epochMillis, 1000L);
+            int millis = (int) Math.floorMod(epochMillis, 1000L);
+
+            byte[] prefix = secondPrefix(epochSecond).prefix;
+            System.arraycopy(prefix, 0, dest, offset, PREFIX_LENGTH);
+            int pos = offset + PREFIX_LENGTH;
+            dest[pos++] = '.';
+            dest[pos++] = (byte) ('0' + millis / 100);
+            dest[pos++] = (byte) ('0' + millis / 10 % 10);
+            dest[pos++] = (byte) ('0' + millis % 10);
+            dest[pos++] = 'Z';
+            return pos - offset;
+        }
+
+        public static StringBuilder formatIso(long epochMillis, StringBuilder sb) {
+            checkRange(epochMillis);
+            long epochSecond = Math.floorDiv(epochMillis, 1000L);
+            int millis = (int) Math.floorMod(epochMillis, 1000L);
+
+            return sb.append(secondPrefix(epochSecond).text)
+                     .append('.')
+                     .append((char) ('0' + millis / 100))
+                     .append((char) ('0' + millis / 10 % 10))
+                     .append((char) ('0' + millis % 10))
+                     .append('Z');
+        }
+
+        public static int formatEpochMillis(long epochMillis, byte[] dest, int offset) {
+            if (epochMillis == Long.MIN_VALUE) {
+                throw new DateTimeException("Epoch millis out of range: " + epochMillis);
+            }
+            int pos = offset;
+            if (epochMillis < 0) {
+                dest[pos++] = '-';
+                epochMillis = -epochMillis;
+            }
+            int digits = digitCount(epochMillis);
+            for (int i = pos + digits - 1; i >= pos; i--) {
+                dest[i] = (byte) ('0' + epochMillis % 10);
+                epochMillis /= 10;
+            }
+            return pos + digits - offset;
+        }
+
+        public static StringBuilder formatEpochMillis(long epochMillis, StringBuilder sb) {
+            // StringBuilder.append(long) already writes digits without an intermediate String
+            return sb.append(epochMillis);
+        }
+
+        // Parsing
+
+        public static long parseIso(CharSequence text) {
+            int length = text.length();
+            if ((length != 20 && length != ISO_LENGTH) || text.charAt(length - 1) != 'Z') {
+                throw error("Expected yyyy-MM-ddTHH:mm:ss[.SSS]Z", text, 0);
+            }
+            expect(text, 4, '-');
+            expect(text, 7, '-');
+            expect(text, 10, 'T');
+            expect(text, 13, ':');
+            expect(text, 16, ':');
+
+            int year = digits(text, 0, 4);
+            int month = digits(text, 5, 2);
+            int day = digits(text, 8, 2);
+            int hour = digits(text, 11, 2);
+            int minute = digits(text, 14, 2);
+            int second = digits(text, 17, 2);
+            int millis = 0;
+            if (length == ISO_LENGTH) {
+                expect(text, 19, '.');
+                millis = digits(text, 20, 3);
+            }
+
+            if (month < 1 || month > 12) {
+                throw error("Invalid month", text, 5);
+            }
+            if (day < 1 || day > lengthOfMonth(year, month)) {
+                throw error("Invalid day of month", text, 8);
+            }
+            if (hour > 23 || minute > 59 || second > 59) {
+                throw error("Invalid time of day", text, 11);
+            }
+
+            long epochDay = epochDay(year, month, day);
+            return (epochDay * 86_400L + hour * 3_600L + minute * 60L + second) * 1000L + millis;
+        }
+
+        public static long parseEpochMillis(CharSequence text) {
+            int length = text.length();
+            int pos = 0;
+            boolean negative = false;
+            if (length > 0 && text.charAt(0) == '-') {
+                negative = true;
+                pos = 1;
+            }
+            // 18 digits always fit in a long without overflow checks
+            if (pos == length || length - pos > 18) {
+                throw error("Expected 1 to 18 digits", text, pos);
+            }
+            long value = 0;
+            for (; pos < length; pos++) {
+                int digit = text.charAt(pos) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw error("Expected digit", text, pos);
+                }
+                value = value * 10 + digit;
+            }
+            return negative ? -value : value;
+        }
+
+        // Caches
+
+        private static CachedSecond secondPrefix(long epochSecond) {
+            CachedSecond cached = cachedSecond;
+            if (cached.epochSecond == epochSecond) {
+                return cached;
+            }
+
+            long epochDay = Math.floorDiv(epochSecond, 86_400L);
+            int secondOfDay = (int) Math.floorMod(epochSecond, 86_400L);
+
+            byte[] prefix = new byte[PREFIX_LENGTH];
+            System.arraycopy(datePart(epochDay), 0, prefix, 0, 11);
+            writeTwoDigits(prefix, 11, secondOfDay / 3600);
+            prefix[13] = ':';
+            writeTwoDigits(prefix, 14, secondOfDay / 60 % 60);
+            prefix[16] = ':';
+            writeTwoDigits(prefix, 17, secondOfDay % 60);
+
+            cached = new CachedSecond(epochSecond, prefix);
+            cachedSecond = cached;
+            return cached;
+        }
+
+        private static byte[] datePart(long epochDay) {
+            CachedDay cached = cachedDay;
+            if (cached.epochDay == epochDay) {
+                return cached.datePart;
+            }
+
+            // Runs once per day, so the LocalDate allocation does not matter here
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            byte[] datePart = new byte[11];
+            int year = date.getYear();
+            writeTwoDigits(datePart, 0, year / 100);
+            writeTwoDigits(datePart, 2, year % 100);
+            datePart[4] = '-';
+            writeTwoDigits(datePart, 5, date.getMonthValue());
+            datePart[7] = '-';
+            writeTwoDigits(datePart, 8, date.getDayOfMonth());
+            datePart[10] = 'T';
+
+            cachedDay = new CachedDay(epochDay, datePart);
+            return datePart;
+        }
+
+        // Helpers
+
+        // Days since 1970-01-01 for a proleptic Gregorian date (civil-from-days in reverse)
+        private static long epochDay(int year, int month, int day) {
+            int y = month <= 2 ? year - 1 : year;
+            int era = Math.floorDiv(y, 400);
+            int yearOfEra = y - era * 400;
+            int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+            int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+            return era * 146_097L + dayOfEra - 719_468L;
+        }
+
+        private static int lengthOfMonth(int year, int month) {
+            switch (month) {
+                case 2:
+                    return Year.isLeap(year) ? 29 : 28;
+                case 4:
+                case 6:
+                case 9:
+                case 11:
+                    return 30;
+                default:
+                    return 31;
+            }
+        }
+
+        private static int digits(CharSequence text, int start, int count) {
+            int value = 0;
+            for (int i = start; i < start + count; i++) {
+                int digit = text.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw error("Expected digit", text, i);
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        private static void expect(CharSequence text, int index, char expected) {
+            if (text.charAt(index) != expected) {
+                throw error("Expected '" + expected + "'", text, index);
+            }
+        }
+
+        private static void writeTwoDigits(byte[] dest, int offset, int value) {
+            dest[offset] = (byte) ('0' + value / 10);
+            dest[offset + 1] = (byte) ('0' + value % 10);
+        }
+
+        private static int digitCount(long value) {
+            int count = 1;
+            while (value >= 10) {
+                value /= 10;
+                count++;
+            }
+            return count;
+        }
+
+        private static void checkRange(long epochMillis) {
+            if (epochMillis < MIN_MILLIS || epochMillis > MAX_MILLIS) {
+                throw new DateTimeException("Timestamp outside years 0000-9999: " + epochMillis);
+            }
+        }
+
+        private static DateTimeParseException error(String message, CharSequence text, int index) {
+            return new DateTimeParseException(message + " at index " + index + ": " + text, text, index);
+        }
+
+        private static final class CachedDay {
+            final long epochDay;
+            final byte[] datePart;
+
+            CachedDay(long epochDay, byte[] datePart) {
+                this.epochDay = epochDay;
+                this.datePart = datePart;
+            }
+        }
+
+        private static final class CachedSecond {
+            final long epochSecond;
+            final byte[] prefix;
+            final String text;
+
+            CachedSecond(long epochSecond, byte[] prefix) {
+                this.epochSecond = epochSecond;
+                this.prefix = prefix;
+                this.text = prefix == null ? null : new String(prefix, StandardCharsets.US_ASCII);
+            }
+        }
+    }
+}
@@ -0,0 +1,490 @@
+package advanced;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * This class demonstrates cheap value objects: interned points with cached
+ * hash codes, and points packed into longs that need no objects at all.
+ *
+ * EncapsulationExample.ImmutablePoint allocates on every translate(), and
+ * code that walks a grid creates one short-lived point per step, then boxes
+ * it again as a HashMap key. Three ways to make that cheaper are shown below:
+ *   - Point.of: small coordinates come from a preallocated table and the
+ *     rest from a bounded, lossy interning cache, so hot cells are shared
+ *   - Point caches its hash and its packed (x, y) form, so equals is one
+ *     long comparison and hashCode a field read
+ *   - LongPoint packs (x, y) into a long, and LongPointSet / LongPointIntMap
+ *     store packed points in primitive open-addressing tables
+ */
+public class ValueObjectExample {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final int[] DX = {1, 0, -1, 0};
+    private static final int[] DY = {0, 1, 0, -1};
+
+    public static void main(String[] args) {
+        // Interning, cached hashes and packed points
+        valueObjectExample();
+
+        // Steps can be raised from the command line
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        gridWalkBenchmark(steps);
+    }
+
+    // Interning, cached hashes and packed points
+    private static void valueObjectExample() {
+        System.out.println("\n=== Interned Points ===");
+
+        Point origin = Point.of(0, 0);
+        Point moved = origin.translate(3, 4).translate(-3, -4);
+        System.out.println("origin.translate(3, 4).translate(-3, -4) is origin: " + (moved == origin));
+
+        Point far = Point.of(10_000, -20_000);
+        System.out.println(far + " interned twice is the same object: " + (far == Point.of(10_000, -20_000)));
+        System.out.println("Equal to a point built directly: " + far.equals(new Point(10_000, -20_000)));
+
+        System.out.println("\n=== Packed Points ===");
+
+        long packed = LongPoint.pack(-7, 42);
+        System.out.println("pack(-7, 42) = 0x" + Long.toHexString(packed) + " -> ("
+                           + LongPoint.x(packed) + ", " + LongPoint.y(packed) + ")");
+        System.out.println("Round trip through Point: " + Point.fromPacked(packed)
+                           + ", packed again equal: " + (Point.fromPacked(packed).packed() == packed));
+
+        LongPointSet visited = new LongPointSet();
+        LongPointIntMap visits = new LongPointIntMap();
+        long position = LongPoint.pack(0, 0);
+        int[][] moves = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}, {1, 0}, {1, 0}};
+        for (int[] move : moves) {
+            position = LongPoint.translate(position, move[0], move[1]);
+            visited.add(position);
+            visits.addTo(position, 1);
+        }
+        System.out.println("Walk visited " + visited.size() + " distinct cells, "
+                           + visits.get(LongPoint.pack(1, 0)) + " visits to " + LongPoint.toString(LongPoint.pack(1, 0)));
+    }
+
+    // A random walk counting visits per cell, with each point representation
+    private static void gridWalkBenchmark(int steps) {
+        int radius = 100;
+        System.out.println("\n=== Benchmark: " + steps + " step grid walk, "
+                           + (2 * radius + 1) + "x" + (2 * radius + 1) + " cells ===");
+
+        // Directions are drawn up front so the random number generator is not measured
+        byte[] directions = new byte[steps];
+        Random random = new Random(42);
+        for (int i = 0; i < steps; i++) {
+            directions[i] = (byte) random.nextInt(4);
+        }
+
+        runBenchmark("new point per step, HashMap", steps, () -> {
+            Map<PlainPoint, Integer> visits = new HashMap<>();
+            PlainPoint position = new PlainPoint(0, 0);
+            for (byte direction : directions) {
+                position = position.translate(DX[direction], DY[direction]);
+                if (Math.abs(position.x) > radius || Math.abs(position.y) > radius) {
+                    position = new PlainPoint(0, 0);
+                }
+                visits.merge(position, 1, Integer::sum);
+            }
+            return visits.size() + visits.get(new PlainPoint(0, 0));
+        });
+
+        runBenchmark("Point.of interned, HashMap", steps, () -> {
+            Map<Point, Integer> visits = new HashMap<>();
+            Point position = Point.of(0, 0);
+            for (byte direction : directions) {
+                position = position.translate(DX[direction], DY[direction]);
+                if (Math.abs(position.x()) > radius || Math.abs(position.y()) > radius) {
+                    position = Point.of(0, 0);
+                }
+                visits.merge(position, 1, Integer::sum);
+            }
+            return visits.size() + visits.get(Point.of(0, 0));
+        });
+
+        runBenchmark("LongPoint, LongPointIntMap", steps, () -> {
+            LongPointIntMap visits = new LongPointIntMap();
+            long position = LongPoint.pack(0, 0);
+            for (byte direction : directions) {
+                position = LongPoint.translate(position, DX[direction], DY[direction]);
+                if (Math.abs(LongPoint.x(position)) > radius || Math.abs(LongPoint.y(position)) > radius) {
+                    position = LongPoint.pack(0, 0);
+                }
+                visits.addTo(position, 1);
+            }
+            return visits.size() + visits.get(LongPoint.pack(0, 0));
+        });
+
+        runBenchmark("LongPoint, LongPointSet (distinct only)", steps, () -> {
+            LongPointSet visited = new LongPointSet();
+            long position = LongPoint.pack(0, 0);
+            for (byte direction : directions) {
+                position = LongPoint.translate(position, DX[direction], DY[direction]);
+                if (Math.abs(LongPoint.x(position)) > radius || Math.abs(LongPoint.y(position)) > radius) {
+                    position = LongPoint.pack(0, 0);
+                }
+                visited.add(position);
+            }
+            return visited.size();
+        });
+    }
+
+    // Best of three rounds after two warm-up rounds, with bytes allocated by this thread
+    private static void runBenchmark(String name, int steps, IntSupplier body) {
+        long checksum = 0;
+        for (int i = 0; i < 2; i++) {
+            checksum += body.getAsInt();
+        }
+        long thread = Thread.currentThread().getId();
+        long best = Long.MAX_VALUE;
+        long leastAllocated = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            checksum += body.getAsInt();
+            best = Math.min(best, System.nanoTime() - start);
+            leastAllocated = Math.min(leastAllocated, THREADS.getThreadAllocatedBytes(thread) - allocatedBefore);
+        }
+        System.out.printf("%-42s %7.2f ns/step %8.2f bytes/step %6.0f MB/s allocated  (checksum %d)%n",
+                          name, (double) best / steps, (double) leastAllocated / steps,
+                          leastAllocated / 1e6 / (best / 1e9), checksum & 0xFFFF);
+    }
+
+    /**
+     * The point from EncapsulationExample: allocated on every translate and
+     * hashed on every lookup.
+     */
+    static final class PlainPoint {
+        final int x;
+        final int y;
+
+        PlainPoint(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        PlainPoint translate(int dx, int dy) {
+            return new PlainPoint(x + dx, y + dy);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof PlainPoint)) return false;
+            PlainPoint other = (PlainPoint) obj;
+            return x == other.x && y == other.y;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * x + y;
+        }
+    }
+
+    /**
+     * Immutable point with a cached hash and packed form, created through of().
+     *
+     * Points with both coordinates in [-SMALL, SMALL) are preallocated, like
+     * Integer.valueOf's cache. Other points go through a direct-mapped cache
+     * of fixed size: a slot holds the last point hashed to it, so the cache is
+     * bounded and never needs eviction, and a miss only costs an allocation.
+     * Slots are read and written without locks; that is safe because a Point's
+     * fields are final, so any thread that sees a point sees it fully built.
+     */
+    static final class Point {
+        private static final int SMALL = 32;
+        private static final Point[] SMALL_POINTS = new Point[4 * SMALL * SMALL];
+        private static final int CACHE_SIZE = 1 << 16;
+        private static final Point[] CACHE = new Point[CACHE_SIZE];
+
+        static {
+            for (int x = -SMALL; x < SMALL; x++) {
+                for (int y = -SMALL; y < SMALL; y++) {
+                    SMALL_POINTS[smallIndex(x, y)] = new Point(x, y);
+                }
+            }
+        }
+
+        private final int x;
+        private final int y;
+        private final long packed;
+        private final int hash;
+
+        // Public so callers can opt out of interning, e.g. for points used once
+        public Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+            this.packed = LongPoint.pack(x, y);
+            this.hash = LongPoint.hash(packed);
+        }
+
+        public static Point of(int x, int y) {
+            if (x >= -SMALL && x < SMALL && y >= -SMALL && y < SMALL) {
+                return SMALL_POINTS[smallIndex(x, y)];
+            }
+            long packed = LongPoint.pack(x, y);
+            int slot = LongPoint.hash(packed) & (CACHE_SIZE - 1);
+            Point cached = CACHE[slot];
+            if (cached != null && cached.packed == packed) {
+                return cached;
+            }
+            Point point = new Point(x, y);
+            CACHE[slot] = point;
+            return point;
+        }
+
+        public static Point fromPacked(long packed) {
+            return of(LongPoint.x(packed), LongPoint.y(packed));
+        }
+
+        private static int smallIndex(int x, int y) {
+            return (x + SMALL) * 2 * SMALL + (y + SMALL);
+        }
+
+        public int x() {
+            return x;
+        }
+
+        public int y() {
+            return y;
+        }
+
+        public long packed() {
+            return packed;
+        }
+
+        public Point translate(int dx, int dy) {
+            return of(x + dx, y + dy);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return this == obj || obj instanceof Point && ((Point) obj).packed == packed;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return "Point(" + x + ", " + y + ")";
+        }
+    }
+
+    /**
+     * Points packed into a long: x in the high 32 bits, y in the low 32 bits.
+     */
+    static final class LongPoint {
+        private LongPoint() {
+        }
+
+        public static long pack(int x, int y) {
+            return (long) x << 32 | (y & 0xFFFFFFFFL);
+        }
+
+        public static int x(long point) {
+            return (int) (point >> 32);
+        }
+
+        public static int y(long point) {
+            return (int) point;
+        }
+
+        // Coordinates wrap independently, as int arithmetic on x and y would
+        public static long translate(long point, int dx, int dy) {
+            return pack(x(point) + dx, y(point) + dy);
+        }
+
+        // Mixes both halves, so neighbouring cells land far apart in a table
+        public static int hash(long point) {
+            long h = point * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        public static String toString(long point) {
+            return "(" + x(point) + ", " + y(point) + ")";
+        }
+    }
+
+    @FunctionalInterface
+    interface LongPointIntConsumer {
+        void accept(long point, int value);
+    }
+
+    /**
+     * Open-addressing set of packed points with linear probing.
+     *
+     * Slot value 0 marks an empty slot, so the point (0, 0), which packs to 0,
+     * is tracked by a separate flag.
+     */
+    static final class LongPointSet {
+        private long[] points;
+        private boolean containsOrigin;
+        private int size;
+
+        LongPointSet() {
+            this(16);
+        }
+
+        LongPointSet(int expected) {
+            points = new long[Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1];
+        }
+
+        public boolean add(long point) {
+            if (point == 0) {
+                if (containsOrigin) {
+                    return false;
+                }
+                containsOrigin = true;
+                size++;
+                return true;
+            }
+            int mask = points.length - 1;
+            int slot = LongPoint.hash(point) & mask;
+            while (points[slot] != 0) {
+                if (points[slot] == point) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            points[slot] = point;
+            if (++size * 4 > points.length * 3) {
+                resize();
+            }
+            return true;
+        }
+
+        public boolean contains(long point) {
+            if (point == 0) {
+                return containsOrigin;
+            }
+            int mask = points.length - 1;
+            for (int slot = LongPoint.hash(point) & mask; points[slot] != 0; slot = (slot + 1) & mask) {
+                if (points[slot] == point) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void forEach(LongConsumer action) {
+            if (containsOrigin) {
+                action.accept(0);
+            }
+            for (long point : points) {
+                if (point != 0) {
+                    action.accept(point);
+                }
+            }
+        }
+
+        private void resize() {
+            long[] old = points;
+            points = new long[old.length * 2];
+            size = containsOrigin ? 1 : 0;
+            for (long point : old) {
+                if (point != 0) {
+                    add(point);
+                }
+            }
+        }
+    }
+
+    /**
+     * Open-addressing map from packed points to ints with linear probing,
+     * using the same empty-slot convention as LongPointSet.
+     */
+    static final class LongPointIntMap {
+        private long[] points;
+        private int[] values;
+        private boolean containsOrigin;
+        private int originValue;
+        private int size;
+
+        LongPointIntMap() {
+            this(16);
+        }
+
+        LongPointIntMap(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+            points = new long[capacity];
+            values = new int[capacity];
+        }
+
+        public void addTo(long point, int delta) {
+            if (point == 0) {
+                if (!containsOrigin) {
+                    containsOrigin = true;
+                    size++;
+                }
+                originValue += delta;
+                return;
+            }
+            int mask = points.length - 1;
+            int slot = LongPoint.hash(point) & mask;
+            while (points[slot] != 0) {
+                if (points[slot] == point) {
+                    values[slot] += delta;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            points[slot] = point;
+            values[slot] = delta;
+            if (++size * 4 > points.length * 3) {
+                resize();
+            }
+        }
+
+        // 0 for a point that was never added, like IntLongMap.get
+        public int get(long point) {
+            if (point == 0) {
+                return originValue;
+            }
+            int mask = points.length - 1;
+            for (int slot = LongPoint.hash(point) & mask; points[slot] != 0; slot = (slot + 1) & mask) {
+                if (points[slot] == point) {
+                    return values[slot];
+                }
+            }
+            return 0;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void forEach(LongPointIntConsumer action) {
+            if (containsOrigin) {
+                action.accept(0, originValue);
+            }
+            for (int i = 0; i < points.length; i++) {
+                if (points[i] != 0) {
+                    action.accept(points[i], values[i]);
+                }
+            }
+        }
+
+        private void resize() {
+            long[] oldPoints = points;
+            int[] oldValues = values;
+            points = new long[oldPoints.length * 2];
+            values = new int[oldPoints.length * 2];
+            size = containsOrigin ? 1 : 0;
+            for (int i = 0; i < oldPoints.length; i++) {
+                if (oldPoints[i] != 0) {
+                    addTo(oldPoints[i], oldValues[i]);
+                }
+            }
+        }
+    }
+}